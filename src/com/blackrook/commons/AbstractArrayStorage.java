@@ -37,6 +37,34 @@ public abstract class AbstractArrayStorage<T extends Object>
 		storageArray = new Object[capacity];
 	}
 	
+	/**
+	 * Returns the smallest power of two that is greater than or equal to a capacity.
+	 * Used by structures that index their storage with a bit mask.
+	 * @param capacity the input capacity.
+	 * @return the resultant table capacity. Never less than 1 or greater than 2^30.
+	 * @since 2.33.0
+	 */
+	protected static int tableCapacityFor(int capacity)
+	{
+		if (capacity <= 1)
+			return 1;
+		int out = Integer.highestOneBit(capacity - 1) << 1;
+		return out > 0 ? out : 1 << 30;
+	}
+
+	/**
+	 * Spreads the bits of a hashcode so that the low bits used for table indices
+	 * are affected by all bits of the input.
+	 * @param hashcode the input hashcode.
+	 * @return the mixed hashcode.
+	 * @since 2.33.0
+	 */
+	protected static int mix(int hashcode)
+	{
+		int h = hashcode * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
 	/**
 	 * Gets data at a particular index in the array.
 	 * @param index the desired index.
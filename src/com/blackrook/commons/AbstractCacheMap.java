@@ -0,0 +1,551 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons;
+
+import com.blackrook.commons.hash.OpenHashMap;
+
+/**
+ * This is an abstract cache map. It maps keys to values like a hash map, but has a
+ * maximum capacity: when an entry is added that would make the map exceed its capacity,
+ * entries are evicted from the map according to a replacement policy, decided by the
+ * subclass, until it fits. Lookups, insertions and evictions all take O(1) time.
+ * <p>
+ * By default, every entry has a weight of 1, so the capacity is a maximum amount of entries.
+ * A {@link Weigher} can be set to give entries different weights (for instance, their sizes in bytes),
+ * and an {@link EvictionListener} can be set to be notified of evicted entries.
+ * <p>
+ * {@link #get(Object)} counts cache hits and misses, and counts as an access to the entry.
+ * {@link #containsKey(Object)} does neither.
+ * <p>
+ * This structure cannot store null keys.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public abstract class AbstractCacheMap<K extends Object, V extends Object> implements AbstractMap<K, V>
+{
+	/** Index of key to entry. */
+	protected OpenHashMap<K, Entry<K, V>> index;
+	/** Maximum total weight. */
+	protected long capacity;
+	/** Current total weight. */
+	protected long weight;
+	/** Entry weigher. Can be null. */
+	protected Weigher<? super K, ? super V> weigher;
+	/** Eviction listener. Can be null. */
+	protected EvictionListener<? super K, ? super V> evictionListener;
+
+	/** Cache hit count. */
+	protected long hitCount;
+	/** Cache miss count. */
+	protected long missCount;
+	/** Eviction count. */
+	protected long evictionCount;
+
+	/**
+	 * Creates a new cache map.
+	 * @param capacity the maximum total weight of the entries in this map (the maximum amount of entries, by default).
+	 * @throws IllegalArgumentException if capacity is 0 or less.
+	 */
+	protected AbstractCacheMap(long capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can't 0 or less.");
+		this.index = new OpenHashMap<K, Entry<K, V>>((int)Math.min(capacity, 1 << 16));
+		this.capacity = capacity;
+		this.weight = 0L;
+		this.weigher = null;
+		this.evictionListener = null;
+		resetStatistics();
+	}
+
+	/**
+	 * @return the maximum total weight of the entries in this map.
+	 */
+	public long getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Sets the maximum total weight of the entries in this map.
+	 * If the current total weight exceeds the new capacity, entries are evicted.
+	 * @param capacity the new capacity.
+	 * @throws IllegalArgumentException if capacity is 0 or less.
+	 */
+	public void setCapacity(long capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can't 0 or less.");
+		this.capacity = capacity;
+		evict();
+	}
+
+	/**
+	 * @return the current total weight of the entries in this map.
+	 */
+	public long getWeight()
+	{
+		return weight;
+	}
+
+	/**
+	 * Sets the weigher used for calculating the weights of entries added to this map.
+	 * This does not change the weights of entries already in the map.
+	 * @param weigher the weigher to use, or null to give every entry a weight of 1.
+	 */
+	public void setWeigher(Weigher<? super K, ? super V> weigher)
+	{
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Sets the listener that is called when entries are evicted from this map.
+	 * It is not called for entries removed via {@link #removeUsingKey(Object)} or {@link #clear()}.
+	 * @param evictionListener the listener to use, or null for no listener.
+	 */
+	public void setEvictionListener(EvictionListener<? super K, ? super V> evictionListener)
+	{
+		this.evictionListener = evictionListener;
+	}
+
+	/**
+	 * @return the amount of calls to {@link #get(Object)} that found an entry.
+	 */
+	public long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * @return the amount of calls to {@link #get(Object)} that did not find an entry.
+	 */
+	public long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * @return the amount of entries evicted from this map.
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * @return the ratio of hits to total calls to {@link #get(Object)}, or 0 if there were no calls.
+	 */
+	public double getHitRatio()
+	{
+		long total = hitCount + missCount;
+		return total == 0 ? 0.0 : (double)hitCount / total;
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counts to 0.
+	 */
+	public void resetStatistics()
+	{
+		hitCount = 0L;
+		missCount = 0L;
+		evictionCount = 0L;
+	}
+
+	/**
+	 * Creates a new entry. Subclasses can override this to use entries with more fields.
+	 * @param key the entry key.
+	 * @param value the entry value.
+	 * @return a new entry.
+	 */
+	protected Entry<K, V> createEntry(K key, V value)
+	{
+		return new Entry<K, V>(key, value);
+	}
+
+	/**
+	 * Called when a new entry is added to this map.
+	 * @param entry the added entry.
+	 */
+	protected abstract void entryAdded(Entry<K, V> entry);
+
+	/**
+	 * Called when an entry in this map is accessed (read or replaced).
+	 * @param entry the accessed entry.
+	 */
+	protected abstract void entryAccessed(Entry<K, V> entry);
+
+	/**
+	 * Called when an entry is removed from this map (including evictions).
+	 * @param entry the removed entry.
+	 */
+	protected abstract void entryRemoved(Entry<K, V> entry);
+
+	/**
+	 * Picks the next entry to evict. The map is not empty when this is called.
+	 * @return the entry to evict.
+	 */
+	protected abstract Entry<K, V> nextEviction();
+
+	/**
+	 * Clears the replacement policy state when the map is cleared.
+	 */
+	protected abstract void entriesCleared();
+
+	/**
+	 * Calculates the weight of an entry.
+	 * @param key the key.
+	 * @param value the value.
+	 * @return the weight.
+	 * @throws IllegalArgumentException if the weigher returns a negative weight.
+	 */
+	protected int weigh(K key, V value)
+	{
+		if (weigher == null)
+			return 1;
+		int out = weigher.weigh(key, value);
+		if (out < 0)
+			throw new IllegalArgumentException("Weight can't be negative.");
+		return out;
+	}
+
+	/**
+	 * Evicts entries until the total weight does not exceed the capacity.
+	 */
+	protected void evict()
+	{
+		while (weight > capacity && !index.isEmpty())
+			evictEntry(nextEviction());
+	}
+
+	/**
+	 * Evicts a single entry, and notifies the eviction listener.
+	 * @param entry the entry to evict.
+	 */
+	protected void evictEntry(Entry<K, V> entry)
+	{
+		removeEntry(entry);
+		evictionCount++;
+		if (evictionListener != null)
+			evictionListener.onEviction(entry.key, entry.value);
+	}
+
+	/**
+	 * Removes an entry from the index and the replacement policy.
+	 * @param entry the entry to remove.
+	 */
+	protected void removeEntry(Entry<K, V> entry)
+	{
+		index.removeUsingKey(entry.key);
+		entryRemoved(entry);
+		weight -= entry.weight;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map.
+	 * If a new entry would make the map exceed its capacity, entries are evicted to make room before it is added,
+	 * so the new entry is never the one evicted to fit itself.
+	 * If a replaced value makes the map exceed its capacity, entries are evicted afterward.
+	 * An entry that weighs more than the whole capacity is evicted right away.
+	 * @param key the key associated with a value.
+	 * @param value the value associated with the provided key.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public void put(K key, V value)
+	{
+		int w = weigh(key, value);
+		Entry<K, V> entry = index.get(key);
+		if (entry != null)
+		{
+			entry.value = value;
+			weight += w - entry.weight;
+			entry.weight = w;
+			entryAccessed(entry);
+		}
+		else
+		{
+			entry = createEntry(key, value);
+			entry.weight = w;
+			if (w <= capacity)
+			{
+				while (weight + w > capacity && !index.isEmpty())
+					evictEntry(nextEviction());
+			}
+			index.put(key, entry);
+			weight += w;
+			entryAdded(entry);
+		}
+
+		if (entry.weight > capacity)
+			evictEntry(entry);
+		else
+			evict();
+	}
+
+	/**
+	 * Gets the value associated with a key, and counts it as an access of the entry.
+	 * This counts a cache hit or a cache miss.
+	 * @return the associated value, or null if the key is not in the map.
+	 */
+	@Override
+	public V get(K key)
+	{
+		Entry<K, V> entry = index.get(key);
+		if (entry == null)
+		{
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		entryAccessed(entry);
+		return entry.value;
+	}
+
+	/**
+	 * Checks if a key is present in the map.
+	 * This does not count as an access of the entry, nor as a hit or miss.
+	 */
+	@Override
+	public boolean containsKey(K key)
+	{
+		return index.containsKey(key);
+	}
+
+	/**
+	 * Removes a value from this map using a key.
+	 * This is not counted as an eviction.
+	 */
+	@Override
+	public V removeUsingKey(K key)
+	{
+		Entry<K, V> entry = index.get(key);
+		if (entry == null)
+			return null;
+		removeEntry(entry);
+		return entry.value;
+	}
+
+	/**
+	 * Clears the contents of this map. This is not counted as an eviction.
+	 */
+	public void clear()
+	{
+		index.clear();
+		entriesCleared();
+		weight = 0L;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map, using the key and value of a pair.
+	 * The pair itself is not stored.
+	 */
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		put(pair.getKey(), pair.getValue());
+	}
+
+	/**
+	 * Checks if the key of a pair (by equality) is present in the map.
+	 */
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	/**
+	 * Removes the entry that uses the key of a pair.
+	 */
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		Entry<K, V> entry = index.get(pair.getKey());
+		if (entry == null)
+			return false;
+		removeEntry(entry);
+		return true;
+	}
+
+	@Override
+	public int size()
+	{
+		return index.size();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		int i = 0;
+		for (ObjectPair<K, V> pair : this)
+			out[i++] = pair;
+	}
+
+	@Override
+	public void toArrayKeys(K[] out)
+	{
+		index.toArrayKeys(out);
+	}
+
+	@Override
+	public void toArrayValues(V[] out)
+	{
+		int i = 0;
+		ResettableIterator<Entry<K, V>> it = index.valueIterator();
+		while (it.hasNext())
+			out[i++] = it.next().value;
+	}
+
+	/**
+	 * Returns an iterator through copies of the entries in this map, in no particular order.
+	 * Iterating does not count as access of the entries.
+	 */
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new CacheIterator();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (ObjectPair<K, V> pair : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(pair);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	/**
+	 * Calculates the weights of cache entries.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 */
+	public static interface Weigher<K extends Object, V extends Object>
+	{
+		/**
+		 * Calculates the weight of an entry.
+		 * @param key the entry key.
+		 * @param value the entry value.
+		 * @return the weight. Must not be negative.
+		 */
+		public int weigh(K key, V value);
+	}
+
+	/**
+	 * Listens for evicted cache entries.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 */
+	public static interface EvictionListener<K extends Object, V extends Object>
+	{
+		/**
+		 * Called after an entry is evicted from a cache.
+		 * @param key the entry key.
+		 * @param value the entry value.
+		 */
+		public void onEviction(K key, V value);
+	}
+
+	/**
+	 * A single cache entry. The links are used by the replacement policy.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 */
+	protected static class Entry<K extends Object, V extends Object>
+	{
+		/** Entry key. */
+		public final K key;
+		/** Entry value. */
+		public V value;
+		/** Entry weight. */
+		public int weight;
+		/** Previous entry in the policy's list. */
+		public Entry<K, V> prev;
+		/** Next entry in the policy's list. */
+		public Entry<K, V> next;
+
+		/**
+		 * Creates a new entry.
+		 * @param key the entry key.
+		 * @param value the entry value.
+		 */
+		public Entry(K key, V value)
+		{
+			this.key = key;
+			this.value = value;
+			this.weight = 1;
+			this.prev = null;
+			this.next = null;
+		}
+	}
+
+	/**
+	 * Iterator through the entries in the cache.
+	 */
+	protected class CacheIterator implements ResettableIterator<ObjectPair<K, V>>
+	{
+		/** Underlying entry iterator. */
+		private ResettableIterator<Entry<K, V>> entryIterator;
+		/** Last returned entry. */
+		private Entry<K, V> lastEntry;
+
+		public CacheIterator()
+		{
+			entryIterator = index.valueIterator();
+			lastEntry = null;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return entryIterator.hasNext();
+		}
+
+		@Override
+		public ObjectPair<K, V> next()
+		{
+			lastEntry = entryIterator.next();
+			return new ObjectPair<K, V>(lastEntry.key, lastEntry.value);
+		}
+
+		@Override
+		public void remove()
+		{
+			if (lastEntry == null)
+				throw new IllegalStateException("remove() called before next()");
+			entryIterator.remove();
+			entryRemoved(lastEntry);
+			weight -= lastEntry.weight;
+			lastEntry = null;
+		}
+
+		@Override
+		public void reset()
+		{
+			entryIterator.reset();
+			lastEntry = null;
+		}
+	}
+
+}
@@ -7,22 +7,97 @@
  ******************************************************************************/
 package com.blackrook.commons;
 
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import com.blackrook.commons.list.List;
 
 /**
  * This is an abstract hash data structure. It stores several hashable objects
  * in a chained hash table.
+ * <p>
+ * As of 2.33.0, the table's capacity is always a power of two, and the hashcodes
+ * are mixed before they are masked into table indices.
+ * <p>
+ * Chains are created as they are needed. As of 2.33.0, this table can also be
+ * rehashed incrementally (see {@link #setIncrementalRehash(boolean)}): when the table
+ * is expanded, the old and new tables are kept side by side, and a bounded amount of
+ * chains are moved to the new table on each {@link #put(Object)} or {@link #remove(Object)}.
+ * <p>
+ * As of 2.33.0, a chain that grows longer than {@link #SORTED_CHAIN_THRESHOLD} can be kept sorted
+ * and binary-searched, if its objects can be ordered (see {@link #getSortKey(Object)}), so that
+ * lookups stay O(log n) even if many objects have colliding hashcodes. Subclasses have to opt in
+ * to this (see {@link #isChainSortingEnabled()}), since the ordering has to agree with their equality.
  * @author Matthew Tropiano
  */
 public abstract class AbstractChainedHash<P extends Object> extends AbstractArrayStorage<List<P>> implements AbstractSet<P>
 {
 	/** Default rehash ratio. */
 	public static final float DEFAULT_REHASH = 0.75f;
+	/** 
+	 * Default amount of chains moved per operation during an incremental rehash. 
+	 * @since 2.33.0
+	 */
+	public static final int DEFAULT_REHASH_STEP = 4;
+	/** 
+	 * Chain length past which a chain is sorted, if its objects can be ordered.
+	 * @since 2.33.0
+	 */
+	public static final int SORTED_CHAIN_THRESHOLD = 8;
+
+	/** Names of the methods that define hashcodes and equality in chained hashes and maps. */
+	private static final String[] EQUALITY_METHOD_NAMES = {
+		"getHashcodeFor", "equalityMethod", "getHashcodeForKey", "equalityMethodForKey"
+	};
+	
+	/** The most-derived class in each hash class's hierarchy that declares a hashcode or equality method. */
+	private static final ClassValue<Class<?>> EQUALITY_CLASS = new ClassValue<Class<?>>()
+	{
+		@Override
+		protected Class<?> computeValue(Class<?> type)
+		{
+			for (Class<?> c = type; c != null; c = c.getSuperclass())
+				for (Method method : c.getDeclaredMethods())
+					for (String name : EQUALITY_METHOD_NAMES)
+						if (name.equals(method.getName()))
+							return c;
+			return AbstractChainedHash.class;
+		}
+	};
 
 	/** Number of elements in the table. */
 	protected int size;
 	/** Rehashing ratio for rehashing. */
 	protected float rehashRatio;
+	/** 
+	 * Hashing strategy for the objects, or null for the objects' own methods.
+	 * @since 2.33.0
+	 */
+	protected HashStrategy<? super P> hashStrategy;
+	/** 
+	 * The previous table during an incremental rehash, or null if no rehash is in progress.
+	 * @since 2.33.0
+	 */
+	protected Object[] oldStorageArray;
+	/** 
+	 * The index of the next chain in the previous table to move during an incremental rehash.
+	 * @since 2.33.0
+	 */
+	protected int rehashIndex;
+	/** 
+	 * Amount of chains moved per operation during an incremental rehash, or 0 if rehashing is not incremental.
+	 * @since 2.33.0
+	 */
+	protected int rehashStep;
+	/** 
+	 * Recorded statistics, or null if statistics are not enabled.
+	 * @since 2.33.0
+	 */
+	protected Statistics statistics;
 
 	/**
 	 * Creates a new chained hash with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
@@ -43,59 +118,231 @@ public abstract class AbstractChainedHash<P extends Object> extends AbstractArra
 	
 	/**
 	 * Creates a new chained hash.
-	 * @param capacity the capacity. cannot be negative.
+	 * @param capacity the capacity. cannot be negative. It is rounded up to the nearest power of two.
 	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded, the table's capacity is expanded, and the table is rehashed.
 	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less.
 	 */
 	public AbstractChainedHash(int capacity, float rehashRatio)
 	{
-		super(capacity);
+		super(tableCapacityFor(capacity));
 		
 		if (capacity <= 0)
 			throw new IllegalArgumentException("Capacity can't 0 or less.");
 		if (rehashRatio <= 0.0f)
 			throw new IllegalArgumentException("Ratio can't be 0 or less.");
 		
-		for (int i = 0; i < storageArray.length; i++)
-			storageArray[i] = new List<P>(4);
 		this.rehashRatio = rehashRatio;
+		this.hashStrategy = null;
+		this.oldStorageArray = null;
+		this.rehashIndex = 0;
+		this.rehashStep = 0;
+		this.statistics = null;
 		size = 0;
 	}
 
+	/**
+	 * Sets the strategy used for calculating hashcodes and equality of the objects in this hash,
+	 * for instance, a stronger hash function for keys that may be chosen by an adversary.
+	 * If this hash has contents, it is rehashed using the new strategy.
+	 * This is protected so that maps, which hash their entries by key, don't expose it;
+	 * set types make it public.
+	 * @param hashStrategy the strategy to use, or null to use the objects' {@link Object#hashCode()} and {@link Object#equals(Object)}.
+	 * @since 2.33.0
+	 */
+	protected void setHashStrategy(HashStrategy<? super P> hashStrategy)
+	{
+		this.hashStrategy = hashStrategy;
+		rebuild();
+	}
+
+	/**
+	 * Re-adds all of the objects in this table to a new table of the same size,
+	 * for when the hashcodes of the contained objects change.
+	 * @since 2.33.0
+	 */
+	protected void rebuild()
+	{
+		finishRehash();
+		startRehash(storageArray.length);
+		finishRehash();
+	}
+
+	/**
+	 * Sets if this table is rehashed incrementally.
+	 * If true, expanding the table moves the contents of the table over several later 
+	 * {@link #put(Object)} and {@link #remove(Object)} calls instead of all at once, 
+	 * so that no single call pays for the whole rehash.
+	 * If false, and a rehash is in progress, it is finished immediately.
+	 * @param incremental true to rehash incrementally, false to rehash all at once.
+	 * @since 2.33.0
+	 */
+	public void setIncrementalRehash(boolean incremental)
+	{
+		setIncrementalRehash(incremental ? DEFAULT_REHASH_STEP : 0);
+	}
+
+	/**
+	 * Sets if this table is rehashed incrementally, and how many chains are moved per operation.
+	 * If a rehash is in progress and the step is 0 or less, it is finished immediately.
+	 * @param step the amount of chains to move per operation. If 0 or less, rehashing is not incremental.
+	 * @since 2.33.0
+	 */
+	public void setIncrementalRehash(int step)
+	{
+		this.rehashStep = Math.max(step, 0);
+		if (rehashStep == 0)
+			finishRehash();
+	}
+
+	/**
+	 * @return true if this table is rehashed incrementally, false if not.
+	 * @since 2.33.0
+	 */
+	public boolean isIncrementalRehash()
+	{
+		return rehashStep > 0;
+	}
+
+	/**
+	 * @return true if an incremental rehash is in progress, false if not.
+	 * @since 2.33.0
+	 */
+	public boolean isRehashing()
+	{
+		return oldStorageArray != null;
+	}
+
+	/**
+	 * Sets if this table records statistics about lookups and rehashes (see {@link #getStatistics()}).
+	 * Statistics are off by default, and cost nothing when off.
+	 * Turning them off discards the recorded statistics.
+	 * @param enabled true to record statistics, false to not.
+	 * @since 2.33.0
+	 */
+	public void setStatisticsEnabled(boolean enabled)
+	{
+		if (!enabled)
+			statistics = null;
+		else if (statistics == null)
+			statistics = new Statistics();
+	}
+
+	/**
+	 * @return true if this table records statistics, false if not.
+	 * @since 2.33.0
+	 */
+	public boolean isStatisticsEnabled()
+	{
+		return statistics != null;
+	}
+
+	/**
+	 * Gets the statistics recorded by this table, if enabled. 
+	 * The returned object reflects later changes to this table.
+	 * @return the statistics, or null if statistics are not enabled.
+	 * @see #setStatisticsEnabled(boolean)
+	 * @since 2.33.0
+	 */
+	public HashMetrics getStatistics()
+	{
+		return statistics;
+	}
+
     /**
      * Clears the contents of this list.
      */
 	public void clear()
 	{
 		if (isEmpty()) return;
+		oldStorageArray = null;
+		rehashIndex = 0;
 		for (int i = 0; i < storageArray.length; i++)
-			getByIndex(i).clear();
+		{
+			List<P> chain = getByIndex(i);
+			if (chain != null)
+				chain.clear();
+		}
 		size = 0;
 	}
 	
 	/**
 	 * Doubles this table's capacity, and rehashes this table.
+	 * If this table is rehashed incrementally, this only starts the rehash.
+	 * If a rehash is already in progress, it is finished first.
 	 */
 	protected void rehash()
 	{
-		List<P> itemQueue = new List<P>(size());
-		for (int i = 0; i < storageArray.length; i++)
+		finishRehash();
+		startRehash(storageArray.length * 2);
+		if (rehashStep <= 0)
+			finishRehash();
+	}
+
+	// Replaces the table with a new, empty table, and keeps the current one as the previous table.
+	private void startRehash(int length)
+	{
+		if (statistics != null)
+			statistics.recordRehash();
+		oldStorageArray = storageArray;
+		rehashIndex = 0;
+		storageArray = new Object[length];
+	}
+
+	/**
+	 * Moves chains from the previous table to the current one, if a rehash is in progress.
+	 * @param chains the maximum amount of chains to move.
+	 * @since 2.33.0
+	 */
+	protected void rehashStep(int chains)
+	{
+		if (oldStorageArray == null)
+			return;
+		if (statistics != null)
+			timedMoveChains(chains);
+		else
+			moveChains(chains);
+	}
+
+	// Moves chains from the previous table to the current one, and records the time taken.
+	private void timedMoveChains(int chains)
+	{
+		long start = System.nanoTime();
+		moveChains(chains);
+		statistics.rehashNanos += System.nanoTime() - start;
+	}
+
+	// Moves chains from the previous table to the current one.
+	@SuppressWarnings("unchecked")
+	private void moveChains(int chains)
+	{
+		while (oldStorageArray != null && chains-- > 0)
 		{
-			List<P> vect = getByIndex(i);
-			while (!vect.isEmpty())
-				itemQueue.add(vect.removeIndex(vect.size()-1)); // remove from end = quick
+			List<P> chain = (List<P>)oldStorageArray[rehashIndex];
+			if (chain != null)
+			{
+				oldStorageArray[rehashIndex] = null;
+				for (int i = 0; i < chain.size(); i++)
+				{
+					P object = chain.getByIndex(i);
+					addToChain(getChainForInsert(storageArray, getTableIndexForHashcode(getHashcodeFor(object), storageArray.length)), object);
+				}
+			}
+			if (++rehashIndex >= oldStorageArray.length)
+			{
+				oldStorageArray = null;
+				rehashIndex = 0;
+			}
 		}
-		
-		Object[] newArray = new Object[storageArray.length * 2];
-		System.arraycopy(storageArray, 0, newArray, 0, storageArray.length);
-		for (int i = storageArray.length; i < newArray.length; i++)
-			newArray[i] = new List<P>(4);
-		storageArray = newArray;
-
-		size = 0;
+	}
 
-		while (!itemQueue.isEmpty())
-			put(itemQueue.removeIndex(itemQueue.size()-1));
+	/**
+	 * Finishes a rehash, if one is in progress.
+	 * @since 2.33.0
+	 */
+	protected void finishRehash()
+	{
+		if (oldStorageArray != null)
+			rehashStep(oldStorageArray.length - rehashIndex);
 	}
 
 	/**
@@ -108,12 +355,13 @@ public abstract class AbstractChainedHash<P extends Object> extends AbstractArra
 	
 	/**
 	 * Gets the hashcode for the input object.
+	 * By default, this uses the hash strategy, if set, or else {@link Object#hashCode()}.
 	 * @param object the object to create a hash code for.
 	 * @return the code returned.
 	 */
 	protected int getHashcodeFor(P object)
 	{
-		return object.hashCode();
+		return hashStrategy != null ? hashStrategy.hashCode(object) : object.hashCode();
 	}
 
 	/**
@@ -131,7 +379,51 @@ public abstract class AbstractChainedHash<P extends Object> extends AbstractArra
 			return false;
 		else if (object1 == null && object2 == null)
 			return true;
-		return ((P)object1).equals(object2);
+		return hashStrategy != null ? hashStrategy.equals(object1, object2) : object1.equals(object2);
+	}
+
+	/**
+	 * Checks if chains that grow past {@link #SORTED_CHAIN_THRESHOLD} may be sorted.
+	 * This is false by default: a subclass that returns true must make sure that {@link #getSortKey(Object)} 
+	 * and {@link #compareSortKeys(Object, Object)} agree with its {@link #getHashcodeFor(Object)} and 
+	 * {@link #equalityMethod(Object, Object)}, and should still return false for subclasses of its own that 
+	 * change those methods (see {@link #isEqualityDefinedBy(Class)}).
+	 * @return true if chains may be sorted, false if not.
+	 * @since 2.33.0
+	 */
+	protected boolean isChainSortingEnabled()
+	{
+		return false;
+	}
+
+	/**
+	 * Checks if the hashcode and equality methods of this object are the ones of a class,
+	 * meaning that no class between it and this object's class overrides any of them.
+	 * @param type the class to check, which must be this object's class or one of its superclasses.
+	 * @return true if so, false if not.
+	 * @since 2.33.0
+	 */
+	protected final boolean isEqualityDefinedBy(Class<?> type)
+	{
+		return EQUALITY_CLASS.get(getClass()).isAssignableFrom(type);
+	}
+
+	/**
+	 * Gets the key that orders an object in a sorted chain, if {@link #isChainSortingEnabled()} is true.
+	 * Objects with sort keys of the same class are compared using {@link #compareSortKeys(Object, Object)}, which must
+	 * be consistent with {@link #equalityMethod(Object, Object)} (objects that are equal must compare as equal).
+	 * By default, this is the object itself if it is {@link Comparable} and no hash strategy is set,
+	 * or if the hash strategy is an {@link OrderedHashStrategy} (which then does the comparing), or else null.
+	 * A plain {@link HashStrategy} turns sorted chains off, since the objects' own ordering may not agree with its equality.
+	 * @param object the object.
+	 * @return a sort key, or null if the object can't be ordered.
+	 * @since 2.33.0
+	 */
+	protected Object getSortKey(P object)
+	{
+		if (hashStrategy == null)
+			return object instanceof Comparable ? object : null;
+		return hashStrategy instanceof OrderedHashStrategy ? object : null;
 	}
 	
 	/**
@@ -141,7 +433,236 @@ public abstract class AbstractChainedHash<P extends Object> extends AbstractArra
 	 */
 	protected int getTableIndexFor(P object)
 	{
-		return Math.abs(getHashcodeFor(object)) % storageArray.length;
+		return getTableIndexForHashcode(getHashcodeFor(object), storageArray.length);
+	}
+	
+	/**
+	 * Finds the appropriate slot index for a hashcode in a table of a particular length.
+	 * @param hashcode the hashcode to use. 
+	 * @param length the table length. Must be a power of two.
+	 * @return the index at which an object will be added/searched for in the table.
+	 * @since 2.33.0
+	 */
+	protected int getTableIndexForHashcode(int hashcode, int length)
+	{
+		return mix(hashcode) & (length - 1);
+	}
+	
+	/**
+	 * Gets the chain that contains (or would contain) objects with a particular hashcode.
+	 * If a rehash is in progress, this may be a chain in the previous table.
+	 * @param hashcode the object hashcode. 
+	 * @return the corresponding chain, or null if the chain was not created yet.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<P> getChainForHashcode(int hashcode)
+	{
+		if (oldStorageArray != null)
+		{
+			int oldIndex = getTableIndexForHashcode(hashcode, oldStorageArray.length);
+			if (oldIndex >= rehashIndex)
+				return (List<P>)oldStorageArray[oldIndex];
+		}
+		return getByIndex(getTableIndexForHashcode(hashcode, storageArray.length));
+	}
+
+	/**
+	 * Gets the chain that objects with a particular hashcode are added to, creating it if it does not exist.
+	 * If a rehash is in progress, this may be a chain in the previous table.
+	 * @param hashcode the object hashcode. 
+	 * @return the corresponding chain.
+	 * @since 2.33.0
+	 */
+	protected List<P> getChainForInsert(int hashcode)
+	{
+		if (oldStorageArray != null)
+		{
+			int oldIndex = getTableIndexForHashcode(hashcode, oldStorageArray.length);
+			if (oldIndex >= rehashIndex)
+				return getChainForInsert(oldStorageArray, oldIndex);
+		}
+		return getChainForInsert(storageArray, getTableIndexForHashcode(hashcode, storageArray.length));
+	}
+
+	/**
+	 * Gets the chain at an index in a table, creating it if it does not exist.
+	 * @param table the table to use.
+	 * @param index the table index. 
+	 * @return the corresponding chain.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<P> getChainForInsert(Object[] table, int index)
+	{
+		List<P> out = (List<P>)table[index];
+		if (out == null)
+			table[index] = out = new Chain<P>();
+		return out;
+	}
+
+	/**
+	 * Checks if a chain is sorted.
+	 * @param chain the chain.
+	 * @return true if the chain is sorted, false if not.
+	 * @since 2.33.0
+	 */
+	protected boolean isSortedChain(List<P> chain)
+	{
+		return chain instanceof Chain && ((Chain<P>)chain).sortClass != null;
+	}
+
+	/**
+	 * Finds the index of an object in a chain, using a binary search if the chain is sorted.
+	 * @param chain the chain to search.
+	 * @param object the object to search for.
+	 * @return the index of an object equal to the provided object, or -1 if there is none.
+	 * @since 2.33.0
+	 */
+	protected int getChainIndexOf(List<P> chain, P object)
+	{
+		if (isSortedChain(chain))
+			return getSortedChainIndexOf((Chain<P>)chain, object);
+		for (int i = 0; i < chain.size(); i++)
+			if (equalityMethod(chain.getByIndex(i), object))
+				return i;
+		return -1;
+	}
+
+	// Finds the index of an object in a sorted chain.
+	private int getSortedChainIndexOf(Chain<P> chain, P object)
+	{
+		Object key = getSortKey(object);
+		if (key != null && key.getClass() == chain.sortClass)
+		{
+			int lo = 0, hi = chain.size() - 1;
+			while (lo <= hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				int c = compareSortKeys(getSortKey(chain.getByIndex(mid)), key);
+				if (c < 0)
+					lo = mid + 1;
+				else if (c > 0)
+					hi = mid - 1;
+				else
+				{
+					// check every object that compares as equal.
+					for (int i = mid; i >= 0 && compareSortKeys(getSortKey(chain.getByIndex(i)), key) == 0; i--)
+						if (equalityMethod(chain.getByIndex(i), object))
+							return i;
+					for (int i = mid + 1; i < chain.size() && compareSortKeys(getSortKey(chain.getByIndex(i)), key) == 0; i++)
+						if (equalityMethod(chain.getByIndex(i), object))
+							return i;
+					return -1;
+				}
+			}
+			return -1;
+		}
+		
+		for (int i = 0; i < chain.size(); i++)
+			if (equalityMethod(chain.getByIndex(i), object))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Adds an object to a chain, keeping it sorted if it is sorted, 
+	 * or sorting it if it grows past {@link #SORTED_CHAIN_THRESHOLD} and {@link #isChainSortingEnabled()} is true.
+	 * @param chain the chain to add to.
+	 * @param object the object to add.
+	 * @since 2.33.0
+	 */
+	protected void addToChain(List<P> chain, P object)
+	{
+		if (chain instanceof Chain)
+		{
+			Chain<P> c = (Chain<P>)chain;
+			if (c.sortClass != null || (c.size() >= c.sortCheckSize && isChainSortingEnabled()))
+			{
+				addToSortableChain(c, object);
+				return;
+			}
+		}
+		chain.add(object);
+	}
+
+	// Adds an object to a chain that is sorted or about to be sorted.
+	private void addToSortableChain(Chain<P> c, P object)
+	{
+		if (c.sortClass != null)
+		{
+			Object key = getSortKey(object);
+			if (key != null && key.getClass() == c.sortClass)
+			{
+				int lo = 0, hi = c.size();
+				while (lo < hi)
+				{
+					int mid = (lo + hi) >>> 1;
+					if (compareSortKeys(getSortKey(c.getByIndex(mid)), key) <= 0)
+						lo = mid + 1;
+					else
+						hi = mid;
+				}
+				c.add(lo, object);
+				return;
+			}
+			// can't be ordered with the rest - stop sorting.
+			c.sortClass = null;
+			c.sortCheckSize = c.size() * 2;
+		}
+		
+		c.add(object);
+		if (c.size() > c.sortCheckSize)
+			sortChain(c);
+	}
+
+	/**
+	 * Sorts a chain, if all of its objects have sort keys of the same class.
+	 * If not, sorting is attempted again when the chain doubles in length.
+	 */
+	private void sortChain(Chain<P> chain)
+	{
+		Object first = getSortKey(chain.getByIndex(0));
+		Class<?> sortClass = first != null ? first.getClass() : null;
+		for (int i = 1; sortClass != null && i < chain.size(); i++)
+		{
+			Object key = getSortKey(chain.getByIndex(i));
+			if (key == null || key.getClass() != sortClass)
+				sortClass = null;
+		}
+		
+		if (sortClass == null)
+		{
+			chain.sortCheckSize = chain.size() * 2;
+			return;
+		}
+		
+		chain.sort(new Comparator<P>()
+		{
+			@Override
+			public int compare(P o1, P o2)
+			{
+				return compareSortKeys(getSortKey(o1), getSortKey(o2));
+			}
+		});
+		chain.sortClass = sortClass;
+	}
+
+	/**
+	 * Compares two sort keys of the same class.
+	 * By default, this uses the hash strategy if it is an {@link OrderedHashStrategy}, or else the keys' natural ordering.
+	 * @param key1 the first key.
+	 * @param key2 the second key.
+	 * @return less than 0, 0, or greater than 0 if the first key is less than, equal to, or greater than the second.
+	 * @see #getSortKey(Object)
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	protected int compareSortKeys(Object key1, Object key2)
+	{
+		if (hashStrategy instanceof OrderedHashStrategy)
+			return ((OrderedHashStrategy<Object>)hashStrategy).compare(key1, key2);
+		return ((Comparable<Object>)key1).compareTo(key2);
 	}
 	
 	@Override
@@ -149,41 +670,126 @@ public abstract class AbstractChainedHash<P extends Object> extends AbstractArra
 	{
 		if (contains(object))
 			return;
-		if (rehashCheck()) rehash();
-		getByIndex(getTableIndexFor(object)).add(object);
+		putNew(object);
+	}
+	
+	/**
+	 * Adds an object to this hash without checking if it is already in the hash.
+	 * @param object the object to add.
+	 * @since 2.33.0
+	 */
+	protected void putNew(P object)
+	{
+		if (rehashCheck()) 
+			rehash();
+		else
+			rehashStep(rehashStep);
+		addToChain(getChainForInsert(getHashcodeFor(object)), object);
 		size++;
 	}
+
+	/**
+	 * Expands this table, if necessary, so that it can hold a total amount of 
+	 * objects without being rehashed. The table is expanded all at once, 
+	 * even if this table is rehashed incrementally.
+	 * @param count the total amount of objects to expect.
+	 * @since 2.33.0
+	 */
+	public void ensureCapacity(int count)
+	{
+		int length = tableCapacityFor((int)Math.min(Math.ceil(count / (double)rehashRatio), 1 << 30));
+		if (length <= storageArray.length)
+			return;
+		finishRehash();
+		startRehash(length);
+		finishRehash();
+	}
+
+	/**
+	 * Adds several objects to this hash, skipping the ones already in the hash.
+	 * The table is expanded once for all of the objects beforehand.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void putAll(P ... objects)
+	{
+		ensureCapacity(size + objects.length);
+		for (int i = 0; i < objects.length; i++)
+			put(objects[i]);
+	}
+
+	/**
+	 * Adds several objects to this hash, skipping the ones already in the hash.
+	 * If the provided objects are {@link Sizable} (for instance, another {@link AbstractSet}), 
+	 * the table is expanded once for all of the objects beforehand.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	public void putAll(Iterable<? extends P> objects)
+	{
+		if (objects instanceof Sizable)
+			ensureCapacity(size + ((Sizable)objects).size());
+		for (P object : objects)
+			put(object);
+	}
+
+	/**
+	 * Adds several objects to this hash without checking if they are already in the hash, 
+	 * which is faster than {@link #putAll(Object...)}. The caller must guarantee that 
+	 * the objects are unique and not already in this hash - duplicates will be added twice.
+	 * The table is expanded once for all of the objects beforehand.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void putAllUnique(P ... objects)
+	{
+		ensureCapacity(size + objects.length);
+		for (int i = 0; i < objects.length; i++)
+			putNew(objects[i]);
+	}
+
+	/**
+	 * Adds several objects to this hash without checking if they are already in the hash, 
+	 * which is faster than {@link #putAll(Iterable)}. The caller must guarantee that 
+	 * the objects are unique and not already in this hash - duplicates will be added twice.
+	 * If the provided objects are {@link Sizable} (for instance, another {@link AbstractSet}), 
+	 * the table is expanded once for all of the objects beforehand.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	public void putAllUnique(Iterable<? extends P> objects)
+	{
+		if (objects instanceof Sizable)
+			ensureCapacity(size + ((Sizable)objects).size());
+		for (P object : objects)
+			putNew(object);
+	}
 	
 	@Override
 	public boolean contains(P object)
 	{
-		List<P> vect = getByIndex(getTableIndexFor(object));
-		for (int i = 0; i < vect.size(); i++)
-		{
-			P entry = vect.getByIndex(i);
-			if (equalityMethod(entry, object))
-				return true;
-		}
-		
-		return false;
+		List<P> vect = getChainForHashcode(getHashcodeFor(object));
+		int i = vect != null ? getChainIndexOf(vect, object) : -1;
+		if (statistics != null)
+			statistics.recordLookup(vect, i);
+		return i >= 0;
 	}
 	
 	@Override
 	public boolean remove(P object)
 	{
-		List<P> vect = getByIndex(getTableIndexFor(object));
-		for (int i = 0; i < vect.size(); i++)
-		{
-			P entry = vect.getByIndex(i);
-			if (equalityMethod(entry, object))
-			{
-				vect.removeIndex(i);
-				size--;
-				return true;
-			}
-		}
-		
-		return false;
+		List<P> vect = getChainForHashcode(getHashcodeFor(object));
+		int i = vect != null ? getChainIndexOf(vect, object) : -1;
+		if (statistics != null)
+			statistics.recordLookup(vect, i);
+		if (i < 0)
+			return false;
+		vect.removeIndex(i);
+		size--;
+		rehashStep(rehashStep);
+		return true;
 	}
 	
 	/**
@@ -226,9 +832,315 @@ public abstract class AbstractChainedHash<P extends Object> extends AbstractArra
 	{
 		return new ChainedHashIterator();
 	}
+
+	/**
+	 * Returns a spliterator over the objects in this hash, in no particular order,
+	 * that splits the table into ranges of chains. Only the unsplit spliterator is exactly sized.
+	 * This hash should not be changed while the spliterator is in use.
+	 * @since 2.33.0
+	 */
+	@Override
+	public Spliterator<P> spliterator()
+	{
+		return new ChainedHashSpliterator(0, getTraversalChainCount(), size, true);
+	}
+
+	/**
+	 * @return a sequential stream of the objects in this hash.
+	 * @see #spliterator()
+	 * @since 2.33.0
+	 */
+	public Stream<P> stream()
+	{
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * @return a parallel stream of the objects in this hash.
+	 * @see #spliterator()
+	 * @since 2.33.0
+	 */
+	public Stream<P> parallelStream()
+	{
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	// Gets the amount of chains to traverse, including the chains in a previous table.
+	private int getTraversalChainCount()
+	{
+		return oldStorageArray != null ? oldStorageArray.length + storageArray.length : storageArray.length;
+	}
+
+	// Gets a chain to traverse, by an index that includes the chains in a previous table.
+	@SuppressWarnings("unchecked")
+	private List<P> getTraversalChain(int index)
+	{
+		if (oldStorageArray == null)
+			return getByIndex(index);
+		else if (index < oldStorageArray.length)
+			return (List<P>)oldStorageArray[index];
+		else
+			return getByIndex(index - oldStorageArray.length);
+	}
 	
+	/**
+	 * A hash chain that can be kept sorted.
+	 */
+	private static class Chain<P> extends List<P>
+	{
+		/** The class of the sort keys, if this chain is sorted, or null if not. */
+		Class<?> sortClass;
+		/** The length past which sorting is attempted. */
+		int sortCheckSize;
+
+		Chain()
+		{
+			super(4);
+			this.sortClass = null;
+			this.sortCheckSize = SORTED_CHAIN_THRESHOLD;
+		}
+	}
+
+	/**
+	 * Statistics recorded by a chained hash.
+	 * @since 2.33.0
+	 */
+	protected class Statistics implements HashMetrics
+	{
+		/** Amount of load factors kept. */
+		private static final int HISTORY_LENGTH = 64;
+
+		/** Amount of lookups. */
+		long lookupCount;
+		/** Total probes. */
+		long probeCount;
+		/** Most probes in a lookup. */
+		int maxProbes;
+		/** Amount of rehashes. */
+		long rehashCount;
+		/** Time spent rehashing. */
+		long rehashNanos;
+		/** Load factors before rehashes (circular). */
+		float[] loadFactorHistory;
+
+		protected Statistics()
+		{
+			this.loadFactorHistory = new float[HISTORY_LENGTH];
+			reset();
+		}
+
+		/**
+		 * Records a lookup.
+		 * @param chain the chain searched, or null if there was none.
+		 * @param index the index of the object found in the chain, or a negative value if not found.
+		 */
+		void recordLookup(List<P> chain, int index)
+		{
+			int probes;
+			if (chain == null)
+				probes = 0;
+			else if (isSortedChain(chain))
+				probes = Integer.SIZE - Integer.numberOfLeadingZeros(chain.size());
+			else
+				probes = index >= 0 ? index + 1 : chain.size();
+			lookupCount++;
+			probeCount += probes;
+			if (probes > maxProbes)
+				maxProbes = probes;
+		}
+
+		/**
+		 * Records the start of a rehash.
+		 */
+		void recordRehash()
+		{
+			loadFactorHistory[(int)(rehashCount % HISTORY_LENGTH)] = getLoadFactor();
+			rehashCount++;
+		}
+
+		@Override
+		public int[] getChainLengthHistogram()
+		{
+			int max = 0;
+			int length = getTraversalChainCount();
+			for (int i = 0; i < length; i++)
+			{
+				List<P> chain = getTraversalChain(i);
+				if (chain != null)
+					max = Math.max(max, chain.size());
+			}
+			int[] out = new int[max + 1];
+			for (int i = 0; i < storageArray.length; i++)
+			{
+				List<P> chain = getByIndex(i);
+				out[chain != null ? chain.size() : 0]++;
+			}
+			// chains not yet moved from a previous table count as well.
+			for (int i = length - storageArray.length - 1; i >= 0; i--)
+			{
+				List<P> chain = getTraversalChain(i);
+				if (chain != null && !chain.isEmpty())
+					out[chain.size()]++;
+			}
+			return out;
+		}
+
+		@Override
+		public long getLookupCount()
+		{
+			return lookupCount;
+		}
+
+		@Override
+		public double getAverageProbes()
+		{
+			return lookupCount == 0 ? 0.0 : (double)probeCount / lookupCount;
+		}
+
+		@Override
+		public int getMaxProbes()
+		{
+			return maxProbes;
+		}
+
+		@Override
+		public long getRehashCount()
+		{
+			return rehashCount;
+		}
+
+		@Override
+		public long getRehashNanos()
+		{
+			return rehashNanos;
+		}
+
+		@Override
+		public float getLoadFactor()
+		{
+			return (float)size / storageArray.length;
+		}
+
+		@Override
+		public float[] getLoadFactorHistory()
+		{
+			int count = (int)Math.min(rehashCount, HISTORY_LENGTH);
+			float[] out = new float[count];
+			for (int i = 0; i < count; i++)
+				out[i] = loadFactorHistory[(int)((rehashCount - count + i) % HISTORY_LENGTH)];
+			return out;
+		}
+
+		@Override
+		public void reset()
+		{
+			lookupCount = 0L;
+			probeCount = 0L;
+			maxProbes = 0;
+			rehashCount = 0L;
+			rehashNanos = 0L;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "lookups=" + lookupCount + ", averageProbes=" + getAverageProbes() + ", maxProbes=" + maxProbes 
+				+ ", rehashes=" + rehashCount + ", rehashNanos=" + rehashNanos + ", loadFactor=" + getLoadFactor();
+		}
+	}
+
+	/**
+	 * Spliterator object for chained hashes, over a range of chains.
+	 * If a rehash is in progress, the range includes the chains in the previous table.
+	 * @since 2.33.0
+	 */
+	protected class ChainedHashSpliterator implements Spliterator<P>
+	{
+		/** Next chain index. */
+		private int index;
+		/** End chain index (exclusive). */
+		private int fence;
+		/** Current chain. */
+		private List<P> chain;
+		/** Next index in the current chain. */
+		private int chainIndex;
+		/** Estimated amount of remaining objects. */
+		private long estimate;
+		/** If true, the estimate is exact. */
+		private boolean sized;
+
+		/**
+		 * Creates a new spliterator.
+		 * @param index the starting chain index.
+		 * @param fence the ending chain index (exclusive).
+		 * @param estimate the estimated amount of objects.
+		 * @param sized if true, the estimate is exact.
+		 */
+		public ChainedHashSpliterator(int index, int fence, long estimate, boolean sized)
+		{
+			this.index = index;
+			this.fence = fence;
+			this.chain = null;
+			this.chainIndex = 0;
+			this.estimate = estimate;
+			this.sized = sized;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super P> action)
+		{
+			while (true)
+			{
+				if (chain != null)
+				{
+					while (chainIndex < chain.size())
+					{
+						P out = chain.getByIndex(chainIndex++);
+						if (out != null)
+						{
+							if (sized)
+								estimate--;
+							action.accept(out);
+							return true;
+						}
+					}
+					chain = null;
+				}
+				if (index >= fence)
+					return false;
+				chain = getTraversalChain(index++);
+				chainIndex = 0;
+			}
+		}
+
+		@Override
+		public Spliterator<P> trySplit()
+		{
+			int mid = (index + fence) >>> 1;
+			if (mid <= index)
+				return null;
+			Spliterator<P> out = new ChainedHashSpliterator(index, mid, estimate >>>= 1, false);
+			index = mid;
+			sized = false;
+			return out;
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return estimate;
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return Spliterator.DISTINCT | (sized ? Spliterator.SIZED : 0);
+		}
+	}
+
 	/**
 	 * Iterator object for chained hashes.
+	 * If a rehash is in progress, the chains in the previous table are visited first.
 	 */
 	protected class ChainedHashIterator implements ResettableIterator<P>
 	{
@@ -257,7 +1169,7 @@ public abstract class AbstractChainedHash<P extends Object> extends AbstractArra
 				if (ci >= 0)
 				{
 					currentHashIndex = ci;
-					currentChain = getByIndex(ci);
+					currentChain = getChainAt(ci);
 					currentChainIndex = 0;
 					b = true;
 				}
@@ -295,9 +1207,29 @@ public abstract class AbstractChainedHash<P extends Object> extends AbstractArra
 		 */
 		protected int getNextIndex(int index)
 		{
-			while (index < storageArray.length && getByIndex(index).isEmpty())
+			int length = getChainCount();
+			List<P> chain;
+			while (index < length && ((chain = getChainAt(index)) == null || chain.isEmpty()))
 				index++;
-			return index >= storageArray.length ? -1 : index; 
+			return index >= length ? -1 : index; 
+		}
+
+		/**
+		 * @return the amount of chains to traverse, including the chains in a previous table.
+		 */
+		protected int getChainCount()
+		{
+			return getTraversalChainCount();
+		}
+
+		/**
+		 * Gets a chain to traverse.
+		 * @param index the chain index, which includes chains in a previous table.
+		 * @return the corresponding chain.
+		 */
+		protected List<P> getChainAt(int index)
+		{
+			return getTraversalChain(index);
 		}
 
 		@Override
@@ -307,7 +1239,7 @@ public abstract class AbstractChainedHash<P extends Object> extends AbstractArra
 			currentHashIndex = getNextIndex(0);
 			if (currentHashIndex != -1)
 			{
-				currentChain = getByIndex(currentHashIndex);
+				currentChain = getChainAt(currentHashIndex);
 				currentChainIndex = 0;
 			}
 			else
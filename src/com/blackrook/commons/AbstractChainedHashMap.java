@@ -17,6 +17,12 @@ import com.blackrook.commons.list.List;
 public abstract class AbstractChainedHashMap<K extends Object, V extends Object> 
 	extends AbstractChainedHash<ObjectPair<K,V>> implements AbstractMap<K, V>
 {
+	/** 
+	 * Hashing strategy for the keys, or null for the keys' own methods.
+	 * @since 2.33.0
+	 */
+	protected HashStrategy<? super K> keyHashStrategy;
+
 	/**
 	 * Creates a new chained hash map with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
 	 */
@@ -44,6 +50,20 @@ public abstract class AbstractChainedHashMap<K extends Object, V extends Object>
 	public AbstractChainedHashMap(int capacity, float rehashRatio)
 	{
 		super(capacity, rehashRatio);
+		this.keyHashStrategy = null;
+	}
+
+	/**
+	 * Sets the strategy used for calculating hashcodes and equality of the keys in this map,
+	 * for instance, a stronger hash function for keys that may be chosen by an adversary.
+	 * If this map has contents, it is rehashed using the new strategy.
+	 * @param keyHashStrategy the strategy to use, or null to use the keys' {@link Object#hashCode()} and {@link Object#equals(Object)}.
+	 * @since 2.33.0
+	 */
+	public void setKeyHashStrategy(HashStrategy<? super K> keyHashStrategy)
+	{
+		this.keyHashStrategy = keyHashStrategy;
+		rebuild();
 	}
 
 	@Override
@@ -58,16 +78,47 @@ public abstract class AbstractChainedHashMap<K extends Object, V extends Object>
 		return getHashcodeForKey(object.getKey());
 	}
 
+	/**
+	 * Gets the key that orders a pair in a sorted chain, if {@link #isChainSortingEnabled()} is true.
+	 * By default, this is the pair's key if it is {@link Comparable} and no key hash strategy is set,
+	 * or if the key hash strategy is an {@link OrderedHashStrategy} (which then does the comparing), or else null.
+	 * A plain {@link HashStrategy} turns sorted chains off, since the keys' own ordering may not agree with its equality.
+	 * This must be consistent with {@link #equalityMethodForKey(Object, Object)}.
+	 * @since 2.33.0
+	 */
+	@Override
+	protected Object getSortKey(ObjectPair<K, V> object)
+	{
+		K key = object.getKey();
+		if (keyHashStrategy == null)
+			return key instanceof Comparable ? key : null;
+		return keyHashStrategy instanceof OrderedHashStrategy ? key : null;
+	}
+
+	/**
+	 * Compares two key sort keys of the same class.
+	 * By default, this uses the key hash strategy if it is an {@link OrderedHashStrategy}, or else the keys' natural ordering.
+	 * @since 2.33.0
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected int compareSortKeys(Object key1, Object key2)
+	{
+		if (keyHashStrategy instanceof OrderedHashStrategy)
+			return ((OrderedHashStrategy<Object>)keyHashStrategy).compare(key1, key2);
+		return super.compareSortKeys(key1, key2);
+	}
+
 	/**
 	 * Calculates the hash code for an object key.
-	 * By default, this calls {@link Object#hashCode()}.
+	 * By default, this uses the key hash strategy, if set, or else {@link Object#hashCode()}.
 	 * @param key the key object to use. 
 	 * @return the resultant code to use for table lookups.
 	 * @see Object#hashCode()
 	 */
 	protected int getHashcodeForKey(K key)
 	{
-		return key.hashCode();
+		return keyHashStrategy != null ? keyHashStrategy.hashCode(key) : key.hashCode();
 	}
 
 	/**
@@ -84,7 +135,7 @@ public abstract class AbstractChainedHashMap<K extends Object, V extends Object>
 			return false;
 		else if (key1 == null && key2 == null)
 			return true;
-		return key1.equals(key2);
+		return keyHashStrategy != null ? keyHashStrategy.equals(key1, key2) : key1.equals(key2);
 	}
 	
 	/**
@@ -95,7 +146,9 @@ public abstract class AbstractChainedHashMap<K extends Object, V extends Object>
 	 */
 	protected ObjectPair<K,V> getPairUsingKey(K key)
 	{
-		List<ObjectPair<K,V>> vect = getByIndex(getTableIndexForKey(key));
+		List<ObjectPair<K,V>> vect = getChainForHashcode(getHashcodeForKey(key));
+		if (vect == null || statistics != null || isSortedChain(vect))
+			return getPairUsingKeyInChain(vect, key);
 		for (int i = 0; i < vect.size(); i++)
 		{
 			ObjectPair<K,V> entry = vect.getByIndex(i);
@@ -105,6 +158,26 @@ public abstract class AbstractChainedHashMap<K extends Object, V extends Object>
 		return null;
 	}
 
+	// Gets the object pair that uses the provided key in a missing or sorted chain, or records the lookup.
+	private ObjectPair<K,V> getPairUsingKeyInChain(List<ObjectPair<K,V>> vect, K key)
+	{
+		int i = vect != null ? getKeyIndex(vect, key) : -1;
+		if (statistics != null)
+			statistics.recordLookup(vect, i);
+		return i >= 0 ? vect.getByIndex(i) : null;
+	}
+
+	// Gets the index of the pair that uses the provided key in a chain, or -1 if none.
+	private int getKeyIndex(List<ObjectPair<K,V>> vect, K key)
+	{
+		if (isSortedChain(vect))
+			return getChainIndexOf(vect, new ObjectPair<K,V>(key, null));
+		for (int i = 0; i < vect.size(); i++)
+			if (equalityMethodForKey(vect.getByIndex(i).getKey(), key))
+				return i;
+		return -1;
+	}
+
 	/**
 	 * Finds the appropriate slot index for an object key.
 	 * @param key the key object to use. 
@@ -112,7 +185,7 @@ public abstract class AbstractChainedHashMap<K extends Object, V extends Object>
 	 */
 	protected int getTableIndexForKey(K key)
 	{
-		return Math.abs(getHashcodeForKey(key)) % storageArray.length;
+		return getTableIndexForHashcode(getHashcodeForKey(key), storageArray.length);
 	}
 
 	/**
@@ -126,7 +199,113 @@ public abstract class AbstractChainedHashMap<K extends Object, V extends Object>
 		if (pair != null)
 			pair.setValue(value);
 		else
-			super.put(new ObjectPair<K,V>(key, value));
+			putNew(new ObjectPair<K,V>(key, value));
+	}
+
+	/**
+	 * Adds/replaces several [key, value] pairs in this map, using the keys and values of the pairs.
+	 * The pairs themselves are not stored.
+	 * The table is expanded once for all of the pairs beforehand.
+	 * @param pairs the pairs to add.
+	 * @since 2.33.0
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void putAll(ObjectPair<K, V> ... pairs)
+	{
+		ensureCapacity(size + pairs.length);
+		for (int i = 0; i < pairs.length; i++)
+			put(pairs[i].getKey(), pairs[i].getValue());
+	}
+
+	/**
+	 * Adds/replaces several [key, value] pairs in this map, using the keys and values of the pairs.
+	 * The pairs themselves are not stored.
+	 * If the provided pairs are {@link Sizable} (for instance, another {@link AbstractMap}), 
+	 * the table is expanded once for all of the pairs beforehand.
+	 * @param pairs the pairs to add.
+	 * @since 2.33.0
+	 */
+	@Override
+	public void putAll(Iterable<? extends ObjectPair<K, V>> pairs)
+	{
+		if (pairs instanceof Sizable)
+			ensureCapacity(size + ((Sizable)pairs).size());
+		for (ObjectPair<K, V> pair : pairs)
+			put(pair.getKey(), pair.getValue());
+	}
+
+	/**
+	 * Adds/replaces several [key, value] pairs in this map.
+	 * The table is expanded once for all of the pairs beforehand.
+	 * @param keys the keys to add.
+	 * @param values the values associated with each key, at the same indices.
+	 * @throws IllegalArgumentException if the arrays are not the same length.
+	 * @since 2.33.0
+	 */
+	public void putAll(K[] keys, V[] values)
+	{
+		if (keys.length != values.length)
+			throw new IllegalArgumentException("Key and value arrays must be the same length.");
+		ensureCapacity(size + keys.length);
+		for (int i = 0; i < keys.length; i++)
+			put(keys[i], values[i]);
+	}
+
+	/**
+	 * Adds several [key, value] pairs to this map without checking if the keys are already in the map,
+	 * using the keys and values of the pairs. The pairs themselves are not stored.
+	 * The caller must guarantee that the keys are unique and not already in this map - 
+	 * duplicate keys will be added twice.
+	 * The table is expanded once for all of the pairs beforehand.
+	 * @param pairs the pairs to add.
+	 * @since 2.33.0
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void putAllUnique(ObjectPair<K, V> ... pairs)
+	{
+		ensureCapacity(size + pairs.length);
+		for (int i = 0; i < pairs.length; i++)
+			putNew(new ObjectPair<K, V>(pairs[i].getKey(), pairs[i].getValue()));
+	}
+
+	/**
+	 * Adds several [key, value] pairs to this map without checking if the keys are already in the map,
+	 * using the keys and values of the pairs. The pairs themselves are not stored.
+	 * The caller must guarantee that the keys are unique and not already in this map - 
+	 * duplicate keys will be added twice.
+	 * If the provided pairs are {@link Sizable} (for instance, another {@link AbstractMap}), 
+	 * the table is expanded once for all of the pairs beforehand.
+	 * @param pairs the pairs to add.
+	 * @since 2.33.0
+	 */
+	@Override
+	public void putAllUnique(Iterable<? extends ObjectPair<K, V>> pairs)
+	{
+		if (pairs instanceof Sizable)
+			ensureCapacity(size + ((Sizable)pairs).size());
+		for (ObjectPair<K, V> pair : pairs)
+			putNew(new ObjectPair<K, V>(pair.getKey(), pair.getValue()));
+	}
+
+	/**
+	 * Adds several [key, value] pairs to this map without checking if the keys are already in the map.
+	 * The caller must guarantee that the keys are unique and not already in this map - 
+	 * duplicate keys will be added twice.
+	 * The table is expanded once for all of the pairs beforehand.
+	 * @param keys the keys to add.
+	 * @param values the values associated with each key, at the same indices.
+	 * @throws IllegalArgumentException if the arrays are not the same length.
+	 * @since 2.33.0
+	 */
+	public void putAllUnique(K[] keys, V[] values)
+	{
+		if (keys.length != values.length)
+			throw new IllegalArgumentException("Key and value arrays must be the same length.");
+		ensureCapacity(size + keys.length);
+		for (int i = 0; i < keys.length; i++)
+			putNew(new ObjectPair<K, V>(keys[i], values[i]));
 	}
 
 	@Override
@@ -143,19 +322,16 @@ public abstract class AbstractChainedHashMap<K extends Object, V extends Object>
 	 */
 	public V removeUsingKey(K key)
 	{
-		List<ObjectPair<K,V>> vect = getByIndex(getTableIndexForKey(key));
-		for (int i = 0; i < vect.size(); i++)
-		{
-			ObjectPair<K,V> entry = vect.getByIndex(i);
-			if (equalityMethodForKey(entry.getKey(), key))
-			{
-				vect.removeIndex(i);
-				size--;
-				return entry.getValue();
-			}
-		}
-		
-		return null;
+		List<ObjectPair<K,V>> vect = getChainForHashcode(getHashcodeForKey(key));
+		int i = vect != null ? getKeyIndex(vect, key) : -1;
+		if (statistics != null)
+			statistics.recordLookup(vect, i);
+		if (i < 0)
+			return null;
+		ObjectPair<K,V> entry = vect.removeIndex(i);
+		size--;
+		rehashStep(rehashStep);
+		return entry.getValue();
 	}
 
 	/**
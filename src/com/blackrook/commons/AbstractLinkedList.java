@@ -7,6 +7,12 @@
  ******************************************************************************/
 package com.blackrook.commons;
 
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * Custom Linked List data structure.
  * Encompasses behavior for stacks and queues. 
@@ -337,6 +343,38 @@ public abstract class AbstractLinkedList<T extends Object> implements Resettable
 		return new LLIterator();
 	}
 
+	/**
+	 * Returns a spliterator over the objects in this list, in order.
+	 * Splitting copies growing batches of objects into arrays, since a linked list can't be split in place.
+	 * This list should not be changed while the spliterator is in use.
+	 * @since 2.33.0
+	 */
+	@Override
+	public Spliterator<T> spliterator()
+	{
+		return new LLSpliterator();
+	}
+
+	/**
+	 * @return a sequential stream of the objects in this list.
+	 * @see #spliterator()
+	 * @since 2.33.0
+	 */
+	public Stream<T> stream()
+	{
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * @return a parallel stream of the objects in this list.
+	 * @see #spliterator()
+	 * @since 2.33.0
+	 */
+	public Stream<T> parallelStream()
+	{
+		return StreamSupport.stream(spliterator(), true);
+	}
+
 	// performs removal logic.
 	private void removeNode(Node<T> curr, Node<T> prev)
 	{
@@ -402,6 +440,83 @@ public abstract class AbstractLinkedList<T extends Object> implements Resettable
 	    
 	}
 
+	/**
+	 * Spliterator class for all LinkedListAbstracts.
+	 * @since 2.33.0
+	 */
+	protected class LLSpliterator implements Spliterator<T>
+	{
+		/** Batch size increment for splits. */
+		private static final int BATCH_UNIT = 1 << 10;
+		/** Maximum batch size for splits. */
+		private static final int MAX_BATCH = 1 << 25;
+
+		private Node<T> current;
+		private int remaining;
+		private int batch;
+
+		public LLSpliterator()
+		{
+			current = head;
+			remaining = size;
+			batch = 0;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action)
+		{
+			if (remaining <= 0 || current == null)
+				return false;
+			T out = current.data;
+			current = current.next;
+			remaining--;
+			action.accept(out);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action)
+		{
+			while (remaining > 0 && current != null)
+			{
+				T out = current.data;
+				current = current.next;
+				remaining--;
+				action.accept(out);
+			}
+		}
+
+		@Override
+		public Spliterator<T> trySplit()
+		{
+			if (remaining <= 1 || current == null)
+				return null;
+			int n = Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), remaining);
+			Object[] array = new Object[n];
+			int i = 0;
+			while (i < n && current != null)
+			{
+				array[i++] = current.data;
+				current = current.next;
+			}
+			batch = i;
+			remaining -= i;
+			return Spliterators.<T>spliterator(array, 0, i, Spliterator.ORDERED);
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return remaining;
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+	}
+
 	/**
 	 * Base iterator class for all LinkedListAbstracts.
 	 */
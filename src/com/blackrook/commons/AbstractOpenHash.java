@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import com.blackrook.commons.list.List;
+
+/**
+ * This is an abstract hash data structure. It stores several hashable objects
+ * in an open-addressed (linear probing) hash table, which is a single flat array
+ * of objects with no per-bucket chain objects.
+ * <p>
+ * The table's capacity is always a power of two. Removals use backward-shift
+ * deletion, so there are no "deleted" markers left in the table.
+ * <p>
+ * This structure cannot store null objects.
+ * @author Matthew Tropiano
+ * @param <P> the object type that this data structure stores.
+ * @since 2.33.0
+ */
+public abstract class AbstractOpenHash<P extends Object> extends AbstractArrayStorage<P> implements AbstractSet<P>
+{
+	/** Default rehash ratio. */
+	public static final float DEFAULT_REHASH = 0.75f;
+
+	/** Number of elements in the table. */
+	protected int size;
+	/** Rehashing ratio for rehashing. */
+	protected float rehashRatio;
+	/** Hashing strategy for the objects, or null for the objects' own methods. */
+	protected HashStrategy<? super P> hashStrategy;
+
+	/**
+	 * Creates a new open hash with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
+	 */
+	public AbstractOpenHash()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new open hash with capacity <i>cap</i> and rehash ratio DEFAULT_REHASH.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 */
+	public AbstractOpenHash(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new open hash.
+	 * @param capacity the capacity. cannot be negative. It is rounded up to the nearest power of two.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded, the table's capacity is expanded, and the table is rehashed.
+	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less, or 1 or greater.
+	 */
+	public AbstractOpenHash(int capacity, float rehashRatio)
+	{
+		super(tableCapacityFor(capacity));
+
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can't 0 or less.");
+		if (rehashRatio <= 0.0f)
+			throw new IllegalArgumentException("Ratio can't be 0 or less.");
+		if (rehashRatio >= 1.0f)
+			throw new IllegalArgumentException("Ratio can't be 1 or greater in an open hash.");
+
+		this.rehashRatio = rehashRatio;
+		this.hashStrategy = null;
+		size = 0;
+	}
+
+	/**
+	 * Sets the strategy used for calculating hashcodes and equality of the objects in this hash,
+	 * for instance, a stronger hash function for keys that may be chosen by an adversary.
+	 * If this hash has contents, it is rehashed using the new strategy.
+	 * @param hashStrategy the strategy to use, or null to use the objects' {@link Object#hashCode()} and {@link Object#equals(Object)}.
+	 */
+	@SuppressWarnings("unchecked")
+	public void setHashStrategy(HashStrategy<? super P> hashStrategy)
+	{
+		this.hashStrategy = hashStrategy;
+		Object[] oldArray = storageArray;
+		storageArray = new Object[oldArray.length];
+		for (int i = 0; i < oldArray.length; i++)
+			if (oldArray[i] != null)
+				storageArray[getFreeIndexFor((P)oldArray[i])] = oldArray[i];
+	}
+
+	/**
+	 * Clears the contents of this hash.
+	 */
+	public void clear()
+	{
+		if (isEmpty()) return;
+		Arrays.fill(storageArray, null);
+		size = 0;
+	}
+
+	/**
+	 * Doubles this table's capacity, and rehashes this table.
+	 */
+	protected void rehash()
+	{
+		Object[] oldArray = storageArray;
+		storageArray = new Object[oldArray.length * 2];
+		for (int i = 0; i < oldArray.length; i++)
+		{
+			@SuppressWarnings("unchecked")
+			P object = (P)oldArray[i];
+			if (object != null)
+				storageArray[getFreeIndexFor(object)] = object;
+		}
+	}
+
+	/**
+	 * @return true if the table needs to be rehashed, false otherwise.
+	 */
+	protected boolean rehashCheck()
+	{
+		return ((float)(size + 1))/storageArray.length > rehashRatio;
+	}
+
+	/**
+	 * Gets the hashcode for the input object.
+	 * By default, this uses the hash strategy, if set, or else {@link Object#hashCode()}.
+	 * @param object the object to create a hash code for.
+	 * @return the code returned.
+	 */
+	protected int getHashcodeFor(P object)
+	{
+		return hashStrategy != null ? hashStrategy.hashCode(object) : object.hashCode();
+	}
+
+	/**
+	 * Determines if the objects are equal. This can be implemented differently
+	 * in case a data structure has a different concept of what is considered equal.
+	 * @param object1 the first object.
+	 * @param object2 the second object.
+	 * @return true if the keys are considered equal, false otherwise.
+	 */
+	protected boolean equalityMethod(P object1, P object2)
+	{
+		if (object1 == null && object2 != null)
+			return false;
+		else if (object1 != null && object2 == null)
+			return false;
+		else if (object1 == null && object2 == null)
+			return true;
+		return hashStrategy != null ? hashStrategy.equals(object1, object2) : object1.equals(object2);
+	}
+
+	/**
+	 * Finds the home slot index for an object (the first slot probed).
+	 * @param object the object to use.
+	 * @return the index at which a search for an object will start in the hash.
+	 */
+	protected int getTableIndexFor(P object)
+	{
+		return mix(getHashcodeFor(object)) & (storageArray.length - 1);
+	}
+
+	/**
+	 * Finds the slot index that an object occupies.
+	 * @param object the object to use.
+	 * @return the index of the object in the table, or -1 if it is not present.
+	 */
+	protected int getSlotIndexOf(P object)
+	{
+		int mask = storageArray.length - 1;
+		int i = getTableIndexFor(object);
+		Object entry;
+		while ((entry = storageArray[i]) != null)
+		{
+			@SuppressWarnings("unchecked")
+			P p = (P)entry;
+			if (equalityMethod(p, object))
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the first empty slot index along an object's probe sequence.
+	 * Assumes that the object is not in the table.
+	 * @param object the object to use.
+	 * @return the index of the empty slot.
+	 */
+	protected int getFreeIndexFor(P object)
+	{
+		int mask = storageArray.length - 1;
+		int i = getTableIndexFor(object);
+		while (storageArray[i] != null)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	@Override
+	public void put(P object)
+	{
+		if (object == null)
+			throw new NullPointerException("Open hashes cannot contain null objects.");
+		if (contains(object))
+			return;
+		if (rehashCheck()) rehash();
+		storageArray[getFreeIndexFor(object)] = object;
+		size++;
+	}
+
+	@Override
+	public boolean contains(P object)
+	{
+		return object != null && getSlotIndexOf(object) >= 0;
+	}
+
+	@Override
+	public boolean remove(P object)
+	{
+		if (object == null)
+			return false;
+		int i = getSlotIndexOf(object);
+		if (i < 0)
+			return false;
+		removeSlot(i, null);
+		return true;
+	}
+
+	/**
+	 * Removes the object in a table slot and shifts the objects in the
+	 * following probe run backward to close the gap.
+	 * @param index the slot index to clear.
+	 * @param wrapped if not null, objects that are shifted from the start of the table
+	 * 		to a slot before the cleared slot are added to this list.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void removeSlot(int index, List<P> wrapped)
+	{
+		int mask = storageArray.length - 1;
+		int gap = index;
+		int i = index;
+		while (true)
+		{
+			i = (i + 1) & mask;
+			Object entry = storageArray[i];
+			if (entry == null)
+				break;
+			int home = getTableIndexFor((P)entry);
+			// can move the entry back if the gap is cyclically between its home slot and its current slot.
+			if (gap <= i ? (gap >= home || home > i) : (gap >= home && home > i))
+			{
+				if (wrapped != null && i < gap)
+					wrapped.add((P)entry);
+				storageArray[gap] = entry;
+				gap = i;
+			}
+		}
+		storageArray[gap] = null;
+		size--;
+	}
+
+	/**
+	 * Returns the amount of objects in the hash.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns true if there is nothing in this hash, false otherwise.
+	 * Equivalent to <code>size() == 0</code>.
+	 */
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (Object obj : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(obj);
+			once = true;
+		}
+		sb.append("]");
+
+		return sb.toString();
+	}
+
+	@Override
+	public ResettableIterator<P> iterator()
+	{
+		return new OpenHashIterator();
+	}
+
+	/**
+	 * Iterator object for open hashes.
+	 * The table is traversed from the end to the beginning, so that objects shifted
+	 * backward by {@link #remove()} are not visited twice. Objects that wrap around
+	 * the start of the table during a removal are visited at the end.
+	 */
+	protected class OpenHashIterator implements ResettableIterator<P>
+	{
+		/** Current slot index. */
+		protected int currentIndex;
+		/** Index of the last returned slot, or -1 if it was a wrapped object. */
+		protected int lastIndex;
+		/** Objects that were moved past the traversal by a removal. */
+		protected List<P> wrapped;
+		/** Index into wrapped list. */
+		protected int wrappedIndex;
+		/** Last returned object. */
+		protected P lastObject;
+		/** Removed flag. */
+		protected boolean removeFlag;
+
+		public OpenHashIterator()
+		{
+			reset();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			while (currentIndex > 0 && storageArray[currentIndex - 1] == null)
+				currentIndex--;
+			return currentIndex > 0 || (wrapped != null && wrappedIndex < wrapped.size());
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public P next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			if (currentIndex > 0)
+			{
+				lastIndex = --currentIndex;
+				lastObject = (P)storageArray[lastIndex];
+			}
+			else
+			{
+				lastIndex = -1;
+				lastObject = wrapped.getByIndex(wrappedIndex++);
+			}
+			removeFlag = false;
+			return lastObject;
+		}
+
+		@Override
+		public void remove()
+		{
+			if (removeFlag)
+				throw new IllegalStateException("remove() called before next()");
+
+			if (lastIndex >= 0)
+			{
+				if (wrapped == null)
+					wrapped = new List<P>(2);
+				removeSlot(lastIndex, wrapped);
+			}
+			else
+			{
+				AbstractOpenHash.this.remove(lastObject);
+			}
+			lastObject = null;
+			removeFlag = true;
+		}
+
+		@Override
+		public void reset()
+		{
+			removeFlag = true;
+			currentIndex = storageArray.length;
+			lastIndex = -1;
+			lastObject = null;
+			wrapped = null;
+			wrappedIndex = 0;
+		}
+
+	}
+
+}
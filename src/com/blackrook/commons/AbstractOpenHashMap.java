@@ -0,0 +1,636 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import com.blackrook.commons.list.List;
+
+/**
+ * This is an abstract hash map data structure. It stores keys and values
+ * in two parallel flat arrays, using open addressing (linear probing) to resolve collisions.
+ * No objects are created per entry on {@link #put(Object, Object)}, {@link #get(Object)}
+ * or {@link #removeUsingKey(Object)}.
+ * <p>
+ * The table's capacity is always a power of two. Removals use backward-shift
+ * deletion, so there are no "deleted" markers left in the table.
+ * <p>
+ * This structure cannot store null keys.
+ * The {@link ObjectPair}s returned by {@link #iterator()} are created on traversal,
+ * and changing their values does not change the values in this map.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public abstract class AbstractOpenHashMap<K extends Object, V extends Object>
+	extends AbstractArrayStorage<K> implements AbstractMap<K, V>
+{
+	/** Default rehash ratio. */
+	public static final float DEFAULT_REHASH = AbstractOpenHash.DEFAULT_REHASH;
+
+	/** Underlying value array, parallel to the key array. */
+	protected Object[] valueArray;
+	/** Number of elements in the table. */
+	protected int size;
+	/** Rehashing ratio for rehashing. */
+	protected float rehashRatio;
+	/** Hashing strategy for the keys, or null for the keys' own methods. */
+	protected HashStrategy<? super K> keyHashStrategy;
+
+	/**
+	 * Creates a new open hash map with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
+	 */
+	public AbstractOpenHashMap()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new open hash map with capacity <i>cap</i> and rehash ratio DEFAULT_REHASH.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 */
+	public AbstractOpenHashMap(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new open hash map.
+	 * @param capacity the capacity. cannot be negative. It is rounded up to the nearest power of two.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded,
+	 * the table's capacity is expanded, and the table is rehashed.
+	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less, or 1 or greater.
+	 */
+	public AbstractOpenHashMap(int capacity, float rehashRatio)
+	{
+		super(tableCapacityFor(capacity));
+
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can't 0 or less.");
+		if (rehashRatio <= 0.0f)
+			throw new IllegalArgumentException("Ratio can't be 0 or less.");
+		if (rehashRatio >= 1.0f)
+			throw new IllegalArgumentException("Ratio can't be 1 or greater in an open hash.");
+
+		this.valueArray = new Object[storageArray.length];
+		this.rehashRatio = rehashRatio;
+		this.keyHashStrategy = null;
+		size = 0;
+	}
+
+	/**
+	 * Sets the strategy used for calculating hashcodes and equality of the keys in this map,
+	 * for instance, a stronger hash function for keys that may be chosen by an adversary.
+	 * If this map has contents, it is rehashed using the new strategy.
+	 * @param keyHashStrategy the strategy to use, or null to use the keys' {@link Object#hashCode()} and {@link Object#equals(Object)}.
+	 */
+	@SuppressWarnings("unchecked")
+	public void setKeyHashStrategy(HashStrategy<? super K> keyHashStrategy)
+	{
+		this.keyHashStrategy = keyHashStrategy;
+		Object[] oldKeys = storageArray;
+		Object[] oldValues = valueArray;
+		storageArray = new Object[oldKeys.length];
+		valueArray = new Object[oldKeys.length];
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldKeys[i] != null)
+			{
+				int index = getFreeIndexForKey((K)oldKeys[i]);
+				storageArray[index] = oldKeys[i];
+				valueArray[index] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Clears the contents of this map.
+	 */
+	public void clear()
+	{
+		if (isEmpty()) return;
+		Arrays.fill(storageArray, null);
+		Arrays.fill(valueArray, null);
+		size = 0;
+	}
+
+	/**
+	 * Doubles this table's capacity, and rehashes this table.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void rehash()
+	{
+		Object[] oldKeys = storageArray;
+		Object[] oldValues = valueArray;
+		storageArray = new Object[oldKeys.length * 2];
+		valueArray = new Object[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldKeys[i] != null)
+			{
+				int index = getFreeIndexForKey((K)oldKeys[i]);
+				storageArray[index] = oldKeys[i];
+				valueArray[index] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * @return true if the table needs to be rehashed, false otherwise.
+	 */
+	protected boolean rehashCheck()
+	{
+		return ((float)(size + 1))/storageArray.length > rehashRatio;
+	}
+
+	/**
+	 * Calculates the hash code for an object key.
+	 * By default, this uses the key hash strategy, if set, or else {@link Object#hashCode()}.
+	 * @param key the key object to use.
+	 * @return the resultant code to use for table lookups.
+	 * @see Object#hashCode()
+	 */
+	protected int getHashcodeForKey(K key)
+	{
+		return keyHashStrategy != null ? keyHashStrategy.hashCode(key) : key.hashCode();
+	}
+
+	/**
+	 * Checks if two keys are equal.
+	 * @param key1 the first key.
+	 * @param key2 the second key.
+	 * @return true if the keys are considered equal, false otherwise.
+	 */
+	public boolean equalityMethodForKey(K key1, K key2)
+	{
+		if (key1 == null && key2 != null)
+			return false;
+		else if (key1 != null && key2 == null)
+			return false;
+		else if (key1 == null && key2 == null)
+			return true;
+		return keyHashStrategy != null ? keyHashStrategy.equals(key1, key2) : key1.equals(key2);
+	}
+
+	/**
+	 * Finds the home slot index for an object key (the first slot probed).
+	 * @param key the key object to use.
+	 * @return the index at which a search for a key will start in the hash map.
+	 */
+	protected int getTableIndexForKey(K key)
+	{
+		return mix(getHashcodeForKey(key)) & (storageArray.length - 1);
+	}
+
+	/**
+	 * Finds the slot index that a key occupies.
+	 * @param key the key to use.
+	 * @return the index of the key in the table, or -1 if it is not present.
+	 */
+	@SuppressWarnings("unchecked")
+	protected int getSlotIndexOfKey(K key)
+	{
+		int mask = storageArray.length - 1;
+		int i = getTableIndexForKey(key);
+		Object entry;
+		while ((entry = storageArray[i]) != null)
+		{
+			if (equalityMethodForKey((K)entry, key))
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the first empty slot index along a key's probe sequence.
+	 * Assumes that the key is not in the table.
+	 * @param key the key to use.
+	 * @return the index of the empty slot.
+	 */
+	protected int getFreeIndexForKey(K key)
+	{
+		int mask = storageArray.length - 1;
+		int i = getTableIndexForKey(key);
+		while (storageArray[i] != null)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map.
+	 * @param key the key associated with a value.
+	 * @param value the value associated with the provided key.
+	 * @throws NullPointerException if key is null.
+	 */
+	public void put(K key, V value)
+	{
+		if (key == null)
+			throw new NullPointerException("Open hash maps cannot contain null keys.");
+		int i = getSlotIndexOfKey(key);
+		if (i >= 0)
+		{
+			valueArray[i] = value;
+			return;
+		}
+		if (rehashCheck()) rehash();
+		i = getFreeIndexForKey(key);
+		storageArray[i] = key;
+		valueArray[i] = value;
+		size++;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(K key)
+	{
+		if (key == null)
+			return null;
+		int i = getSlotIndexOfKey(key);
+		return i >= 0 ? (V)valueArray[i] : null;
+	}
+
+	/**
+	 * Removes a value from this hash using a key.
+	 * @param key the key to use.
+	 * @return the value removed or null if no value is associated with that key.
+	 */
+	@SuppressWarnings("unchecked")
+	public V removeUsingKey(K key)
+	{
+		if (key == null)
+			return null;
+		int i = getSlotIndexOfKey(key);
+		if (i < 0)
+			return null;
+		V out = (V)valueArray[i];
+		removeSlot(i, null);
+		return out;
+	}
+
+	/**
+	 * Checks if a key (by equality) is present in the hash.
+	 * @param key the key to use for checking presence.
+	 * @return true if it is in the hash, false otherwise.
+	 */
+	public boolean containsKey(K key)
+	{
+		return key != null && getSlotIndexOfKey(key) >= 0;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map, using the key and value of a pair.
+	 * The pair itself is not stored.
+	 */
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		put(pair.getKey(), pair.getValue());
+	}
+
+	/**
+	 * Checks if the key of a pair (by equality) is present in the hash.
+	 */
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	/**
+	 * Removes the entry that uses the key of a pair.
+	 */
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		K key = pair.getKey();
+		if (key == null)
+			return false;
+		int i = getSlotIndexOfKey(key);
+		if (i < 0)
+			return false;
+		removeSlot(i, null);
+		return true;
+	}
+
+	/**
+	 * Removes the entry in a table slot and shifts the entries in the
+	 * following probe run backward to close the gap.
+	 * @param index the slot index to clear.
+	 * @param wrapped if not null, keys that are shifted from the start of the table
+	 * 		to a slot before the cleared slot are added to this list.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void removeSlot(int index, List<K> wrapped)
+	{
+		int mask = storageArray.length - 1;
+		int gap = index;
+		int i = index;
+		while (true)
+		{
+			i = (i + 1) & mask;
+			Object entry = storageArray[i];
+			if (entry == null)
+				break;
+			int home = getTableIndexForKey((K)entry);
+			// can move the entry back if the gap is cyclically between its home slot and its current slot.
+			if (gap <= i ? (gap >= home || home > i) : (gap >= home && home > i))
+			{
+				if (wrapped != null && i < gap)
+					wrapped.add((K)entry);
+				storageArray[gap] = entry;
+				valueArray[gap] = valueArray[i];
+				gap = i;
+			}
+		}
+		storageArray[gap] = null;
+		valueArray[gap] = null;
+		size--;
+	}
+
+	/**
+	 * Returns the amount of objects in the hash.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns true if there is nothing in this hash, false otherwise.
+	 * Equivalent to <code>size() == 0</code>.
+	 */
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (Object obj : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(obj);
+			once = true;
+		}
+		sb.append("]");
+
+		return sb.toString();
+	}
+
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new PairIterator();
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each key in the hash.
+	 */
+	public ResettableIterator<K> keyIterator()
+	{
+		return new KeyIterator();
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each value in the hash.
+	 */
+	public ResettableIterator<V> valueIterator()
+	{
+		return new ValueIterator();
+	}
+
+	/**
+	 * Returns a reusable cursor over the entries of this map.
+	 * Unlike {@link #iterator()}, this does not create a pair for each entry.
+	 * @return a new cursor, positioned before the first entry.
+	 */
+	public MapCursor<K, V> cursor()
+	{
+		return new OpenHashMapCursor();
+	}
+
+	/**
+	 * Base iterator for open hash maps.
+	 * The table is traversed from the end to the beginning, so that entries shifted
+	 * backward by {@link #remove()} are not visited twice. Entries that wrap around
+	 * the start of the table during a removal are visited at the end.
+	 * @param <T> the type returned by this iterator.
+	 */
+	protected abstract class OpenHashMapIterator<T> implements ResettableIterator<T>
+	{
+		/** Current slot index. */
+		protected int currentIndex;
+		/** Index of the last returned slot, or -1 if it was a wrapped entry. */
+		protected int lastIndex;
+		/** Keys that were moved past the traversal by a removal. */
+		protected List<K> wrapped;
+		/** Index into wrapped list. */
+		protected int wrappedIndex;
+		/** Last returned key. */
+		protected K lastKey;
+		/** Removed flag. */
+		protected boolean removeFlag;
+
+		public OpenHashMapIterator()
+		{
+			reset();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			while (currentIndex > 0 && storageArray[currentIndex - 1] == null)
+				currentIndex--;
+			return currentIndex > 0 || (wrapped != null && wrappedIndex < wrapped.size());
+		}
+
+		/**
+		 * Advances this iterator to the next key.
+		 * @return the next key.
+		 */
+		@SuppressWarnings("unchecked")
+		protected K nextKey()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			if (currentIndex > 0)
+			{
+				lastIndex = --currentIndex;
+				lastKey = (K)storageArray[lastIndex];
+			}
+			else
+			{
+				lastIndex = -1;
+				lastKey = wrapped.getByIndex(wrappedIndex++);
+			}
+			removeFlag = false;
+			return lastKey;
+		}
+
+		/**
+		 * @return the value associated with the last returned key.
+		 */
+		@SuppressWarnings("unchecked")
+		protected V lastValue()
+		{
+			return lastIndex >= 0 ? (V)valueArray[lastIndex] : get(lastKey);
+		}
+
+		@Override
+		public void remove()
+		{
+			if (removeFlag)
+				throw new IllegalStateException("remove() called before next()");
+
+			if (lastIndex >= 0)
+			{
+				if (wrapped == null)
+					wrapped = new List<K>(2);
+				removeSlot(lastIndex, wrapped);
+			}
+			else
+			{
+				removeUsingKey(lastKey);
+			}
+			lastKey = null;
+			removeFlag = true;
+		}
+
+		@Override
+		public void reset()
+		{
+			removeFlag = true;
+			currentIndex = storageArray.length;
+			lastIndex = -1;
+			lastKey = null;
+			wrapped = null;
+			wrappedIndex = 0;
+		}
+
+	}
+
+	/**
+	 * Cursor for the entries in the hash.
+	 * Traverses the table in the same order as the iterators.
+	 */
+	protected class OpenHashMapCursor implements MapCursor<K, V>
+	{
+		/** Underlying key iterator. */
+		protected KeyIterator keyIterator;
+		/** If true, the cursor is on an entry. */
+		protected boolean onEntry;
+
+		public OpenHashMapCursor()
+		{
+			keyIterator = new KeyIterator();
+			onEntry = false;
+		}
+
+		// Checks that the cursor is on an entry.
+		private void checkEntry()
+		{
+			if (!onEntry)
+				throw new IllegalStateException("Cursor is not on an entry.");
+		}
+
+		@Override
+		public boolean next()
+		{
+			if (!keyIterator.hasNext())
+				return onEntry = false;
+			keyIterator.nextKey();
+			return onEntry = true;
+		}
+
+		@Override
+		public K getKey()
+		{
+			checkEntry();
+			return keyIterator.lastKey;
+		}
+
+		@Override
+		public V getValue()
+		{
+			checkEntry();
+			return keyIterator.lastValue();
+		}
+
+		@Override
+		public void setValue(V value)
+		{
+			checkEntry();
+			if (keyIterator.lastIndex >= 0)
+				valueArray[keyIterator.lastIndex] = value;
+			else
+				put(keyIterator.lastKey, value);
+		}
+
+		@Override
+		public void remove()
+		{
+			checkEntry();
+			keyIterator.remove();
+			onEntry = false;
+		}
+
+		@Override
+		public void reset()
+		{
+			keyIterator.reset();
+			onEntry = false;
+		}
+	}
+
+	/**
+	 * Iterator for the entries in the hash.
+	 */
+	protected class PairIterator extends OpenHashMapIterator<ObjectPair<K, V>>
+	{
+		@Override
+		public ObjectPair<K, V> next()
+		{
+			K key = nextKey();
+			return new ObjectPair<K, V>(key, lastValue());
+		}
+	}
+
+	/**
+	 * Iterator for the Key objects in the hash.
+	 */
+	protected class KeyIterator extends OpenHashMapIterator<K>
+	{
+		@Override
+		public K next()
+		{
+			return nextKey();
+		}
+	}
+
+	/**
+	 * Iterator for the Value objects in the hash.
+	 */
+	protected class ValueIterator extends OpenHashMapIterator<V>
+	{
+		@Override
+		public V next()
+		{
+			nextKey();
+			return lastValue();
+		}
+	}
+
+}
@@ -7,6 +7,11 @@
  ******************************************************************************/
 package com.blackrook.commons;
 
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import com.blackrook.commons.hash.HashMap;
 import com.blackrook.commons.linkedlist.Queue;
 import com.blackrook.commons.list.List;
@@ -246,6 +251,40 @@ public abstract class AbstractTrie<V extends Object, S extends Object> implement
 		return new TrieIterator(this);
 	}
 
+	/**
+	 * Returns a spliterator over the values in this trie, in no particular order,
+	 * that splits the trie into groups of branches. Only the unsplit spliterator is exactly sized.
+	 * This trie should not be changed while the spliterator is in use.
+	 * @since 2.33.0
+	 */
+	@Override
+	public Spliterator<V> spliterator()
+	{
+		List<Node<V, S>> pending = new List<Node<V, S>>();
+		pending.add(root);
+		return new TrieSpliterator(pending, size, true);
+	}
+
+	/**
+	 * @return a sequential stream of the values in this trie.
+	 * @see #spliterator()
+	 * @since 2.33.0
+	 */
+	public Stream<V> stream()
+	{
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * @return a parallel stream of the values in this trie.
+	 * @see #spliterator()
+	 * @since 2.33.0
+	 */
+	public Stream<V> parallelStream()
+	{
+		return StreamSupport.stream(spliterator(), true);
+	}
+
 	/**
 	 * Returns a search result generated from walking the edges of the trie looking for
 	 * a particular value.
@@ -436,6 +475,82 @@ public abstract class AbstractTrie<V extends Object, S extends Object> implement
 		
 	}
 
+	/**
+	 * Spliterator for this Trie, over a group of unvisited nodes and all of their descendants.
+	 * @since 2.33.0
+	 */
+	protected class TrieSpliterator implements Spliterator<V>
+	{
+		/** Unvisited nodes. */
+		private List<Node<V, S>> pending;
+		/** A value from an expanded node, not yet returned. */
+		private V held;
+		/** Estimated amount of remaining values. */
+		private long estimate;
+		/** If true, the estimate is exact. */
+		private boolean sized;
+
+		TrieSpliterator(List<Node<V, S>> pending, long estimate, boolean sized)
+		{
+			this.pending = pending;
+			this.held = null;
+			this.estimate = estimate;
+			this.sized = sized;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action)
+		{
+			V out = held;
+			held = null;
+			while (out == null && !pending.isEmpty())
+				out = expand();
+			if (out == null)
+				return false;
+			if (sized)
+				estimate--;
+			action.accept(out);
+			return true;
+		}
+
+		@Override
+		public Spliterator<V> trySplit()
+		{
+			// expand single nodes until there are branches to give away.
+			while (pending.size() == 1 && held == null)
+				held = expand();
+			int count = pending.size();
+			if (count < 2)
+				return null;
+			List<Node<V, S>> out = new List<Node<V, S>>(count / 2);
+			for (int i = count - 1; i >= count - count / 2; i--)
+				out.add(pending.removeIndex(i));
+			sized = false;
+			return new TrieSpliterator(out, estimate >>>= 1, false);
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return estimate;
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return Spliterator.DISTINCT | (sized ? Spliterator.SIZED : 0);
+		}
+
+		// Visits the last pending node, adds its children, and returns its value (can be null).
+		private V expand()
+		{
+			Node<V, S> node = pending.removeIndex(pending.size() - 1);
+			for (ObjectPair<S, Node<V, S>> pair : node.edgeMap)
+				pending.add(pair.getValue());
+			return node.value;
+		}
+	}
+
 	/**
 	 * A result of a passive search on a trie.
 	 */
@@ -10,8 +10,16 @@ package com.blackrook.commons;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.blackrook.commons.math.RMath;
+import com.blackrook.commons.util.ArrayUtils;
 
 /**
  * An abstract class for performing unsynchronized Vector (data structure)
@@ -112,6 +120,18 @@ public abstract class AbstractVector<T extends Object>
 		storageArray = newList;
 	}
 
+	/**
+	 * Expands this vector's capacity, if necessary, so that it can hold 
+	 * a total amount of objects without resizing itself.
+	 * @param capacity the total amount of objects to expect.
+	 * @since 2.33.0
+	 */
+	public void ensureCapacity(int capacity)
+	{
+		if (capacity > storageArray.length)
+			setCapacity(capacity);
+	}
+
 	/**
 	 * Sets this vector's capacity to its current size.
 	 * If this vector's size is 0, it will be cleared and have its capacity set to 1,
@@ -174,6 +194,147 @@ public abstract class AbstractVector<T extends Object>
 		add(size,object);
 	}
 
+	/**
+	 * Adds several objects to the vector, in the order that they are listed,
+	 * as though {@link #add(Object)} were called for each.
+	 * The capacity is expanded once for all of the objects beforehand.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void addAll(T ... objects)
+	{
+		ensureCapacity(size + objects.length);
+		for (int i = 0; i < objects.length; i++)
+			add(objects[i]);
+	}
+
+	/**
+	 * Adds several objects to the vector, in the order that they are iterated through,
+	 * as though {@link #add(Object)} were called for each.
+	 * If the provided objects are {@link Sizable} (for instance, another vector or set), 
+	 * the capacity is expanded once for all of the objects beforehand.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	public void addAll(Iterable<? extends T> objects)
+	{
+		if (objects instanceof Sizable)
+			ensureCapacity(size + ((Sizable)objects).size());
+		for (T object : objects)
+			add(object);
+	}
+
+	/**
+	 * Merges several objects into this vector, which must already be sorted, in one pass.
+	 * The objects are sorted (stably) first, then merged in from the end of the backing array, 
+	 * so adding k objects to a vector of n objects is O(n + k log k), and the capacity is expanded at most once.
+	 * Objects that are equal to objects already in this vector are placed after them.
+	 * @param objects the objects to add.
+	 * @param comparator the comparator that this vector is sorted by, or null for the objects' natural ordering.
+	 * @since 2.33.0
+	 */
+	protected void mergeSorted(Iterable<? extends T> objects, Comparator<? super T> comparator)
+	{
+		Object[] batch = toBatch(objects);
+		mergeSorted(batch, batch.length, comparator);
+	}
+
+	/**
+	 * Merges several objects into this vector, which must already be sorted, in one pass.
+	 * @param batch the objects to add. This array is sorted in place.
+	 * @param length the amount of objects in the array to add, from the beginning.
+	 * @param comparator the comparator that this vector is sorted by, or null for the objects' natural ordering.
+	 * @see #mergeSorted(Iterable, Comparator)
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	protected void mergeSorted(Object[] batch, int length, Comparator<? super T> comparator)
+	{
+		if (length == 0)
+			return;
+		Arrays.sort((T[])batch, 0, length, comparator);
+		ensureCapacity(size + length);
+		int i = size - 1;
+		int j = length - 1;
+		int w = size + length - 1;
+		while (j >= 0)
+		{
+			if (i >= 0 && compare(storageArray[i], batch[j], comparator) > 0)
+				storageArray[w--] = storageArray[i--];
+			else
+				storageArray[w--] = batch[j--];
+		}
+		size += length;
+	}
+
+	/**
+	 * Removes every object in this vector, which must already be sorted, that is equal 
+	 * (by {@link Object#equals(Object)}) to one of several objects, compacting the vector in one pass.
+	 * The comparator only finds the run of objects that tie with each object to remove; objects in that
+	 * run that tie but are not equal are kept.
+	 * The objects are sorted first, so removing k objects from a vector of n objects is O(n + k log k),
+	 * plus the equality checks within each run of ties.
+	 * @param objects the objects to remove.
+	 * @param comparator the comparator that this vector is sorted by, or null for the objects' natural ordering.
+	 * @return the amount of objects removed.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	protected int removeSorted(Iterable<? extends T> objects, Comparator<? super T> comparator)
+	{
+		Object[] batch = toBatch(objects);
+		Arrays.sort((T[])batch, comparator);
+
+		int w = 0;
+		int j = 0;
+		for (int i = 0; i < size; i++)
+		{
+			Object object = storageArray[i];
+			while (j < batch.length && compare(batch[j], object, comparator) < 0)
+				j++;
+			if (!containsTied(batch, j, object, comparator))
+				storageArray[w++] = object;
+		}
+
+		int out = size - w;
+		Arrays.fill(storageArray, w, size, null);
+		size = w;
+		return out;
+	}
+
+	// Checks if an object is equal to one of the objects that tie with it, starting at a sorted array index.
+	private static boolean containsTied(Object[] batch, int start, Object object, Comparator<?> comparator)
+	{
+		for (int k = start; k < batch.length && compare(batch[k], object, comparator) == 0; k++)
+			if (object.equals(batch[k]))
+				return true;
+		return false;
+	}
+
+	// Copies objects into a new array.
+	private static Object[] toBatch(Iterable<?> objects)
+	{
+		Object[] out = new Object[objects instanceof Sizable ? ((Sizable)objects).size() : DEFAULT_CAPACITY];
+		int n = 0;
+		for (Object object : objects)
+		{
+			if (n == out.length)
+				out = Arrays.copyOf(out, Math.max(n * 2, 1));
+			out[n++] = object;
+		}
+		return n == out.length ? out : Arrays.copyOf(out, n);
+	}
+
+	// Compares two objects with a comparator, or by natural ordering if the comparator is null.
+	@SuppressWarnings("unchecked")
+	private static <T> int compare(Object object1, Object object2, Comparator<? super T> comparator)
+	{
+		if (comparator != null)
+			return comparator.compare((T)object1, (T)object2);
+		return ((Comparable<Object>)object1).compareTo(object2);
+	}
+
 	/**
 	 * Adds an object at an index. 
 	 * If index is greater than or equal to the size, it will add it at the end.
@@ -343,6 +504,65 @@ public abstract class AbstractVector<T extends Object>
 		Arrays.sort((T[])storageArray, startIndex, endIndex, comparator);
 	}
 
+	/**
+	 * Sorts this vector using NATURAL ORDERING, using several threads.
+	 * Calls {@link ArrayUtils#parallelSort(Object[], int, int, Comparator)} on the internal storage array.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void parallelSort()
+	{
+		ArrayUtils.parallelSort((T[])storageArray, 0, size, null);
+	}
+
+	/**
+	 * Sorts this vector using a comparator, using several threads.
+	 * Calls {@link ArrayUtils#parallelSort(Object[], int, int, Comparator)} on the internal storage array.
+	 * @param comparator the comparator to use.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void parallelSort(Comparator<? super T> comparator)
+	{
+		ArrayUtils.parallelSort((T[])storageArray, 0, size, comparator);
+	}
+
+	/**
+	 * Sorts this vector by an integer key extracted from each object, without calling a comparator.
+	 * Calls {@link ArrayUtils#sortByIntKey(Object[], int, int, ToIntFunction)} on the internal storage array.
+	 * @param keyFunction the function that returns each object's key.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void sortByIntKey(ToIntFunction<? super T> keyFunction)
+	{
+		ArrayUtils.sortByIntKey((T[])storageArray, 0, size, keyFunction);
+	}
+
+	/**
+	 * Sorts this vector by a long integer key extracted from each object, without calling a comparator.
+	 * Calls {@link ArrayUtils#sortByLongKey(Object[], int, int, ToLongFunction)} on the internal storage array.
+	 * @param keyFunction the function that returns each object's key.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void sortByLongKey(ToLongFunction<? super T> keyFunction)
+	{
+		ArrayUtils.sortByLongKey((T[])storageArray, 0, size, keyFunction);
+	}
+
+	/**
+	 * Sorts this vector by a double key extracted from each object, without calling a comparator.
+	 * Calls {@link ArrayUtils#sortByDoubleKey(Object[], int, int, ToDoubleFunction)} on the internal storage array.
+	 * @param keyFunction the function that returns each object's key.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void sortByDoubleKey(ToDoubleFunction<? super T> keyFunction)
+	{
+		ArrayUtils.sortByDoubleKey((T[])storageArray, 0, size, keyFunction);
+	}
+
 	/**
 	 * Swaps the contents of two indices in the vector.
 	 * <p>If index0 is equal to index1, this does nothing.
@@ -454,6 +674,38 @@ public abstract class AbstractVector<T extends Object>
 		return sb.toString();
 	}
 
+	/**
+	 * Returns a spliterator over the objects in this vector, in index order, that splits the backing array 
+	 * into exactly-sized halves. Unlike {@link #iterator()}, this includes null objects, so that the amount 
+	 * of objects always matches {@link #size()}. This vector should not be changed while the spliterator is in use.
+	 * @since 2.33.0
+	 */
+	@Override
+	public Spliterator<T> spliterator()
+	{
+		return Spliterators.<T>spliterator(storageArray, 0, size, Spliterator.ORDERED);
+	}
+
+	/**
+	 * @return a sequential stream of the objects in this vector.
+	 * @see #spliterator()
+	 * @since 2.33.0
+	 */
+	public Stream<T> stream()
+	{
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * @return a parallel stream of the objects in this vector.
+	 * @see #spliterator()
+	 * @since 2.33.0
+	 */
+	public Stream<T> parallelStream()
+	{
+		return StreamSupport.stream(spliterator(), true);
+	}
+
 	/**
 	 * Iterator class for this vector.
 	 */
@@ -132,9 +132,10 @@ public final class ArgumentParser
 	 */
 	public String[] getSwitchArgs(String switchName)
 	{
+		String[] out;
 		for (CaseInsensitiveHashMap<String[]> t : argTables)
-			if (t.containsKey(switchName))
-				return t.get(switchName);
+			if ((out = t.get(switchName)) != null)
+				return out;
 		
 		return null;
 	}
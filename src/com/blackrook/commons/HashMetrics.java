@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons;
+
+/**
+ * Statistics about the distribution and rehashing of a hashed structure,
+ * for tuning its capacity and rehash ratio.
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ */
+public interface HashMetrics
+{
+	/**
+	 * Gets a histogram of the chain lengths in the table, calculated when this is called.
+	 * @return an array where each index is a chain length, and each value is the amount of chains with that length.
+	 */
+	public int[] getChainLengthHistogram();
+
+	/**
+	 * @return the amount of lookups (searches for an object or key) recorded.
+	 */
+	public long getLookupCount();
+
+	/**
+	 * @return the average amount of objects compared per lookup, or 0 if there were no lookups.
+	 */
+	public double getAverageProbes();
+
+	/**
+	 * @return the most objects compared in a single lookup.
+	 */
+	public int getMaxProbes();
+
+	/**
+	 * @return the amount of times that the table was replaced by a new table (rehashed).
+	 */
+	public long getRehashCount();
+
+	/**
+	 * @return the total time spent moving objects to new tables, in nanoseconds.
+	 */
+	public long getRehashNanos();
+
+	/**
+	 * @return the current load factor (amount of objects per table slot).
+	 */
+	public float getLoadFactor();
+
+	/**
+	 * @return the load factor just before each recorded rehash, oldest first, for a limited amount of recent rehashes.
+	 */
+	public float[] getLoadFactorHistory();
+
+	/**
+	 * Resets the recorded lookup and rehash statistics.
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons;
+
+/**
+ * A strategy for calculating hashcodes and equality of objects in hashed structures,
+ * used in place of the objects' own {@link Object#hashCode()} and {@link Object#equals(Object)}.
+ * The general contract of those methods applies: objects that are equal must have the same hashcode.
+ * @author Matthew Tropiano
+ * @param <T> the object type that this strategy handles.
+ * @since 2.33.0
+ */
+public interface HashStrategy<T extends Object>
+{
+	/**
+	 * Calculates the hashcode for an object.
+	 * @param object the object. Never null.
+	 * @return the hashcode.
+	 */
+	public int hashCode(T object);
+
+	/**
+	 * Checks if two objects are equal.
+	 * @param object1 the first object. Never null.
+	 * @param object2 the second object. Never null.
+	 * @return true if the objects are considered equal, false otherwise.
+	 */
+	public boolean equals(T object1, T object2);
+
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons;
+
+/**
+ * A reusable cursor over the entries of a map, which does not create an object per entry.
+ * The cursor starts before the first entry - call {@link #next()} to move to each entry.
+ * <pre>
+ * MapCursor&lt;K, V&gt; cursor = map.cursor();
+ * while (cursor.next())
+ *     doSomething(cursor.getKey(), cursor.getValue());
+ * </pre>
+ * @author Matthew Tropiano
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * @since 2.33.0
+ */
+public interface MapCursor<K extends Object, V extends Object>
+{
+	/**
+	 * Moves this cursor to the next entry.
+	 * @return true if the cursor is on an entry, false if there are no more entries.
+	 */
+	public boolean next();
+
+	/**
+	 * @return the key of the current entry.
+	 * @throws IllegalStateException if the cursor is not on an entry.
+	 */
+	public K getKey();
+
+	/**
+	 * @return the value of the current entry.
+	 * @throws IllegalStateException if the cursor is not on an entry.
+	 */
+	public V getValue();
+
+	/**
+	 * Replaces the value of the current entry in the underlying map.
+	 * @param value the new value.
+	 * @throws IllegalStateException if the cursor is not on an entry.
+	 */
+	public void setValue(V value);
+
+	/**
+	 * Removes the current entry from the underlying map.
+	 * The cursor is no longer on an entry until {@link #next()} is called.
+	 * @throws IllegalStateException if the cursor is not on an entry.
+	 */
+	public void remove();
+
+	/**
+	 * Resets this cursor to before the first entry, as though it were just created.
+	 */
+	public void reset();
+
+}
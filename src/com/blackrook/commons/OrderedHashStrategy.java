@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons;
+
+/**
+ * A {@link HashStrategy} that can also order the objects that it handles.
+ * Chained hashes that use a strategy like this can keep long chains of colliding objects
+ * sorted and binary-searched (see {@link AbstractChainedHash#getSortKey(Object)}), which they
+ * can't do with a plain strategy, since the objects' own ordering may disagree with the strategy's equality.
+ * @author Matthew Tropiano
+ * @param <T> the object type that this strategy handles.
+ * @since 2.33.0
+ */
+public interface OrderedHashStrategy<T extends Object> extends HashStrategy<T>
+{
+	/**
+	 * Compares two objects.
+	 * Must be consistent with {@link #equals(Object, Object)}: objects that are equal must compare as 0, and vice versa.
+	 * @param object1 the first object. Never null.
+	 * @param object2 the second object. Never null.
+	 * @return less than 0, 0, or greater than 0 if the first object is less than, equal to, or greater than the second.
+	 */
+	public int compare(T object1, T object2);
+
+}
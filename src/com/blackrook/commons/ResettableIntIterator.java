@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons;
+
+/**
+ * A resettable iterator over primitive ints, which does not box its values.
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ */
+public interface ResettableIntIterator
+{
+	/**
+	 * @return true if the iteration has more elements, false otherwise.
+	 */
+	public boolean hasNext();
+
+	/**
+	 * @return the next element in the iteration.
+	 * @throws java.util.NoSuchElementException if the iteration has no more elements.
+	 */
+	public int nextInt();
+
+	/**
+	 * Removes the last element returned by this iterator from the underlying structure.
+	 * @throws IllegalStateException if {@link #nextInt()} was not called before this.
+	 */
+	public void remove();
+
+	/**
+	 * Resets this iterator's cursor to the beginning, as though it were just created.
+	 */
+	public void reset();
+}
@@ -7,7 +7,7 @@
  ******************************************************************************/
 package com.blackrook.commons;
 
-import com.blackrook.commons.hash.HashMap;
+import com.blackrook.commons.hash.ConcurrentHashMap;
 
 /**
  * A utility class for instantiating classes that need to exist in one spot in memory.
@@ -19,14 +19,14 @@ import com.blackrook.commons.hash.HashMap;
 public class SingletonManager
 {
 	/** Singleton instance map. */
-	private HashMap<String, Object> instanceMap;
+	private ConcurrentHashMap<String, Object> instanceMap;
 
 	/**
 	 * Creates a single singleton manager.
 	 */
 	public SingletonManager() 
 	{
-		instanceMap = new HashMap<String, Object>();
+		instanceMap = new ConcurrentHashMap<String, Object>();
 	}
 
 	/**
@@ -66,20 +66,19 @@ public class SingletonManager
 	 * @return a typecast object connected to the class and name, or null if it doesn't exist and wasn't created.
 	 * @throws RuntimeException if instantiation cannot happen, either due to a non-existent constructor or a non-visible constructor.
 	 */
-	public <T> T get(Class<T> clazz, String name, boolean create)
+	public <T> T get(final Class<T> clazz, String name, boolean create)
 	{
 		Object obj = instanceMap.get(name);
 		if (obj == null && create)
 		{
-			synchronized (instanceMap) 
+			obj = instanceMap.computeIfAbsent(name, new ConcurrentHashMap.ValueFactory<String, Object>()
 			{
-				obj = instanceMap.get(name);
-				if (obj == null)
+				@Override
+				public Object create(String key)
 				{
-					obj = Reflect.create(clazz);
-					instanceMap.put(name, obj);
+					return Reflect.create(clazz);
 				}
-			}
+			});
 		}
 	
 		if (obj == null)
@@ -12,6 +12,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
 import com.blackrook.commons.Reflect;
+import com.blackrook.commons.hash.ConcurrentHashMap;
 import com.blackrook.commons.hash.HashMap;
 import com.blackrook.commons.hash.HashedQueueMap;
 import com.blackrook.commons.linkedlist.Queue;
@@ -26,8 +27,8 @@ import com.blackrook.commons.linkedlist.Queue;
 public class TypeProfile<T extends Object>
 {
 	/** JSON type profiles. */
-	private static final HashMap<Class<?>, TypeProfile<?>> 
-		REGISTERED_TYPES = new HashMap<Class<?>, TypeProfile<?>>();
+	private static final ConcurrentHashMap<Class<?>, TypeProfile<?>> 
+		REGISTERED_TYPES = new ConcurrentHashMap<Class<?>, TypeProfile<?>>();
 
 	/** Array of zero fields. */
 	private static final Field[] NO_FIELDS = new Field[0];
@@ -62,17 +63,12 @@ public class TypeProfile<T extends Object>
 		TypeProfile<E> out = null;
 		if ((out = (TypeProfile<E>)REGISTERED_TYPES.get(clazz)) == null)
 		{
-			synchronized (REGISTERED_TYPES)
-			{
-				if ((out = (TypeProfile<E>)REGISTERED_TYPES.get(clazz)) == null)
-				{
-					out = new TypeProfile<E>(clazz);
-					REGISTERED_TYPES.put(clazz, out);
-				}
-			}
+			// profiles are built outside of the map's locks - if two threads race, one profile wins.
+			TypeProfile<E> existing;
+			out = new TypeProfile<E>(clazz);
+			if ((existing = (TypeProfile<E>)REGISTERED_TYPES.putIfAbsent(clazz, out)) != null)
+				out = existing;
 		}
-		else
-			out = (TypeProfile<E>)REGISTERED_TYPES.get(clazz);
 		
 		return out;
 	}
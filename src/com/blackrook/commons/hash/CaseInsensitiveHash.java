@@ -43,10 +43,21 @@ public class CaseInsensitiveHash extends Hash<String>
 		super(capacity, rehashRatio);
 	}
 
+	/**
+	 * Sorts long chains case-insensitively, which agrees with this hash's equality,
+	 * unless a subclass changes it again.
+	 * @since 2.33.0
+	 */
+	@Override
+	protected boolean isChainSortingEnabled()
+	{
+		return isEqualityDefinedBy(CaseInsensitiveHash.class);
+	}
+
 	@Override
 	protected int getHashcodeFor(String key)
 	{
-		return key.toLowerCase().hashCode();
+		return CaseInsensitiveHashStrategy.hashCodeIgnoreCase(key);
 	}
 
 	@Override
@@ -58,7 +69,23 @@ public class CaseInsensitiveHash extends Hash<String>
 			return false;
 		else if (key1 == null && key2 == null)
 			return true;
-		return key1.equalsIgnoreCase(key2);
+		return CaseInsensitiveHashStrategy.equalsIgnoreCase(key1, key2);
+	}
+
+	@Override
+	protected int compareSortKeys(Object key1, Object key2)
+	{
+		return CaseInsensitiveHashStrategy.compareIgnoreCase((String)key1, (String)key2);
+	}
+
+	/**
+	 * Creates an immutable copy of this hash that does case-insensitive lookups.
+	 * @since 2.33.0
+	 */
+	@Override
+	public FrozenHash<String> freeze()
+	{
+		return FrozenHash.copyOf(this, CaseInsensitiveHashStrategy.getInstance());
 	}
 
 }
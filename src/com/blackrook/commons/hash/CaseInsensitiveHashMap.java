@@ -42,13 +42,23 @@ public class CaseInsensitiveHashMap<T extends Object> extends HashMap<String, T>
 	{
 		super(capacity,rehashRatio);
 	}
+
+	/**
+	 * Sorts long chains by case-insensitive key order, unless a subclass changes how keys are compared.
+	 * @since 2.33.0
+	 */
+	@Override
+	protected boolean isChainSortingEnabled()
+	{
+		return isEqualityDefinedBy(CaseInsensitiveHashMap.class);
+	}
 	
 	/**
 	 * Returns the hashcode for a map key.
 	 */
 	protected int getHashcodeForKey(String key)
 	{
-		return key.toLowerCase().hashCode();
+		return CaseInsensitiveHashStrategy.hashCodeIgnoreCase(key);
 	}
 
 	/**
@@ -65,7 +75,23 @@ public class CaseInsensitiveHashMap<T extends Object> extends HashMap<String, T>
 			return false;
 		else if (key1 == null && key2 == null)
 			return true;
-		return key1.equalsIgnoreCase(key2);
+		return CaseInsensitiveHashStrategy.equalsIgnoreCase(key1, key2);
+	}
+
+	@Override
+	protected int compareSortKeys(Object key1, Object key2)
+	{
+		return CaseInsensitiveHashStrategy.compareIgnoreCase((String)key1, (String)key2);
+	}
+
+	/**
+	 * Creates an immutable copy of this map that does case-insensitive lookups.
+	 * @since 2.33.0
+	 */
+	@Override
+	public FrozenHashMap<String, T> freeze()
+	{
+		return FrozenHashMap.copyOf(this, CaseInsensitiveHashStrategy.getInstance());
 	}
 
 }
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.OrderedHashStrategy;
+
+/**
+ * A hash strategy for strings that treats them as though they were the same case.
+ * Hashcodes are calculated by folding the case of each character in place, so
+ * no case-converted copy of the string is ever created.
+ * <p>
+ * Two strings that are equal according to {@link String#equalsIgnoreCase(String)}
+ * always have the same hashcode in this strategy, and compare as equal in {@link #compare(String, String)}.
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ */
+public class CaseInsensitiveHashStrategy implements OrderedHashStrategy<String>
+{
+	/** The class instance. */
+	private static CaseInsensitiveHashStrategy INSTANCE = new CaseInsensitiveHashStrategy();
+
+	/** @return the only instance of this class. */
+	public static CaseInsensitiveHashStrategy getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Protected Constructor.
+	 */
+	protected CaseInsensitiveHashStrategy()
+	{
+		// Do nothing.
+	}
+
+	/**
+	 * Folds the case of a single character, the same way that
+	 * {@link String#equalsIgnoreCase(String)} compares characters.
+	 * @param c the input character.
+	 * @return the folded character.
+	 */
+	public static char foldCase(char c)
+	{
+		if (c < 0x80)
+			return (c >= 'A' && c <= 'Z') ? (char)(c + 32) : c;
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Calculates a case-insensitive hashcode for a string,
+	 * like {@link String#hashCode()} on case-folded characters.
+	 * @param s the input string.
+	 * @return the resultant hashcode.
+	 */
+	public static int hashCodeIgnoreCase(String s)
+	{
+		int h = 0;
+		int len = s.length();
+		for (int i = 0; i < len; i++)
+			h = 31 * h + foldCase(s.charAt(i));
+		return h;
+	}
+
+	/**
+	 * Checks if two strings are equal, ignoring case.
+	 * Equivalent to {@link String#equalsIgnoreCase(String)}, with a faster path for ASCII characters.
+	 * @param s1 the first string.
+	 * @param s2 the second string.
+	 * @return true if the strings are considered equal, false otherwise.
+	 */
+	public static boolean equalsIgnoreCase(String s1, String s2)
+	{
+		if (s1 == s2)
+			return true;
+		int len = s1.length();
+		if (len != s2.length())
+			return false;
+		for (int i = 0; i < len; i++)
+		{
+			char c1 = s1.charAt(i);
+			char c2 = s2.charAt(i);
+			if (c1 != c2 && foldCase(c1) != foldCase(c2))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compares two strings lexicographically by their case-folded characters.
+	 * Strings that are equal according to {@link #equalsIgnoreCase(String, String)} compare as equal.
+	 * @param s1 the first string.
+	 * @param s2 the second string.
+	 * @return less than 0, 0, or greater than 0 if the first string is less than, equal to, or greater than the second.
+	 */
+	public static int compareIgnoreCase(String s1, String s2)
+	{
+		int len = Math.min(s1.length(), s2.length());
+		for (int i = 0; i < len; i++)
+		{
+			char c1 = s1.charAt(i);
+			char c2 = s2.charAt(i);
+			if (c1 != c2 && (c1 = foldCase(c1)) != (c2 = foldCase(c2)))
+				return c1 - c2;
+		}
+		return s1.length() - s2.length();
+	}
+
+	@Override
+	public int hashCode(String object)
+	{
+		return hashCodeIgnoreCase(object);
+	}
+
+	@Override
+	public boolean equals(String object1, String object2)
+	{
+		return equalsIgnoreCase(object1, object2);
+	}
+
+	@Override
+	public int compare(String object1, String object2)
+	{
+		return compareIgnoreCase(object1, object2);
+	}
+
+}
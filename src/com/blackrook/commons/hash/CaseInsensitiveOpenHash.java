@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+/**
+ * An open-addressed hash of strings that does case-insensitive lookups.
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ * @see CaseInsensitiveHash
+ */
+public class CaseInsensitiveOpenHash extends OpenHash<String>
+{
+	/**
+	 * Creates a new hash with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
+	 */
+	public CaseInsensitiveOpenHash()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH);
+	}
+	
+	/**
+	 * Creates a new hash with capacity <i>cap</i> and rehash ratio DEFAULT_REHASH. 
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 */
+	public CaseInsensitiveOpenHash(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH);
+	}
+	
+	/**
+	 * Creates a new hash.
+	 * @param capacity the capacity. cannot be negative.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded, the table's capacity is expanded, and the table is rehashed.
+	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less, or 1 or greater.
+	 */
+	public CaseInsensitiveOpenHash(int capacity, float rehashRatio)
+	{
+		super(capacity, rehashRatio);
+	}
+
+	@Override
+	protected int getHashcodeFor(String key)
+	{
+		return CaseInsensitiveHashStrategy.hashCodeIgnoreCase(key);
+	}
+
+	@Override
+	public boolean equalityMethod(String key1, String key2)
+	{
+		if (key1 == null && key2 != null)
+			return false;
+		else if (key1 != null && key2 == null)
+			return false;
+		else if (key1 == null && key2 == null)
+			return true;
+		return CaseInsensitiveHashStrategy.equalsIgnoreCase(key1, key2);
+	}
+
+}
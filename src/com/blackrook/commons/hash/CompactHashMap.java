@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.HashStrategy;
+import com.blackrook.commons.list.List;
+
+/**
+ * Hashed data structure that maps keys to values, storing keys, values and
+ * each key's hashcode in three parallel arrays. No object is created per entry.
+ * <p>
+ * Since hashcodes are kept, lookups skip {@link Object#equals(Object)} on keys with
+ * different hashcodes, and rehashing never calls {@link Object#hashCode()} again.
+ * This is best for large maps, or for keys with expensive hashcode or equality methods.
+ * <p>
+ * Use {@link #cursor()} to go through the entries without creating an object per entry.
+ * {@link #iterator()} is still available, but creates a new pair for each entry.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class CompactHashMap<K extends Object, V extends Object> extends OpenHashMap<K, V>
+{
+	/** Hashcode array, parallel to the key array. Holds the mixed hashcodes of each key. */
+	protected int[] hashArray;
+
+	/**
+	 * Creates a new hash map with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
+	 */
+	public CompactHashMap()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new hash map with capacity <i>cap</i> and rehash ratio DEFAULT_REHASH.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 * @throws IllegalArgumentException if capacity is negative.
+	 */
+	public CompactHashMap(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new hash map.
+	 * @param capacity the capacity. cannot be negative.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded,
+	 * the table's capacity is expanded, and the table is rehashed.
+	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less, or 1 or greater.
+	 */
+	public CompactHashMap(int capacity, float rehashRatio)
+	{
+		super(capacity, rehashRatio);
+		hashArray = new int[storageArray.length];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void setKeyHashStrategy(HashStrategy<? super K> keyHashStrategy)
+	{
+		super.setKeyHashStrategy(keyHashStrategy);
+		for (int i = 0; i < storageArray.length; i++)
+			if (storageArray[i] != null)
+				hashArray[i] = getMixedHashcodeForKey((K)storageArray[i]);
+	}
+
+	/**
+	 * Calculates the mixed hashcode for a key, which is stored alongside it.
+	 * @param key the key object to use.
+	 * @return the mixed hashcode.
+	 */
+	protected int getMixedHashcodeForKey(K key)
+	{
+		return mix(getHashcodeForKey(key));
+	}
+
+	@Override
+	protected int getTableIndexForKey(K key)
+	{
+		return getMixedHashcodeForKey(key) & (storageArray.length - 1);
+	}
+
+	@Override
+	protected int getSlotIndexOfKey(K key)
+	{
+		return getSlotIndexOfKey(key, getMixedHashcodeForKey(key));
+	}
+
+	/**
+	 * Finds the slot index that a key occupies.
+	 * @param key the key to use.
+	 * @param hash the key's mixed hashcode.
+	 * @return the index of the key in the table, or -1 if it is not present.
+	 */
+	@SuppressWarnings("unchecked")
+	protected int getSlotIndexOfKey(K key, int hash)
+	{
+		int mask = storageArray.length - 1;
+		int i = hash & mask;
+		Object entry;
+		while ((entry = storageArray[i]) != null)
+		{
+			if (hashArray[i] == hash && equalityMethodForKey((K)entry, key))
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the first empty slot index along a hashcode's probe sequence.
+	 * @param keys the key array to search.
+	 * @param hash the mixed hashcode.
+	 * @return the index of the empty slot.
+	 */
+	protected static int getFreeIndexForHashcode(Object[] keys, int hash)
+	{
+		int mask = keys.length - 1;
+		int i = hash & mask;
+		while (keys[i] != null)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	@Override
+	public void put(K key, V value)
+	{
+		if (key == null)
+			throw new NullPointerException("Open hash maps cannot contain null keys.");
+		int hash = getMixedHashcodeForKey(key);
+		int i = getSlotIndexOfKey(key, hash);
+		if (i >= 0)
+		{
+			valueArray[i] = value;
+			return;
+		}
+		if (rehashCheck()) rehash();
+		i = getFreeIndexForHashcode(storageArray, hash);
+		storageArray[i] = key;
+		valueArray[i] = value;
+		hashArray[i] = hash;
+		size++;
+	}
+
+	@Override
+	protected void rehash()
+	{
+		Object[] oldKeys = storageArray;
+		Object[] oldValues = valueArray;
+		int[] oldHashes = hashArray;
+		storageArray = new Object[oldKeys.length * 2];
+		valueArray = new Object[oldKeys.length * 2];
+		hashArray = new int[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldKeys[i] != null)
+			{
+				int index = getFreeIndexForHashcode(storageArray, oldHashes[i]);
+				storageArray[index] = oldKeys[i];
+				valueArray[index] = oldValues[i];
+				hashArray[index] = oldHashes[i];
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void removeSlot(int index, List<K> wrapped)
+	{
+		int mask = storageArray.length - 1;
+		int gap = index;
+		int i = index;
+		while (true)
+		{
+			i = (i + 1) & mask;
+			Object entry = storageArray[i];
+			if (entry == null)
+				break;
+			int home = hashArray[i] & mask;
+			// can move the entry back if the gap is cyclically between its home slot and its current slot.
+			if (gap <= i ? (gap >= home || home > i) : (gap >= home && home > i))
+			{
+				if (wrapped != null && i < gap)
+					wrapped.add((K)entry);
+				storageArray[gap] = entry;
+				valueArray[gap] = valueArray[i];
+				hashArray[gap] = hashArray[i];
+				gap = i;
+			}
+		}
+		storageArray[gap] = null;
+		valueArray[gap] = null;
+		size--;
+	}
+
+}
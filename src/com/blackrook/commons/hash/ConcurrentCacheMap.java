@@ -0,0 +1,499 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractCacheMap;
+import com.blackrook.commons.AbstractMap;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+import com.blackrook.commons.list.List;
+
+/**
+ * A cache map that is safe to use from several threads at once.
+ * <p>
+ * The keys are split among several segments by hashcode, each being a separate
+ * {@link LRUHashMap} or {@link LFUHashMap} with its own lock and an equal share of the capacity,
+ * so threads using keys in different segments do not wait for each other. Because of this,
+ * the replacement policy is only applied within each segment, and the statistics are the
+ * sums of the segments' statistics.
+ * <p>
+ * Eviction listeners are called while the segment lock is held.
+ * This structure cannot store null keys.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class ConcurrentCacheMap<K extends Object, V extends Object> implements AbstractMap<K, V>
+{
+	/** Default amount of segments. */
+	public static final int DEFAULT_CONCURRENCY = 16;
+
+	/**
+	 * Replacement policies.
+	 */
+	public static enum Policy
+	{
+		/** Evict least-recently-used entries first. */
+		LRU,
+		/** Evict least-frequently-used entries first. */
+		LFU;
+	}
+
+	/** Cache segments. */
+	private AbstractCacheMap<K, V>[] segments;
+	/** Shift for the segment index bits. */
+	private final int segmentShift;
+	/** Mask for the segment index bits. */
+	private final int segmentMask;
+
+	/**
+	 * Creates a new concurrent cache map with the default concurrency.
+	 * @param policy the replacement policy.
+	 * @param capacity the maximum total weight of the entries in this map (the maximum amount of entries, by default).
+	 * @throws NullPointerException if policy is null.
+	 * @throws IllegalArgumentException if capacity is 0 or less.
+	 */
+	public ConcurrentCacheMap(Policy policy, long capacity)
+	{
+		this(policy, capacity, DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new concurrent cache map.
+	 * The amount of segments is rounded up to a power of two, but never exceeds the capacity.
+	 * @param policy the replacement policy.
+	 * @param capacity the maximum total weight of the entries in this map (the maximum amount of entries, by default).
+	 * @param concurrency the amount of segments (the expected amount of threads that use the map at once).
+	 * @throws NullPointerException if policy is null.
+	 * @throws IllegalArgumentException if capacity or concurrency is 0 or less.
+	 */
+	@SuppressWarnings("unchecked")
+	public ConcurrentCacheMap(Policy policy, long capacity, int concurrency)
+	{
+		if (policy == null)
+			throw new NullPointerException("Policy can't be null.");
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can't 0 or less.");
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("Concurrency can't 0 or less.");
+
+		int n = 1;
+		while (n < concurrency && n < capacity && n < (1 << 16))
+			n <<= 1;
+		if (n > capacity)
+			n >>= 1;
+
+		this.segments = (AbstractCacheMap<K, V>[])new AbstractCacheMap<?, ?>[n];
+		this.segmentShift = 32 - Integer.numberOfTrailingZeros(n);
+		this.segmentMask = n - 1;
+		for (int i = 0; i < n; i++)
+		{
+			long segmentCapacity = segmentCapacity(capacity, i);
+			switch (policy)
+			{
+				case LRU:
+					segments[i] = new LRUHashMap<K, V>(segmentCapacity);
+					break;
+				case LFU:
+					segments[i] = new LFUHashMap<K, V>(segmentCapacity);
+					break;
+			}
+		}
+	}
+
+	// Returns the share of the capacity for a segment.
+	private long segmentCapacity(long capacity, int i)
+	{
+		return capacity / segments.length + (i < capacity % segments.length ? 1 : 0);
+	}
+
+	// Returns the segment for a key.
+	// Uses the high bits of the spread hash, since each segment's table uses the low bits for its slots.
+	private AbstractCacheMap<K, V> segmentFor(K key)
+	{
+		if (key == null)
+			throw new NullPointerException("Cache maps cannot contain null keys.");
+		int h = key.hashCode() * 0x9E3779B9;
+		return segments[(h >>> segmentShift) & segmentMask];
+	}
+
+	/**
+	 * @return the maximum total weight of the entries in this map.
+	 */
+	public long getCapacity()
+	{
+		long out = 0L;
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				out += segment.getCapacity();
+			}
+		return out;
+	}
+
+	/**
+	 * Sets the maximum total weight of the entries in this map.
+	 * If the current total weight exceeds the new capacity, entries are evicted.
+	 * @param capacity the new capacity. Must not be less than the amount of segments.
+	 * @throws IllegalArgumentException if capacity is less than the amount of segments.
+	 */
+	public void setCapacity(long capacity)
+	{
+		if (capacity < segments.length)
+			throw new IllegalArgumentException("Capacity can't be less than the amount of segments.");
+		for (int i = 0; i < segments.length; i++)
+			synchronized (segments[i])
+			{
+				segments[i].setCapacity(segmentCapacity(capacity, i));
+			}
+	}
+
+	/**
+	 * Returns the current total weight of the entries in this map.
+	 * If other threads are changing the map, this is only an estimate.
+	 * @return the total weight.
+	 */
+	public long getWeight()
+	{
+		long out = 0L;
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				out += segment.getWeight();
+			}
+		return out;
+	}
+
+	/**
+	 * Sets the weigher used for calculating the weights of entries added to this map.
+	 * This does not change the weights of entries already in the map.
+	 * @param weigher the weigher to use, or null to give every entry a weight of 1.
+	 */
+	public void setWeigher(AbstractCacheMap.Weigher<? super K, ? super V> weigher)
+	{
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				segment.setWeigher(weigher);
+			}
+	}
+
+	/**
+	 * Sets the listener that is called when entries are evicted from this map.
+	 * It is not called for entries removed via {@link #removeUsingKey(Object)} or {@link #clear()}.
+	 * @param evictionListener the listener to use, or null for no listener.
+	 */
+	public void setEvictionListener(AbstractCacheMap.EvictionListener<? super K, ? super V> evictionListener)
+	{
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				segment.setEvictionListener(evictionListener);
+			}
+	}
+
+	/**
+	 * @return the amount of calls to {@link #get(Object)} that found an entry.
+	 */
+	public long getHitCount()
+	{
+		long out = 0L;
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				out += segment.getHitCount();
+			}
+		return out;
+	}
+
+	/**
+	 * @return the amount of calls to {@link #get(Object)} that did not find an entry.
+	 */
+	public long getMissCount()
+	{
+		long out = 0L;
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				out += segment.getMissCount();
+			}
+		return out;
+	}
+
+	/**
+	 * @return the amount of entries evicted from this map.
+	 */
+	public long getEvictionCount()
+	{
+		long out = 0L;
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				out += segment.getEvictionCount();
+			}
+		return out;
+	}
+
+	/**
+	 * @return the ratio of hits to total calls to {@link #get(Object)}, or 0 if there were no calls.
+	 */
+	public double getHitRatio()
+	{
+		long hits = 0L;
+		long total = 0L;
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				hits += segment.getHitCount();
+				total += segment.getHitCount() + segment.getMissCount();
+			}
+		return total == 0 ? 0.0 : (double)hits / total;
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counts to 0.
+	 */
+	public void resetStatistics()
+	{
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				segment.resetStatistics();
+			}
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map.
+	 * If the key's segment exceeds its capacity afterward, entries in that segment are evicted.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public void put(K key, V value)
+	{
+		AbstractCacheMap<K, V> segment = segmentFor(key);
+		synchronized (segment)
+		{
+			segment.put(key, value);
+		}
+	}
+
+	/**
+	 * Gets the value associated with a key, and counts it as an access of the entry.
+	 * This counts a cache hit or a cache miss.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public V get(K key)
+	{
+		AbstractCacheMap<K, V> segment = segmentFor(key);
+		synchronized (segment)
+		{
+			return segment.get(key);
+		}
+	}
+
+	/**
+	 * Checks if a key is present in the map.
+	 * This does not count as an access of the entry, nor as a hit or miss.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public boolean containsKey(K key)
+	{
+		AbstractCacheMap<K, V> segment = segmentFor(key);
+		synchronized (segment)
+		{
+			return segment.containsKey(key);
+		}
+	}
+
+	/**
+	 * Removes a value from this map using a key.
+	 * This is not counted as an eviction.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public V removeUsingKey(K key)
+	{
+		AbstractCacheMap<K, V> segment = segmentFor(key);
+		synchronized (segment)
+		{
+			return segment.removeUsingKey(key);
+		}
+	}
+
+	/**
+	 * Clears the contents of this map. This is not counted as an eviction.
+	 * This is not atomic - entries added by other threads while this is called may remain in the map.
+	 */
+	public void clear()
+	{
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				segment.clear();
+			}
+	}
+
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		put(pair.getKey(), pair.getValue());
+	}
+
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		AbstractCacheMap<K, V> segment = segmentFor(pair.getKey());
+		synchronized (segment)
+		{
+			return segment.remove(pair);
+		}
+	}
+
+	/**
+	 * Returns the amount of entries in this map.
+	 * If other threads are changing the map, this is only an estimate.
+	 */
+	@Override
+	public int size()
+	{
+		int out = 0;
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				out += segment.size();
+			}
+		return out;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	/**
+	 * Copies the entries into an array.
+	 * If the map changes size while this is called, only as many entries as fit are copied.
+	 */
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		List<ObjectPair<K, V>> list = snapshot();
+		for (int i = 0; i < list.size() && i < out.length; i++)
+			out[i] = list.getByIndex(i);
+	}
+
+	/**
+	 * Copies the keys into an array.
+	 * If the map changes size while this is called, only as many keys as fit are copied.
+	 */
+	@Override
+	public void toArrayKeys(K[] out)
+	{
+		List<ObjectPair<K, V>> list = snapshot();
+		for (int i = 0; i < list.size() && i < out.length; i++)
+			out[i] = list.getByIndex(i).getKey();
+	}
+
+	/**
+	 * Copies the values into an array.
+	 * If the map changes size while this is called, only as many values as fit are copied.
+	 */
+	@Override
+	public void toArrayValues(V[] out)
+	{
+		List<ObjectPair<K, V>> list = snapshot();
+		for (int i = 0; i < list.size() && i < out.length; i++)
+			out[i] = list.getByIndex(i).getValue();
+	}
+
+	/**
+	 * Returns an iterator through a snapshot of the entries in this map, taken one segment at a time.
+	 * Iterating does not count as access of the entries.
+	 * Removing through the iterator removes the entry from this map.
+	 */
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new SnapshotIterator(snapshot());
+	}
+
+	// Copies the entries of all segments.
+	private List<ObjectPair<K, V>> snapshot()
+	{
+		List<ObjectPair<K, V>> out = new List<ObjectPair<K, V>>();
+		for (AbstractCacheMap<K, V> segment : segments)
+			synchronized (segment)
+			{
+				for (ObjectPair<K, V> pair : segment)
+					out.add(pair);
+			}
+		return out;
+	}
+
+	@Override
+	public String toString()
+	{
+		return snapshot().toString();
+	}
+
+	/**
+	 * Iterator through a snapshot of the entries.
+	 */
+	private class SnapshotIterator implements ResettableIterator<ObjectPair<K, V>>
+	{
+		private List<ObjectPair<K, V>> list;
+		private int cur;
+		private boolean removed;
+
+		private SnapshotIterator(List<ObjectPair<K, V>> list)
+		{
+			this.list = list;
+			reset();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return cur + 1 < list.size();
+		}
+
+		@Override
+		public ObjectPair<K, V> next()
+		{
+			removed = false;
+			return list.getByIndex(++cur);
+		}
+
+		@Override
+		public void remove()
+		{
+			if (cur < 0 || removed)
+				throw new IllegalStateException("remove() called before next()");
+			removeUsingKey(list.getByIndex(cur).getKey());
+			removed = true;
+		}
+
+		@Override
+		public void reset()
+		{
+			cur = -1;
+			removed = false;
+		}
+	}
+
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.blackrook.commons.ResettableIterator;
+import com.blackrook.commons.Sizable;
+
+/**
+ * A special type of hash that tallies/counts use of objects, and is safe to use from several threads at once.
+ * <p>
+ * Each object gets its own atomic long counter in a {@link ConcurrentHashMap}, so counting an object
+ * that is already in the map never locks or creates an object: the map's segment locks are only
+ * taken when an object is added or removed.
+ * <p>
+ * Objects whose counts reach 0 are removed. This structure cannot store null objects.
+ * @author Matthew Tropiano
+ * @param <T> an Object type.
+ * @since 2.33.0
+ */
+public class ConcurrentCountMap<T extends Object> implements Sizable
+{
+	/** Counter value for a counter that is being removed. */
+	private static final long REMOVED = Long.MIN_VALUE;
+
+	/** Map of object to counter. */
+	private ConcurrentHashMap<T, AtomicLong> map;
+
+	/**
+	 * Creates a new count map with the default capacity and concurrency.
+	 */
+	public ConcurrentCountMap()
+	{
+		this(ConcurrentHashMap.DEFAULT_CAPACITY, ConcurrentHashMap.DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new count map with capacity <i>cap</i> and the default concurrency.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 */
+	public ConcurrentCountMap(int capacity)
+	{
+		this(capacity, ConcurrentHashMap.DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new count map.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 * @param concurrency the amount of lock segments (the expected amount of threads that add new objects at once).
+	 * @throws IllegalArgumentException if capacity or concurrency is 0 or less.
+	 */
+	public ConcurrentCountMap(int capacity, int concurrency)
+	{
+		this.map = new ConcurrentHashMap<T, AtomicLong>(capacity, ConcurrentHashMap.DEFAULT_REHASH, concurrency);
+	}
+
+	/**
+	 * Returns the count of an object.
+	 * If this does not contain the object, then this returns 0.
+	 * @param object the object.
+	 * @return the current count of the object, or 0 if the object was not added.
+	 * @throws NullPointerException if object is null.
+	 */
+	public long getCount(T object)
+	{
+		AtomicLong counter = map.get(object);
+		if (counter == null)
+			return 0L;
+		long c = counter.get();
+		return c != REMOVED ? c : 0L;
+	}
+
+	/**
+	 * Adds one to the count of an object.
+	 * If the object has not been counted, it is placed in this map, and is given a count of 1.
+	 * @param object the object to add.
+	 * @return the new count of the object.
+	 * @throws NullPointerException if object is null.
+	 */
+	public long give(T object)
+	{
+		return give(object, 1L);
+	}
+
+	/**
+	 * Adds an amount to the count of an object.
+	 * If the amount is negative, this is equivalent to <code>take(object, -amount)</code>.
+	 * @param object the object to add.
+	 * @param amount the amount to give/add.
+	 * @return the new count of the object.
+	 * @throws NullPointerException if object is null.
+	 */
+	public long give(T object, long amount)
+	{
+		if (amount < 0)
+		{
+			take(object, -amount);
+			return getCount(object);
+		}
+
+		while (true)
+		{
+			AtomicLong counter = map.get(object);
+			if (counter == null)
+			{
+				if (amount == 0)
+					return 0L;
+				if ((counter = map.putIfAbsent(object, new AtomicLong(amount))) == null)
+					return amount;
+			}
+
+			long c;
+			while ((c = counter.get()) != REMOVED)
+				if (counter.compareAndSet(c, c + amount))
+					return c + amount;
+
+			// counter was emptied by another thread - make sure it is gone, and try again with a new one.
+			map.removeUsingKey(object, counter);
+		}
+	}
+
+	/**
+	 * Subtracts one from the count of an object.
+	 * If the count is 0 after this runs, the object instance is removed.
+	 * @param object the object to remove.
+	 * @return the actual amount taken (0 or 1).
+	 * @throws NullPointerException if object is null.
+	 */
+	public long take(T object)
+	{
+		return take(object, 1L);
+	}
+
+	/**
+	 * Subtracts an amount from the count of an object.
+	 * If the count is 0 after this runs, the object instance is removed.
+	 * If the amount is negative, this is equivalent to <code>give(object, -amount)</code>.
+	 * @param object the object to remove.
+	 * @param amount the amount to remove.
+	 * @return the actual amount taken, doesn't always equal amount.
+	 * @throws NullPointerException if object is null.
+	 */
+	public long take(T object, long amount)
+	{
+		if (amount < 0)
+		{
+			give(object, -amount);
+			return 0L;
+		}
+
+		AtomicLong counter = map.get(object);
+		if (counter == null)
+			return 0L;
+
+		long c, n;
+		do {
+			if ((c = counter.get()) == REMOVED)
+				return 0L;
+			n = Math.max(0L, c - amount);
+		} while (!counter.compareAndSet(c, n == 0 ? REMOVED : n));
+
+		if (n == 0)
+			map.removeUsingKey(object, counter);
+		return c - n;
+	}
+
+	/**
+	 * Removes the whole amount from the count of an object.
+	 * The object instance is removed.
+	 * @param object the object to remove.
+	 * @return the actual amount taken.
+	 * @throws NullPointerException if object is null.
+	 */
+	public long takeAll(T object)
+	{
+		return take(object, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the sum of all of the counts in this map.
+	 * If other threads are changing the map, this is only an estimate.
+	 * @return the total.
+	 */
+	public long getTotal()
+	{
+		long out = 0L;
+		ResettableIterator<AtomicLong> it = map.valueIterator();
+		while (it.hasNext())
+		{
+			long c = it.next().get();
+			if (c != REMOVED)
+				out += c;
+		}
+		return out;
+	}
+
+	/**
+	 * Clears the contents of this map.
+	 * This is not atomic - objects counted by other threads while this is called may remain in the map.
+	 */
+	public void clear()
+	{
+		map.clear();
+	}
+
+	/**
+	 * Returns a weakly consistent iterator through the counted objects.
+	 * See {@link ConcurrentHashMap} for details.
+	 * @return a new iterator.
+	 */
+	public ResettableIterator<T> iterator()
+	{
+		return map.keyIterator();
+	}
+
+	/**
+	 * Copies the counted objects into an array.
+	 * If the map changes size while this is called, only as many objects as fit are copied.
+	 * @param out the output array.
+	 */
+	public void toArray(T[] out)
+	{
+		map.toArrayKeys(out);
+	}
+
+	/**
+	 * Returns the amount of counted objects.
+	 * If other threads are changing the map, this is only an estimate.
+	 */
+	@Override
+	public int size()
+	{
+		return map.size();
+	}
+
+	/**
+	 * Returns true if there are no counted objects, false otherwise.
+	 * If other threads are changing the map, this is only an estimate.
+	 */
+	@Override
+	public boolean isEmpty()
+	{
+		return map.isEmpty();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		ResettableIterator<T> it = iterator();
+		while (it.hasNext())
+		{
+			T object = it.next();
+			if (once)
+				sb.append(", ");
+			sb.append(object).append('=').append(getCount(object));
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+}
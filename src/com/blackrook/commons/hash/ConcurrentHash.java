@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractSet;
+import com.blackrook.commons.ResettableIterator;
+
+/**
+ * Hashed data structure that stores a set of objects, and is safe to use from several threads at once.
+ * Reads never lock, and writes only lock the segment of the table that an object falls in.
+ * See {@link ConcurrentHashMap} for details.
+ * <p>
+ * This structure cannot store null objects.
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ */
+public class ConcurrentHash<T extends Object> implements AbstractSet<T>
+{
+	/** Value stored for every object in the backing map. */
+	private static final Boolean PRESENT = Boolean.TRUE;
+
+	/** Backing map. */
+	private ConcurrentHashMap<T, Boolean> map;
+
+	/**
+	 * Creates a new hash with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH, and DEFAULT_CONCURRENCY segments.
+	 */
+	public ConcurrentHash()
+	{
+		this(ConcurrentHashMap.DEFAULT_CAPACITY, ConcurrentHashMap.DEFAULT_REHASH, ConcurrentHashMap.DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new hash with capacity <i>cap</i>, rehash ratio DEFAULT_REHASH, and DEFAULT_CONCURRENCY segments.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 */
+	public ConcurrentHash(int capacity)
+	{
+		this(capacity, ConcurrentHashMap.DEFAULT_REHASH, ConcurrentHashMap.DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new hash.
+	 * @param capacity the capacity. cannot be negative.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded in a segment,
+	 * the segment's capacity is expanded, and the segment is rehashed.
+	 * @param concurrency the amount of lock segments (the expected amount of concurrently writing threads).
+	 * @throws IllegalArgumentException if capacity is negative, ratio is 0 or less, or concurrency is 0 or less.
+	 */
+	public ConcurrentHash(int capacity, float rehashRatio, int concurrency)
+	{
+		this.map = new ConcurrentHashMap<T, Boolean>(capacity, rehashRatio, concurrency);
+	}
+
+	/**
+	 * Adds an object to this hash, if it is not already in it.
+	 * @throws NullPointerException if object is null.
+	 */
+	@Override
+	public void put(T object)
+	{
+		map.putIfAbsent(object, PRESENT);
+	}
+
+	/**
+	 * Adds an object to this hash, if it is not already in it.
+	 * This is atomic - if several threads add the same object, only one gets <code>true</code>.
+	 * @param object the object to add.
+	 * @return true if the object was added, false if it was already in the hash.
+	 * @throws NullPointerException if object is null.
+	 */
+	public boolean putIfAbsent(T object)
+	{
+		return map.putIfAbsent(object, PRESENT) == null;
+	}
+
+	@Override
+	public boolean contains(T object)
+	{
+		return object != null && map.containsKey(object);
+	}
+
+	@Override
+	public boolean remove(T object)
+	{
+		return object != null && map.removeUsingKey(object) != null;
+	}
+
+	/**
+	 * Clears the contents of this hash.
+	 * This is not atomic - objects added by other threads while this is called may remain in the hash.
+	 */
+	public void clear()
+	{
+		map.clear();
+	}
+
+	/**
+	 * Returns the amount of objects in the hash.
+	 * If other threads are changing the hash, this is only an estimate.
+	 */
+	@Override
+	public int size()
+	{
+		return map.size();
+	}
+
+	/**
+	 * Returns true if there is nothing in this hash, false otherwise.
+	 * If other threads are changing the hash, this is only an estimate.
+	 */
+	@Override
+	public boolean isEmpty()
+	{
+		return map.isEmpty();
+	}
+
+	/**
+	 * Copies the objects in this hash into an array.
+	 * If the hash changes size while this is called, only as many objects as fit are copied.
+	 */
+	@Override
+	public void toArray(T[] out)
+	{
+		map.toArrayKeys(out);
+	}
+
+	/**
+	 * Returns a weakly consistent iterator for this hash.
+	 * See {@link ConcurrentHashMap} for details.
+	 */
+	@Override
+	public ResettableIterator<T> iterator()
+	{
+		return map.keyIterator();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (T obj : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(obj);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,690 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.blackrook.commons.AbstractMap;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+
+/**
+ * Hashed data structure that maps keys to values, and is safe to use from several threads at once.
+ * <p>
+ * The table is split into several segments, each with its own lock. Reads ({@link #get(Object)},
+ * {@link #containsKey(Object)}) never lock, and writes only lock the segment that the key falls in,
+ * so writes to different segments do not block each other.
+ * <p>
+ * {@link #putIfAbsent(Object, Object)}, {@link #computeIfAbsent(Object, ValueFactory)},
+ * {@link #replace(Object, Object, Object)} and {@link #removeUsingKey(Object, Object)} are atomic.
+ * <p>
+ * Iterators are weakly consistent: they never throw {@link java.util.ConcurrentModificationException},
+ * and may or may not reflect changes made after they were created. The pairs returned by them
+ * are copies - setting their values does not change this map.
+ * <p>
+ * This map cannot store null keys or null values.
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ */
+public class ConcurrentHashMap<K extends Object, V extends Object> implements AbstractMap<K, V>
+{
+	/** Default capacity for a new map. */
+	public static final int DEFAULT_CAPACITY = 16;
+	/** Default rehash ratio. */
+	public static final float DEFAULT_REHASH = 0.75f;
+	/** Default amount of lock segments. */
+	public static final int DEFAULT_CONCURRENCY = 16;
+
+	/** The table segments. */
+	private final Segment<K, V>[] segments;
+	/** Shift for the segment index bits. */
+	private final int segmentShift;
+	/** Mask for the segment index bits. */
+	private final int segmentMask;
+	/** Rehashing ratio for rehashing. */
+	protected final float rehashRatio;
+
+	/**
+	 * Creates a new map with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH, and DEFAULT_CONCURRENCY segments.
+	 */
+	public ConcurrentHashMap()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH, DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new map with capacity <i>cap</i>, rehash ratio DEFAULT_REHASH, and DEFAULT_CONCURRENCY segments.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 */
+	public ConcurrentHashMap(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH, DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new map.
+	 * @param capacity the capacity. cannot be negative.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded in a segment,
+	 * the segment's capacity is expanded, and the segment is rehashed.
+	 * @param concurrency the amount of lock segments (the expected amount of concurrently writing threads).
+	 * 		It is rounded up to the nearest power of two.
+	 * @throws IllegalArgumentException if capacity is negative, ratio is 0 or less, or concurrency is 0 or less.
+	 */
+	@SuppressWarnings("unchecked")
+	public ConcurrentHashMap(int capacity, float rehashRatio, int concurrency)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can't 0 or less.");
+		if (rehashRatio <= 0.0f)
+			throw new IllegalArgumentException("Ratio can't be 0 or less.");
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("Concurrency can't be 0 or less.");
+
+		int segmentCount = powerOfTwo(Math.min(concurrency, 1 << 16));
+		int segmentCapacity = powerOfTwo(Math.max((capacity + segmentCount - 1) / segmentCount, 2));
+
+		this.segments = (Segment<K, V>[])new Segment<?, ?>[segmentCount];
+		this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+		this.segmentMask = segmentCount - 1;
+		this.rehashRatio = rehashRatio;
+		for (int i = 0; i < segmentCount; i++)
+			segments[i] = new Segment<K, V>(this, segmentCapacity);
+	}
+
+	// Rounds up to the nearest power of two.
+	private static int powerOfTwo(int n)
+	{
+		return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+	}
+
+	/**
+	 * Calculates the hash code for an object key.
+	 * By default, this uses {@link Object#hashCode()}.
+	 * This must be safe to call from several threads at once.
+	 * @param key the key object to use.
+	 * @return the resultant code to use for table lookups.
+	 */
+	protected int getHashcodeForKey(K key)
+	{
+		return key.hashCode();
+	}
+
+	/**
+	 * Checks if two keys are equal.
+	 * By default, this uses {@link Object#equals(Object)}.
+	 * This must be safe to call from several threads at once.
+	 * @param key1 the first key.
+	 * @param key2 the second key.
+	 * @return true if the keys are considered equal, false otherwise.
+	 */
+	protected boolean equalityMethodForKey(K key1, K key2)
+	{
+		return key1 == key2 || key1.equals(key2);
+	}
+
+	// Spreads a key's hashcode.
+	private int hash(K key)
+	{
+		if (key == null)
+			throw new NullPointerException("Keys cannot be null.");
+		int h = getHashcodeForKey(key) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	// Gets the segment for a spread hash.
+	private Segment<K, V> segmentFor(int hash)
+	{
+		return segments[(hash >>> segmentShift) & segmentMask];
+	}
+
+	// Finds the node for a key, without locking.
+	private Node<K, V> findNode(Segment<K, V> segment, int hash, K key)
+	{
+		AtomicReferenceArray<Node<K, V>> table = segment.table;
+		Node<K, V> node = table.get(hash & (table.length() - 1));
+		while (node != null)
+		{
+			if (node.hash == hash && equalityMethodForKey(node.key, key))
+				return node;
+			node = node.next;
+		}
+		return null;
+	}
+
+	@Override
+	public V get(K key)
+	{
+		int hash = hash(key);
+		Node<K, V> node = findNode(segmentFor(hash), hash, key);
+		return node != null ? node.value : null;
+	}
+
+	@Override
+	public boolean containsKey(K key)
+	{
+		int hash = hash(key);
+		return findNode(segmentFor(hash), hash, key) != null;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map.
+	 * @param key the key associated with a value.
+	 * @param value the value associated with the provided key.
+	 * @throws NullPointerException if key or value is null.
+	 */
+	@Override
+	public void put(K key, V value)
+	{
+		int hash = hash(key);
+		segmentFor(hash).put(hash, key, checkValue(value), false);
+	}
+
+	/**
+	 * Adds a [key, value] pair to this map if the key is not already mapped to a value.
+	 * This is atomic.
+	 * @param key the key associated with a value.
+	 * @param value the value associated with the provided key.
+	 * @return the value that was already associated with the key, or null if the provided value was added.
+	 * @throws NullPointerException if key or value is null.
+	 */
+	public V putIfAbsent(K key, V value)
+	{
+		int hash = hash(key);
+		return segmentFor(hash).put(hash, key, checkValue(value), true);
+	}
+
+	/**
+	 * Gets the value associated with a key, or if there is none, creates one with a factory
+	 * and adds it to this map. This is atomic: the factory is called at most once per absent key,
+	 * and other writes to the same segment wait for it to finish, so it should be short, and should
+	 * not write to this map (which can deadlock with other threads).
+	 * @param key the key associated with a value.
+	 * @param factory the factory to call to create the value for an absent key.
+	 * @return the current value (existing or created) associated with the key, or null if
+	 * 		the factory returned null (nothing is added to the map in that case).
+	 * @throws NullPointerException if key or factory is null.
+	 */
+	public V computeIfAbsent(K key, ValueFactory<? super K, ? extends V> factory)
+	{
+		if (factory == null)
+			throw new NullPointerException("Factory cannot be null.");
+		int hash = hash(key);
+		Segment<K, V> segment = segmentFor(hash);
+		Node<K, V> node = findNode(segment, hash, key);
+		if (node != null)
+			return node.value;
+
+		synchronized (segment)
+		{
+			if ((node = findNode(segment, hash, key)) != null)
+				return node.value;
+			V value = factory.create(key);
+			if (value == null)
+				return null;
+			segment.put(hash, key, value, false);
+			return value;
+		}
+	}
+
+	/**
+	 * Replaces the value associated with a key, only if it is currently the expected value.
+	 * This is atomic.
+	 * @param key the key associated with a value.
+	 * @param expectedValue the value that is expected to be associated with the key (compared with {@link Object#equals(Object)}).
+	 * @param newValue the value to associate with the key.
+	 * @return true if the value was replaced, false if not.
+	 * @throws NullPointerException if key, expectedValue, or newValue is null.
+	 */
+	public boolean replace(K key, V expectedValue, V newValue)
+	{
+		checkValue(expectedValue);
+		checkValue(newValue);
+		int hash = hash(key);
+		Segment<K, V> segment = segmentFor(hash);
+		synchronized (segment)
+		{
+			Node<K, V> node = findNode(segment, hash, key);
+			if (node == null || !expectedValue.equals(node.value))
+				return false;
+			node.value = newValue;
+			return true;
+		}
+	}
+
+	// Checks that a value is not null.
+	private static <V> V checkValue(V value)
+	{
+		if (value == null)
+			throw new NullPointerException("Values cannot be null.");
+		return value;
+	}
+
+	@Override
+	public V removeUsingKey(K key)
+	{
+		int hash = hash(key);
+		return segmentFor(hash).remove(hash, key);
+	}
+
+	/**
+	 * Removes a key from this map, only if it is currently associated with the expected value.
+	 * This is atomic.
+	 * @param key the key to remove.
+	 * @param expectedValue the value that is expected to be associated with the key (compared with {@link Object#equals(Object)}).
+	 * @return true if the key was removed, false if not.
+	 * @throws NullPointerException if key or expectedValue is null.
+	 */
+	public boolean removeUsingKey(K key, V expectedValue)
+	{
+		checkValue(expectedValue);
+		int hash = hash(key);
+		Segment<K, V> segment = segmentFor(hash);
+		synchronized (segment)
+		{
+			Node<K, V> node = findNode(segment, hash, key);
+			if (node == null || !expectedValue.equals(node.value))
+				return false;
+			segment.remove(hash, key);
+			return true;
+		}
+	}
+
+	/**
+	 * Clears the contents of this map.
+	 * This is not atomic - pairs added by other threads while this is called may remain in the map.
+	 */
+	public void clear()
+	{
+		for (Segment<K, V> segment : segments)
+			segment.clear();
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map.
+	 * @param pair the pair to add.
+	 * @throws NullPointerException if the key or value in the pair is null.
+	 */
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		put(pair.getKey(), pair.getValue());
+	}
+
+	/**
+	 * Checks if a pair's key (by equality) is present in the map.
+	 * @param pair the pair with the key to check.
+	 */
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	/**
+	 * Removes a pair from this map using the pair's key.
+	 * @param pair the pair with the key to remove.
+	 */
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		return removeUsingKey(pair.getKey()) != null;
+	}
+
+	/**
+	 * Returns the amount of pairs in the map.
+	 * If other threads are changing the map, this is only an estimate.
+	 */
+	@Override
+	public int size()
+	{
+		long out = 0;
+		for (Segment<K, V> segment : segments)
+			out += segment.count;
+		return (int)Math.min(out, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns true if there is nothing in this map, false otherwise.
+	 * If other threads are changing the map, this is only an estimate.
+	 */
+	@Override
+	public boolean isEmpty()
+	{
+		for (Segment<K, V> segment : segments)
+			if (segment.count != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Copies the pairs in this map into an array.
+	 * If the map changes size while this is called, only as many pairs as fit are copied.
+	 */
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		int i = 0;
+		ResettableIterator<ObjectPair<K, V>> it = iterator();
+		while (i < out.length && it.hasNext())
+			out[i++] = it.next();
+	}
+
+	/**
+	 * Copies the keys in this map into an array.
+	 * If the map changes size while this is called, only as many keys as fit are copied.
+	 */
+	@Override
+	public void toArrayKeys(K[] out)
+	{
+		int i = 0;
+		ResettableIterator<K> it = keyIterator();
+		while (i < out.length && it.hasNext())
+			out[i++] = it.next();
+	}
+
+	/**
+	 * Copies the values in this map into an array.
+	 * If the map changes size while this is called, only as many values as fit are copied.
+	 */
+	@Override
+	public void toArrayValues(V[] out)
+	{
+		int i = 0;
+		ResettableIterator<V> it = valueIterator();
+		while (i < out.length && it.hasNext())
+			out[i++] = it.next();
+	}
+
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new PairIterator();
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each key in the map.
+	 */
+	public ResettableIterator<K> keyIterator()
+	{
+		return new KeyIterator();
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each value in the map.
+	 */
+	public ResettableIterator<V> valueIterator()
+	{
+		return new ValueIterator();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (ObjectPair<K, V> pair : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(pair);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	/**
+	 * A factory for values to add to a map for absent keys.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 * @see ConcurrentHashMap#computeIfAbsent(Object, ValueFactory)
+	 */
+	public static interface ValueFactory<K extends Object, V extends Object>
+	{
+		/**
+		 * Creates a value for a key.
+		 * @param key the key that has no value.
+		 * @return the value to associate with the key, or null to not add anything.
+		 */
+		public V create(K key);
+	}
+
+	/**
+	 * A single entry in a segment chain.
+	 * Fields that can change are volatile, so that unlocked readers see complete entries.
+	 */
+	private static class Node<K, V>
+	{
+		private final int hash;
+		private final K key;
+		private volatile V value;
+		private volatile Node<K, V> next;
+
+		private Node(int hash, K key, V value, Node<K, V> next)
+		{
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+			this.next = next;
+		}
+	}
+
+	/**
+	 * A segment of the table. Writes lock on the segment itself.
+	 */
+	private static final class Segment<K, V>
+	{
+		/** The map that owns this segment. */
+		private final ConcurrentHashMap<K, V> map;
+		/** Segment table. Replaced, never altered in place, on rehash. */
+		private volatile AtomicReferenceArray<Node<K, V>> table;
+		/** Amount of entries in this segment. */
+		private volatile int count;
+
+		private Segment(ConcurrentHashMap<K, V> map, int capacity)
+		{
+			this.map = map;
+			this.table = new AtomicReferenceArray<Node<K, V>>(capacity);
+			this.count = 0;
+		}
+
+		// Adds or replaces a value.
+		private synchronized V put(int hash, K key, V value, boolean onlyIfAbsent)
+		{
+			AtomicReferenceArray<Node<K, V>> t = table;
+			int index = hash & (t.length() - 1);
+			Node<K, V> head = t.get(index);
+			for (Node<K, V> node = head; node != null; node = node.next)
+			{
+				if (node.hash == hash && map.equalityMethodForKey(node.key, key))
+				{
+					V old = node.value;
+					if (!onlyIfAbsent)
+						node.value = value;
+					return old;
+				}
+			}
+
+			t.set(index, new Node<K, V>(hash, key, value, head));
+			int c = count + 1;
+			count = c;
+			if (((float)c) / t.length() > map.rehashRatio)
+				rehash();
+			return null;
+		}
+
+		// Removes a value.
+		private synchronized V remove(int hash, K key)
+		{
+			AtomicReferenceArray<Node<K, V>> t = table;
+			int index = hash & (t.length() - 1);
+			Node<K, V> prev = null;
+			for (Node<K, V> node = t.get(index); node != null; node = node.next)
+			{
+				if (node.hash == hash && map.equalityMethodForKey(node.key, key))
+				{
+					// readers already on this node can still continue down the chain.
+					if (prev == null)
+						t.set(index, node.next);
+					else
+						prev.next = node.next;
+					count = count - 1;
+					return node.value;
+				}
+				prev = node;
+			}
+			return null;
+		}
+
+		// Clears the segment.
+		private synchronized void clear()
+		{
+			if (count == 0)
+				return;
+			table = new AtomicReferenceArray<Node<K, V>>(table.length());
+			count = 0;
+		}
+
+		// Doubles the table size. Nodes are copied so that readers on the old table are not disturbed.
+		private void rehash()
+		{
+			AtomicReferenceArray<Node<K, V>> oldTable = table;
+			int length = oldTable.length() * 2;
+			if (length < 0)
+				return;
+			AtomicReferenceArray<Node<K, V>> newTable = new AtomicReferenceArray<Node<K, V>>(length);
+			for (int i = 0; i < oldTable.length(); i++)
+			{
+				for (Node<K, V> node = oldTable.get(i); node != null; node = node.next)
+				{
+					int index = node.hash & (length - 1);
+					newTable.set(index, new Node<K, V>(node.hash, node.key, node.value, newTable.get(index)));
+				}
+			}
+			table = newTable;
+		}
+	}
+
+	/**
+	 * Weakly consistent iterator through the map's nodes.
+	 */
+	private abstract class NodeIterator<T> implements ResettableIterator<T>
+	{
+		/** Current segment index. */
+		private int segmentIndex;
+		/** Current table in segment. */
+		private AtomicReferenceArray<Node<K, V>> currentTable;
+		/** Current index in table. */
+		private int tableIndex;
+		/** Next node to return. */
+		private Node<K, V> nextNode;
+		/** Last returned key. */
+		private K lastKey;
+
+		private NodeIterator()
+		{
+			reset();
+		}
+
+		// Advances to the next node, if the current chain is exhausted.
+		private void advance()
+		{
+			while (nextNode == null)
+			{
+				if (currentTable != null && tableIndex < currentTable.length())
+					nextNode = currentTable.get(tableIndex++);
+				else if (segmentIndex < segments.length)
+				{
+					currentTable = segments[segmentIndex++].table;
+					tableIndex = 0;
+				}
+				else
+					return;
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			advance();
+			return nextNode != null;
+		}
+
+		/**
+		 * Returns the next node.
+		 */
+		protected Node<K, V> nextNode()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Node<K, V> out = nextNode;
+			nextNode = out.next;
+			lastKey = out.key;
+			return out;
+		}
+
+		@Override
+		public void remove()
+		{
+			if (lastKey == null)
+				throw new IllegalStateException("remove() called before next()");
+			removeUsingKey(lastKey);
+			lastKey = null;
+		}
+
+		@Override
+		public void reset()
+		{
+			segmentIndex = 0;
+			currentTable = null;
+			tableIndex = 0;
+			nextNode = null;
+			lastKey = null;
+		}
+	}
+
+	/**
+	 * Iterator for copies of the pairs in the map.
+	 */
+	private class PairIterator extends NodeIterator<ObjectPair<K, V>>
+	{
+		@Override
+		public ObjectPair<K, V> next()
+		{
+			Node<K, V> node = nextNode();
+			return new ObjectPair<K, V>(node.key, node.value);
+		}
+	}
+
+	/**
+	 * Iterator for the keys in the map.
+	 */
+	private class KeyIterator extends NodeIterator<K>
+	{
+		@Override
+		public K next()
+		{
+			return nextNode().key;
+		}
+	}
+
+	/**
+	 * Iterator for the values in the map.
+	 */
+	private class ValueIterator extends NodeIterator<V>
+	{
+		@Override
+		public V next()
+		{
+			return nextNode().value;
+		}
+	}
+
+}
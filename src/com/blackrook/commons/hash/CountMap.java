@@ -7,11 +7,16 @@
  ******************************************************************************/
 package com.blackrook.commons.hash;
 
+import com.blackrook.commons.ObjectPair;
+
 /**
  * A special type of hash that tallies/counts use of objects. 
  * @author Matthew Tropiano
  * @param <T> an Object type.
  * @since 2.7.0
+ * @see LongCountMap
+ * @see ConcurrentCountMap
+ * @see TopKCountMap
  */
 public class CountMap<T extends Object> extends HashMap<T, Integer>
 {
@@ -53,9 +58,8 @@ public class CountMap<T extends Object> extends HashMap<T, Integer>
 	 */
 	public int getCount(T object)
 	{
-		if (!containsKey(object))
-			return 0;
-		return get(object);
+		ObjectPair<T, Integer> pair = getPairUsingKey(object);
+		return pair != null ? pair.getValue() : 0;
 	}
 	
 	/**
@@ -79,9 +83,11 @@ public class CountMap<T extends Object> extends HashMap<T, Integer>
 			take(object, -amount);
 		else
 		{
-			int a = getCount(object) + amount;
-			if (a > 0)
-				put(object, a);
+			ObjectPair<T, Integer> pair = getPairUsingKey(object);
+			if (pair != null)
+				pair.setValue(pair.getValue() + amount);
+			else if (amount > 0)
+				putNew(new ObjectPair<T, Integer>(object, amount));
 		}
 	}
 	
@@ -111,14 +117,16 @@ public class CountMap<T extends Object> extends HashMap<T, Integer>
 			give(object, -amount);
 			return 0;
 		}
-		int c = getCount(object);
+		ObjectPair<T, Integer> pair = getPairUsingKey(object);
+		if (pair == null)
+			return 0;
+		int c = pair.getValue();
 		int n = Math.max(0, c - amount);
-		int out = c - n;
 		if (n == 0)
 			removeUsingKey(object);
 		else
-			put(object, n);
-		return out;
+			pair.setValue(n);
+		return c - n;
 	}
 	
 	/**
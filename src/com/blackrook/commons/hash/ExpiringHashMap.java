@@ -0,0 +1,708 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractMap;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+import com.blackrook.commons.Ticker;
+import com.blackrook.commons.list.List;
+
+/**
+ * A map whose entries expire after a time-to-live (TTL), either the map's default TTL
+ * or one set per entry.
+ * <p>
+ * Expired entries are removed lazily, when they are looked up, and by {@link #sweep()}, which
+ * can be called periodically by a {@link Ticker} (see {@link #createSweeper(int)}). Sweeping does
+ * not scan the whole map: entries are scheduled on a hierarchical timer wheel (four levels of 64 slots),
+ * so a sweep only visits the slots whose time has passed, and only touches entries that expire
+ * or that move down to a finer wheel level. Adding, refreshing and removing an entry take O(1) time.
+ * <p>
+ * Times are measured in milliseconds on a monotonic clock, and the wheel advances in ticks of a
+ * set amount of milliseconds: sweeps may remove an entry up to one tick after it expires, but
+ * lookups never return an expired entry.
+ * <p>
+ * All methods of this map are synchronized on the map, so it can be swept from another thread.
+ * This structure cannot store null keys.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class ExpiringHashMap<K extends Object, V extends Object> implements AbstractMap<K, V>
+{
+	/** Default wheel tick length in milliseconds. */
+	public static final long DEFAULT_TICK_MILLIS = 100L;
+
+	/** Bits per wheel level. */
+	private static final int LEVEL_BITS = 6;
+	/** Slots per wheel level. */
+	private static final int LEVEL_SLOTS = 1 << LEVEL_BITS;
+	/** Slot index mask. */
+	private static final int LEVEL_MASK = LEVEL_SLOTS - 1;
+	/** Amount of wheel levels. */
+	private static final int LEVELS = 4;
+	/** Maximum amount of ticks ahead that an entry can be scheduled. */
+	private static final long MAX_TICKS = (1L << (LEVEL_BITS * LEVELS)) - 1;
+
+	/** Index of key to entry. */
+	private OpenHashMap<K, Entry<K, V>> index;
+	/** Wheel slots, by level, then slot. */
+	private Entry<K, V>[][] wheel;
+	/** Last tick processed by the wheel. */
+	private long wheelTick;
+	/** Amount of entries scheduled on the wheel. */
+	private int scheduled;
+	/** Tick length in milliseconds. */
+	private long tickMillis;
+	/** Default time-to-live in milliseconds. */
+	private long defaultTTL;
+	/** Clock origin. */
+	private long originNanos;
+	/** Expiration listener. Can be null. */
+	private ExpirationListener<? super K, ? super V> expirationListener;
+
+	/** Cache hit count. */
+	private long hitCount;
+	/** Cache miss count. */
+	private long missCount;
+	/** Expiration count. */
+	private long expirationCount;
+	/** Sweep count. */
+	private long sweepCount;
+
+	/**
+	 * Creates a new expiring map with the default tick length.
+	 * @param defaultTTL the default time-to-live of entries in milliseconds. 0 or less means that entries do not expire by default.
+	 */
+	public ExpiringHashMap(long defaultTTL)
+	{
+		this(defaultTTL, DEFAULT_TICK_MILLIS);
+	}
+
+	/**
+	 * Creates a new expiring map.
+	 * Entries can be scheduled up to 2^24 ticks ahead on the wheel; entries that expire
+	 * later than that are rescheduled when their time gets close.
+	 * @param defaultTTL the default time-to-live of entries in milliseconds. 0 or less means that entries do not expire by default.
+	 * @param tickMillis the length of a wheel tick in milliseconds (the precision of sweeps).
+	 * @throws IllegalArgumentException if tickMillis is 0 or less.
+	 */
+	@SuppressWarnings("unchecked")
+	public ExpiringHashMap(long defaultTTL, long tickMillis)
+	{
+		if (tickMillis <= 0)
+			throw new IllegalArgumentException("Tick length can't be 0 or less.");
+		this.index = new OpenHashMap<K, Entry<K, V>>();
+		this.wheel = (Entry<K, V>[][])new Entry<?, ?>[LEVELS][LEVEL_SLOTS];
+		this.wheelTick = 0L;
+		this.scheduled = 0;
+		this.tickMillis = tickMillis;
+		this.defaultTTL = defaultTTL;
+		this.originNanos = System.nanoTime();
+		this.expirationListener = null;
+		resetStatistics();
+	}
+
+	/**
+	 * Returns the current time used for expiring entries.
+	 * By default, this is the amount of milliseconds on a monotonic clock since this map was created.
+	 * Subclasses may override this to use a different clock; it must never go backwards.
+	 * @return the current time in milliseconds.
+	 */
+	protected long getTimeMillis()
+	{
+		return (System.nanoTime() - originNanos) / 1000000L;
+	}
+
+	/**
+	 * @return the default time-to-live of entries in milliseconds. 0 or less means that entries do not expire by default.
+	 */
+	public synchronized long getDefaultTTL()
+	{
+		return defaultTTL;
+	}
+
+	/**
+	 * Sets the default time-to-live of entries added after this is called.
+	 * @param defaultTTL the default time-to-live in milliseconds. 0 or less means that entries do not expire by default.
+	 */
+	public synchronized void setDefaultTTL(long defaultTTL)
+	{
+		this.defaultTTL = defaultTTL;
+	}
+
+	/**
+	 * @return the length of a wheel tick in milliseconds.
+	 */
+	public long getTickMillis()
+	{
+		return tickMillis;
+	}
+
+	/**
+	 * Sets the listener that is called when entries expire.
+	 * It is called while the lock on this map is held.
+	 * @param expirationListener the listener to use, or null for no listener.
+	 */
+	public synchronized void setExpirationListener(ExpirationListener<? super K, ? super V> expirationListener)
+	{
+		this.expirationListener = expirationListener;
+	}
+
+	/**
+	 * @return the amount of calls to {@link #get(Object)} that found an entry.
+	 */
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * @return the amount of calls to {@link #get(Object)} that did not find an entry (including expired entries).
+	 */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * @return the amount of entries that expired, whether they were removed on lookup or by a sweep.
+	 */
+	public synchronized long getExpirationCount()
+	{
+		return expirationCount;
+	}
+
+	/**
+	 * @return the amount of calls to {@link #sweep()}.
+	 */
+	public synchronized long getSweepCount()
+	{
+		return sweepCount;
+	}
+
+	/**
+	 * Resets the hit, miss, expiration and sweep counts to 0.
+	 */
+	public synchronized void resetStatistics()
+	{
+		hitCount = 0L;
+		missCount = 0L;
+		expirationCount = 0L;
+		sweepCount = 0L;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map, using the default time-to-live.
+	 * Replacing an entry restarts its time-to-live.
+	 * @param key the key associated with a value.
+	 * @param value the value associated with the provided key.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public synchronized void put(K key, V value)
+	{
+		put(key, value, defaultTTL);
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map, with a time-to-live.
+	 * Replacing an entry restarts its time-to-live.
+	 * @param key the key associated with a value.
+	 * @param value the value associated with the provided key.
+	 * @param ttl the time-to-live of the entry in milliseconds. 0 or less means that the entry does not expire.
+	 * @throws NullPointerException if key is null.
+	 */
+	public synchronized void put(K key, V value, long ttl)
+	{
+		if (key == null)
+			throw new NullPointerException("Expiring maps cannot contain null keys.");
+
+		Entry<K, V> entry = index.get(key);
+		if (entry != null)
+		{
+			unschedule(entry);
+			entry.value = value;
+		}
+		else
+		{
+			entry = new Entry<K, V>(key, value);
+			index.put(key, entry);
+		}
+		entry.ttl = ttl;
+		start(entry, getTimeMillis());
+	}
+
+	/**
+	 * Restarts the time-to-live of an entry, as though it were just added.
+	 * @param key the key of the entry.
+	 * @return true if the entry was found and refreshed, false if it is not in the map or expired.
+	 */
+	public synchronized boolean refresh(K key)
+	{
+		long now = getTimeMillis();
+		Entry<K, V> entry = getLiveEntry(key, now);
+		if (entry == null)
+			return false;
+		unschedule(entry);
+		start(entry, now);
+		return true;
+	}
+
+	/**
+	 * Returns the amount of time left before an entry expires.
+	 * @param key the key of the entry.
+	 * @return the time left in milliseconds, 0 if the entry is not in the map or expired,
+	 * or {@link Long#MAX_VALUE} if the entry does not expire.
+	 */
+	public synchronized long getTimeToLive(K key)
+	{
+		long now = getTimeMillis();
+		Entry<K, V> entry = getLiveEntry(key, now);
+		if (entry == null)
+			return 0L;
+		return entry.expireTime == Long.MAX_VALUE ? Long.MAX_VALUE : entry.expireTime - now;
+	}
+
+	/**
+	 * Gets the value associated with a key, if it has not expired.
+	 * This counts a hit or a miss.
+	 * @return the associated value, or null if the key is not in the map or expired.
+	 */
+	@Override
+	public synchronized V get(K key)
+	{
+		Entry<K, V> entry = getLiveEntry(key, getTimeMillis());
+		if (entry == null)
+		{
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return entry.value;
+	}
+
+	/**
+	 * Checks if a key is present in the map, and has not expired.
+	 * This does not count as a hit or a miss.
+	 */
+	@Override
+	public synchronized boolean containsKey(K key)
+	{
+		return getLiveEntry(key, getTimeMillis()) != null;
+	}
+
+	/**
+	 * Removes a value from this map using a key.
+	 * This is not counted as an expiration.
+	 * @return the removed value, or null if the key is not in the map or expired.
+	 */
+	@Override
+	public synchronized V removeUsingKey(K key)
+	{
+		Entry<K, V> entry = getLiveEntry(key, getTimeMillis());
+		if (entry == null)
+			return null;
+		removeEntry(entry);
+		return entry.value;
+	}
+
+	/**
+	 * Removes all expired entries. The wheel advances to the current time,
+	 * and only the slots of the passed ticks are visited.
+	 * @return the amount of entries removed.
+	 */
+	public synchronized int sweep()
+	{
+		sweepCount++;
+		long now = getTimeMillis();
+		long nowTick = now / tickMillis;
+		if (scheduled == 0)
+		{
+			if (nowTick > wheelTick)
+				wheelTick = nowTick;
+			return 0;
+		}
+
+		int out = 0;
+		while (wheelTick < nowTick)
+		{
+			long t = ++wheelTick;
+			// move entries down from coarser levels whose slots are now due.
+			for (int level = 1; level < LEVELS && (t & ((1L << (LEVEL_BITS * level)) - 1)) == 0; level++)
+				cascade(level, (int)((t >>> (LEVEL_BITS * level)) & LEVEL_MASK));
+
+			int slot = (int)(t & LEVEL_MASK);
+			Entry<K, V> entry = wheel[0][slot];
+			wheel[0][slot] = null;
+			while (entry != null)
+			{
+				Entry<K, V> next = entry.next;
+				entry.level = -1;
+				entry.prev = null;
+				entry.next = null;
+				scheduled--;
+				if (entry.expireTime <= now)
+				{
+					expireEntry(entry);
+					out++;
+				}
+				else
+					schedule(entry);
+				entry = next;
+			}
+
+			if (scheduled == 0)
+				wheelTick = nowTick;
+		}
+		return out;
+	}
+
+	/**
+	 * Creates a ticker that calls {@link #sweep()} on this map.
+	 * The ticker is not started.
+	 * @param sweepsPerSecond the amount of sweeps per second.
+	 * @return a new ticker.
+	 */
+	public Ticker createSweeper(int sweepsPerSecond)
+	{
+		return new Ticker("ExpiringHashMap-Sweeper", sweepsPerSecond)
+		{
+			@Override
+			public void doTick(long tick)
+			{
+				sweep();
+			}
+		};
+	}
+
+	/**
+	 * Clears the contents of this map. This is not counted as an expiration.
+	 */
+	public synchronized void clear()
+	{
+		index.clear();
+		for (int level = 0; level < LEVELS; level++)
+			for (int slot = 0; slot < LEVEL_SLOTS; slot++)
+				wheel[level][slot] = null;
+		scheduled = 0;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map, using the key and value of a pair.
+	 * The pair itself is not stored.
+	 */
+	@Override
+	public synchronized void put(ObjectPair<K, V> pair)
+	{
+		put(pair.getKey(), pair.getValue());
+	}
+
+	/**
+	 * Checks if the key of a pair (by equality) is present in the map, and has not expired.
+	 */
+	@Override
+	public synchronized boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	/**
+	 * Removes the entry that uses the key of a pair.
+	 */
+	@Override
+	public synchronized boolean remove(ObjectPair<K, V> pair)
+	{
+		Entry<K, V> entry = getLiveEntry(pair.getKey(), getTimeMillis());
+		if (entry == null)
+			return false;
+		removeEntry(entry);
+		return true;
+	}
+
+	/**
+	 * Returns the amount of entries in this map, including expired entries that were not removed yet.
+	 * Call {@link #sweep()} first for a more accurate count.
+	 */
+	@Override
+	public synchronized int size()
+	{
+		return index.size();
+	}
+
+	@Override
+	public synchronized boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	/**
+	 * Copies the entries that have not expired into an array.
+	 */
+	@Override
+	public synchronized void toArray(ObjectPair<K, V>[] out)
+	{
+		List<ObjectPair<K, V>> list = snapshot();
+		for (int i = 0; i < list.size() && i < out.length; i++)
+			out[i] = list.getByIndex(i);
+	}
+
+	/**
+	 * Copies the keys of the entries that have not expired into an array.
+	 */
+	@Override
+	public synchronized void toArrayKeys(K[] out)
+	{
+		List<ObjectPair<K, V>> list = snapshot();
+		for (int i = 0; i < list.size() && i < out.length; i++)
+			out[i] = list.getByIndex(i).getKey();
+	}
+
+	/**
+	 * Copies the values of the entries that have not expired into an array.
+	 */
+	@Override
+	public synchronized void toArrayValues(V[] out)
+	{
+		List<ObjectPair<K, V>> list = snapshot();
+		for (int i = 0; i < list.size() && i < out.length; i++)
+			out[i] = list.getByIndex(i).getValue();
+	}
+
+	/**
+	 * Returns an iterator through a snapshot of the entries in this map that have not expired.
+	 * Removing through the iterator removes the entry from this map.
+	 */
+	@Override
+	public synchronized ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new SnapshotIterator(snapshot());
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return snapshot().toString();
+	}
+
+	// Copies the entries that have not expired.
+	private List<ObjectPair<K, V>> snapshot()
+	{
+		long now = getTimeMillis();
+		List<ObjectPair<K, V>> out = new List<ObjectPair<K, V>>(index.size());
+		ResettableIterator<Entry<K, V>> it = index.valueIterator();
+		while (it.hasNext())
+		{
+			Entry<K, V> entry = it.next();
+			if (entry.expireTime > now)
+				out.add(new ObjectPair<K, V>(entry.key, entry.value));
+		}
+		return out;
+	}
+
+	// Gets an entry, expiring it if its time has passed.
+	private Entry<K, V> getLiveEntry(K key, long now)
+	{
+		Entry<K, V> entry = index.get(key);
+		if (entry == null)
+			return null;
+		if (entry.expireTime <= now)
+		{
+			unschedule(entry);
+			expireEntry(entry);
+			return null;
+		}
+		return entry;
+	}
+
+	// Removes an entry.
+	private void removeEntry(Entry<K, V> entry)
+	{
+		unschedule(entry);
+		index.removeUsingKey(entry.key);
+	}
+
+	// Removes an unscheduled entry as expired.
+	private void expireEntry(Entry<K, V> entry)
+	{
+		index.removeUsingKey(entry.key);
+		expirationCount++;
+		if (expirationListener != null)
+			expirationListener.onExpiration(entry.key, entry.value);
+	}
+
+	// Starts an entry's time-to-live, and schedules it.
+	private void start(Entry<K, V> entry, long now)
+	{
+		if (entry.ttl <= 0 || entry.ttl >= Long.MAX_VALUE - now)
+			entry.expireTime = Long.MAX_VALUE;
+		else
+		{
+			entry.expireTime = now + entry.ttl;
+			// an empty wheel can skip ahead, so the next sweep does not visit idle ticks.
+			if (scheduled == 0)
+				wheelTick = Math.max(wheelTick, now / tickMillis);
+			schedule(entry);
+		}
+	}
+
+	// Moves the entries in a wheel slot to finer levels.
+	private void cascade(int level, int slot)
+	{
+		Entry<K, V> entry = wheel[level][slot];
+		wheel[level][slot] = null;
+		while (entry != null)
+		{
+			Entry<K, V> next = entry.next;
+			entry.level = -1;
+			entry.prev = null;
+			entry.next = null;
+			scheduled--;
+			schedule(entry);
+			entry = next;
+		}
+	}
+
+	// Schedules an entry on the wheel, in the slot for the tick after it expires.
+	private void schedule(Entry<K, V> entry)
+	{
+		long tick = entry.expireTime / tickMillis + 1;
+		long delta = tick - wheelTick;
+		if (delta < 0)
+		{
+			tick = wheelTick;
+			delta = 0;
+		}
+		else if (delta > MAX_TICKS)
+		{
+			// too far ahead - it is rescheduled when this slot cascades.
+			tick = wheelTick + MAX_TICKS;
+			delta = MAX_TICKS;
+		}
+
+		int level = 0;
+		while (delta >= (1L << (LEVEL_BITS * (level + 1))))
+			level++;
+		int slot = (int)((tick >>> (LEVEL_BITS * level)) & LEVEL_MASK);
+
+		entry.level = level;
+		entry.slot = slot;
+		entry.prev = null;
+		entry.next = wheel[level][slot];
+		if (entry.next != null)
+			entry.next.prev = entry;
+		wheel[level][slot] = entry;
+		scheduled++;
+	}
+
+	// Removes an entry from the wheel, if it is scheduled.
+	private void unschedule(Entry<K, V> entry)
+	{
+		if (entry.level < 0)
+			return;
+		if (entry.prev != null)
+			entry.prev.next = entry.next;
+		else
+			wheel[entry.level][entry.slot] = entry.next;
+		if (entry.next != null)
+			entry.next.prev = entry.prev;
+		entry.level = -1;
+		entry.prev = null;
+		entry.next = null;
+		scheduled--;
+	}
+
+	/**
+	 * Listens for expired entries.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 */
+	public static interface ExpirationListener<K extends Object, V extends Object>
+	{
+		/**
+		 * Called after an expired entry is removed from the map.
+		 * @param key the entry key.
+		 * @param value the entry value.
+		 */
+		public void onExpiration(K key, V value);
+	}
+
+	/**
+	 * A single entry.
+	 */
+	private static class Entry<K, V>
+	{
+		private final K key;
+		private V value;
+		private long ttl;
+		private long expireTime;
+		private int level;
+		private int slot;
+		private Entry<K, V> prev;
+		private Entry<K, V> next;
+
+		private Entry(K key, V value)
+		{
+			this.key = key;
+			this.value = value;
+			this.ttl = 0L;
+			this.expireTime = Long.MAX_VALUE;
+			this.level = -1;
+			this.slot = -1;
+			this.prev = null;
+			this.next = null;
+		}
+	}
+
+	/**
+	 * Iterator through a snapshot of the entries.
+	 */
+	private class SnapshotIterator implements ResettableIterator<ObjectPair<K, V>>
+	{
+		private List<ObjectPair<K, V>> list;
+		private int cur;
+		private boolean removed;
+
+		private SnapshotIterator(List<ObjectPair<K, V>> list)
+		{
+			this.list = list;
+			reset();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return cur + 1 < list.size();
+		}
+
+		@Override
+		public ObjectPair<K, V> next()
+		{
+			removed = false;
+			return list.getByIndex(++cur);
+		}
+
+		@Override
+		public void remove()
+		{
+			if (cur < 0 || removed)
+				throw new IllegalStateException("remove() called before next()");
+			removeUsingKey(list.getByIndex(cur).getKey());
+			removed = true;
+		}
+
+		@Override
+		public void reset()
+		{
+			cur = -1;
+			removed = false;
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractSet;
+import com.blackrook.commons.HashStrategy;
+import com.blackrook.commons.ResettableIterator;
+
+/**
+ * An immutable hash set, built once from a set of objects.
+ * The objects are placed with a minimal perfect hash function - see {@link FrozenHashMap} for details.
+ * <p>
+ * Since this set can't change after it is built, it is safe to share across threads without locks.
+ * Methods that would change the set throw {@link UnsupportedOperationException}.
+ * This structure cannot store null objects.
+ * @author Matthew Tropiano
+ * @param <T> an Object type.
+ * @since 2.33.0
+ * @see Hash#freeze()
+ */
+public class FrozenHash<T extends Object> implements AbstractSet<T>
+{
+	/** The underlying key-only map. */
+	private final FrozenHashMap<T, Object> map;
+
+	/**
+	 * Creates a new frozen set from a copy of a set, using the objects' own hashcodes and equality.
+	 * @param <T> the object type.
+	 * @param set the source set.
+	 * @return a new frozen set.
+	 * @throws NullPointerException if an object is null.
+	 */
+	public static <T> FrozenHash<T> copyOf(AbstractSet<T> set)
+	{
+		return copyOf(set, null);
+	}
+
+	/**
+	 * Creates a new frozen set from a copy of a set.
+	 * If two objects in the source set are equal according to the provided strategy, only one is kept.
+	 * @param <T> the object type.
+	 * @param set the source set.
+	 * @param hashStrategy the strategy for hashcodes and equality, or null for the objects' own methods.
+	 * @return a new frozen set.
+	 * @throws NullPointerException if an object is null.
+	 */
+	public static <T> FrozenHash<T> copyOf(AbstractSet<T> set, HashStrategy<? super T> hashStrategy)
+	{
+		Object[] objects = new Object[set.size()];
+		int i = 0;
+		for (T object : set)
+			objects[i++] = object;
+		return new FrozenHash<T>(objects, i, hashStrategy);
+	}
+
+	/**
+	 * Creates a new frozen set from objects.
+	 * If two objects are equal according to the provided strategy, only one is kept.
+	 * @param <T> the object type.
+	 * @param hashStrategy the strategy for hashcodes and equality, or null for the objects' own methods.
+	 * @param objects the objects.
+	 * @return a new frozen set.
+	 * @throws NullPointerException if an object is null.
+	 */
+	@SafeVarargs
+	public static <T> FrozenHash<T> of(HashStrategy<? super T> hashStrategy, T ... objects)
+	{
+		Object[] copy = new Object[objects.length];
+		for (int i = 0; i < objects.length; i++)
+			copy[i] = objects[i];
+		return new FrozenHash<T>(copy, copy.length, hashStrategy);
+	}
+
+	private FrozenHash(Object[] objects, int count, HashStrategy<? super T> hashStrategy)
+	{
+		this.map = new FrozenHashMap<T, Object>(objects, null, count, hashStrategy);
+	}
+
+	/**
+	 * Checks if an object (by equality) is present in the set.
+	 * @throws NullPointerException if object is null.
+	 */
+	@Override
+	public boolean contains(T object)
+	{
+		return map.containsKey(object);
+	}
+
+	/**
+	 * Frozen sets can't be changed.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void put(T object)
+	{
+		throw new UnsupportedOperationException("Frozen sets can't be changed.");
+	}
+
+	/**
+	 * Frozen sets can't be changed.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public boolean remove(T object)
+	{
+		throw new UnsupportedOperationException("Frozen sets can't be changed.");
+	}
+
+	@Override
+	public int size()
+	{
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return map.isEmpty();
+	}
+
+	@Override
+	public void toArray(T[] out)
+	{
+		map.toArrayKeys(out);
+	}
+
+	/**
+	 * Returns an iterator through the objects in this set, in no particular order.
+	 * The iterator's remove() method throws {@link UnsupportedOperationException}.
+	 */
+	@Override
+	public ResettableIterator<T> iterator()
+	{
+		return map.keyIterator();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (T object : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(object);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,619 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import java.util.Arrays;
+
+import com.blackrook.commons.AbstractMap;
+import com.blackrook.commons.HashStrategy;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+
+/**
+ * An immutable hash map, built once from a set of [key, value] pairs.
+ * <p>
+ * The keys are placed with a minimal perfect hash function (in the style of "hash, displace and compress"):
+ * keys are split into small buckets by hashcode, and each bucket gets a displacement seed that
+ * sends its keys to distinct slots. There are as many slots as keys, and no chains, so a lookup is
+ * two array reads, one hash calculation, and one key comparison. Keys whose hashcodes are equal
+ * to other keys' hashcodes can't be separated by hashing, and are kept in a small sorted overflow
+ * area that is binary-searched if the first comparison fails.
+ * Building the table takes longer than filling a {@link HashMap} (on the order of a microsecond per key),
+ * so this is meant for tables that are built once and read many times.
+ * <p>
+ * Since this map can't change after it is built, it is safe to share across threads without locks.
+ * Methods that would change the map throw {@link UnsupportedOperationException}.
+ * This structure cannot store null keys.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ * @see HashMap#freeze()
+ */
+public class FrozenHashMap<K extends Object, V extends Object> implements AbstractMap<K, V>
+{
+	/** Average amount of keys per bucket. */
+	private static final int BUCKET_SIZE = 4;
+	/** Maximum amount of seeds tried for a bucket before using more buckets. */
+	private static final int MAX_SEED_TRIES = 1 << 16;
+
+	/** Hashing strategy for the keys, or null for the keys' own methods. */
+	private final HashStrategy<? super K> keyHashStrategy;
+	/** Bucket seeds. A negative seed <i>s</i> means that the bucket's only key is in slot <code>-s - 1</code>. */
+	private final int[] seeds;
+	/** Keys. The first {@link #slotCount} are in perfect hash slots, the rest are in the overflow area, by hashcode. */
+	private final Object[] keys;
+	/** Values, at the same indices as the keys, or null if this only holds keys. */
+	private final Object[] values;
+	/** Amount of keys placed in perfect hash slots. */
+	private final int slotCount;
+	/** Hashcodes of the keys in the overflow area, sorted, or null if there are none. */
+	private final int[] overflowHashes;
+
+	/**
+	 * Creates a new frozen map from a copy of a map, using the keys' own hashcodes and equality.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 * @param map the source map.
+	 * @return a new frozen map.
+	 * @throws NullPointerException if a key is null.
+	 */
+	public static <K, V> FrozenHashMap<K, V> copyOf(AbstractMap<K, V> map)
+	{
+		return copyOf(map, null);
+	}
+
+	/**
+	 * Creates a new frozen map from a copy of a map.
+	 * If two keys in the source map are equal according to the provided strategy, the last one found is kept.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 * @param map the source map.
+	 * @param keyHashStrategy the strategy for key hashcodes and equality, or null for the keys' own methods.
+	 * @return a new frozen map.
+	 * @throws NullPointerException if a key is null.
+	 */
+	public static <K, V> FrozenHashMap<K, V> copyOf(AbstractMap<K, V> map, HashStrategy<? super K> keyHashStrategy)
+	{
+		Object[] keys = new Object[map.size()];
+		Object[] values = new Object[map.size()];
+		int i = 0;
+		for (ObjectPair<K, V> pair : map)
+		{
+			keys[i] = pair.getKey();
+			values[i] = pair.getValue();
+			i++;
+		}
+		return new FrozenHashMap<K, V>(keys, values, i, keyHashStrategy);
+	}
+
+	/**
+	 * Creates a new frozen map.
+	 * The provided arrays are not kept.
+	 * @param keys the keys.
+	 * @param values the values, or null if this only holds keys.
+	 * @param count the amount of keys to use from the start of the arrays.
+	 * @param keyHashStrategy the strategy for key hashcodes and equality, or null for the keys' own methods.
+	 * @throws NullPointerException if a key is null.
+	 */
+	FrozenHashMap(Object[] keys, Object[] values, int count, HashStrategy<? super K> keyHashStrategy)
+	{
+		this.keyHashStrategy = keyHashStrategy;
+
+		// sort by hashcode, so that keys with equal hashcodes are adjacent.
+		long[] order = new long[count];
+		for (int i = 0; i < count; i++)
+			order[i] = ((long)getHashcodeForKey(FrozenHashMap.<K>keyAt(keys, i)) << 32) | i;
+		Arrays.sort(order);
+
+		// split the keys into unique hashcodes and overflow, dropping equal keys (the last one wins).
+		int[] unique = new int[count];
+		int uniqueCount = 0;
+		int[] overflow = new int[count];
+		int overflowCount = 0;
+		int start = 0;
+		while (start < count)
+		{
+			int hash = (int)(order[start] >> 32);
+			int end = start + 1;
+			while (end < count && (int)(order[end] >> 32) == hash)
+				end++;
+
+			boolean first = true;
+			for (int i = start; i < end; i++)
+			{
+				int index = (int)order[i];
+				boolean duplicate = false;
+				for (int j = i + 1; !duplicate && j < end; j++)
+					duplicate = equalityMethodForKey(FrozenHashMap.<K>keyAt(keys, index), FrozenHashMap.<K>keyAt(keys, (int)order[j]));
+				if (duplicate)
+					continue;
+				if (first)
+					unique[uniqueCount++] = index;
+				else
+					overflow[overflowCount++] = index;
+				first = false;
+			}
+			start = end;
+		}
+
+		int[] hashes = new int[uniqueCount];
+		for (int i = 0; i < uniqueCount; i++)
+			hashes[i] = getHashcodeForKey(FrozenHashMap.<K>keyAt(keys, unique[i]));
+
+		int[] slots = new int[uniqueCount];
+		int[] seeds;
+		int bucketCount = Math.max(1, (uniqueCount + BUCKET_SIZE - 1) / BUCKET_SIZE);
+		while ((seeds = placeKeys(hashes, bucketCount, slots)) == null)
+			bucketCount *= 2;
+
+		int size = uniqueCount + overflowCount;
+		this.seeds = seeds;
+		this.slotCount = uniqueCount;
+		this.keys = new Object[size];
+		this.values = values != null ? new Object[size] : null;
+		for (int i = 0; i < uniqueCount; i++)
+		{
+			this.keys[slots[i]] = keys[unique[i]];
+			if (values != null)
+				this.values[slots[i]] = values[unique[i]];
+		}
+		// overflow was filled in hashcode order.
+		this.overflowHashes = overflowCount > 0 ? new int[overflowCount] : null;
+		for (int i = 0; i < overflowCount; i++)
+		{
+			this.keys[uniqueCount + i] = keys[overflow[i]];
+			if (values != null)
+				this.values[uniqueCount + i] = values[overflow[i]];
+			this.overflowHashes[i] = getHashcodeForKey(FrozenHashMap.<K>keyAt(keys, overflow[i]));
+		}
+	}
+
+	// Finds bucket seeds that send every hashcode to a distinct slot. Returns null on failure.
+	private static int[] placeKeys(int[] hashes, int bucketCount, int[] slots)
+	{
+		int n = hashes.length;
+		int[] seeds = new int[bucketCount];
+		if (n == 0)
+			return seeds;
+
+		// group hashcode indices by bucket.
+		int[] bucketStart = new int[bucketCount + 1];
+		for (int i = 0; i < n; i++)
+			bucketStart[bucketIndex(hashes[i], bucketCount) + 1]++;
+		int maxBucketSize = 0;
+		for (int b = 0; b < bucketCount; b++)
+		{
+			maxBucketSize = Math.max(maxBucketSize, bucketStart[b + 1]);
+			bucketStart[b + 1] += bucketStart[b];
+		}
+		int[] members = new int[n];
+		int[] fill = Arrays.copyOf(bucketStart, bucketCount);
+		for (int i = 0; i < n; i++)
+			members[fill[bucketIndex(hashes[i], bucketCount)]++] = i;
+
+		// order buckets by size, largest first.
+		int[] sizeStart = new int[maxBucketSize + 2];
+		for (int b = 0; b < bucketCount; b++)
+			sizeStart[maxBucketSize - (bucketStart[b + 1] - bucketStart[b]) + 1]++;
+		for (int s = 0; s <= maxBucketSize; s++)
+			sizeStart[s + 1] += sizeStart[s];
+		int[] bucketOrder = new int[bucketCount];
+		for (int b = 0; b < bucketCount; b++)
+			bucketOrder[sizeStart[maxBucketSize - (bucketStart[b + 1] - bucketStart[b])]++] = b;
+
+		boolean[] taken = new boolean[n];
+		int[] trySlots = new int[maxBucketSize];
+		int nextFree = 0;
+		for (int o = 0; o < bucketCount; o++)
+		{
+			int b = bucketOrder[o];
+			int bStart = bucketStart[b];
+			int bSize = bucketStart[b + 1] - bStart;
+			if (bSize == 0)
+				break;
+
+			if (bSize == 1)
+			{
+				// single keys go straight into free slots.
+				while (taken[nextFree])
+					nextFree++;
+				taken[nextFree] = true;
+				slots[members[bStart]] = nextFree;
+				seeds[b] = -nextFree - 1;
+				continue;
+			}
+
+			int seed = 0;
+			boolean placed = false;
+			for (; !placed && seed < MAX_SEED_TRIES; seed++)
+			{
+				placed = true;
+				for (int k = 0; placed && k < bSize; k++)
+				{
+					int slot = slotIndex(hashes[members[bStart + k]], seed, n);
+					if (taken[slot])
+						placed = false;
+					for (int j = 0; placed && j < k; j++)
+						placed = trySlots[j] != slot;
+					trySlots[k] = slot;
+				}
+			}
+			if (!placed)
+				return null;
+
+			seeds[b] = seed - 1;
+			for (int k = 0; k < bSize; k++)
+			{
+				taken[trySlots[k]] = true;
+				slots[members[bStart + k]] = trySlots[k];
+			}
+		}
+		return seeds;
+	}
+
+	// Gets the bucket index for a hashcode.
+	private static int bucketIndex(int hashcode, int bucketCount)
+	{
+		int h = hashcode * 0x9E3779B9;
+		h ^= h >>> 16;
+		return (int)(((h & 0xFFFFFFFFL) * bucketCount) >>> 32);
+	}
+
+	// Gets the slot index for a hashcode and a bucket seed.
+	private static int slotIndex(int hashcode, int seed, int slotCount)
+	{
+		int h = hashcode + seed * 0x61C88647;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return (int)(((h & 0xFFFFFFFFL) * slotCount) >>> 32);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K> K keyAt(Object[] keys, int index)
+	{
+		return (K)keys[index];
+	}
+
+	/**
+	 * Calculates the hash code for an object key.
+	 * This uses the key hash strategy, if set, or else {@link Object#hashCode()}.
+	 * @param key the key object to use.
+	 * @return the resultant code to use for table lookups.
+	 */
+	private int getHashcodeForKey(K key)
+	{
+		return keyHashStrategy != null ? keyHashStrategy.hashCode(key) : key.hashCode();
+	}
+
+	/**
+	 * Checks if two keys are equal.
+	 * This uses the key hash strategy, if set, or else {@link Object#equals(Object)}.
+	 * @param key1 the first key.
+	 * @param key2 the second key.
+	 * @return true if the keys are considered equal, false otherwise.
+	 */
+	private boolean equalityMethodForKey(K key1, K key2)
+	{
+		return keyHashStrategy != null ? keyHashStrategy.equals(key1, key2) : key1.equals(key2);
+	}
+
+	/**
+	 * Finds the index of a key.
+	 * @param key the key.
+	 * @return the index in the key array, or -1 if the key is not in this map.
+	 */
+	private int getIndexOfKey(K key)
+	{
+		int hash = getHashcodeForKey(key);
+		if (slotCount > 0)
+		{
+			int seed = seeds[bucketIndex(hash, seeds.length)];
+			int slot = seed < 0 ? -seed - 1 : slotIndex(hash, seed, slotCount);
+			if (equalityMethodForKey(FrozenHashMap.<K>keyAt(keys, slot), key))
+				return slot;
+		}
+		if (overflowHashes == null)
+			return -1;
+
+		int i = Arrays.binarySearch(overflowHashes, hash);
+		if (i < 0)
+			return -1;
+		while (i > 0 && overflowHashes[i - 1] == hash)
+			i--;
+		for (; i < overflowHashes.length && overflowHashes[i] == hash; i++)
+			if (equalityMethodForKey(FrozenHashMap.<K>keyAt(keys, slotCount + i), key))
+				return slotCount + i;
+		return -1;
+	}
+
+	/**
+	 * Gets the value associated with a key.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(K key)
+	{
+		int i = getIndexOfKey(key);
+		return i >= 0 && values != null ? (V)values[i] : null;
+	}
+
+	/**
+	 * Checks if a key (by equality) is present in the map.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public boolean containsKey(K key)
+	{
+		return getIndexOfKey(key) >= 0;
+	}
+
+	/**
+	 * Checks if the key of a pair (by equality) is present in the map.
+	 */
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	/**
+	 * Frozen maps can't be changed.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void put(K key, V value)
+	{
+		throw new UnsupportedOperationException("Frozen maps can't be changed.");
+	}
+
+	/**
+	 * Frozen maps can't be changed.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		throw new UnsupportedOperationException("Frozen maps can't be changed.");
+	}
+
+	/**
+	 * Frozen maps can't be changed.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public V removeUsingKey(K key)
+	{
+		throw new UnsupportedOperationException("Frozen maps can't be changed.");
+	}
+
+	/**
+	 * Frozen maps can't be changed.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		throw new UnsupportedOperationException("Frozen maps can't be changed.");
+	}
+
+	@Override
+	public int size()
+	{
+		return keys.length;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		int i = 0;
+		for (ObjectPair<K, V> pair : this)
+			out[i++] = pair;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void toArrayKeys(K[] out)
+	{
+		System.arraycopy((K[])keys, 0, out, 0, keys.length);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void toArrayValues(V[] out)
+	{
+		if (values != null)
+			System.arraycopy((V[])values, 0, out, 0, values.length);
+		else
+			Arrays.fill(out, 0, keys.length, null);
+	}
+
+	/**
+	 * Returns an iterator through copies of the entries in this map, in no particular order.
+	 * The iterator's remove() method throws {@link UnsupportedOperationException}.
+	 */
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new FrozenIterator<ObjectPair<K, V>>()
+		{
+			@Override
+			@SuppressWarnings("unchecked")
+			public ObjectPair<K, V> next()
+			{
+				int i = cur++;
+				return new ObjectPair<K, V>((K)keys[i], values != null ? (V)values[i] : null);
+			}
+		};
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each key in this map.
+	 * The iterator's remove() method throws {@link UnsupportedOperationException}.
+	 */
+	public ResettableIterator<K> keyIterator()
+	{
+		return new FrozenIterator<K>()
+		{
+			@Override
+			@SuppressWarnings("unchecked")
+			public K next()
+			{
+				return (K)keys[cur++];
+			}
+		};
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each value in this map.
+	 * The iterator's remove() method throws {@link UnsupportedOperationException}.
+	 */
+	public ResettableIterator<V> valueIterator()
+	{
+		return new FrozenIterator<V>()
+		{
+			@Override
+			@SuppressWarnings("unchecked")
+			public V next()
+			{
+				return values != null ? (V)values[cur++] : null;
+			}
+		};
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (ObjectPair<K, V> pair : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(pair);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	/**
+	 * Iterator through the slots of the table.
+	 */
+	private abstract class FrozenIterator<T> implements ResettableIterator<T>
+	{
+		/** Next index. */
+		protected int cur;
+
+		private FrozenIterator()
+		{
+			reset();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return cur < keys.length;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Frozen maps can't be changed.");
+		}
+
+		@Override
+		public void reset()
+		{
+			cur = 0;
+		}
+	}
+
+	/**
+	 * A builder for frozen maps.
+	 * @param <K> the object type that serves as the Key in the map.
+	 * @param <V> the object type that serves as the Value in the map.
+	 */
+	public static class Builder<K extends Object, V extends Object>
+	{
+		/** Keys and values added so far. */
+		private HashMap<K, V> map;
+		/** Hashing strategy for the keys. */
+		private HashStrategy<? super K> keyHashStrategy;
+
+		/**
+		 * Creates a new builder that uses the keys' own hashcodes and equality.
+		 */
+		public Builder()
+		{
+			this(null);
+		}
+
+		/**
+		 * Creates a new builder.
+		 * @param keyHashStrategy the strategy for key hashcodes and equality, or null for the keys' own methods.
+		 */
+		public Builder(HashStrategy<? super K> keyHashStrategy)
+		{
+			this.map = new HashMap<K, V>();
+			this.keyHashStrategy = keyHashStrategy;
+			if (keyHashStrategy != null)
+				map.setKeyHashStrategy(keyHashStrategy);
+		}
+
+		/**
+		 * Adds/replaces a [key, value] pair.
+		 * @param key the key associated with a value.
+		 * @param value the value associated with the provided key.
+		 * @return this builder.
+		 * @throws NullPointerException if key is null.
+		 */
+		public Builder<K, V> put(K key, V value)
+		{
+			if (key == null)
+				throw new NullPointerException("Frozen maps cannot contain null keys.");
+			map.put(key, value);
+			return this;
+		}
+
+		/**
+		 * Adds/replaces all of the pairs in a map.
+		 * @param pairs the pairs to add.
+		 * @return this builder.
+		 * @throws NullPointerException if a key is null.
+		 */
+		public Builder<K, V> putAll(AbstractMap<? extends K, ? extends V> pairs)
+		{
+			for (ObjectPair<? extends K, ? extends V> pair : pairs)
+				put(pair.getKey(), pair.getValue());
+			return this;
+		}
+
+		/**
+		 * Builds a new frozen map from the pairs added so far.
+		 * The builder can still be used afterward.
+		 * @return a new frozen map.
+		 */
+		public FrozenHashMap<K, V> build()
+		{
+			return copyOf(map, keyHashStrategy);
+		}
+	}
+
+}
@@ -8,6 +8,7 @@
 package com.blackrook.commons.hash;
 
 import com.blackrook.commons.AbstractChainedHash;
+import com.blackrook.commons.HashStrategy;
 
 /**
  * Hashed data structure. It stores several objects
@@ -45,6 +46,29 @@ public class Hash<T extends Object> extends AbstractChainedHash<T>
 		super(capacity, rehashRatio);
 	}
 
+	/**
+	 * Sets the strategy used for calculating hashcodes and equality of the objects in this hash,
+	 * for instance, a stronger hash function for objects that may be chosen by an adversary.
+	 * If this hash has contents, it is rehashed using the new strategy.
+	 * @param hashStrategy the strategy to use, or null to use the objects' {@link Object#hashCode()} and {@link Object#equals(Object)}.
+	 * @since 2.33.0
+	 */
+	@Override
+	public void setHashStrategy(HashStrategy<? super T> hashStrategy)
+	{
+		super.setHashStrategy(hashStrategy);
+	}
+
+	/**
+	 * Sorts long chains unless a subclass changes how objects are hashed or compared.
+	 * @since 2.33.0
+	 */
+	@Override
+	protected boolean isChainSortingEnabled()
+	{
+		return isEqualityDefinedBy(Hash.class);
+	}
+
 	/**
 	 * Returns a new Hash that is the union of the objects in two hashes,
 	 * i.e. a set with all objects from both sets.
@@ -140,6 +164,18 @@ public class Hash<T extends Object> extends AbstractChainedHash<T>
 		return (H)out;
 	}
 
+	/**
+	 * Creates an immutable copy of this hash that is compact, fast to read, 
+	 * and safe to share across threads.
+	 * @return a new frozen hash with the same objects, using the same hash strategy.
+	 * @throws NullPointerException if this hash contains null.
+	 * @since 2.33.0
+	 */
+	public FrozenHash<T> freeze()
+	{
+		return FrozenHash.copyOf(this, hashStrategy);
+	}
+
 	@Override
 	public void toArray(T[] out) 
 	{
@@ -45,7 +45,29 @@ public class HashMap<K extends Object, V extends Object> extends AbstractChained
 	{
 		super(capacity, rehashRatio);
 	}
+
+	/**
+	 * Sorts long chains by key, unless a subclass changes how keys are hashed or compared.
+	 * @since 2.33.0
+	 */
+	@Override
+	protected boolean isChainSortingEnabled()
+	{
+		return isEqualityDefinedBy(HashMap.class);
+	}
 	
+	/**
+	 * Creates an immutable copy of this map that is compact, fast to read, 
+	 * and safe to share across threads. The values themselves are not copied.
+	 * @return a new frozen map with the same keys and values, using the same key hash strategy.
+	 * @throws NullPointerException if this map contains a null key.
+	 * @since 2.33.0
+	 */
+	public FrozenHashMap<K, V> freeze()
+	{
+		return FrozenHashMap.copyOf(this, keyHashStrategy);
+	}
+
 	@Override
 	public void toArray(ObjectPair<K, V>[] out)
 	{
@@ -0,0 +1,401 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import com.blackrook.commons.ResettableIntIterator;
+import com.blackrook.commons.Sizable;
+
+/**
+ * Hashed data structure that stores a set of primitive ints.
+ * Values are never boxed, and {@link #put(int)}, {@link #contains(int)}
+ * and {@link #remove(int)} do not allocate any objects (unless the table is expanded).
+ * <p>
+ * The values are stored in a single array, using open addressing (linear probing) to resolve collisions.
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ */
+public class IntHash implements Sizable
+{
+	/** Default capacity for a new hash. */
+	public static final int DEFAULT_CAPACITY = 8;
+	/** Default rehash ratio. */
+	public static final float DEFAULT_REHASH = 0.75f;
+
+	/** Value array. */
+	protected int[] storageArray;
+	/** If true, this contains the value <code>0</code>. */
+	protected boolean containsZero;
+	/** Table index mask. */
+	protected int mask;
+	/** Number of elements in the table. */
+	protected int size;
+	/** Rehashing ratio for rehashing. */
+	protected float rehashRatio;
+
+	/**
+	 * Creates a new hash with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
+	 */
+	public IntHash()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new hash with capacity <i>cap</i> and rehash ratio DEFAULT_REHASH.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 */
+	public IntHash(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new hash.
+	 * @param capacity the capacity. cannot be negative. It is rounded up to the nearest power of two.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded, the table's capacity is expanded, and the table is rehashed.
+	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less, or 1 or greater.
+	 */
+	public IntHash(int capacity, float rehashRatio)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can't 0 or less.");
+		if (rehashRatio <= 0.0f)
+			throw new IllegalArgumentException("Ratio can't be 0 or less.");
+		if (rehashRatio >= 1.0f)
+			throw new IllegalArgumentException("Ratio can't be 1 or greater in an open hash.");
+
+		int tableSize = Math.max(Integer.highestOneBit(capacity - 1) << 1, 2);
+		this.storageArray = new int[tableSize];
+		this.mask = tableSize - 1;
+		this.containsZero = false;
+		this.rehashRatio = rehashRatio;
+		this.size = 0;
+	}
+
+	/**
+	 * Finds the home slot index for a value (the first slot probed).
+	 * @param value the value.
+	 * @return the index at which a search for a value will start.
+	 */
+	protected int getTableIndexFor(int value)
+	{
+		int h = value * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Adds a value to this hash, if it is not already in it.
+	 * @param value the value to add.
+	 * @return true if the value was added, false if it was already in the hash.
+	 */
+	public boolean put(int value)
+	{
+		if (value == 0)
+		{
+			if (containsZero)
+				return false;
+			containsZero = true;
+			size++;
+			return true;
+		}
+
+		int i = getTableIndexFor(value);
+		int k;
+		while ((k = storageArray[i]) != 0)
+		{
+			if (k == value)
+				return false;
+			i = (i + 1) & mask;
+		}
+
+		storageArray[i] = value;
+		size++;
+		if (rehashCheck())
+			rehash();
+		return true;
+	}
+
+	/**
+	 * Checks if a value is present in the hash.
+	 * @param value the value to look for.
+	 * @return true if it is in the hash, false otherwise.
+	 */
+	public boolean contains(int value)
+	{
+		if (value == 0)
+			return containsZero;
+
+		int i = getTableIndexFor(value);
+		int k;
+		while ((k = storageArray[i]) != 0)
+		{
+			if (k == value)
+				return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a value from this hash.
+	 * @param value the value to remove.
+	 * @return true if it was removed from the hash, false otherwise.
+	 */
+	public boolean remove(int value)
+	{
+		if (value == 0)
+		{
+			if (!containsZero)
+				return false;
+			containsZero = false;
+			size--;
+			return true;
+		}
+
+		int i = getTableIndexFor(value);
+		int k;
+		while ((k = storageArray[i]) != 0)
+		{
+			if (k == value)
+			{
+				removeSlot(i, null);
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Clears the contents of this hash.
+	 */
+	public void clear()
+	{
+		if (isEmpty()) return;
+		Arrays.fill(storageArray, 0);
+		containsZero = false;
+		size = 0;
+	}
+
+	/**
+	 * @return true if the table needs to be rehashed, false otherwise.
+	 */
+	protected boolean rehashCheck()
+	{
+		return ((float)size)/(mask + 1) > rehashRatio;
+	}
+
+	/**
+	 * Doubles this table's capacity, and rehashes this table.
+	 */
+	protected void rehash()
+	{
+		int[] oldArray = storageArray;
+		storageArray = new int[oldArray.length * 2];
+		mask = storageArray.length - 1;
+		for (int x = 0; x < oldArray.length; x++)
+		{
+			int value = oldArray[x];
+			if (value == 0)
+				continue;
+			int i = getTableIndexFor(value);
+			while (storageArray[i] != 0)
+				i = (i + 1) & mask;
+			storageArray[i] = value;
+		}
+	}
+
+	/**
+	 * Removes the value in a table slot and shifts the values in the
+	 * following probe run backward to close the gap.
+	 * @param index the slot index to clear.
+	 * @param iterator if not null, values that are shifted from the start of the table
+	 * 		to a slot before the cleared slot are added to this iterator's wrapped list.
+	 */
+	protected void removeSlot(int index, HashIterator iterator)
+	{
+		size--;
+		int gap = index;
+		int i = index;
+		int value;
+		while ((value = storageArray[i = (i + 1) & mask]) != 0)
+		{
+			int home = getTableIndexFor(value);
+			// can move the value back if the gap is cyclically between its home slot and its current slot.
+			if (gap <= i ? (gap >= home || home > i) : (gap >= home && home > i))
+			{
+				if (iterator != null && i < gap)
+					iterator.addWrapped(value);
+				storageArray[gap] = value;
+				gap = i;
+			}
+		}
+		storageArray[gap] = 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	/**
+	 * Copies the values of this hash into an array.
+	 * The order of the contents are not guaranteed.
+	 * @param out the target array to copy the values into.
+	 * @throws ArrayIndexOutOfBoundsException if the target array is too small to contain the values.
+	 */
+	public void toArray(int[] out)
+	{
+		int x = 0;
+		if (containsZero)
+			out[x++] = 0;
+		for (int i = 0; i <= mask; i++)
+			if (storageArray[i] != 0)
+				out[x++] = storageArray[i];
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each value in the hash.
+	 */
+	public ResettableIntIterator iterator()
+	{
+		return new HashIterator();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		ResettableIntIterator it = iterator();
+		while (it.hasNext())
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(it.nextInt());
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	/**
+	 * Iterator for this hash.
+	 * The table is traversed from the end to the beginning, so that values shifted
+	 * backward by {@link #remove()} are not visited twice. Values that wrap around
+	 * the start of the table during a removal are visited at the end.
+	 */
+	protected class HashIterator implements ResettableIntIterator
+	{
+		/** Current slot index. The zero value is at index <code>mask + 1</code>. */
+		protected int currentIndex;
+		/** Index of the last returned slot, or -1 if it was a wrapped value. */
+		protected int lastIndex;
+		/** Last returned value. */
+		protected int lastValue;
+		/** Values that were moved past the traversal by a removal. */
+		protected int[] wrapped;
+		/** Amount of wrapped values. */
+		protected int wrappedCount;
+		/** Index into wrapped values. */
+		protected int wrappedIndex;
+		/** Removed flag. */
+		protected boolean removeFlag;
+
+		public HashIterator()
+		{
+			reset();
+		}
+
+		// Adds a wrapped value.
+		private void addWrapped(int value)
+		{
+			if (wrapped == null)
+				wrapped = new int[2];
+			else if (wrappedCount == wrapped.length)
+				wrapped = Arrays.copyOf(wrapped, wrapped.length * 2);
+			wrapped[wrappedCount++] = value;
+		}
+
+		// Checks if a slot is empty.
+		private boolean isEmptySlot(int index)
+		{
+			return index == mask + 1 ? !containsZero : storageArray[index] == 0;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			while (currentIndex > 0 && isEmptySlot(currentIndex - 1))
+				currentIndex--;
+			return currentIndex > 0 || wrappedIndex < wrappedCount;
+		}
+
+		@Override
+		public int nextInt()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			if (currentIndex > 0)
+			{
+				lastIndex = --currentIndex;
+				lastValue = lastIndex == mask + 1 ? 0 : storageArray[lastIndex];
+			}
+			else
+			{
+				lastIndex = -1;
+				lastValue = wrapped[wrappedIndex++];
+			}
+			removeFlag = false;
+			return lastValue;
+		}
+
+		@Override
+		public void remove()
+		{
+			if (removeFlag)
+				throw new IllegalStateException("remove() called before next()");
+
+			if (lastIndex == mask + 1)
+			{
+				containsZero = false;
+				size--;
+			}
+			else if (lastIndex >= 0)
+				removeSlot(lastIndex, this);
+			else
+				IntHash.this.remove(lastValue);
+			removeFlag = true;
+		}
+
+		@Override
+		public void reset()
+		{
+			removeFlag = true;
+			currentIndex = mask + 2;
+			lastIndex = -1;
+			lastValue = 0;
+			wrapped = null;
+			wrappedCount = 0;
+			wrappedIndex = 0;
+		}
+
+	}
+
+}
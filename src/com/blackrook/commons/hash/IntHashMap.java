@@ -0,0 +1,494 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import com.blackrook.commons.ResettableIntIterator;
+import com.blackrook.commons.ResettableIterator;
+import com.blackrook.commons.Sizable;
+
+/**
+ * Hashed data structure that maps primitive int keys to values.
+ * Keys are never boxed, and {@link #get(int)}, {@link #put(int, Object)}
+ * and {@link #removeUsingKey(int)} do not allocate any objects (unless the table is expanded).
+ * <p>
+ * The keys and values are stored in two parallel arrays, using open addressing (linear probing) to resolve collisions.
+ * @author Matthew Tropiano
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class IntHashMap<V extends Object> implements Sizable
+{
+	/** Default capacity for a new map. */
+	public static final int DEFAULT_CAPACITY = 8;
+	/** Default rehash ratio. */
+	public static final float DEFAULT_REHASH = 0.75f;
+
+	/** Key array. The last slot is reserved for the key <code>0</code>. */
+	protected int[] keyArray;
+	/** Value array, parallel to the key array. */
+	protected Object[] valueArray;
+	/** If true, this contains the key <code>0</code>. */
+	protected boolean containsZeroKey;
+	/** Table index mask. */
+	protected int mask;
+	/** Number of elements in the table. */
+	protected int size;
+	/** Rehashing ratio for rehashing. */
+	protected float rehashRatio;
+
+	/**
+	 * Creates a new map with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
+	 */
+	public IntHashMap()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new map with capacity <i>cap</i> and rehash ratio DEFAULT_REHASH.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 * @throws IllegalArgumentException if capacity is negative.
+	 */
+	public IntHashMap(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new map.
+	 * @param capacity the capacity. cannot be negative. It is rounded up to the nearest power of two.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded,
+	 * the table's capacity is expanded, and the table is rehashed.
+	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less, or 1 or greater.
+	 */
+	public IntHashMap(int capacity, float rehashRatio)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can't 0 or less.");
+		if (rehashRatio <= 0.0f)
+			throw new IllegalArgumentException("Ratio can't be 0 or less.");
+		if (rehashRatio >= 1.0f)
+			throw new IllegalArgumentException("Ratio can't be 1 or greater in an open hash.");
+
+		int tableSize = Math.max(Integer.highestOneBit(capacity - 1) << 1, 2);
+		this.keyArray = new int[tableSize + 1];
+		this.valueArray = new Object[tableSize + 1];
+		this.mask = tableSize - 1;
+		this.containsZeroKey = false;
+		this.rehashRatio = rehashRatio;
+		this.size = 0;
+	}
+
+	/**
+	 * Finds the home slot index for a key (the first slot probed).
+	 * @param key the key.
+	 * @return the index at which a search for a key will start.
+	 */
+	protected int getTableIndexFor(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Finds the slot index that a key occupies.
+	 * @param key the key to use.
+	 * @return the index of the key in the table, or -1 if it is not present.
+	 */
+	protected int getSlotIndexOf(int key)
+	{
+		if (key == 0)
+			return containsZeroKey ? mask + 1 : -1;
+
+		int i = getTableIndexFor(key);
+		int k;
+		while ((k = keyArray[i]) != 0)
+		{
+			if (k == key)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Associates a key to a value in this map.
+	 * If the key is already in the map, its value is replaced with the new value.
+	 * @param key the map key.
+	 * @param value the corresponding value.
+	 */
+	public void put(int key, V value)
+	{
+		if (key == 0)
+		{
+			if (!containsZeroKey)
+			{
+				containsZeroKey = true;
+				size++;
+			}
+			valueArray[mask + 1] = value;
+			return;
+		}
+
+		int i = getTableIndexFor(key);
+		int k;
+		while ((k = keyArray[i]) != 0)
+		{
+			if (k == key)
+			{
+				valueArray[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keyArray[i] = key;
+		valueArray[i] = value;
+		size++;
+		if (rehashCheck())
+			rehash();
+	}
+
+	/**
+	 * Gets the value attached to the provided key.
+	 * @param key the desired key.
+	 * @return the value associated with the key or
+	 * null if no value associated with the provided key.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key)
+	{
+		int i = getSlotIndexOf(key);
+		return i >= 0 ? (V)valueArray[i] : null;
+	}
+
+	/**
+	 * Checks if a key is present in the map.
+	 * @param key the key to use for checking presence.
+	 * @return true if it is in the map, false otherwise.
+	 */
+	public boolean containsKey(int key)
+	{
+		return getSlotIndexOf(key) >= 0;
+	}
+
+	/**
+	 * Removes a value from this map, corresponding to a key.
+	 * @param key the key to use for checking presence.
+	 * @return the corresponding value if it was removed from the map, null otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	public V removeUsingKey(int key)
+	{
+		int i = getSlotIndexOf(key);
+		if (i < 0)
+			return null;
+		V out = (V)valueArray[i];
+		removeSlot(i, null);
+		return out;
+	}
+
+	/**
+	 * Clears the contents of this map.
+	 */
+	public void clear()
+	{
+		if (isEmpty()) return;
+		Arrays.fill(keyArray, 0);
+		Arrays.fill(valueArray, null);
+		containsZeroKey = false;
+		size = 0;
+	}
+
+	/**
+	 * @return true if the table needs to be rehashed, false otherwise.
+	 */
+	protected boolean rehashCheck()
+	{
+		return ((float)size)/(mask + 1) > rehashRatio;
+	}
+
+	/**
+	 * Doubles this table's capacity, and rehashes this table.
+	 */
+	protected void rehash()
+	{
+		int[] oldKeys = keyArray;
+		Object[] oldValues = valueArray;
+		int oldLength = mask + 1;
+		int newLength = oldLength * 2;
+		keyArray = new int[newLength + 1];
+		valueArray = new Object[newLength + 1];
+		mask = newLength - 1;
+		valueArray[newLength] = oldValues[oldLength];
+		for (int x = 0; x < oldLength; x++)
+		{
+			int key = oldKeys[x];
+			if (key == 0)
+				continue;
+			int i = getTableIndexFor(key);
+			while (keyArray[i] != 0)
+				i = (i + 1) & mask;
+			keyArray[i] = key;
+			valueArray[i] = oldValues[x];
+		}
+	}
+
+	/**
+	 * Removes the entry in a table slot and shifts the entries in the
+	 * following probe run backward to close the gap.
+	 * @param index the slot index to clear.
+	 * @param iterator if not null, keys that are shifted from the start of the table
+	 * 		to a slot before the cleared slot are added to this iterator's wrapped list.
+	 */
+	protected void removeSlot(int index, MapIterator iterator)
+	{
+		size--;
+		if (index == mask + 1)
+		{
+			containsZeroKey = false;
+			valueArray[index] = null;
+			return;
+		}
+
+		int gap = index;
+		int i = index;
+		int key;
+		while ((key = keyArray[i = (i + 1) & mask]) != 0)
+		{
+			int home = getTableIndexFor(key);
+			// can move the entry back if the gap is cyclically between its home slot and its current slot.
+			if (gap <= i ? (gap >= home || home > i) : (gap >= home && home > i))
+			{
+				if (iterator != null && i < gap)
+					iterator.addWrapped(key);
+				keyArray[gap] = key;
+				valueArray[gap] = valueArray[i];
+				gap = i;
+			}
+		}
+		keyArray[gap] = 0;
+		valueArray[gap] = null;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	/**
+	 * Copies the keys of this map into an array.
+	 * The order of the contents are not guaranteed.
+	 * @param out the target array to copy the keys into.
+	 * @throws ArrayIndexOutOfBoundsException if the target array is too small to contain the keys.
+	 */
+	public void toArrayKeys(int[] out)
+	{
+		int x = 0;
+		if (containsZeroKey)
+			out[x++] = 0;
+		for (int i = 0; i <= mask; i++)
+			if (keyArray[i] != 0)
+				out[x++] = keyArray[i];
+	}
+
+	/**
+	 * Copies the values of this map into an array.
+	 * The order of the contents are not guaranteed, but are in the same order as {@link #toArrayKeys(int[])}.
+	 * @param out the target array to copy the values into.
+	 * @throws ArrayIndexOutOfBoundsException if the target array is too small to contain the values.
+	 */
+	@SuppressWarnings("unchecked")
+	public void toArrayValues(V[] out)
+	{
+		int x = 0;
+		if (containsZeroKey)
+			out[x++] = (V)valueArray[mask + 1];
+		for (int i = 0; i <= mask; i++)
+			if (keyArray[i] != 0)
+				out[x++] = (V)valueArray[i];
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each key in the map.
+	 */
+	public ResettableIntIterator keyIterator()
+	{
+		return new KeyIterator();
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each value in the map.
+	 */
+	public ResettableIterator<V> valueIterator()
+	{
+		return new ValueIterator();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		ValueIterator it = new ValueIterator();
+		while (it.hasNext())
+		{
+			V value = it.next();
+			if (once)
+				sb.append(", ");
+			sb.append('(').append(it.lastKey).append(", ").append(value).append(')');
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	/**
+	 * Base iterator for this map.
+	 * The table is traversed from the end to the beginning, so that entries shifted
+	 * backward by {@link #remove()} are not visited twice. Entries that wrap around
+	 * the start of the table during a removal are visited at the end.
+	 */
+	protected abstract class MapIterator
+	{
+		/** Current slot index. */
+		protected int currentIndex;
+		/** Index of the last returned slot, or -1 if it was a wrapped entry. */
+		protected int lastIndex;
+		/** Last returned key. */
+		protected int lastKey;
+		/** Keys that were moved past the traversal by a removal. */
+		protected int[] wrapped;
+		/** Amount of wrapped keys. */
+		protected int wrappedCount;
+		/** Index into wrapped keys. */
+		protected int wrappedIndex;
+		/** Removed flag. */
+		protected boolean removeFlag;
+
+		public MapIterator()
+		{
+			reset();
+		}
+
+		// Adds a wrapped key.
+		private void addWrapped(int key)
+		{
+			if (wrapped == null)
+				wrapped = new int[2];
+			else if (wrappedCount == wrapped.length)
+				wrapped = Arrays.copyOf(wrapped, wrapped.length * 2);
+			wrapped[wrappedCount++] = key;
+		}
+
+		// Checks if a slot is empty.
+		private boolean isEmptySlot(int index)
+		{
+			return index == mask + 1 ? !containsZeroKey : keyArray[index] == 0;
+		}
+
+		public boolean hasNext()
+		{
+			while (currentIndex > 0 && isEmptySlot(currentIndex - 1))
+				currentIndex--;
+			return currentIndex > 0 || wrappedIndex < wrappedCount;
+		}
+
+		/**
+		 * Advances this iterator to the next entry.
+		 * @return the next key.
+		 */
+		protected int nextKey()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			if (currentIndex > 0)
+			{
+				lastIndex = --currentIndex;
+				lastKey = lastIndex == mask + 1 ? 0 : keyArray[lastIndex];
+			}
+			else
+			{
+				lastIndex = -1;
+				lastKey = wrapped[wrappedIndex++];
+			}
+			removeFlag = false;
+			return lastKey;
+		}
+
+		/**
+		 * @return the value associated with the last returned key.
+		 */
+		@SuppressWarnings("unchecked")
+		protected V lastValue()
+		{
+			return lastIndex >= 0 ? (V)valueArray[lastIndex] : get(lastKey);
+		}
+
+		public void remove()
+		{
+			if (removeFlag)
+				throw new IllegalStateException("remove() called before next()");
+
+			if (lastIndex >= 0)
+				removeSlot(lastIndex, this);
+			else
+				removeUsingKey(lastKey);
+			removeFlag = true;
+		}
+
+		public void reset()
+		{
+			removeFlag = true;
+			currentIndex = mask + 2;
+			lastIndex = -1;
+			lastKey = 0;
+			wrapped = null;
+			wrappedCount = 0;
+			wrappedIndex = 0;
+		}
+
+	}
+
+	/**
+	 * Iterator for the keys in the map.
+	 */
+	protected class KeyIterator extends MapIterator implements ResettableIntIterator
+	{
+		@Override
+		public int nextInt()
+		{
+			return nextKey();
+		}
+	}
+
+	/**
+	 * Iterator for the values in the map.
+	 */
+	protected class ValueIterator extends MapIterator implements ResettableIterator<V>
+	{
+		@Override
+		public V next()
+		{
+			nextKey();
+			return lastValue();
+		}
+	}
+
+}
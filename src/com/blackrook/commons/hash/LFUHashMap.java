@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractCacheMap;
+
+/**
+ * A cache map that evicts the least-frequently-used entries first.
+ * Among entries with the same amount of accesses, the least-recently-used one is evicted first.
+ * <p>
+ * Entries are grouped in a list of frequency buckets, each holding a list of entries
+ * with the same access count, so that accesses and evictions take O(1) time.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class LFUHashMap<K extends Object, V extends Object> extends AbstractCacheMap<K, V>
+{
+	/** Bucket with the lowest frequency. */
+	private Bucket<K, V> lowest;
+
+	/**
+	 * Creates a new LFU cache map.
+	 * @param capacity the maximum total weight of the entries in this map (the maximum amount of entries, by default).
+	 * @throws IllegalArgumentException if capacity is 0 or less.
+	 */
+	public LFUHashMap(long capacity)
+	{
+		super(capacity);
+		this.lowest = null;
+	}
+
+	/**
+	 * Returns the amount of times that the entry for a key was accessed (including when it was added).
+	 * This does not count as an access.
+	 * @param key the key.
+	 * @return the access count, or 0 if the key is not in the map.
+	 */
+	public long getFrequency(K key)
+	{
+		Entry<K, V> entry = index.get(key);
+		return entry != null ? ((FrequencyEntry<K, V>)entry).bucket.frequency : 0L;
+	}
+
+	@Override
+	protected Entry<K, V> createEntry(K key, V value)
+	{
+		return new FrequencyEntry<K, V>(key, value);
+	}
+
+	@Override
+	protected void entryAdded(Entry<K, V> entry)
+	{
+		Bucket<K, V> bucket = lowest;
+		if (bucket == null || bucket.frequency != 1L)
+		{
+			bucket = new Bucket<K, V>(1L);
+			bucket.next = lowest;
+			if (lowest != null)
+				lowest.prev = bucket;
+			lowest = bucket;
+		}
+		bucket.linkFirst((FrequencyEntry<K, V>)entry);
+	}
+
+	@Override
+	protected void entryAccessed(Entry<K, V> entry)
+	{
+		FrequencyEntry<K, V> fe = (FrequencyEntry<K, V>)entry;
+		Bucket<K, V> bucket = fe.bucket;
+		Bucket<K, V> next = bucket.next;
+		if (next == null || next.frequency != bucket.frequency + 1)
+		{
+			// if this is the only entry, just bump the bucket's frequency.
+			if (bucket.head == fe && bucket.tail == fe)
+			{
+				bucket.frequency++;
+				return;
+			}
+			next = new Bucket<K, V>(bucket.frequency + 1);
+			next.prev = bucket;
+			next.next = bucket.next;
+			if (bucket.next != null)
+				bucket.next.prev = next;
+			bucket.next = next;
+		}
+		bucket.unlink(fe);
+		if (bucket.head == null)
+			removeBucket(bucket);
+		next.linkFirst(fe);
+	}
+
+	@Override
+	protected void entryRemoved(Entry<K, V> entry)
+	{
+		FrequencyEntry<K, V> fe = (FrequencyEntry<K, V>)entry;
+		Bucket<K, V> bucket = fe.bucket;
+		bucket.unlink(fe);
+		if (bucket.head == null)
+			removeBucket(bucket);
+	}
+
+	@Override
+	protected Entry<K, V> nextEviction()
+	{
+		return lowest.tail;
+	}
+
+	@Override
+	protected void entriesCleared()
+	{
+		lowest = null;
+	}
+
+	// Removes an empty bucket.
+	private void removeBucket(Bucket<K, V> bucket)
+	{
+		if (bucket.prev != null)
+			bucket.prev.next = bucket.next;
+		else
+			lowest = bucket.next;
+		if (bucket.next != null)
+			bucket.next.prev = bucket.prev;
+	}
+
+	/**
+	 * An entry that knows its frequency bucket.
+	 */
+	private static class FrequencyEntry<K, V> extends Entry<K, V>
+	{
+		private Bucket<K, V> bucket;
+
+		private FrequencyEntry(K key, V value)
+		{
+			super(key, value);
+			this.bucket = null;
+		}
+	}
+
+	/**
+	 * A list of entries with the same frequency, most recently used first.
+	 */
+	private static class Bucket<K, V>
+	{
+		private long frequency;
+		private Bucket<K, V> prev;
+		private Bucket<K, V> next;
+		private Entry<K, V> head;
+		private Entry<K, V> tail;
+
+		private Bucket(long frequency)
+		{
+			this.frequency = frequency;
+		}
+
+		// Adds an entry to the head of this bucket.
+		private void linkFirst(FrequencyEntry<K, V> entry)
+		{
+			entry.bucket = this;
+			entry.prev = null;
+			entry.next = head;
+			if (head != null)
+				head.prev = entry;
+			else
+				tail = entry;
+			head = entry;
+		}
+
+		// Removes an entry from this bucket.
+		private void unlink(FrequencyEntry<K, V> entry)
+		{
+			if (entry.prev != null)
+				entry.prev.next = entry.next;
+			else
+				head = entry.next;
+			if (entry.next != null)
+				entry.next.prev = entry.prev;
+			else
+				tail = entry.prev;
+			entry.prev = null;
+			entry.next = null;
+			entry.bucket = null;
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractCacheMap;
+
+/**
+ * A cache map that evicts the least-recently-used entries first.
+ * Entries are kept in a doubly-linked list in order of access, so that
+ * accesses and evictions take O(1) time.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class LRUHashMap<K extends Object, V extends Object> extends AbstractCacheMap<K, V>
+{
+	/** Most recently used entry. */
+	private Entry<K, V> head;
+	/** Least recently used entry. */
+	private Entry<K, V> tail;
+
+	/**
+	 * Creates a new LRU cache map.
+	 * @param capacity the maximum total weight of the entries in this map (the maximum amount of entries, by default).
+	 * @throws IllegalArgumentException if capacity is 0 or less.
+	 */
+	public LRUHashMap(long capacity)
+	{
+		super(capacity);
+		this.head = null;
+		this.tail = null;
+	}
+
+	@Override
+	protected void entryAdded(Entry<K, V> entry)
+	{
+		linkFirst(entry);
+	}
+
+	@Override
+	protected void entryAccessed(Entry<K, V> entry)
+	{
+		if (entry == head)
+			return;
+		unlink(entry);
+		linkFirst(entry);
+	}
+
+	@Override
+	protected void entryRemoved(Entry<K, V> entry)
+	{
+		unlink(entry);
+	}
+
+	@Override
+	protected Entry<K, V> nextEviction()
+	{
+		return tail;
+	}
+
+	@Override
+	protected void entriesCleared()
+	{
+		head = null;
+		tail = null;
+	}
+
+	// Adds an entry to the head of the list.
+	private void linkFirst(Entry<K, V> entry)
+	{
+		entry.prev = null;
+		entry.next = head;
+		if (head != null)
+			head.prev = entry;
+		else
+			tail = entry;
+		head = entry;
+	}
+
+	// Removes an entry from the list.
+	private void unlink(Entry<K, V> entry)
+	{
+		if (entry.prev != null)
+			entry.prev.next = entry.next;
+		else
+			head = entry.next;
+		if (entry.next != null)
+			entry.next.prev = entry.prev;
+		else
+			tail = entry.prev;
+		entry.prev = null;
+		entry.next = null;
+	}
+
+}
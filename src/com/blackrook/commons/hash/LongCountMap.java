@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.HashStrategy;
+import com.blackrook.commons.list.List;
+
+/**
+ * A special type of hash that tallies/counts use of objects, using primitive long counters.
+ * Unlike {@link CountMap}, counting never boxes a value or creates an object - the objects
+ * and their counts are stored in two parallel arrays, in an open-addressed hash table.
+ * <p>
+ * Objects whose counts reach 0 are removed. This structure cannot store null objects.
+ * @author Matthew Tropiano
+ * @param <T> an Object type.
+ * @since 2.33.0
+ * @see ConcurrentCountMap
+ * @see TopKCountMap
+ */
+public class LongCountMap<T extends Object> extends OpenHash<T>
+{
+	/** Count array, parallel to the object array. */
+	protected long[] countArray;
+
+	/**
+	 * Creates a new count map with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
+	 */
+	public LongCountMap()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new count map with capacity <i>cap</i> and rehash ratio DEFAULT_REHASH.
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 */
+	public LongCountMap(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH);
+	}
+
+	/**
+	 * Creates a new count map.
+	 * @param capacity the capacity. cannot be negative.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded, the table's capacity is expanded, and the table is rehashed.
+	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less, or 1 or greater.
+	 */
+	public LongCountMap(int capacity, float rehashRatio)
+	{
+		super(capacity, rehashRatio);
+		countArray = new long[storageArray.length];
+	}
+
+	/**
+	 * Returns the count of an object.
+	 * If this does not contain the object, then this returns 0.
+	 * @param object the object.
+	 * @return the current count of the object, or 0 if the object was not added.
+	 */
+	public long getCount(T object)
+	{
+		if (object == null)
+			return 0L;
+		int i = getSlotIndexOf(object);
+		return i >= 0 ? countArray[i] : 0L;
+	}
+
+	/**
+	 * Adds one to the count of an object.
+	 * Equivalent to <code>give(object)</code>.
+	 * @throws NullPointerException if object is null.
+	 */
+	@Override
+	public void put(T object)
+	{
+		give(object, 1L);
+	}
+
+	/**
+	 * Adds one to the count of an object.
+	 * If the object has not been counted, it is placed in this map, and is given a count of 1.
+	 * @param object the object to add.
+	 * @return the new count of the object.
+	 * @throws NullPointerException if object is null.
+	 */
+	public long give(T object)
+	{
+		return give(object, 1L);
+	}
+
+	/**
+	 * Adds an amount to the count of an object.
+	 * If the amount is negative, this is equivalent to <code>take(object, -amount)</code>.
+	 * @param object the object to add.
+	 * @param amount the amount to give/add.
+	 * @return the new count of the object.
+	 * @throws NullPointerException if object is null.
+	 */
+	public long give(T object, long amount)
+	{
+		if (object == null)
+			throw new NullPointerException("Count maps cannot contain null objects.");
+		if (amount < 0)
+		{
+			take(object, -amount);
+			return getCount(object);
+		}
+
+		int i = getSlotIndexOf(object);
+		if (i >= 0)
+			return countArray[i] += amount;
+		if (amount == 0)
+			return 0L;
+
+		if (rehashCheck()) rehash();
+		i = getFreeIndexFor(object);
+		storageArray[i] = object;
+		countArray[i] = amount;
+		size++;
+		return amount;
+	}
+
+	/**
+	 * Subtracts one from the count of an object.
+	 * If the count is 0 after this runs, the object instance is removed.
+	 * @param object the object to remove.
+	 * @return the actual amount taken (0 or 1).
+	 */
+	public long take(T object)
+	{
+		return take(object, 1L);
+	}
+
+	/**
+	 * Subtracts an amount from the count of an object.
+	 * If the count is 0 after this runs, the object instance is removed.
+	 * If the amount is negative, this is equivalent to <code>give(object, -amount)</code>.
+	 * @param object the object to remove.
+	 * @param amount the amount to remove.
+	 * @return the actual amount taken, doesn't always equal amount.
+	 */
+	public long take(T object, long amount)
+	{
+		if (amount < 0)
+		{
+			give(object, -amount);
+			return 0L;
+		}
+		if (object == null)
+			return 0L;
+
+		int i = getSlotIndexOf(object);
+		if (i < 0)
+			return 0L;
+		long c = countArray[i];
+		long n = Math.max(0L, c - amount);
+		if (n == 0)
+			removeSlot(i, null);
+		else
+			countArray[i] = n;
+		return c - n;
+	}
+
+	/**
+	 * Removes the whole amount from the count of an object.
+	 * The object instance is removed.
+	 * @param object the object to remove.
+	 * @return the actual amount taken.
+	 */
+	public long takeAll(T object)
+	{
+		if (object == null)
+			return 0L;
+		int i = getSlotIndexOf(object);
+		if (i < 0)
+			return 0L;
+		long out = countArray[i];
+		removeSlot(i, null);
+		return out;
+	}
+
+	/**
+	 * @return the sum of all of the counts in this map.
+	 */
+	public long getTotal()
+	{
+		long out = 0L;
+		for (int i = 0; i < storageArray.length; i++)
+			if (storageArray[i] != null)
+				out += countArray[i];
+		return out;
+	}
+
+	@Override
+	public void setHashStrategy(HashStrategy<? super T> hashStrategy)
+	{
+		this.hashStrategy = hashStrategy;
+		relocate(storageArray.length);
+	}
+
+	@Override
+	protected void rehash()
+	{
+		relocate(storageArray.length * 2);
+	}
+
+	/**
+	 * Moves the contents of this table into a new table.
+	 * @param length the new table length.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void relocate(int length)
+	{
+		Object[] oldObjects = storageArray;
+		long[] oldCounts = countArray;
+		storageArray = new Object[length];
+		countArray = new long[length];
+		for (int i = 0; i < oldObjects.length; i++)
+		{
+			if (oldObjects[i] != null)
+			{
+				int index = getFreeIndexFor((T)oldObjects[i]);
+				storageArray[index] = oldObjects[i];
+				countArray[index] = oldCounts[i];
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void removeSlot(int index, List<T> wrapped)
+	{
+		int mask = storageArray.length - 1;
+		int gap = index;
+		int i = index;
+		while (true)
+		{
+			i = (i + 1) & mask;
+			Object entry = storageArray[i];
+			if (entry == null)
+				break;
+			int home = getTableIndexFor((T)entry);
+			// can move the entry back if the gap is cyclically between its home slot and its current slot.
+			if (gap <= i ? (gap >= home || home > i) : (gap >= home && home > i))
+			{
+				if (wrapped != null && i < gap)
+					wrapped.add((T)entry);
+				storageArray[gap] = entry;
+				countArray[gap] = countArray[i];
+				gap = i;
+			}
+		}
+		storageArray[gap] = null;
+		countArray[gap] = 0L;
+		size--;
+	}
+
+}
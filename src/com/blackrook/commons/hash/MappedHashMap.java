@@ -0,0 +1,883 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+import com.blackrook.commons.AbstractMap;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+import com.blackrook.commons.hash.OffHeapHashMap.Serializer;
+
+/**
+ * A hash map stored in a memory-mapped file, which can be reopened without reading or
+ * deserializing its contents.
+ * <p>
+ * The file holds a chained hash table: a table of bucket heads, followed by an append-only log of
+ * records, each linked to the previous record in its bucket. Changing or removing an entry appends
+ * a new record (which hides the older ones), so committed data is never overwritten. Keys and values
+ * are converted to bytes by {@link Serializer}s, and keys are hashed and compared by their serialized bytes.
+ * <p>
+ * Changes become durable on {@link #commit()} (or {@link #close()}), which flushes the file and then writes
+ * one of two checksummed headers in turn, so that a crash always leaves at least one valid header.
+ * If the map was changed after its last commit and was not closed, reopening it discards the uncommitted
+ * records and rebuilds the bucket heads by scanning the committed records (which does not deserialize them).
+ * <p>
+ * Once the log holds twice as many records as there are buckets, adding entries rewrites the file with only the live
+ * entries (and more buckets, if needed) - see {@link #compact()}. Like an explicit compaction, this commits first.
+ * <p>
+ * This map is not thread-safe. It must not be used after it is closed. It cannot store null keys or values.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class MappedHashMap<K extends Object, V extends Object> implements AbstractMap<K, V>, Closeable
+{
+	/** Default amount of buckets for new files. */
+	public static final int DEFAULT_BUCKET_COUNT = 1024;
+	/** Default size of each mapped file segment, in bytes. */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 24;
+
+	/** File magic number. */
+	private static final int MAGIC = 0x4252484D;
+	/** File format version. */
+	private static final int VERSION = 1;
+	/** Length of each header slot. */
+	private static final int HEADER_SLOT_LENGTH = 64;
+	/** Length of the checksummed part of a header slot. */
+	private static final int HEADER_CHECKED_LENGTH = 48;
+	/** Offset of the bucket heads. */
+	private static final int HEADS_OFFSET = 2 * HEADER_SLOT_LENGTH;
+	/** Header flag: the bucket heads match the committed records. */
+	private static final int FLAG_CLEAN = 1;
+
+	/** Record header length: next, hash, key length, value length. */
+	private static final int RECORD_HEADER = 20;
+	/** Key length marking the unused end of a segment. */
+	private static final int PADDING = -1;
+	/** Value length marking a removal. */
+	private static final int REMOVED = -1;
+
+	/** The file. */
+	private File file;
+	/** The open file. */
+	private RandomAccessFile randomAccessFile;
+	/** The file channel. */
+	private FileChannel channel;
+	/** Mapped segments. */
+	private MappedByteBuffer[] segments;
+	/** Amount of mapped segments. */
+	private int segmentCount;
+	/** Bits of a file position used for the offset within a segment. */
+	private int segmentBits;
+
+	/** Key serializer. */
+	private Serializer<K> keySerializer;
+	/** Value serializer. */
+	private Serializer<V> valueSerializer;
+
+	/** Amount of buckets (power of two). */
+	private int bucketCount;
+	/** Amount of live entries. */
+	private int size;
+	/** Amount of records in the log. */
+	private long recordCount;
+	/** File position of the first record. */
+	private long dataStart;
+	/** File position of the next record. */
+	private long appendPosition;
+
+	/** Sequence number of the current header. */
+	private long sequence;
+	/** Index of the current header slot. */
+	private int headerSlot;
+	/** If true, the current header is marked as not clean. */
+	private boolean dirty;
+
+	/** Scratch buffer for serialized keys. */
+	private ByteBuffer scratch;
+
+	/**
+	 * Opens a mapped hash map file, or creates it with default settings if it does not exist or is empty.
+	 * @param file the file.
+	 * @param keySerializer the serializer for keys.
+	 * @param valueSerializer the serializer for values.
+	 * @throws IOException if the file can't be read or written, or is not a mapped hash map file.
+	 */
+	public MappedHashMap(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException
+	{
+		this(file, keySerializer, valueSerializer, DEFAULT_BUCKET_COUNT, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens a mapped hash map file, or creates it if it does not exist or is empty.
+	 * @param file the file.
+	 * @param keySerializer the serializer for keys.
+	 * @param valueSerializer the serializer for values.
+	 * @param bucketCount the amount of buckets for a new file (rounded up to a power of two). Ignored for existing files.
+	 * @param segmentSize the size of each mapped part of a new file in bytes (rounded up to a power of two).
+	 * 		The file grows by this much at a time, and no record may be larger. Ignored for existing files.
+	 * @throws IOException if the file can't be read or written, or is not a mapped hash map file.
+	 * @throws IllegalArgumentException if bucketCount is less than 1, or segmentSize is less than 4096.
+	 */
+	public MappedHashMap(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer, int bucketCount, int segmentSize) throws IOException
+	{
+		if (bucketCount < 1)
+			throw new IllegalArgumentException("Bucket count must be at least 1.");
+		if (segmentSize < 4096)
+			throw new IllegalArgumentException("Segment size must be at least 4096 bytes.");
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.scratch = ByteBuffer.allocate(64);
+		open(file, bucketCount, segmentSize);
+	}
+
+	// Opens or creates the file.
+	private void open(File file, int bucketCount, int segmentSize) throws IOException
+	{
+		this.file = file;
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		this.channel = randomAccessFile.getChannel();
+		this.segments = new MappedByteBuffer[4];
+		this.segmentCount = 0;
+		this.dirty = false;
+
+		try {
+			if (channel.size() == 0L)
+				create(bucketCount, segmentSize);
+			else
+				load();
+		} catch (IOException e) {
+			channel.close();
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	// Sets up a new file.
+	private void create(int bucketCount, int segmentSize) throws IOException
+	{
+		int bits = 12;
+		while ((1 << bits) < segmentSize && bits < 30)
+			bits++;
+		int buckets = 1;
+		while (buckets < bucketCount && buckets < (1 << 30))
+			buckets <<= 1;
+		this.segmentBits = bits;
+		this.bucketCount = buckets;
+		this.size = 0;
+		this.recordCount = 0L;
+		this.dataStart = HEADS_OFFSET + (long)buckets * 8L;
+		this.appendPosition = dataStart;
+		this.sequence = 0L;
+		this.headerSlot = 1;
+		// new segments are zero-filled, so all heads start empty.
+		segment(dataStart);
+		writeHeader(FLAG_CLEAN);
+	}
+
+	// Reads an existing file.
+	private void load() throws IOException
+	{
+		if (channel.size() < HEADS_OFFSET)
+			throw new IOException("File " + file + " is not a mapped hash map file.");
+		ByteBuffer header = ByteBuffer.allocate(HEADS_OFFSET);
+		while (header.hasRemaining() && channel.read(header, header.position()) >= 0)
+			continue;
+
+		int best = -1;
+		long bestSequence = -1L;
+		for (int slot = 0; slot < 2; slot++)
+		{
+			int o = slot * HEADER_SLOT_LENGTH;
+			if (header.getInt(o) != MAGIC || header.getInt(o + 4) != VERSION)
+				continue;
+			CRC32 crc = new CRC32();
+			crc.update(header.array(), o, HEADER_CHECKED_LENGTH);
+			if ((int)crc.getValue() != header.getInt(o + HEADER_CHECKED_LENGTH))
+				continue;
+			if (header.getLong(o + 8) > bestSequence)
+			{
+				best = slot;
+				bestSequence = header.getLong(o + 8);
+			}
+		}
+		if (best < 0)
+			throw new IOException("File " + file + " is not a mapped hash map file, or its headers are damaged.");
+
+		int o = best * HEADER_SLOT_LENGTH;
+		this.sequence = bestSequence;
+		this.headerSlot = best;
+		this.segmentBits = header.getInt(o + 16);
+		int flags = header.getInt(o + 20);
+		this.bucketCount = header.getInt(o + 24);
+		this.size = header.getInt(o + 28);
+		this.recordCount = header.getLong(o + 32);
+		this.appendPosition = header.getLong(o + 40);
+		this.dataStart = HEADS_OFFSET + (long)bucketCount * 8L;
+
+		if ((flags & FLAG_CLEAN) == 0)
+			recover();
+	}
+
+	// Rebuilds the bucket heads from the committed records.
+	private void recover() throws IOException
+	{
+		long mask = bucketCount - 1;
+		for (long i = 0; i < bucketCount; i++)
+			putLong(HEADS_OFFSET + i * 8L, 0L);
+		long segmentSize = 1L << segmentBits;
+		long p = dataStart;
+		while (p < appendPosition)
+		{
+			long remaining = segmentSize - offset(p);
+			if (remaining < RECORD_HEADER || getInt(p + 12) == PADDING)
+			{
+				p += remaining;
+				continue;
+			}
+			long head = HEADS_OFFSET + (getInt(p + 8) & mask) * 8L;
+			putLong(p, getLong(head));
+			putLong(head, p);
+			p += RECORD_HEADER + getInt(p + 12) + Math.max(getInt(p + 16), 0);
+		}
+		commit();
+	}
+
+	/**
+	 * Makes all changes so far durable: flushes the file, and then writes a new header.
+	 * @throws IOException if the file can't be written.
+	 */
+	public void commit() throws IOException
+	{
+		for (int i = 0; i < segmentCount; i++)
+			segments[i].force();
+		writeHeader(FLAG_CLEAN);
+		dirty = false;
+	}
+
+	/**
+	 * Commits all changes and closes the file.
+	 * @throws IOException if the file can't be written.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		commit();
+		segments = null;
+		segmentCount = 0;
+		channel.close();
+		randomAccessFile.close();
+	}
+
+	/**
+	 * Rewrites the file with only its live entries, and reopens it.
+	 * The bucket count is doubled until it is at least twice the amount of entries.
+	 * The new file is written next to this one and then moved over it, so a crash leaves either the old or new file.
+	 * Uncommitted changes are committed first.
+	 * @throws IOException if the files can't be read or written.
+	 */
+	public void compact() throws IOException
+	{
+		commit();
+		int newBucketCount = bucketCount;
+		while (newBucketCount < (1 << 30) && (long)newBucketCount < (long)size * 2)
+			newBucketCount <<= 1;
+
+		File temp = new File(file.getPath() + ".compact");
+		if (temp.exists() && !temp.delete())
+			throw new IOException("Could not delete " + temp + ".");
+		MappedHashMap<K, V> out = new MappedHashMap<K, V>(temp, keySerializer, valueSerializer, newBucketCount, 1 << segmentBits);
+		try {
+			byte[] buffer = new byte[8192];
+			for (long b = 0; b < bucketCount; b++)
+				for (long p = getLong(HEADS_OFFSET + b * 8L); p != 0L; p = getLong(p))
+					if (getInt(p + 16) != REMOVED && isNewest(p))
+						out.copyRecord(this, p, buffer);
+			out.close();
+		} catch (IOException e) {
+			out.channel.close();
+			out.randomAccessFile.close();
+			throw e;
+		}
+
+		segments = null;
+		segmentCount = 0;
+		channel.close();
+		randomAccessFile.close();
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		open(file, newBucketCount, 1 << segmentBits);
+	}
+
+	/**
+	 * @return the file that backs this map.
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map, by appending a record.
+	 * @throws NullPointerException if key or value is null.
+	 * @throws IllegalArgumentException if the record does not fit in a file segment.
+	 * @throws RuntimeException if the file can't be written (caused by an {@link IOException}).
+	 */
+	@Override
+	public void put(K key, V value)
+	{
+		if (value == null)
+			throw new NullPointerException("Mapped maps cannot contain null values.");
+		int keyLength = serializeKey(key);
+		int hash = OffHeapHashMap.hashBytes(scratch, keyLength);
+		int valueLength = valueSerializer.getLength(value);
+		try {
+			if (recordCount >= (long)bucketCount * 2)
+				compact();
+			markDirty();
+			long p = findRecord(hash, keyLength);
+			long position = appendRecord(hash, keyLength, valueLength);
+			writeValue(value, valueLength, position + RECORD_HEADER + keyLength);
+			if (p == 0L || getInt(p + 16) == REMOVED)
+				size++;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map, using the key and value of a pair.
+	 * The pair itself is not stored.
+	 */
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		put(pair.getKey(), pair.getValue());
+	}
+
+	/**
+	 * Returns a copy of the value associated with a key.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public V get(K key)
+	{
+		int keyLength = serializeKey(key);
+		long p = findRecord(OffHeapHashMap.hashBytes(scratch, keyLength), keyLength);
+		return p != 0L && getInt(p + 16) != REMOVED ? readValue(p) : null;
+	}
+
+	/**
+	 * Checks if a key (by its serialized bytes) is present in the map.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public boolean containsKey(K key)
+	{
+		int keyLength = serializeKey(key);
+		long p = findRecord(OffHeapHashMap.hashBytes(scratch, keyLength), keyLength);
+		return p != 0L && getInt(p + 16) != REMOVED;
+	}
+
+	/**
+	 * Checks if the key of a pair is present in the map.
+	 */
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	/**
+	 * Removes a value from this map using a key, by appending a removal record, and returns a copy of it.
+	 * @throws NullPointerException if key is null.
+	 * @throws RuntimeException if the file can't be written (caused by an {@link IOException}).
+	 */
+	@Override
+	public V removeUsingKey(K key)
+	{
+		int keyLength = serializeKey(key);
+		int hash = OffHeapHashMap.hashBytes(scratch, keyLength);
+		long p = findRecord(hash, keyLength);
+		if (p == 0L || getInt(p + 16) == REMOVED)
+			return null;
+		V out = readValue(p);
+		try {
+			markDirty();
+			appendRecord(hash, keyLength, REMOVED);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		size--;
+		return out;
+	}
+
+	/**
+	 * Removes the entry that uses the key of a pair.
+	 */
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		if (!containsKey(pair.getKey()))
+			return false;
+		removeUsingKey(pair.getKey());
+		return true;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		int i = 0;
+		for (ObjectPair<K, V> pair : this)
+			out[i++] = pair;
+	}
+
+	@Override
+	public void toArrayKeys(K[] out)
+	{
+		int i = 0;
+		ResettableIterator<K> it = keyIterator();
+		while (it.hasNext())
+			out[i++] = it.next();
+	}
+
+	@Override
+	public void toArrayValues(V[] out)
+	{
+		int i = 0;
+		ResettableIterator<V> it = valueIterator();
+		while (it.hasNext())
+			out[i++] = it.next();
+	}
+
+	/**
+	 * Returns an iterator through copies of the entries in this map, in no particular order.
+	 */
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new RecordIterator<ObjectPair<K, V>>()
+		{
+			@Override
+			protected ObjectPair<K, V> get(long position)
+			{
+				return new ObjectPair<K, V>(readKey(position), readValue(position));
+			}
+		};
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through copies of each key in this map.
+	 */
+	public ResettableIterator<K> keyIterator()
+	{
+		return new RecordIterator<K>()
+		{
+			@Override
+			protected K get(long position)
+			{
+				return readKey(position);
+			}
+		};
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through copies of each value in this map.
+	 */
+	public ResettableIterator<V> valueIterator()
+	{
+		return new RecordIterator<V>()
+		{
+			@Override
+			protected V get(long position)
+			{
+				return readValue(position);
+			}
+		};
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (ObjectPair<K, V> pair : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(pair);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	// Writes the next header slot.
+	private void writeHeader(int flags) throws IOException
+	{
+		MappedByteBuffer header = segment(0L);
+		int slot = headerSlot ^ 1;
+		int o = slot * HEADER_SLOT_LENGTH;
+		header.putInt(o, MAGIC);
+		header.putInt(o + 4, VERSION);
+		header.putLong(o + 8, sequence + 1);
+		header.putInt(o + 16, segmentBits);
+		header.putInt(o + 20, flags);
+		header.putInt(o + 24, bucketCount);
+		header.putInt(o + 28, size);
+		header.putLong(o + 32, recordCount);
+		header.putLong(o + 40, appendPosition);
+		byte[] b = new byte[HEADER_CHECKED_LENGTH];
+		for (int i = 0; i < b.length; i++)
+			b[i] = header.get(o + i);
+		CRC32 crc = new CRC32();
+		crc.update(b, 0, b.length);
+		header.putInt(o + HEADER_CHECKED_LENGTH, (int)crc.getValue());
+		header.force();
+		sequence++;
+		headerSlot = slot;
+	}
+
+	// Marks the file as changed since the last commit, before the first change.
+	private void markDirty() throws IOException
+	{
+		if (!dirty)
+		{
+			writeHeader(0);
+			dirty = true;
+		}
+	}
+
+	// Gets the segment for a file position, mapping it if needed.
+	private MappedByteBuffer segment(long position) throws IOException
+	{
+		int i = (int)(position >>> segmentBits);
+		while (segmentCount <= i)
+		{
+			if (segmentCount == segments.length)
+			{
+				MappedByteBuffer[] newSegments = new MappedByteBuffer[segments.length * 2];
+				System.arraycopy(segments, 0, newSegments, 0, segmentCount);
+				segments = newSegments;
+			}
+			segments[segmentCount] = channel.map(MapMode.READ_WRITE, (long)segmentCount << segmentBits, 1L << segmentBits);
+			segmentCount++;
+		}
+		return segments[i];
+	}
+
+	// Gets the segment for a file position that is within the file.
+	private MappedByteBuffer mapped(long position)
+	{
+		try {
+			return segment(position);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// Gets the offset of a file position in its segment.
+	private int offset(long position)
+	{
+		return (int)(position & ((1L << segmentBits) - 1));
+	}
+
+	private int getInt(long position)
+	{
+		return mapped(position).getInt(offset(position));
+	}
+
+	private long getLong(long position)
+	{
+		return mapped(position).getLong(offset(position));
+	}
+
+	private void putLong(long position, long value)
+	{
+		mapped(position).putLong(offset(position), value);
+	}
+
+	// Appends a record header and the key in the scratch buffer, links it into its bucket, and returns its position.
+	private long appendRecord(int hash, int keyLength, int valueLength) throws IOException
+	{
+		long length = RECORD_HEADER + keyLength + Math.max(valueLength, 0);
+		long segmentSize = 1L << segmentBits;
+		if (length > segmentSize)
+			throw new IllegalArgumentException("Record of " + length + " bytes does not fit in a segment of " + segmentSize + " bytes.");
+		long p = appendPosition;
+		long remaining = segmentSize - offset(p);
+		if (remaining < length)
+		{
+			if (remaining >= RECORD_HEADER)
+				segment(p).putInt(offset(p) + 12, PADDING);
+			p += remaining;
+		}
+
+		MappedByteBuffer segment = segment(p);
+		int o = offset(p);
+		long head = HEADS_OFFSET + (hash & (bucketCount - 1)) * 8L;
+		segment.putLong(o, getLong(head));
+		segment.putInt(o + 8, hash);
+		segment.putInt(o + 12, keyLength);
+		segment.putInt(o + 16, valueLength);
+		for (int i = 0; i < keyLength; i++)
+			segment.put(o + RECORD_HEADER + i, scratch.get(i));
+		putLong(head, p);
+		appendPosition = p + length;
+		recordCount++;
+		return p;
+	}
+
+	// Copies a live record from another map.
+	private void copyRecord(MappedHashMap<K, V> source, long position, byte[] buffer) throws IOException
+	{
+		int hash = source.getInt(position + 8);
+		int keyLength = source.getInt(position + 12);
+		int valueLength = source.getInt(position + 16);
+		if (scratch.capacity() < keyLength)
+			scratch = ByteBuffer.allocate(keyLength);
+		for (int i = 0; i < keyLength; i++)
+			scratch.put(i, source.mapped(position).get(source.offset(position) + RECORD_HEADER + i));
+		long p = appendRecord(hash, keyLength, valueLength);
+		MappedByteBuffer from = source.mapped(position);
+		MappedByteBuffer to = segment(p);
+		int fromOffset = source.offset(position) + RECORD_HEADER + keyLength;
+		int toOffset = offset(p) + RECORD_HEADER + keyLength;
+		for (int done = 0; done < valueLength; done += buffer.length)
+		{
+			int n = Math.min(buffer.length, valueLength - done);
+			from.position(fromOffset + done);
+			from.get(buffer, 0, n);
+			to.position(toOffset + done);
+			to.put(buffer, 0, n);
+		}
+		size++;
+	}
+
+	// Writes a value into a record.
+	private void writeValue(V value, int valueLength, long position)
+	{
+		MappedByteBuffer segment = mapped(position);
+		int o = offset(position);
+		int written;
+		segment.limit(o + valueLength);
+		segment.position(o);
+		try {
+			valueSerializer.write(value, segment);
+			written = segment.position() - o;
+		} finally {
+			segment.limit(segment.capacity());
+		}
+		if (written != valueLength)
+			throw new IllegalStateException("Value serializer wrote " + written + " bytes, but reported " + valueLength + ".");
+	}
+
+	// Serializes a key into the scratch buffer, and returns its length.
+	private int serializeKey(K key)
+	{
+		if (key == null)
+			throw new NullPointerException("Mapped maps cannot contain null keys.");
+		int length = keySerializer.getLength(key);
+		if (length > scratch.capacity())
+		{
+			int newCapacity = scratch.capacity();
+			while (newCapacity < length)
+				newCapacity = newCapacity > (Integer.MAX_VALUE >> 1) ? Integer.MAX_VALUE : newCapacity << 1;
+			scratch = ByteBuffer.allocate(newCapacity);
+		}
+		scratch.clear();
+		keySerializer.write(key, scratch);
+		if (scratch.position() != length)
+			throw new IllegalStateException("Key serializer wrote " + scratch.position() + " bytes, but reported " + length + ".");
+		return length;
+	}
+
+	/**
+	 * Finds the newest record for the key in the scratch buffer.
+	 * @return the record position, or 0 if none.
+	 */
+	private long findRecord(int hash, int keyLength)
+	{
+		for (long p = getLong(HEADS_OFFSET + (hash & (bucketCount - 1)) * 8L); p != 0L; p = getLong(p))
+		{
+			if (getInt(p + 8) != hash || getInt(p + 12) != keyLength)
+				continue;
+			MappedByteBuffer segment = mapped(p);
+			int o = offset(p) + RECORD_HEADER;
+			int i = 0;
+			for (; i + 8 <= keyLength; i += 8)
+				if (scratch.getLong(i) != segment.getLong(o + i))
+					break;
+			if (i + 8 <= keyLength)
+				continue;
+			for (; i < keyLength; i++)
+				if (scratch.get(i) != segment.get(o + i))
+					break;
+			if (i == keyLength)
+				return p;
+		}
+		return 0L;
+	}
+
+	// Checks if no newer record in the same bucket has the same key as a record.
+	private boolean isNewest(long position)
+	{
+		int hash = getInt(position + 8);
+		int keyLength = getInt(position + 12);
+		MappedByteBuffer segment = mapped(position);
+		int o = offset(position) + RECORD_HEADER;
+		for (long p = getLong(HEADS_OFFSET + (hash & (bucketCount - 1)) * 8L); p != position; p = getLong(p))
+		{
+			if (getInt(p + 8) != hash || getInt(p + 12) != keyLength)
+				continue;
+			MappedByteBuffer other = mapped(p);
+			int po = offset(p) + RECORD_HEADER;
+			int i = 0;
+			while (i < keyLength && segment.get(o + i) == other.get(po + i))
+				i++;
+			if (i == keyLength)
+				return false;
+		}
+		return true;
+	}
+
+	// Reads a copy of the key of a record.
+	private K readKey(long position)
+	{
+		MappedByteBuffer segment = mapped(position);
+		int o = offset(position);
+		int keyLength = segment.getInt(o + 12);
+		segment.limit(o + RECORD_HEADER + keyLength);
+		segment.position(o + RECORD_HEADER);
+		try {
+			return keySerializer.read(segment, keyLength);
+		} finally {
+			segment.limit(segment.capacity());
+		}
+	}
+
+	// Reads a copy of the value of a record.
+	private V readValue(long position)
+	{
+		MappedByteBuffer segment = mapped(position);
+		int o = offset(position);
+		int valueLength = segment.getInt(o + 16);
+		o += RECORD_HEADER + segment.getInt(o + 12);
+		segment.limit(o + valueLength);
+		segment.position(o);
+		try {
+			return valueSerializer.read(segment, valueLength);
+		} finally {
+			segment.limit(segment.capacity());
+		}
+	}
+
+	/**
+	 * Iterator through the newest live record of each key.
+	 */
+	private abstract class RecordIterator<T> implements ResettableIterator<T>
+	{
+		private long bucket;
+		private long next;
+		private long last;
+
+		private RecordIterator()
+		{
+			reset();
+		}
+
+		/**
+		 * Creates the object to return for a record.
+		 */
+		protected abstract T get(long position);
+
+		// Finds the next live record, after a record (or 0 to start at the current bucket).
+		private void advance(long position)
+		{
+			long p = position != 0L ? getLong(position) : getLong(HEADS_OFFSET + bucket * 8L);
+			while (true)
+			{
+				while (p == 0L)
+				{
+					if (++bucket >= bucketCount)
+					{
+						next = 0L;
+						return;
+					}
+					p = getLong(HEADS_OFFSET + bucket * 8L);
+				}
+				if (getInt(p + 16) != REMOVED && isNewest(p))
+				{
+					next = p;
+					return;
+				}
+				p = getLong(p);
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next != 0L;
+		}
+
+		@Override
+		public T next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			last = next;
+			T out = get(next);
+			advance(next);
+			return out;
+		}
+
+		@Override
+		public void remove()
+		{
+			if (last == 0L)
+				throw new IllegalStateException("remove() called before next()");
+			removeUsingKey(readKey(last));
+			last = 0L;
+		}
+
+		@Override
+		public void reset()
+		{
+			bucket = 0L;
+			last = 0L;
+			advance(0L);
+		}
+	}
+
+}
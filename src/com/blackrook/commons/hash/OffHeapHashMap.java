@@ -0,0 +1,892 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+
+import com.blackrook.commons.AbstractMap;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+import com.blackrook.commons.util.BufferUtils;
+
+/**
+ * A hash map that stores its keys and values outside of the Java heap, in direct {@link ByteBuffer}s,
+ * so that very large maps do not add to garbage collection pauses.
+ * <p>
+ * Keys and values are converted to bytes by {@link Serializer}s, and are only converted back to
+ * objects when they are read out of the map. Keys are hashed and compared by their serialized bytes, so a
+ * key serializer must always write equal keys as equal bytes.
+ * <p>
+ * Entries are appended to large direct buffers ("slabs"), and are found through an open-addressed
+ * index that is also stored in direct buffers. Replacing a value with one of the same serialized length
+ * overwrites it in place; otherwise, the old entry becomes garbage, which is reclaimed by {@link #compact()}.
+ * Compaction also happens automatically when adding entries, once garbage outweighs the live entries.
+ * <p>
+ * This map is not thread-safe - even its reads use shared buffers.
+ * This structure cannot store null keys or values.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class OffHeapHashMap<K extends Object, V extends Object> implements AbstractMap<K, V>
+{
+	/** Default capacity (in entries) of the index. */
+	public static final int DEFAULT_CAPACITY = 1024;
+	/** Default slab size in bytes. */
+	public static final int DEFAULT_SLAB_SIZE = 1 << 26;
+	/** Maximum amount of slabs. */
+	private static final int MAX_SLABS = (1 << 16) - 1;
+
+	/** Serializer for Long keys or values. */
+	public static final Serializer<Long> LONG_SERIALIZER = new Serializer<Long>()
+	{
+		@Override
+		public int getLength(Long object)
+		{
+			return BufferUtils.SIZEOF_LONG;
+		}
+
+		@Override
+		public void write(Long object, ByteBuffer out)
+		{
+			out.putLong(object);
+		}
+
+		@Override
+		public Long read(ByteBuffer in, int length)
+		{
+			return in.getLong();
+		}
+	};
+
+	/** Serializer for Integer keys or values. */
+	public static final Serializer<Integer> INTEGER_SERIALIZER = new Serializer<Integer>()
+	{
+		@Override
+		public int getLength(Integer object)
+		{
+			return BufferUtils.SIZEOF_INT;
+		}
+
+		@Override
+		public void write(Integer object, ByteBuffer out)
+		{
+			out.putInt(object);
+		}
+
+		@Override
+		public Integer read(ByteBuffer in, int length)
+		{
+			return in.getInt();
+		}
+	};
+
+	/** Serializer for byte array keys or values. Byte array keys are compared by contents. */
+	public static final Serializer<byte[]> BYTE_ARRAY_SERIALIZER = new Serializer<byte[]>()
+	{
+		@Override
+		public int getLength(byte[] object)
+		{
+			return object.length;
+		}
+
+		@Override
+		public void write(byte[] object, ByteBuffer out)
+		{
+			out.put(object);
+		}
+
+		@Override
+		public byte[] read(ByteBuffer in, int length)
+		{
+			byte[] out = new byte[length];
+			in.get(out);
+			return out;
+		}
+	};
+
+	/** 
+	 * Serializer for String keys or values, as UTF-8. 
+	 * Unpaired surrogates are written as <code>'?'</code>, as {@link String#getBytes(Charset)} does.
+	 */
+	public static final Serializer<String> STRING_SERIALIZER = new Serializer<String>()
+	{
+		private final Charset UTF8 = Charset.forName("UTF-8");
+
+		// The last String encoded on each thread and its bytes, since the length and the bytes are asked for separately.
+		private final ThreadLocal<Object[]> lastEncoded = new ThreadLocal<Object[]>()
+		{
+			@Override
+			protected Object[] initialValue()
+			{
+				return new Object[2];
+			}
+		};
+
+		// Encodes a String, or returns its bytes if it was the last one encoded on this thread.
+		private byte[] encode(String object)
+		{
+			Object[] last = lastEncoded.get();
+			if (last[0] != object)
+			{
+				last[1] = object.getBytes(UTF8);
+				last[0] = object;
+			}
+			return (byte[])last[1];
+		}
+
+		@Override
+		public int getLength(String object)
+		{
+			return encode(object).length;
+		}
+
+		@Override
+		public void write(String object, ByteBuffer out)
+		{
+			out.put(encode(object));
+		}
+
+		@Override
+		public String read(ByteBuffer in, int length)
+		{
+			byte[] b = new byte[length];
+			in.get(b);
+			return new String(b, UTF8);
+		}
+	};
+
+	/** Index slot value: empty. */
+	private static final long SLOT_EMPTY = 0L;
+	/** Index slot value: removed entry. */
+	private static final long SLOT_REMOVED = 1L;
+	/** Bits of an index slot used for the entry address (plus 2). */
+	private static final int ADDRESS_BITS = 47;
+	/** Mask for the address part of an index slot. */
+	private static final long ADDRESS_MASK = (1L << ADDRESS_BITS) - 1;
+	/** Bits of an entry address used for its offset in a slab. */
+	private static final int OFFSET_BITS = 31;
+	/** Bits per index page. */
+	private static final int INDEX_PAGE_BITS = 16;
+
+	/** Entry header length: hash, key length, value length. */
+	private static final int ENTRY_HEADER = 3 * BufferUtils.SIZEOF_INT;
+
+	/** Key serializer. */
+	private Serializer<K> keySerializer;
+	/** Value serializer. */
+	private Serializer<V> valueSerializer;
+
+	/** Index pages of slots. */
+	private ByteBuffer[] index;
+	/** Index capacity (power of two). */
+	private int capacity;
+	/** Amount of removed slots in the index. */
+	private int removedSlots;
+	/** Amount of entries. */
+	private int size;
+
+	/** Slab size in bytes. */
+	private int slabSize;
+	/** Slabs. */
+	private ByteBuffer[] slabs;
+	/** Amount of slabs in use. */
+	private int slabCount;
+	/** Next free position in the last slab. */
+	private int slabPosition;
+	/** Bytes in slabs no longer used by entries. */
+	private long garbageBytes;
+
+	/** Scratch buffer for serialized keys. */
+	private ByteBuffer scratch;
+
+	/**
+	 * Creates a new off-heap map with default capacity and slab size.
+	 * @param keySerializer the serializer for keys.
+	 * @param valueSerializer the serializer for values.
+	 */
+	public OffHeapHashMap(Serializer<K> keySerializer, Serializer<V> valueSerializer)
+	{
+		this(keySerializer, valueSerializer, DEFAULT_CAPACITY, DEFAULT_SLAB_SIZE);
+	}
+
+	/**
+	 * Creates a new off-heap map.
+	 * @param keySerializer the serializer for keys.
+	 * @param valueSerializer the serializer for values.
+	 * @param capacity the initial amount of entries that the index can hold before it grows.
+	 * @param slabSize the size of each block of direct memory that holds entries, in bytes.
+	 * 		The largest entry (plus 12 bytes of header) must fit in one slab.
+	 * @throws IllegalArgumentException if capacity is less than 1 or slabSize is less than 64.
+	 */
+	public OffHeapHashMap(Serializer<K> keySerializer, Serializer<V> valueSerializer, int capacity, int slabSize)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1.");
+		if (slabSize < 64)
+			throw new IllegalArgumentException("Slab size must be at least 64 bytes.");
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.slabSize = slabSize;
+		this.scratch = BufferUtils.allocDirectByteBuffer(64);
+		initialize(capacity);
+	}
+
+	// Sets up empty storage.
+	private void initialize(int capacity)
+	{
+		int slots = 1;
+		while (slots < capacity + (capacity >> 1) && slots < (1 << 30))
+			slots <<= 1;
+		this.index = createIndex(slots);
+		this.capacity = slots;
+		this.removedSlots = 0;
+		this.size = 0;
+		this.slabs = new ByteBuffer[4];
+		this.slabCount = 0;
+		this.slabPosition = slabSize;
+		this.garbageBytes = 0L;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map.
+	 * @throws NullPointerException if key or value is null.
+	 * @throws IllegalArgumentException if the serialized entry does not fit in a slab.
+	 */
+	@Override
+	public void put(K key, V value)
+	{
+		if (value == null)
+			throw new NullPointerException("Off-heap maps cannot contain null values.");
+		int keyLength = serializeKey(key);
+		int hash = hashScratch(keyLength);
+		int valueLength = valueSerializer.getLength(value);
+		long s = findSlot(hash, keyLength);
+		if (s >= 0)
+		{
+			long slot = getSlot(s);
+			ByteBuffer slab = slabOf(slot);
+			int offset = offsetOf(slot);
+			int oldLength = slab.getInt(offset + 8);
+			if (oldLength == valueLength)
+			{
+				writeValue(value, valueLength, slab, offset + ENTRY_HEADER + keyLength);
+				return;
+			}
+			garbageBytes += ENTRY_HEADER + keyLength + oldLength;
+			setSlot(s, makeSlot(hash, writeEntry(hash, keyLength, value, valueLength)));
+			compactIfNeeded();
+			return;
+		}
+
+		long address = writeEntry(hash, keyLength, value, valueLength);
+		long i = -s - 1;
+		if (getSlot(i) == SLOT_REMOVED)
+			removedSlots--;
+		setSlot(i, makeSlot(hash, address));
+		size++;
+		if ((long)(size + removedSlots) * 4 > (long)capacity * 3)
+			rehash();
+		compactIfNeeded();
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map, using the key and value of a pair.
+	 * The pair itself is not stored.
+	 */
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		put(pair.getKey(), pair.getValue());
+	}
+
+	/**
+	 * Returns a copy of the value associated with a key.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public V get(K key)
+	{
+		int keyLength = serializeKey(key);
+		long s = findSlot(hashScratch(keyLength), keyLength);
+		return s >= 0 ? readValue(getSlot(s)) : null;
+	}
+
+	/**
+	 * Checks if a key (by its serialized bytes) is present in the map.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public boolean containsKey(K key)
+	{
+		int keyLength = serializeKey(key);
+		return findSlot(hashScratch(keyLength), keyLength) >= 0;
+	}
+
+	/**
+	 * Checks if the key of a pair is present in the map.
+	 */
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	/**
+	 * Removes a value from this map using a key, and returns a copy of it.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public V removeUsingKey(K key)
+	{
+		int keyLength = serializeKey(key);
+		long s = findSlot(hashScratch(keyLength), keyLength);
+		if (s < 0)
+			return null;
+		long slot = getSlot(s);
+		V out = readValue(slot);
+		removeSlot(s, slot);
+		return out;
+	}
+
+	/**
+	 * Removes the entry that uses the key of a pair.
+	 */
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		int keyLength = serializeKey(pair.getKey());
+		long s = findSlot(hashScratch(keyLength), keyLength);
+		if (s < 0)
+			return false;
+		removeSlot(s, getSlot(s));
+		return true;
+	}
+
+	/**
+	 * Removes all entries, and releases the direct memory used for them
+	 * (once the garbage collector collects the old buffers).
+	 */
+	public void clear()
+	{
+		initialize(DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	/**
+	 * @return the amount of direct memory allocated by this map for its entries and index, in bytes.
+	 */
+	public long getAllocatedBytes()
+	{
+		long out = (long)capacity * BufferUtils.SIZEOF_LONG;
+		for (int i = 0; i < slabCount; i++)
+			out += slabs[i].capacity();
+		return out;
+	}
+
+	/**
+	 * @return the amount of allocated slab memory that no longer holds entries, in bytes.
+	 * @see #compact()
+	 */
+	public long getGarbageBytes()
+	{
+		return garbageBytes;
+	}
+
+	/**
+	 * Copies all live entries into new slabs, so that the memory held by removed or replaced entries
+	 * can be released. This takes O(n) time.
+	 */
+	public void compact()
+	{
+		ByteBuffer[] oldSlabs = slabs;
+		slabs = new ByteBuffer[4];
+		slabCount = 0;
+		slabPosition = slabSize;
+		garbageBytes = 0L;
+		for (long i = 0; i < capacity; i++)
+		{
+			long slot = getSlot(i);
+			if (slot == SLOT_EMPTY || slot == SLOT_REMOVED)
+				continue;
+			ByteBuffer slab = oldSlabs[(int)(((slot & ADDRESS_MASK) - 2) >>> OFFSET_BITS)];
+			int offset = offsetOf(slot);
+			int length = ENTRY_HEADER + slab.getInt(offset + 4) + slab.getInt(offset + 8);
+			long newAddress = allocate(length);
+			ByteBuffer src = slab.duplicate();
+			src.limit(offset + length);
+			src.position(offset);
+			ByteBuffer dest = slabs[slabCount - 1];
+			dest.position((int)(newAddress & ((1L << OFFSET_BITS) - 1)));
+			dest.put(src);
+			setSlot(i, (slot & ~ADDRESS_MASK) | (newAddress + 2));
+		}
+	}
+
+	// Compacts if garbage outweighs the live entries.
+	private void compactIfNeeded()
+	{
+		if (garbageBytes > slabSize && garbageBytes > (long)(slabCount - 1) * slabSize + slabPosition - garbageBytes)
+			compact();
+	}
+
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		int i = 0;
+		for (ObjectPair<K, V> pair : this)
+			out[i++] = pair;
+	}
+
+	@Override
+	public void toArrayKeys(K[] out)
+	{
+		int i = 0;
+		ResettableIterator<K> it = keyIterator();
+		while (it.hasNext())
+			out[i++] = it.next();
+	}
+
+	@Override
+	public void toArrayValues(V[] out)
+	{
+		int i = 0;
+		ResettableIterator<V> it = valueIterator();
+		while (it.hasNext())
+			out[i++] = it.next();
+	}
+
+	/**
+	 * Returns an iterator through copies of the entries in this map, in no particular order.
+	 */
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new SlotIterator<ObjectPair<K, V>>()
+		{
+			@Override
+			protected ObjectPair<K, V> get(long slot)
+			{
+				return new ObjectPair<K, V>(readKey(slot), readValue(slot));
+			}
+		};
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through copies of each key in this map.
+	 */
+	public ResettableIterator<K> keyIterator()
+	{
+		return new SlotIterator<K>()
+		{
+			@Override
+			protected K get(long slot)
+			{
+				return readKey(slot);
+			}
+		};
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through copies of each value in this map.
+	 */
+	public ResettableIterator<V> valueIterator()
+	{
+		return new SlotIterator<V>()
+		{
+			@Override
+			protected V get(long slot)
+			{
+				return readValue(slot);
+			}
+		};
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (ObjectPair<K, V> pair : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(pair);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	// Creates index pages.
+	private static ByteBuffer[] createIndex(int slots)
+	{
+		int pageSlots = Math.min(slots, 1 << INDEX_PAGE_BITS);
+		ByteBuffer[] out = new ByteBuffer[slots / pageSlots];
+		for (int i = 0; i < out.length; i++)
+			out[i] = BufferUtils.allocDirectByteBuffer(pageSlots * BufferUtils.SIZEOF_LONG);
+		return out;
+	}
+
+	// Gets an index slot.
+	private long getSlot(long i)
+	{
+		return index[(int)(i >>> INDEX_PAGE_BITS)].getLong((int)(i & ((1 << INDEX_PAGE_BITS) - 1)) << 3);
+	}
+
+	// Sets an index slot.
+	private void setSlot(long i, long value)
+	{
+		index[(int)(i >>> INDEX_PAGE_BITS)].putLong((int)(i & ((1 << INDEX_PAGE_BITS) - 1)) << 3, value);
+	}
+
+	// Creates an index slot value: the high hash bits (to skip most mismatches) and the entry address.
+	private static long makeSlot(int hash, long address)
+	{
+		return ((long)(hash >>> (Integer.SIZE - (Long.SIZE - ADDRESS_BITS))) << ADDRESS_BITS) | (address + 2);
+	}
+
+	// Gets the slab of an entry from an index slot value.
+	private ByteBuffer slabOf(long slot)
+	{
+		return slabs[(int)(((slot & ADDRESS_MASK) - 2) >>> OFFSET_BITS)];
+	}
+
+	// Gets the slab offset of an entry from an index slot value.
+	private static int offsetOf(long slot)
+	{
+		return (int)(((slot & ADDRESS_MASK) - 2) & ((1L << OFFSET_BITS) - 1));
+	}
+
+	// Removes an entry.
+	private void removeSlot(long i, long slot)
+	{
+		ByteBuffer slab = slabOf(slot);
+		int offset = offsetOf(slot);
+		garbageBytes += ENTRY_HEADER + slab.getInt(offset + 4) + slab.getInt(offset + 8);
+		setSlot(i, SLOT_REMOVED);
+		removedSlots++;
+		size--;
+	}
+
+	/**
+	 * Finds the index slot of the key in the scratch buffer.
+	 * @return the slot index, or (-(insertion index) - 1) if not found.
+	 */
+	private long findSlot(int hash, int keyLength)
+	{
+		long mask = capacity - 1;
+		long tag = makeSlot(hash, 0L) & ~ADDRESS_MASK;
+		long removed = -1L;
+		long i = hash & mask;
+		while (true)
+		{
+			long slot = getSlot(i);
+			if (slot == SLOT_EMPTY)
+				return removed >= 0 ? -removed - 1 : -i - 1;
+			else if (slot == SLOT_REMOVED)
+			{
+				if (removed < 0)
+					removed = i;
+			}
+			else if ((slot & ~ADDRESS_MASK) == tag && keyEquals(slot, hash, keyLength))
+				return i;
+			i = (i + 1) & mask;
+		}
+	}
+
+	// Compares the key in the scratch buffer to an entry's key.
+	private boolean keyEquals(long slot, int hash, int keyLength)
+	{
+		ByteBuffer slab = slabOf(slot);
+		int offset = offsetOf(slot);
+		if (slab.getInt(offset) != hash || slab.getInt(offset + 4) != keyLength)
+			return false;
+		offset += ENTRY_HEADER;
+		int i = 0;
+		for (; i + 8 <= keyLength; i += 8)
+			if (scratch.getLong(i) != slab.getLong(offset + i))
+				return false;
+		for (; i < keyLength; i++)
+			if (scratch.get(i) != slab.get(offset + i))
+				return false;
+		return true;
+	}
+
+	// Doubles the index (if needed) and clears removed slots.
+	private void rehash()
+	{
+		int newCapacity = capacity;
+		if ((long)size * 2 > capacity && capacity < (1 << 30))
+			newCapacity = capacity << 1;
+		ByteBuffer[] oldIndex = index;
+		long oldCapacity = capacity;
+		index = createIndex(newCapacity);
+		capacity = newCapacity;
+		removedSlots = 0;
+		long mask = newCapacity - 1;
+		for (long i = 0; i < oldCapacity; i++)
+		{
+			long slot = oldIndex[(int)(i >>> INDEX_PAGE_BITS)].getLong((int)(i & ((1 << INDEX_PAGE_BITS) - 1)) << 3);
+			if (slot == SLOT_EMPTY || slot == SLOT_REMOVED)
+				continue;
+			int hash = slabOf(slot).getInt(offsetOf(slot));
+			long j = hash & mask;
+			while (getSlot(j) != SLOT_EMPTY)
+				j = (j + 1) & mask;
+			setSlot(j, slot);
+		}
+	}
+
+	// Serializes a key into the scratch buffer, and returns its length.
+	private int serializeKey(K key)
+	{
+		if (key == null)
+			throw new NullPointerException("Off-heap maps cannot contain null keys.");
+		int length = keySerializer.getLength(key);
+		if (length > scratch.capacity())
+		{
+			int newCapacity = scratch.capacity();
+			while (newCapacity < length)
+				newCapacity = newCapacity > (Integer.MAX_VALUE >> 1) ? Integer.MAX_VALUE : newCapacity << 1;
+			scratch = BufferUtils.allocDirectByteBuffer(newCapacity);
+		}
+		scratch.clear();
+		keySerializer.write(key, scratch);
+		if (scratch.position() != length)
+			throw new IllegalStateException("Key serializer wrote " + scratch.position() + " bytes, but reported " + length + ".");
+		return length;
+	}
+
+	// Hashes the key in the scratch buffer.
+	private int hashScratch(int length)
+	{
+		return hashBytes(scratch, length);
+	}
+
+	/**
+	 * Hashes the first bytes of a buffer (the result depends on the buffer's byte order).
+	 * @param buffer the buffer.
+	 * @param length the amount of bytes to hash.
+	 * @return the mixed hashcode.
+	 */
+	static int hashBytes(ByteBuffer buffer, int length)
+	{
+		long h = length * 0x9E3779B97F4A7C15L;
+		int i = 0;
+		for (; i + 8 <= length; i += 8)
+		{
+			h = (h ^ buffer.getLong(i)) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 29;
+		}
+		for (; i < length; i++)
+			h = (h ^ (buffer.get(i) & 0xff)) * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		int out = (int)h * 0x9E3779B9;
+		return out ^ (out >>> 16);
+	}
+
+	// Allocates space for an entry in the slabs, and returns its address.
+	private long allocate(int length)
+	{
+		if (length > slabSize || length < 0)
+			throw new IllegalArgumentException("Entry of " + length + " bytes does not fit in a slab of " + slabSize + " bytes.");
+		if (slabPosition + (long)length > slabSize)
+		{
+			if (slabCount > 0)
+				garbageBytes += slabSize - slabPosition;
+			if (slabCount == MAX_SLABS)
+				throw new IllegalStateException("Off-heap map is out of slabs - use a larger slab size.");
+			if (slabCount == slabs.length)
+			{
+				ByteBuffer[] newSlabs = new ByteBuffer[Math.min(slabs.length * 2, MAX_SLABS)];
+				System.arraycopy(slabs, 0, newSlabs, 0, slabCount);
+				slabs = newSlabs;
+			}
+			slabs[slabCount++] = BufferUtils.allocDirectByteBuffer(slabSize);
+			slabPosition = 0;
+		}
+		long out = ((long)(slabCount - 1) << OFFSET_BITS) | slabPosition;
+		slabPosition += length;
+		return out;
+	}
+
+	// Writes a new entry using the key in the scratch buffer, and returns its address.
+	private long writeEntry(int hash, int keyLength, V value, int valueLength)
+	{
+		long address = allocate(ENTRY_HEADER + keyLength + valueLength);
+		ByteBuffer slab = slabs[slabCount - 1];
+		int offset = (int)(address & ((1L << OFFSET_BITS) - 1));
+		slab.putInt(offset, hash);
+		slab.putInt(offset + 4, keyLength);
+		slab.putInt(offset + 8, valueLength);
+		scratch.flip();
+		slab.position(offset + ENTRY_HEADER);
+		slab.put(scratch);
+		writeValue(value, valueLength, slab, offset + ENTRY_HEADER + keyLength);
+		return address;
+	}
+
+	// Writes a value into a slab.
+	private void writeValue(V value, int valueLength, ByteBuffer slab, int offset)
+	{
+		int written;
+		slab.limit(offset + valueLength);
+		slab.position(offset);
+		try {
+			valueSerializer.write(value, slab);
+			written = slab.position() - offset;
+		} finally {
+			slab.limit(slab.capacity());
+		}
+		if (written != valueLength)
+			throw new IllegalStateException("Value serializer wrote " + written + " bytes, but reported " + valueLength + ".");
+	}
+
+	// Reads a copy of the key of an entry.
+	private K readKey(long slot)
+	{
+		ByteBuffer slab = slabOf(slot);
+		int offset = offsetOf(slot);
+		int keyLength = slab.getInt(offset + 4);
+		slab.limit(offset + ENTRY_HEADER + keyLength);
+		slab.position(offset + ENTRY_HEADER);
+		try {
+			return keySerializer.read(slab, keyLength);
+		} finally {
+			slab.limit(slab.capacity());
+		}
+	}
+
+	// Reads a copy of the value of an entry.
+	private V readValue(long slot)
+	{
+		ByteBuffer slab = slabOf(slot);
+		int offset = offsetOf(slot);
+		int valueLength = slab.getInt(offset + 8);
+		offset += ENTRY_HEADER + slab.getInt(offset + 4);
+		slab.limit(offset + valueLength);
+		slab.position(offset);
+		try {
+			return valueSerializer.read(slab, valueLength);
+		} finally {
+			slab.limit(slab.capacity());
+		}
+	}
+
+	/**
+	 * Iterator through the occupied index slots.
+	 */
+	private abstract class SlotIterator<T> implements ResettableIterator<T>
+	{
+		private long next;
+		private long last;
+
+		private SlotIterator()
+		{
+			reset();
+		}
+
+		/**
+		 * Creates the object to return for an entry.
+		 */
+		protected abstract T get(long slot);
+
+		// Finds the next occupied slot, starting at a slot.
+		private void advance(long i)
+		{
+			while (i < capacity)
+			{
+				long slot = getSlot(i);
+				if (slot != SLOT_EMPTY && slot != SLOT_REMOVED)
+					break;
+				i++;
+			}
+			next = i;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next < capacity;
+		}
+
+		@Override
+		public T next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			last = next;
+			T out = get(getSlot(next));
+			advance(next + 1);
+			return out;
+		}
+
+		@Override
+		public void remove()
+		{
+			if (last < 0)
+				throw new IllegalStateException("remove() called before next()");
+			removeSlot(last, getSlot(last));
+			last = -1L;
+		}
+
+		@Override
+		public void reset()
+		{
+			last = -1L;
+			advance(0L);
+		}
+	}
+
+	/**
+	 * Converts objects to and from bytes in direct buffers.
+	 * @param <T> the object type.
+	 */
+	public interface Serializer<T>
+	{
+		/**
+		 * Gets the amount of bytes that {@link #write(Object, ByteBuffer)} writes for an object.
+		 * @param object the object.
+		 * @return the length in bytes.
+		 */
+		public int getLength(T object);
+
+		/**
+		 * Writes an object to a buffer, at its current position.
+		 * Must write exactly {@link #getLength(Object)} bytes.
+		 * @param object the object.
+		 * @param out the output buffer.
+		 */
+		public void write(T object, ByteBuffer out);
+
+		/**
+		 * Reads an object from a buffer, at its current position.
+		 * @param in the input buffer.
+		 * @param length the amount of bytes written for the object.
+		 * @return a new object.
+		 */
+		public T read(ByteBuffer in, int length);
+	}
+
+}
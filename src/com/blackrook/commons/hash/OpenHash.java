@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractOpenHash;
+
+/**
+ * Hashed data structure. It stores several objects in an open-addressed
+ * hash table, used primarily for testing for existence of archive-able, searchable objects.
+ * This is an alternative to {@link Hash} that uses far less memory per object
+ * and has better locality on lookups, at the expense of not accepting null objects.
+ * @author Matthew Tropiano
+ * @param <T> the object type that this data structure stores.
+ * @since 2.33.0
+ */
+public class OpenHash<T extends Object> extends AbstractOpenHash<T>
+{
+	/**
+	 * Creates a new hash with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
+	 */
+	public OpenHash()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH);
+	}
+	
+	/**
+	 * Creates a new hash with capacity <i>cap</i> and rehash ratio DEFAULT_REHASH. 
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 */
+	public OpenHash(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH);
+	}
+	
+	/**
+	 * Creates a new hash.
+	 * @param capacity the capacity. cannot be negative.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded, the table's capacity is expanded, and the table is rehashed.
+	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less, or 1 or greater.
+	 */
+	public OpenHash(int capacity, float rehashRatio)
+	{
+		super(capacity, rehashRatio);
+	}
+
+	@Override
+	public void toArray(T[] out) 
+	{
+		int i = 0;
+		for (T value : this)
+			out[i++] = value;
+	}
+	
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractOpenHashMap;
+import com.blackrook.commons.ObjectPair;
+
+/**
+ * Hashed data structure that maps keys to values, stored in an open-addressed hash table.
+ * This is an alternative to {@link HashMap} that does not create an object per entry,
+ * at the expense of not accepting null keys.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class OpenHashMap<K extends Object, V extends Object> extends AbstractOpenHashMap<K, V>
+{
+	/**
+	 * Creates a new hash map with capacity DEFAULT_CAPACITY, rehash ratio DEFAULT_REHASH.
+	 */
+	public OpenHashMap()
+	{
+		this(DEFAULT_CAPACITY, DEFAULT_REHASH);
+	}
+	
+	/**
+	 * Creates a new hash map with capacity <i>cap</i> and rehash ratio DEFAULT_REHASH. 
+	 * @param capacity the initial table capacity. Must be nonzero and non-negative.
+	 * @throws IllegalArgumentException if capacity is negative.
+	 */
+	public OpenHashMap(int capacity)
+	{
+		this(capacity, DEFAULT_REHASH);
+	}
+	
+	/**
+	 * Creates a new hash map.
+	 * @param capacity the capacity. cannot be negative.
+	 * @param rehashRatio the ratio of capacity/tablesize. if this ratio is exceeded, 
+	 * the table's capacity is expanded, and the table is rehashed.
+	 * @throws IllegalArgumentException if capacity is negative or ratio is 0 or less, or 1 or greater.
+	 */
+	public OpenHashMap(int capacity, float rehashRatio)
+	{
+		super(capacity, rehashRatio);
+	}
+	
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		int i = 0;
+		for (ObjectPair<K, V> value : this)
+			out[i++] = value;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void toArrayKeys(K[] out)
+	{
+		int x = 0;
+		for (int i = 0; i < storageArray.length; i++)
+			if (storageArray[i] != null)
+				out[x++] = (K)storageArray[i];
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public void toArrayValues(V[] out)
+	{
+		int x = 0;
+		for (int i = 0; i < storageArray.length; i++)
+			if (storageArray[i] != null)
+				out[x++] = (V)valueArray[i];
+	}
+	
+}
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractSet;
+import com.blackrook.commons.HashStrategy;
+import com.blackrook.commons.ResettableIterator;
+
+/**
+ * A persistent hash set: an immutable set whose "changing" methods, {@link #plus(Object)}
+ * and {@link #minus(Object)}, return new versions of the set that share most of their structure
+ * with the previous version - see {@link PersistentHashMap} for details.
+ * <p>
+ * Persistent sets can't change, so they are safe to share across threads without locks.
+ * The methods that would change the set in place throw {@link UnsupportedOperationException}.
+ * This structure cannot store null objects.
+ * @author Matthew Tropiano
+ * @param <T> an Object type.
+ * @since 2.33.0
+ */
+public class PersistentHash<T extends Object> implements AbstractSet<T>
+{
+	/** The empty set. */
+	private static final PersistentHash<?> EMPTY = new PersistentHash<Object>(PersistentHashMap.<Object, Boolean>empty());
+
+	/** The underlying map. */
+	private final PersistentHashMap<T, Boolean> map;
+
+	/**
+	 * Returns the empty persistent set that uses the objects' own hashcodes and equality.
+	 * @param <T> the object type.
+	 * @return an empty set.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> PersistentHash<T> empty()
+	{
+		return (PersistentHash<T>)EMPTY;
+	}
+
+	/**
+	 * Returns an empty persistent set.
+	 * @param <T> the object type.
+	 * @param hashStrategy the strategy for hashcodes and equality, or null for the objects' own methods.
+	 * @return an empty set.
+	 */
+	public static <T> PersistentHash<T> empty(HashStrategy<? super T> hashStrategy)
+	{
+		if (hashStrategy == null)
+			return empty();
+		return new PersistentHash<T>(PersistentHashMap.<T, Boolean>empty(hashStrategy));
+	}
+
+	/**
+	 * Creates a new persistent set from a copy of a set, using the objects' own hashcodes and equality.
+	 * @param <T> the object type.
+	 * @param set the source set.
+	 * @return a new persistent set.
+	 * @throws NullPointerException if an object is null.
+	 */
+	public static <T> PersistentHash<T> copyOf(AbstractSet<? extends T> set)
+	{
+		Transient<T> out = PersistentHash.<T>empty().asTransient();
+		for (T object : set)
+			out.put(object);
+		return out.toPersistent();
+	}
+
+	private PersistentHash(PersistentHashMap<T, Boolean> map)
+	{
+		this.map = map;
+	}
+
+	/**
+	 * Returns a version of this set with an object added to it.
+	 * This set is not changed.
+	 * @param object the object to add.
+	 * @return the new version of the set, or this set if the object is already in it.
+	 * @throws NullPointerException if object is null.
+	 */
+	public PersistentHash<T> plus(T object)
+	{
+		PersistentHashMap<T, Boolean> out = map.plus(object, Boolean.TRUE);
+		return out != map ? new PersistentHash<T>(out) : this;
+	}
+
+	/**
+	 * Returns a version of this set without an object.
+	 * This set is not changed.
+	 * @param object the object to remove.
+	 * @return the new version of the set, or this set if the object is not in it.
+	 * @throws NullPointerException if object is null.
+	 */
+	public PersistentHash<T> minus(T object)
+	{
+		PersistentHashMap<T, Boolean> out = map.minus(object);
+		return out != map ? new PersistentHash<T>(out) : this;
+	}
+
+	/**
+	 * Returns a transient copy of this set, for making many changes efficiently.
+	 * This is O(1): the transient set shares this set's structure until it changes it.
+	 * @return a new transient set.
+	 */
+	public Transient<T> asTransient()
+	{
+		return new Transient<T>(map.asTransient());
+	}
+
+	/**
+	 * Checks if an object (by equality) is present in the set.
+	 * @throws NullPointerException if object is null.
+	 */
+	@Override
+	public boolean contains(T object)
+	{
+		return map.containsKey(object);
+	}
+
+	/**
+	 * Persistent sets can't be changed in place - use {@link #plus(Object)}.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void put(T object)
+	{
+		throw new UnsupportedOperationException("Persistent sets can't be changed in place - use plus().");
+	}
+
+	/**
+	 * Persistent sets can't be changed in place - use {@link #minus(Object)}.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public boolean remove(T object)
+	{
+		throw new UnsupportedOperationException("Persistent sets can't be changed in place - use minus().");
+	}
+
+	@Override
+	public int size()
+	{
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return map.isEmpty();
+	}
+
+	@Override
+	public void toArray(T[] out)
+	{
+		map.toArrayKeys(out);
+	}
+
+	/**
+	 * Returns an iterator through the objects in this set, in no particular order.
+	 * The iterator's remove() method throws {@link UnsupportedOperationException}.
+	 */
+	@Override
+	public ResettableIterator<T> iterator()
+	{
+		return map.keyIterator();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (T object : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(object);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	/**
+	 * A transient version of a persistent set, which changes itself in place like a regular set.
+	 * See {@link PersistentHashMap.Transient} for details.
+	 * Transient sets are not safe to use from several threads at once.
+	 * @param <T> an Object type.
+	 */
+	public static class Transient<T extends Object> implements AbstractSet<T>
+	{
+		/** The underlying map. */
+		private final PersistentHashMap.Transient<T, Boolean> map;
+
+		private Transient(PersistentHashMap.Transient<T, Boolean> map)
+		{
+			this.map = map;
+		}
+
+		/**
+		 * Returns a persistent set with the current contents of this set, in O(1) time.
+		 * Changing this set afterward does not change the returned set.
+		 * @return a persistent set.
+		 */
+		public PersistentHash<T> toPersistent()
+		{
+			return new PersistentHash<T>(map.toPersistent());
+		}
+
+		/**
+		 * Clears the contents of this set.
+		 */
+		public void clear()
+		{
+			map.clear();
+		}
+
+		/**
+		 * @throws NullPointerException if object is null.
+		 */
+		@Override
+		public void put(T object)
+		{
+			map.put(object, Boolean.TRUE);
+		}
+
+		/**
+		 * @throws NullPointerException if object is null.
+		 */
+		@Override
+		public boolean remove(T object)
+		{
+			return map.removeUsingKey(object) != null;
+		}
+
+		@Override
+		public boolean contains(T object)
+		{
+			return map.containsKey(object);
+		}
+
+		@Override
+		public int size()
+		{
+			return map.size();
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return map.isEmpty();
+		}
+
+		@Override
+		public void toArray(T[] out)
+		{
+			map.toArrayKeys(out);
+		}
+
+		/**
+		 * Returns an iterator through the objects in this set, as they are when this is called.
+		 * Changing this set while iterating does not affect the iterator.
+		 * Removing through the iterator removes the object from this set.
+		 */
+		@Override
+		public ResettableIterator<T> iterator()
+		{
+			final ResettableIterator<T> it = map.toPersistent().keyIterator();
+			return new ResettableIterator<T>()
+			{
+				private T last = null;
+
+				@Override
+				public boolean hasNext()
+				{
+					return it.hasNext();
+				}
+
+				@Override
+				public T next()
+				{
+					return last = it.next();
+				}
+
+				@Override
+				public void remove()
+				{
+					if (last == null)
+						throw new IllegalStateException("remove() called before next()");
+					map.removeUsingKey(last);
+					last = null;
+				}
+
+				@Override
+				public void reset()
+				{
+					it.reset();
+					last = null;
+				}
+			};
+		}
+
+		@Override
+		public String toString()
+		{
+			return toPersistent().toString();
+		}
+	}
+
+}
@@ -0,0 +1,983 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import com.blackrook.commons.AbstractMap;
+import com.blackrook.commons.HashStrategy;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+
+/**
+ * A persistent hash map: an immutable map whose "changing" methods, {@link #plus(Object, Object)}
+ * and {@link #minus(Object)}, return new versions of the map that share most of their structure
+ * with the previous version, instead of copying it.
+ * <p>
+ * The map is a hash array-mapped trie (HAMT): a tree of nodes with up to 32 branches,
+ * each indexed by five bits of a key's hashcode and stored in a compact array addressed
+ * by a bitmap. A new version only copies the nodes on the path to the changed entry
+ * (at most seven), so adding and removing entries take O(log32 n) time, and keeping an old
+ * version (a snapshot) is O(1).
+ * <p>
+ * For bulk changes, {@link #asTransient()} returns a {@link Transient} map that changes
+ * its own nodes in place, and can produce a persistent map at any time, in O(1).
+ * <p>
+ * Persistent maps can't change, so they are safe to share across threads without locks.
+ * The methods that would change the map in place throw {@link UnsupportedOperationException}.
+ * This structure cannot store null keys.
+ * @author Matthew Tropiano
+ * @param <K> the object type that serves as the Key in the map.
+ * @param <V> the object type that serves as the Value in the map.
+ * @since 2.33.0
+ */
+public class PersistentHashMap<K extends Object, V extends Object> implements AbstractMap<K, V>
+{
+	/** Bits of the hashcode per trie level. */
+	private static final int LEVEL_BITS = 5;
+	/** Branch index mask. */
+	private static final int LEVEL_MASK = (1 << LEVEL_BITS) - 1;
+	/** Value returned by lookups that find nothing. */
+	private static final Object NOT_FOUND = new Object();
+	/** The empty node. */
+	private static final BitmapNode EMPTY_NODE = new BitmapNode(null, 0, new Object[0]);
+	/** The empty map. */
+	private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<Object, Object>(EMPTY_NODE, 0, null);
+
+	/** The root node. */
+	private final Node root;
+	/** The amount of entries. */
+	private final int size;
+	/** Hashing strategy for the keys, or null for the keys' own methods. */
+	private final HashStrategy<Object> keyHashStrategy;
+
+	/**
+	 * Returns the empty persistent map that uses the keys' own hashcodes and equality.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 * @return an empty map.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentHashMap<K, V> empty()
+	{
+		return (PersistentHashMap<K, V>)EMPTY;
+	}
+
+	/**
+	 * Returns an empty persistent map.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 * @param keyHashStrategy the strategy for key hashcodes and equality, or null for the keys' own methods.
+	 * @return an empty map.
+	 */
+	public static <K, V> PersistentHashMap<K, V> empty(HashStrategy<? super K> keyHashStrategy)
+	{
+		if (keyHashStrategy == null)
+			return empty();
+		return new PersistentHashMap<K, V>(EMPTY_NODE, 0, keyHashStrategy);
+	}
+
+	/**
+	 * Creates a new persistent map from a copy of a map, using the keys' own hashcodes and equality.
+	 * @param <K> the key type.
+	 * @param <V> the value type.
+	 * @param map the source map.
+	 * @return a new persistent map.
+	 * @throws NullPointerException if a key is null.
+	 */
+	public static <K, V> PersistentHashMap<K, V> copyOf(AbstractMap<? extends K, ? extends V> map)
+	{
+		Transient<K, V> out = PersistentHashMap.<K, V>empty().asTransient();
+		for (ObjectPair<? extends K, ? extends V> pair : map)
+			out.put(pair.getKey(), pair.getValue());
+		return out.toPersistent();
+	}
+
+	@SuppressWarnings("unchecked")
+	private PersistentHashMap(Node root, int size, HashStrategy<?> keyHashStrategy)
+	{
+		this.root = root;
+		this.size = size;
+		this.keyHashStrategy = (HashStrategy<Object>)keyHashStrategy;
+	}
+
+	/**
+	 * Returns a version of this map with a key associated with a value.
+	 * This map is not changed.
+	 * @param key the key.
+	 * @param value the value associated with the key.
+	 * @return the new version of the map, or this map if the key is already associated with the same value (by reference).
+	 * @throws NullPointerException if key is null.
+	 */
+	public PersistentHashMap<K, V> plus(K key, V value)
+	{
+		Box added = new Box();
+		Node newRoot = root.assoc(null, keyHashStrategy, 0, hashOf(keyHashStrategy, key), key, value, added);
+		if (newRoot == root)
+			return this;
+		return new PersistentHashMap<K, V>(newRoot, added.value ? size + 1 : size, keyHashStrategy);
+	}
+
+	/**
+	 * Returns a version of this map without a key.
+	 * This map is not changed.
+	 * @param key the key.
+	 * @return the new version of the map, or this map if the key is not in the map.
+	 * @throws NullPointerException if key is null.
+	 */
+	public PersistentHashMap<K, V> minus(K key)
+	{
+		Box removed = new Box();
+		Node newRoot = root.without(null, keyHashStrategy, 0, hashOf(keyHashStrategy, key), key, removed);
+		if (!removed.value)
+			return this;
+		return new PersistentHashMap<K, V>(newRoot != null ? newRoot : EMPTY_NODE, size - 1, keyHashStrategy);
+	}
+
+	/**
+	 * Returns a transient copy of this map, for making many changes efficiently.
+	 * This is O(1): the transient map shares this map's structure until it changes it.
+	 * @return a new transient map.
+	 */
+	public Transient<K, V> asTransient()
+	{
+		return new Transient<K, V>(root, size, keyHashStrategy);
+	}
+
+	/**
+	 * Gets the value associated with a key.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(K key)
+	{
+		Object out = root.find(keyHashStrategy, 0, hashOf(keyHashStrategy, key), key);
+		return out != NOT_FOUND ? (V)out : null;
+	}
+
+	/**
+	 * Checks if a key (by equality) is present in the map.
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public boolean containsKey(K key)
+	{
+		return root.find(keyHashStrategy, 0, hashOf(keyHashStrategy, key), key) != NOT_FOUND;
+	}
+
+	/**
+	 * Checks if the key of a pair (by equality) is present in the map.
+	 */
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	/**
+	 * Persistent maps can't be changed in place - use {@link #plus(Object, Object)}.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void put(K key, V value)
+	{
+		throw new UnsupportedOperationException("Persistent maps can't be changed in place - use plus().");
+	}
+
+	/**
+	 * Persistent maps can't be changed in place - use {@link #plus(Object, Object)}.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		throw new UnsupportedOperationException("Persistent maps can't be changed in place - use plus().");
+	}
+
+	/**
+	 * Persistent maps can't be changed in place - use {@link #minus(Object)}.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public V removeUsingKey(K key)
+	{
+		throw new UnsupportedOperationException("Persistent maps can't be changed in place - use minus().");
+	}
+
+	/**
+	 * Persistent maps can't be changed in place - use {@link #minus(Object)}.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		throw new UnsupportedOperationException("Persistent maps can't be changed in place - use minus().");
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		int i = 0;
+		for (ObjectPair<K, V> pair : this)
+			out[i++] = pair;
+	}
+
+	@Override
+	public void toArrayKeys(K[] out)
+	{
+		int i = 0;
+		ResettableIterator<K> it = keyIterator();
+		while (it.hasNext())
+			out[i++] = it.next();
+	}
+
+	@Override
+	public void toArrayValues(V[] out)
+	{
+		int i = 0;
+		ResettableIterator<V> it = valueIterator();
+		while (it.hasNext())
+			out[i++] = it.next();
+	}
+
+	/**
+	 * Returns an iterator through copies of the entries in this map, in no particular order.
+	 * The iterator's remove() method throws {@link UnsupportedOperationException}.
+	 */
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new TrieIterator<ObjectPair<K, V>>(root)
+		{
+			@Override
+			@SuppressWarnings("unchecked")
+			protected ObjectPair<K, V> get(Object key, Object value)
+			{
+				return new ObjectPair<K, V>((K)key, (V)value);
+			}
+		};
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each key in this map.
+	 * The iterator's remove() method throws {@link UnsupportedOperationException}.
+	 */
+	public ResettableIterator<K> keyIterator()
+	{
+		return new TrieIterator<K>(root)
+		{
+			@Override
+			@SuppressWarnings("unchecked")
+			protected K get(Object key, Object value)
+			{
+				return (K)key;
+			}
+		};
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each value in this map.
+	 * The iterator's remove() method throws {@link UnsupportedOperationException}.
+	 */
+	public ResettableIterator<V> valueIterator()
+	{
+		return new TrieIterator<V>(root)
+		{
+			@Override
+			@SuppressWarnings("unchecked")
+			protected V get(Object key, Object value)
+			{
+				return (V)value;
+			}
+		};
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (ObjectPair<K, V> pair : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(pair);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	// Calculates the mixed hashcode of a key.
+	private static int hashOf(HashStrategy<Object> strategy, Object key)
+	{
+		if (key == null)
+			throw new NullPointerException("Persistent maps cannot contain null keys.");
+		int h = (strategy != null ? strategy.hashCode(key) : key.hashCode()) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	// Checks if two keys are equal.
+	private static boolean keyEquals(HashStrategy<Object> strategy, Object key1, Object key2)
+	{
+		return key1 == key2 || (strategy != null ? strategy.equals(key1, key2) : key1.equals(key2));
+	}
+
+	// Gets the bit for a hashcode at a trie level.
+	private static int bitFor(int hash, int shift)
+	{
+		return 1 << ((hash >>> shift) & LEVEL_MASK);
+	}
+
+	// Creates a node holding two entries.
+	private static Node createNode(Object edit, HashStrategy<Object> strategy, int shift, Object key1, Object value1, int hash2, Object key2, Object value2)
+	{
+		int hash1 = hashOf(strategy, key1);
+		if (hash1 == hash2)
+			return new CollisionNode(edit, hash1, 2, new Object[]{key1, value1, key2, value2});
+		Box added = new Box();
+		return EMPTY_NODE
+			.assoc(edit, strategy, shift, hash1, key1, value1, added)
+			.assoc(edit, strategy, shift, hash2, key2, value2, added);
+	}
+
+	/**
+	 * A mutable boolean result.
+	 */
+	private static class Box
+	{
+		private boolean value;
+	}
+
+	/**
+	 * A trie node. The array holds [key, value] pairs; a null key means that the value is a child node.
+	 */
+	private static abstract class Node
+	{
+		/** The transient edit that owns this node (and may change it in place), or null if none does. */
+		protected final Object edit;
+		/** Pairs of [key, value]. */
+		protected Object[] array;
+
+		protected Node(Object edit, Object[] array)
+		{
+			this.edit = edit;
+			this.array = array;
+		}
+
+		/**
+		 * @return the amount of pairs in the array.
+		 */
+		protected abstract int pairCount();
+
+		/**
+		 * Finds the value for a key.
+		 * @return the value, or NOT_FOUND.
+		 */
+		protected abstract Object find(HashStrategy<Object> strategy, int shift, int hash, Object key);
+
+		/**
+		 * Associates a key with a value.
+		 * @return the resultant node (this node if it did not change or was changed in place).
+		 */
+		protected abstract Node assoc(Object edit, HashStrategy<Object> strategy, int shift, int hash, Object key, Object value, Box added);
+
+		/**
+		 * Removes a key.
+		 * @return the resultant node (this node if it did not change or was changed in place), or null if the node is now empty.
+		 */
+		protected abstract Node without(Object edit, HashStrategy<Object> strategy, int shift, int hash, Object key, Box removed);
+
+		/**
+		 * @return true if a transient edit can change this node in place.
+		 */
+		protected boolean canEdit(Object edit)
+		{
+			return edit != null && this.edit == edit;
+		}
+	}
+
+	/**
+	 * A node with up to 32 branches, addressed by a bitmap.
+	 */
+	private static class BitmapNode extends Node
+	{
+		/** Branches in use. */
+		private int bitmap;
+
+		private BitmapNode(Object edit, int bitmap, Object[] array)
+		{
+			super(edit, array);
+			this.bitmap = bitmap;
+		}
+
+		@Override
+		protected int pairCount()
+		{
+			return Integer.bitCount(bitmap);
+		}
+
+		// Gets the array pair index for a bit.
+		private int indexOf(int bit)
+		{
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		protected Object find(HashStrategy<Object> strategy, int shift, int hash, Object key)
+		{
+			BitmapNode node = this;
+			while (true)
+			{
+				int bit = bitFor(hash, shift);
+				if ((node.bitmap & bit) == 0)
+					return NOT_FOUND;
+				int i = node.indexOf(bit) << 1;
+				Object k = node.array[i];
+				Object v = node.array[i + 1];
+				if (k != null)
+					return keyEquals(strategy, key, k) ? v : NOT_FOUND;
+				if (!(v instanceof BitmapNode))
+					return ((Node)v).find(strategy, shift + LEVEL_BITS, hash, key);
+				node = (BitmapNode)v;
+				shift += LEVEL_BITS;
+			}
+		}
+
+		@Override
+		protected Node assoc(Object edit, HashStrategy<Object> strategy, int shift, int hash, Object key, Object value, Box added)
+		{
+			int bit = bitFor(hash, shift);
+			int idx = indexOf(bit);
+			int i = idx << 1;
+			if ((bitmap & bit) != 0)
+			{
+				Object k = array[i];
+				Object v = array[i + 1];
+				if (k == null)
+				{
+					Node n = ((Node)v).assoc(edit, strategy, shift + LEVEL_BITS, hash, key, value, added);
+					return n == v ? this : set(edit, i + 1, n);
+				}
+				if (keyEquals(strategy, key, k))
+					return v == value ? this : set(edit, i + 1, value);
+				added.value = true;
+				return set(edit, i, null, i + 1, createNode(edit, strategy, shift + LEVEL_BITS, k, v, hash, key, value));
+			}
+
+			added.value = true;
+			int n = pairCount();
+			if (canEdit(edit) && (n << 1) < array.length)
+			{
+				System.arraycopy(array, i, array, i + 2, (n - idx) << 1);
+				array[i] = key;
+				array[i + 1] = value;
+				bitmap |= bit;
+				return this;
+			}
+			// transient nodes get room to grow.
+			Object[] newArray = new Object[(n + (edit != null ? 4 : 1)) << 1];
+			System.arraycopy(array, 0, newArray, 0, i);
+			newArray[i] = key;
+			newArray[i + 1] = value;
+			System.arraycopy(array, i, newArray, i + 2, (n - idx) << 1);
+			return new BitmapNode(edit, bitmap | bit, newArray);
+		}
+
+		@Override
+		protected Node without(Object edit, HashStrategy<Object> strategy, int shift, int hash, Object key, Box removed)
+		{
+			int bit = bitFor(hash, shift);
+			if ((bitmap & bit) == 0)
+				return this;
+			int idx = indexOf(bit);
+			int i = idx << 1;
+			Object k = array[i];
+			Object v = array[i + 1];
+			if (k == null)
+			{
+				Node n = ((Node)v).without(edit, strategy, shift + LEVEL_BITS, hash, key, removed);
+				if (n == v)
+					return this;
+				if (n == null)
+					return removePair(edit, bit, idx);
+				// pull single entries up, so that the trie stays as shallow as possible.
+				if (n.pairCount() == 1 && n.array[0] != null)
+					return set(edit, i, n.array[0], i + 1, n.array[1]);
+				return set(edit, i + 1, n);
+			}
+			if (!keyEquals(strategy, key, k))
+				return this;
+			removed.value = true;
+			return removePair(edit, bit, idx);
+		}
+
+		// Gets a node that this edit can change: this one, or a copy.
+		private BitmapNode editable(Object edit)
+		{
+			if (canEdit(edit))
+				return this;
+			int n = pairCount() << 1;
+			Object[] newArray = new Object[edit != null ? n + 2 : n];
+			System.arraycopy(array, 0, newArray, 0, n);
+			return new BitmapNode(edit, bitmap, newArray);
+		}
+
+		// Sets an array element.
+		private BitmapNode set(Object edit, int i, Object a)
+		{
+			BitmapNode out = editable(edit);
+			out.array[i] = a;
+			return out;
+		}
+
+		// Sets two array elements.
+		private BitmapNode set(Object edit, int i, Object a, int j, Object b)
+		{
+			BitmapNode out = editable(edit);
+			out.array[i] = a;
+			out.array[j] = b;
+			return out;
+		}
+
+		// Removes a pair.
+		private BitmapNode removePair(Object edit, int bit, int idx)
+		{
+			if (bitmap == bit)
+				return null;
+			int n = pairCount();
+			int i = idx << 1;
+			if (canEdit(edit))
+			{
+				System.arraycopy(array, i + 2, array, i, (n - idx - 1) << 1);
+				array[(n << 1) - 2] = null;
+				array[(n << 1) - 1] = null;
+				bitmap ^= bit;
+				return this;
+			}
+			Object[] newArray = new Object[(n - 1) << 1];
+			System.arraycopy(array, 0, newArray, 0, i);
+			System.arraycopy(array, i + 2, newArray, i, (n - idx - 1) << 1);
+			return new BitmapNode(edit, bitmap ^ bit, newArray);
+		}
+	}
+
+	/**
+	 * A node holding entries whose full hashcodes are equal.
+	 */
+	private static class CollisionNode extends Node
+	{
+		/** The shared hashcode. */
+		private final int hash;
+		/** Amount of pairs. */
+		private int count;
+
+		private CollisionNode(Object edit, int hash, int count, Object[] array)
+		{
+			super(edit, array);
+			this.hash = hash;
+			this.count = count;
+		}
+
+		@Override
+		protected int pairCount()
+		{
+			return count;
+		}
+
+		// Finds the array index of a key, or -1.
+		private int indexOf(HashStrategy<Object> strategy, Object key)
+		{
+			for (int i = 0; i < count << 1; i += 2)
+				if (keyEquals(strategy, key, array[i]))
+					return i;
+			return -1;
+		}
+
+		@Override
+		protected Object find(HashStrategy<Object> strategy, int shift, int hash, Object key)
+		{
+			if (hash != this.hash)
+				return NOT_FOUND;
+			int i = indexOf(strategy, key);
+			return i >= 0 ? array[i + 1] : NOT_FOUND;
+		}
+
+		@Override
+		protected Node assoc(Object edit, HashStrategy<Object> strategy, int shift, int hash, Object key, Object value, Box added)
+		{
+			if (hash != this.hash)
+			{
+				// nest this node in a bitmap node, and add the new entry there.
+				return new BitmapNode(edit, bitFor(this.hash, shift), new Object[]{null, this})
+					.assoc(edit, strategy, shift, hash, key, value, added);
+			}
+
+			int i = indexOf(strategy, key);
+			if (i >= 0)
+			{
+				if (array[i + 1] == value)
+					return this;
+				CollisionNode out = editable(edit, 0);
+				out.array[i + 1] = value;
+				return out;
+			}
+
+			added.value = true;
+			CollisionNode out = editable(edit, 1);
+			out.array[count << 1] = key;
+			out.array[(count << 1) + 1] = value;
+			out.count++;
+			return out;
+		}
+
+		@Override
+		protected Node without(Object edit, HashStrategy<Object> strategy, int shift, int hash, Object key, Box removed)
+		{
+			if (hash != this.hash)
+				return this;
+			int i = indexOf(strategy, key);
+			if (i < 0)
+				return this;
+			removed.value = true;
+			if (count == 1)
+				return null;
+
+			CollisionNode out = editable(edit, 0);
+			int last = (count - 1) << 1;
+			out.array[i] = out.array[last];
+			out.array[i + 1] = out.array[last + 1];
+			out.array[last] = null;
+			out.array[last + 1] = null;
+			out.count--;
+			return out;
+		}
+
+		// Gets a node that this edit can change, with room for more pairs: this one, or a copy.
+		private CollisionNode editable(Object edit, int morePairs)
+		{
+			int length = (count + morePairs) << 1;
+			if (canEdit(edit) && array.length >= length)
+				return this;
+			Object[] newArray = new Object[length];
+			System.arraycopy(array, 0, newArray, 0, count << 1);
+			if (canEdit(edit))
+			{
+				array = newArray;
+				return this;
+			}
+			return new CollisionNode(edit, hash, count, newArray);
+		}
+	}
+
+	/**
+	 * Depth-first iterator through the entries in a trie.
+	 */
+	private static abstract class TrieIterator<T> implements ResettableIterator<T>
+	{
+		/** Maximum trie depth, including a collision node. */
+		private static final int MAX_DEPTH = 9;
+
+		private final Node root;
+		private Node[] nodes;
+		private int[] positions;
+		private int depth;
+		private Object nextKey;
+		private Object nextValue;
+
+		private TrieIterator(Node root)
+		{
+			this.root = root;
+			this.nodes = new Node[MAX_DEPTH];
+			this.positions = new int[MAX_DEPTH];
+			reset();
+		}
+
+		/**
+		 * Creates the object to return for an entry.
+		 */
+		protected abstract T get(Object key, Object value);
+
+		// Finds the next entry.
+		private void advance()
+		{
+			nextKey = null;
+			while (depth >= 0)
+			{
+				Node node = nodes[depth];
+				int p = positions[depth];
+				if (p >= node.pairCount())
+				{
+					depth--;
+					continue;
+				}
+				positions[depth]++;
+				Object k = node.array[p << 1];
+				Object v = node.array[(p << 1) + 1];
+				if (k != null)
+				{
+					nextKey = k;
+					nextValue = v;
+					return;
+				}
+				depth++;
+				nodes[depth] = (Node)v;
+				positions[depth] = 0;
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return nextKey != null;
+		}
+
+		@Override
+		public T next()
+		{
+			T out = get(nextKey, nextValue);
+			advance();
+			return out;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Persistent maps can't be changed in place.");
+		}
+
+		@Override
+		public void reset()
+		{
+			depth = 0;
+			nodes[0] = root;
+			positions[0] = 0;
+			advance();
+		}
+	}
+
+	/**
+	 * A transient version of a persistent map, which changes itself in place like a regular map.
+	 * It only copies nodes that it shares with persistent maps, and changes its own nodes in place,
+	 * so it is much faster than {@link PersistentHashMap#plus(Object, Object)} for bulk changes.
+	 * <p>
+	 * {@link #toPersistent()} returns a persistent map of the current contents in O(1) time,
+	 * and this map can still be changed afterward without affecting that persistent map.
+	 * Transient maps are not safe to use from several threads at once.
+	 * @param <K> the object type that serves as the Key in the map.
+	 * @param <V> the object type that serves as the Value in the map.
+	 */
+	public static class Transient<K extends Object, V extends Object> implements AbstractMap<K, V>
+	{
+		/** The root node. */
+		private Node root;
+		/** The amount of entries. */
+		private int size;
+		/** Hashing strategy for the keys. */
+		private final HashStrategy<Object> keyHashStrategy;
+		/** The edit token for the nodes that this map owns. */
+		private Object edit;
+
+		private Transient(Node root, int size, HashStrategy<Object> keyHashStrategy)
+		{
+			this.root = root;
+			this.size = size;
+			this.keyHashStrategy = keyHashStrategy;
+			this.edit = new Object();
+		}
+
+		/**
+		 * Returns a persistent map with the current contents of this map, in O(1) time.
+		 * Changing this map afterward does not change the returned map.
+		 * @return a persistent map.
+		 */
+		public PersistentHashMap<K, V> toPersistent()
+		{
+			// nodes owned by the old edit token are now shared, and are copied when changed.
+			edit = new Object();
+			return new PersistentHashMap<K, V>(root, size, keyHashStrategy);
+		}
+
+		/**
+		 * Adds/replaces a [key, value] pair to this map.
+		 * @throws NullPointerException if key is null.
+		 */
+		@Override
+		public void put(K key, V value)
+		{
+			Box added = new Box();
+			root = root.assoc(edit, keyHashStrategy, 0, hashOf(keyHashStrategy, key), key, value, added);
+			if (added.value)
+				size++;
+		}
+
+		/**
+		 * Removes a value from this map using a key.
+		 * @throws NullPointerException if key is null.
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public V removeUsingKey(K key)
+		{
+			int hash = hashOf(keyHashStrategy, key);
+			Object out = root.find(keyHashStrategy, 0, hash, key);
+			if (out == NOT_FOUND)
+				return null;
+			Node newRoot = root.without(edit, keyHashStrategy, 0, hash, key, new Box());
+			root = newRoot != null ? newRoot : EMPTY_NODE;
+			size--;
+			return (V)out;
+		}
+
+		/**
+		 * Clears the contents of this map.
+		 */
+		public void clear()
+		{
+			root = EMPTY_NODE;
+			size = 0;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V get(K key)
+		{
+			Object out = root.find(keyHashStrategy, 0, hashOf(keyHashStrategy, key), key);
+			return out != NOT_FOUND ? (V)out : null;
+		}
+
+		@Override
+		public boolean containsKey(K key)
+		{
+			return root.find(keyHashStrategy, 0, hashOf(keyHashStrategy, key), key) != NOT_FOUND;
+		}
+
+		/**
+		 * Adds/replaces a [key, value] pair to this map, using the key and value of a pair.
+		 * The pair itself is not stored.
+		 */
+		@Override
+		public void put(ObjectPair<K, V> pair)
+		{
+			put(pair.getKey(), pair.getValue());
+		}
+
+		/**
+		 * Checks if the key of a pair (by equality) is present in the map.
+		 */
+		@Override
+		public boolean contains(ObjectPair<K, V> pair)
+		{
+			return containsKey(pair.getKey());
+		}
+
+		/**
+		 * Removes the entry that uses the key of a pair.
+		 */
+		@Override
+		public boolean remove(ObjectPair<K, V> pair)
+		{
+			if (!containsKey(pair.getKey()))
+				return false;
+			removeUsingKey(pair.getKey());
+			return true;
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return size() == 0;
+		}
+
+		@Override
+		public void toArray(ObjectPair<K, V>[] out)
+		{
+			toPersistent().toArray(out);
+		}
+
+		@Override
+		public void toArrayKeys(K[] out)
+		{
+			toPersistent().toArrayKeys(out);
+		}
+
+		@Override
+		public void toArrayValues(V[] out)
+		{
+			toPersistent().toArrayValues(out);
+		}
+
+		/**
+		 * Returns an iterator through copies of the entries in this map, as they are when this is called.
+		 * Changing this map while iterating does not affect the iterator.
+		 * Removing through the iterator removes the entry from this map.
+		 */
+		@Override
+		public ResettableIterator<ObjectPair<K, V>> iterator()
+		{
+			final ResettableIterator<ObjectPair<K, V>> it = toPersistent().iterator();
+			return new ResettableIterator<ObjectPair<K, V>>()
+			{
+				private ObjectPair<K, V> last = null;
+
+				@Override
+				public boolean hasNext()
+				{
+					return it.hasNext();
+				}
+
+				@Override
+				public ObjectPair<K, V> next()
+				{
+					return last = it.next();
+				}
+
+				@Override
+				public void remove()
+				{
+					if (last == null)
+						throw new IllegalStateException("remove() called before next()");
+					removeUsingKey(last.getKey());
+					last = null;
+				}
+
+				@Override
+				public void reset()
+				{
+					it.reset();
+					last = null;
+				}
+			};
+		}
+
+		@Override
+		public String toString()
+		{
+			return toPersistent().toString();
+		}
+	}
+
+}
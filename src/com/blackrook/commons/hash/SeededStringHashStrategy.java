@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import java.security.SecureRandom;
+
+import com.blackrook.commons.OrderedHashStrategy;
+
+/**
+ * A hash strategy for strings that hashes them with SipHash-2-4, a keyed pseudorandom function,
+ * using a secret 128-bit key (the seed).
+ * Unlike {@link String#hashCode()} (or unkeyed or merely seeded hashes like MurmurHash), the strings
+ * that collide under this strategy cannot be found without knowing the key, which makes this suitable
+ * for hashes and maps that are filled with keys from untrusted sources - as long as the key stays secret.
+ * <p>
+ * The characters of a string are hashed as UTF-16LE bytes, and the 64-bit result is folded to 32 bits.
+ * This is slower than {@link String#hashCode()}, which is the cost of the protection.
+ * <p>
+ * This strategy also orders strings by {@link String#compareTo(String)}, so chained hashes that use it
+ * still keep long chains sorted (see {@link com.blackrook.commons.AbstractChainedHash#getSortKey(Object)}).
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ */
+public class SeededStringHashStrategy implements OrderedHashStrategy<String>
+{
+	/** First half of the key. */
+	private final long key0;
+	/** Second half of the key. */
+	private final long key1;
+
+	/**
+	 * Creates a new strategy with a random key from a {@link SecureRandom}.
+	 */
+	public SeededStringHashStrategy()
+	{
+		this(new SecureRandom());
+	}
+
+	// Creates a new strategy with a key from a random number generator.
+	private SeededStringHashStrategy(SecureRandom random)
+	{
+		this(random.nextLong(), random.nextLong());
+	}
+
+	/**
+	 * Creates a new strategy with a specific key.
+	 * Only use this if the key itself is random and secret (for instance, to share one key between processes),
+	 * since anyone who knows the key can find colliding strings.
+	 * @param key0 the first 64 bits of the key (bytes 0 to 7, little-endian).
+	 * @param key1 the second 64 bits of the key (bytes 8 to 15, little-endian).
+	 */
+	public SeededStringHashStrategy(long key0, long key1)
+	{
+		this.key0 = key0;
+		this.key1 = key1;
+	}
+
+	@Override
+	public int hashCode(String object)
+	{
+		long h = hash64(object);
+		return (int)(h ^ (h >>> 32));
+	}
+
+	/**
+	 * Calculates the full 64-bit SipHash-2-4 of a string's UTF-16LE bytes.
+	 * @param object the string.
+	 * @return the hash.
+	 */
+	public long hash64(String object)
+	{
+		long v0 = key0 ^ 0x736F6D6570736575L;
+		long v1 = key1 ^ 0x646F72616E646F6DL;
+		long v2 = key0 ^ 0x6C7967656E657261L;
+		long v3 = key1 ^ 0x7465646279746573L;
+
+		int len = object.length();
+		int i = 0;
+		boolean last = false;
+		while (!last)
+		{
+			long m;
+			if (i + 4 <= len)
+			{
+				// four characters make one 8-byte word.
+				m = object.charAt(i)
+					| ((long)object.charAt(i + 1) << 16)
+					| ((long)object.charAt(i + 2) << 32)
+					| ((long)object.charAt(i + 3) << 48);
+				i += 4;
+			}
+			else
+			{
+				// last word: the leftover characters, and the byte length in the top byte.
+				m = (long)(len << 1) << 56;
+				for (int shift = 0; i < len; i++, shift += 16)
+					m |= (long)object.charAt(i) << shift;
+				last = true;
+			}
+
+			v3 ^= m;
+			for (int r = 0; r < 2; r++)
+			{
+				v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+				v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+				v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+				v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+			}
+			v0 ^= m;
+		}
+
+		v2 ^= 0xFF;
+		for (int r = 0; r < 4; r++)
+		{
+			v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+			v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+			v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+			v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+		}
+		return v0 ^ v1 ^ v2 ^ v3;
+	}
+
+	@Override
+	public boolean equals(String object1, String object2)
+	{
+		return object1.equals(object2);
+	}
+
+	@Override
+	public int compare(String object1, String object2)
+	{
+		return object1.compareTo(object2);
+	}
+
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.blackrook.commons.Sizable;
+
+/**
+ * A count map that only keeps a fixed amount of counters, for finding the most
+ * frequent objects ("heavy hitters") out of an unbounded amount of distinct objects.
+ * <p>
+ * This uses the Space-Saving algorithm: when an object that is not counted is given a count
+ * and all counters are in use, the object with the lowest count is replaced, and the new object
+ * inherits its count. Counts are therefore upper bounds on the real counts, overestimated by
+ * at most {@link #getError(Object)}. Any object whose real count is greater than
+ * <code>total / capacity</code> is guaranteed to be counted.
+ * <p>
+ * Counting an object that is already counted never creates an object.
+ * This structure cannot store null objects.
+ * @author Matthew Tropiano
+ * @param <T> an Object type.
+ * @since 2.33.0
+ */
+public class TopKCountMap<T extends Object> implements Sizable
+{
+	/** Map of object to counter. */
+	private OpenHashMap<T, Counter<T>> counterMap;
+	/** Counters, in a min-heap by count. */
+	private Counter<T>[] heap;
+	/** Amount of counters in use. */
+	private int size;
+	/** Sum of all given amounts. */
+	private long total;
+
+	/**
+	 * Creates a new top-K count map.
+	 * @param capacity the maximum amount of objects to count.
+	 * @throws IllegalArgumentException if capacity is 0 or less.
+	 */
+	@SuppressWarnings("unchecked")
+	public TopKCountMap(int capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity can't 0 or less.");
+		this.counterMap = new OpenHashMap<T, Counter<T>>(capacity + 1);
+		this.heap = (Counter<T>[])new Counter<?>[capacity];
+		this.size = 0;
+		this.total = 0L;
+	}
+
+	/**
+	 * @return the maximum amount of objects that this counts.
+	 */
+	public int getCapacity()
+	{
+		return heap.length;
+	}
+
+	/**
+	 * Returns the estimated count of an object.
+	 * This is never less than the real count of the object, if it is counted.
+	 * @param object the object.
+	 * @return the estimated count of the object, or 0 if the object is not counted.
+	 */
+	public long getCount(T object)
+	{
+		Counter<T> counter = counterMap.get(object);
+		return counter != null ? counter.count : 0L;
+	}
+
+	/**
+	 * Returns the maximum amount that the count of an object is overestimated by.
+	 * @param object the object.
+	 * @return the maximum error, or 0 if the object is not counted.
+	 */
+	public long getError(T object)
+	{
+		Counter<T> counter = counterMap.get(object);
+		return counter != null ? counter.error : 0L;
+	}
+
+	/**
+	 * Returns the guaranteed count of an object (estimated count minus the maximum error).
+	 * This is never more than the real count of the object.
+	 * @param object the object.
+	 * @return the guaranteed count, or 0 if the object is not counted.
+	 */
+	public long getGuaranteedCount(T object)
+	{
+		Counter<T> counter = counterMap.get(object);
+		return counter != null ? counter.count - counter.error : 0L;
+	}
+
+	/**
+	 * @return the sum of all amounts given to this map, including amounts for objects that are no longer counted.
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * Adds one to the count of an object.
+	 * @param object the object to add.
+	 * @return the new estimated count of the object.
+	 * @throws NullPointerException if object is null.
+	 */
+	public long give(T object)
+	{
+		return give(object, 1L);
+	}
+
+	/**
+	 * Adds an amount to the count of an object.
+	 * If the object is not counted and all counters are in use, the object with
+	 * the lowest count stops being counted, and this object takes its place.
+	 * @param object the object to add.
+	 * @param amount the amount to give/add.
+	 * @return the new estimated count of the object.
+	 * @throws NullPointerException if object is null.
+	 * @throws IllegalArgumentException if amount is negative.
+	 */
+	public long give(T object, long amount)
+	{
+		if (object == null)
+			throw new NullPointerException("Count maps cannot contain null objects.");
+		if (amount < 0)
+			throw new IllegalArgumentException("Amount can't be negative.");
+
+		Counter<T> counter = counterMap.get(object);
+		if (counter == null && amount == 0)
+			return 0L;
+
+		total += amount;
+		if (counter != null)
+		{
+			counter.count += amount;
+			siftDown(counter.heapIndex);
+		}
+		else if (size < heap.length)
+		{
+			counter = new Counter<T>(object, amount);
+			counter.heapIndex = size;
+			heap[size++] = counter;
+			siftUp(counter.heapIndex);
+			counterMap.put(object, counter);
+		}
+		else
+		{
+			// replace the least-counted object.
+			counter = heap[0];
+			counterMap.removeUsingKey(counter.object);
+			counter.object = object;
+			counter.error = counter.count;
+			counter.count += amount;
+			siftDown(0);
+			counterMap.put(object, counter);
+		}
+		return counter.count;
+	}
+
+	/**
+	 * Copies the counted objects with the highest estimated counts into an array,
+	 * from highest to lowest.
+	 * @param out the output array. Its length is the amount of objects to get.
+	 * @return the amount of objects copied, which is less than the array length if fewer objects are counted.
+	 */
+	public int getTop(T[] out)
+	{
+		Counter<T>[] sorted = Arrays.copyOf(heap, size);
+		Arrays.sort(sorted, new Comparator<Counter<T>>()
+		{
+			@Override
+			public int compare(Counter<T> c1, Counter<T> c2)
+			{
+				return c1.count == c2.count ? 0 : (c1.count > c2.count ? -1 : 1);
+			}
+		});
+		int n = Math.min(out.length, size);
+		for (int i = 0; i < n; i++)
+			out[i] = sorted[i].object;
+		return n;
+	}
+
+	/**
+	 * Clears the contents of this map.
+	 */
+	public void clear()
+	{
+		counterMap.clear();
+		Arrays.fill(heap, 0, size, null);
+		size = 0;
+		total = 0L;
+	}
+
+	/**
+	 * Returns the amount of counted objects, which is never more than the capacity.
+	 */
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	// Moves a counter toward the root while it is less than its parent.
+	private void siftUp(int index)
+	{
+		Counter<T> counter = heap[index];
+		while (index > 0)
+		{
+			int parent = (index - 1) >>> 1;
+			if (heap[parent].count <= counter.count)
+				break;
+			heap[index] = heap[parent];
+			heap[index].heapIndex = index;
+			index = parent;
+		}
+		heap[index] = counter;
+		counter.heapIndex = index;
+	}
+
+	// Moves a counter toward the leaves while it is greater than a child.
+	private void siftDown(int index)
+	{
+		Counter<T> counter = heap[index];
+		int half = size >>> 1;
+		while (index < half)
+		{
+			int child = (index << 1) + 1;
+			int right = child + 1;
+			if (right < size && heap[right].count < heap[child].count)
+				child = right;
+			if (counter.count <= heap[child].count)
+				break;
+			heap[index] = heap[child];
+			heap[index].heapIndex = index;
+			index = child;
+		}
+		heap[index] = counter;
+		counter.heapIndex = index;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("[");
+		for (int i = 0; i < size; i++)
+		{
+			if (i > 0)
+				sb.append(", ");
+			sb.append(heap[i].object).append('=').append(heap[i].count);
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	/**
+	 * A single counter.
+	 */
+	private static class Counter<T>
+	{
+		private T object;
+		private long count;
+		private long error;
+		private int heapIndex;
+
+		private Counter(T object, long count)
+		{
+			this.object = object;
+			this.count = count;
+			this.error = 0L;
+		}
+	}
+
+}
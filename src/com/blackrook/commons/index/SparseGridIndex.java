@@ -11,19 +11,22 @@ import com.blackrook.commons.ObjectPair;
 import com.blackrook.commons.ResettableIterable;
 import com.blackrook.commons.ResettableIterator;
 import com.blackrook.commons.Sizable;
-import com.blackrook.commons.hash.HashMap;
+import com.blackrook.commons.hash.LongHashMap;
 import com.blackrook.commons.math.Pair;
-import com.blackrook.commons.util.ThreadUtils;
 
 /**
  * This is a grid that contains a grid of Object data generally used for maps and lookups.
  * This map is <i>sparse</i>, which means it uses as little memory as possible, which can increase the lookup time in most cases.
+ * <p>
+ * As of 2.33.0, grid cells are keyed by a primitive long made from both coordinates,
+ * so no key objects are created on {@link #set(int, int, Object)} or {@link #get(int, int)}.
+ * The cells are no longer exposed to subclasses as a protected field; use the public methods instead.
  * @author Matthew Tropiano
  */
 public class SparseGridIndex<T extends Object> implements ResettableIterable<ObjectPair<Pair, T>>, Sizable
 {
-	/** List of grid codes. */
-	protected HashMap<Pair, T> data;
+	/** Grid cells, keyed by packed coordinates. */
+	private CellMap<T> cells;
 	
 	/**
 	 * Creates a new sparse grid of an unspecified width and height.
@@ -31,7 +34,18 @@ public class SparseGridIndex<T extends Object> implements ResettableIterable<Obj
 	 */
 	public SparseGridIndex()
 	{
-		data = new HashMap<Pair, T>();
+		cells = new CellMap<T>();
+	}
+	
+	/**
+	 * Returns the cell key for a set of grid coordinates.
+	 * @param x the grid position x.
+	 * @param y the grid position y.
+	 * @return the corresponding key.
+	 */
+	private static long getKey(int x, int y)
+	{
+		return ((long)x << 32) | (y & 0x0FFFFFFFFL);
 	}
 	
 	/**
@@ -39,7 +53,7 @@ public class SparseGridIndex<T extends Object> implements ResettableIterable<Obj
 	 */
 	public void clear()
 	{
-		data.clear();
+		cells.clear();
 	}
 
 	/**
@@ -50,12 +64,10 @@ public class SparseGridIndex<T extends Object> implements ResettableIterable<Obj
 	 */
 	public void set(int x, int y, T object)
 	{
-		Cache c = getCache();
-		c.tempPair.set(x, y);
 		if (object == null)
-			data.removeUsingKey(c.tempPair);
+			cells.removeUsingKey(getKey(x, y));
 		else
-			data.put(new Pair(x, y), object);
+			cells.put(getKey(x, y), object);
 	}
 
 	/**
@@ -66,27 +78,40 @@ public class SparseGridIndex<T extends Object> implements ResettableIterable<Obj
 	 */
 	public T get(int x, int y)
 	{
-		Cache c = getCache();
-		c.tempPair.set(x, y);
-		return data.get(c.tempPair);
+		return cells.get(getKey(x, y));
 	}
 	
 	@Override
 	public String toString()
 	{
-		return data.toString();
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (ObjectPair<Pair, T> pair : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(pair);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
 	}
 
+	/**
+	 * Returns an iterator over the occupied cells of this grid.
+	 * The returned pairs are created on traversal, and setting a pair's value sets it in this grid.
+	 */
 	@Override
 	public ResettableIterator<ObjectPair<Pair, T>> iterator()
 	{
-		return data.iterator();
+		return cells.new CellIterator();
 	}
 
 	@Override
 	public int size()
 	{
-		return data.size();
+		return cells.size();
 	}
 
 	@Override
@@ -95,28 +120,38 @@ public class SparseGridIndex<T extends Object> implements ResettableIterable<Obj
 		return size() == 0;
 	}
 	
-	private static final String CACHE_NAME = "$$"+Cache.class.getCanonicalName();
-
-	// Get the cache.
-	private Cache getCache()
+	/** Map of grid cells that can iterate through its keys and values together. */
+	private static class CellMap<T> extends LongHashMap<T>
 	{
-		Cache out;
-		if ((out = (Cache)ThreadUtils.getLocal(CACHE_NAME)) == null)
-			ThreadUtils.setLocal(CACHE_NAME, out = new Cache());
-		return out;
-	}
+		/** Iterator for the grid cells. */
+		private class CellIterator extends MapIterator implements ResettableIterator<ObjectPair<Pair, T>>
+		{
+			@Override
+			public ObjectPair<Pair, T> next()
+			{
+				long key = nextKey();
+				return new CellPair(key, lastValue());
+			}
+		}
 
-	/** Cache. */
-	private static final class Cache
-	{
-		/** Temporary pair. */
-		private Pair tempPair;
-		
-		private Cache()
+		/** Grid cell pair that writes its value through to the map. */
+		private class CellPair extends ObjectPair<Pair, T>
 		{
-			tempPair = new Pair();
+			private long cellKey;
+
+			private CellPair(long cellKey, T value)
+			{
+				super(new Pair((int)(cellKey >> 32), (int)cellKey), value);
+				this.cellKey = cellKey;
+			}
+
+			@Override
+			public void setValue(T value)
+			{
+				super.setValue(value);
+				put(cellKey, value);
+			}
 		}
 	}
-	
 
 }
@@ -10,7 +10,7 @@ package com.blackrook.commons.index;
 import com.blackrook.commons.AbstractVector;
 import com.blackrook.commons.ResettableIterator;
 import com.blackrook.commons.hash.Hash;
-import com.blackrook.commons.hash.HashedHashMap;
+import com.blackrook.commons.hash.IntHashMap;
 import com.blackrook.commons.math.geometry.Point1D;
 import com.blackrook.commons.util.ThreadUtils;
 
@@ -29,7 +29,7 @@ import com.blackrook.commons.util.ThreadUtils;
 public class SpatialIndex1D<T> extends AbstractSpatialIndex<T>
 {
 	/** Object map. */
-	private HashedHashMap<Integer, T> objectMap;
+	private IntHashMap<Hash<T>> objectMap;
 	/** Object model. */
 	private SpatialIndex1DModel<T> model;
 
@@ -42,7 +42,7 @@ public class SpatialIndex1D<T> extends AbstractSpatialIndex<T>
 	{
 		super(resolution);
 		this.model = model;
-		this.objectMap = new HashedHashMap<Integer, T>();
+		this.objectMap = new IntHashMap<Hash<T>>();
 	}
 
 	/**
@@ -73,7 +73,7 @@ public class SpatialIndex1D<T> extends AbstractSpatialIndex<T>
 		int endX = AbstractSpatialIndex.getEnd(centerX, halfWidth, getResolution());
 	
 		for (int i = startX; i <= endX; i++)
-			objectMap.add(i, object);
+			addToCell(i, object);
 
 		super.addObject(object);
 	}
@@ -98,11 +98,28 @@ public class SpatialIndex1D<T> extends AbstractSpatialIndex<T>
 		int endX = AbstractSpatialIndex.getEnd(centerX, halfWidth, getResolution());
 	
 		for (int i = startX; i <= endX; i++)
-			objectMap.removeValue(i, object);
+			removeFromCell(i, object);
 		
 		return super.removeObject(object);
 	}
 
+	// Adds an object to a grid cell.
+	private void addToCell(int x, T object)
+	{
+		Hash<T> hash = objectMap.get(x);
+		if (hash == null)
+			objectMap.put(x, hash = new Hash<T>());
+		hash.put(object);
+	}
+
+	// Removes an object from a grid cell.
+	private void removeFromCell(int x, T object)
+	{
+		Hash<T> hash = objectMap.get(x);
+		if (hash != null && hash.remove(object) && hash.isEmpty())
+			objectMap.removeUsingKey(x);
+	}
+
 	/**
 	 * Gets the intersections straddling a given point.
 	 * @param x the point to test.
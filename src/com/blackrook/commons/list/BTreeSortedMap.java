@@ -0,0 +1,1287 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.list;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.blackrook.commons.AbstractMap;
+import com.blackrook.commons.MapCursor;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+
+/**
+ * A map that is always sorted by key, like {@link SortedMap}, but stored in a B+-tree
+ * instead of a single array, so that adding and removing entries is O(log n) instead of O(n).
+ * <p>
+ * Entries are kept in leaf nodes of up to a set amount of entries, which are linked in key order
+ * for fast iteration. Every node also tracks the amount of entries under it, so that the
+ * index-based methods of {@link SortedMap} ({@link #getIndexOf(Object)}, {@link #getValueAtIndex(int)},
+ * and so on) are O(log n) as well.
+ * <p>
+ * Besides exact lookups, this supports floor/ceiling/lower/higher lookups, and cursors over
+ * ranges of keys ({@link #headCursor(Object, boolean)}, {@link #tailCursor(Object, boolean)},
+ * {@link #subCursor(Object, boolean, Object, boolean)}).
+ * <p>
+ * Keys are unique: adding a key that is already in the map replaces its value.
+ * As this is an {@link AbstractMap}, the key versions of SortedMap's <code>contains()</code>
+ * and <code>remove()</code> are {@link #containsKey(Object)} and {@link #removeUsingKey(Object)}.
+ * Keys cannot be null. None of the methods are synchronized, but lookups, index lookups and cursors 
+ * do not change any state, so several threads can read at once as long as none are changing the map.
+ * @author Matthew Tropiano
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * @since 2.33.0
+ */
+public class BTreeSortedMap<K extends Object, V extends Object> implements AbstractMap<K, V>
+{
+	/** Default maximum amount of entries or children per node. */
+	public static final int DEFAULT_NODE_SIZE = 64;
+
+	/** The key comparator, or null for natural ordering. */
+	protected Comparator<? super K> comparator;
+	/** Maximum amount of entries or children per node. */
+	protected int nodeSize;
+	/** Minimum amount of entries or children per node, except the root. */
+	protected int minimumNodeSize;
+
+	/** The root node. */
+	private Node root;
+	/** The first leaf. */
+	private Leaf first;
+	/** The last leaf. */
+	private Leaf last;
+
+	/**
+	 * Creates a new map that uses the natural ordering of the keys.
+	 * The keys must implement {@link Comparable}.
+	 */
+	public BTreeSortedMap()
+	{
+		this(null, DEFAULT_NODE_SIZE);
+	}
+
+	/**
+	 * Creates a new map.
+	 * @param comparator the comparator to use for ordering keys, or null for their natural ordering.
+	 */
+	public BTreeSortedMap(Comparator<? super K> comparator)
+	{
+		this(comparator, DEFAULT_NODE_SIZE);
+	}
+
+	/**
+	 * Creates a new map.
+	 * @param comparator the comparator to use for ordering keys, or null for their natural ordering.
+	 * @param nodeSize the maximum amount of entries or children per node.
+	 * Larger nodes make lookups and iteration faster, and smaller nodes make changes faster.
+	 * @throws IllegalArgumentException if nodeSize is less than 4.
+	 */
+	public BTreeSortedMap(Comparator<? super K> comparator, int nodeSize)
+	{
+		if (nodeSize < 4)
+			throw new IllegalArgumentException("Node size can't be less than 4.");
+		this.comparator = comparator;
+		this.nodeSize = nodeSize;
+		this.minimumNodeSize = nodeSize / 2;
+		clear();
+	}
+
+	/**
+	 * Removes all entries from this map.
+	 */
+	public void clear()
+	{
+		root = first = last = new Leaf(nodeSize);
+	}
+
+	/**
+	 * @return the comparator used for ordering keys, or null if the keys' natural ordering is used.
+	 */
+	public Comparator<? super K> getComparator()
+	{
+		return comparator;
+	}
+
+	@Override
+	public int size()
+	{
+		return root.size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return root.size == 0;
+	}
+
+	/**
+	 * Adds an entry to the map, or replaces the value of the key if it is already in the map.
+	 * @param key the reference key.
+	 * @param value the corresponding value.
+	 * @throws IllegalArgumentException if key is null.
+	 */
+	@Override
+	public void put(K key, V value)
+	{
+		if (key == null)
+			throw new IllegalArgumentException("Key cannot be null.");
+		Change change = new Change();
+		Node right = insert(root, key, value, change);
+		if (right != null)
+		{
+			Branch branch = new Branch(nodeSize);
+			branch.children[0] = root;
+			branch.children[1] = right;
+			branch.keys[0] = change.splitKey;
+			branch.count = 2;
+			branch.size = root.size + right.size;
+			root = branch;
+		}
+	}
+
+	/**
+	 * Adds an entry to the map, or replaces the value of the key if it is already in the map.
+	 * Same as {@link #put(Object, Object)}.
+	 * @param key the reference key.
+	 * @param value the corresponding value.
+	 * @throws IllegalArgumentException if key is null.
+	 */
+	public void add(K key, V value)
+	{
+		put(key, value);
+	}
+
+	/**
+	 * Replaces the value of an entry in the map. If it doesn't exist, it will be added.
+	 * Same as {@link #put(Object, Object)}.
+	 * @param key the reference key.
+	 * @param value the corresponding value.
+	 * @throws IllegalArgumentException if key is null.
+	 */
+	public void replace(K key, V value)
+	{
+		put(key, value);
+	}
+
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		put(pair.getKey(), pair.getValue());
+	}
+
+	@Override
+	public V get(K key)
+	{
+		if (key == null)
+			return null;
+		Leaf leaf = findLeaf(key);
+		int i = search(leaf, key);
+		return i >= 0 ? leaf.<V>value(i) : null;
+	}
+
+	@Override
+	public boolean containsKey(K key)
+	{
+		if (key == null)
+			return false;
+		return search(findLeaf(key), key) >= 0;
+	}
+
+	/**
+	 * Checks if the key of a pair is present in the map.
+	 */
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	@Override
+	public V removeUsingKey(K key)
+	{
+		if (key == null)
+			return null;
+		Change change = new Change();
+		V out = delete(root, key, change);
+		if (change.changed)
+			collapseRoot();
+		return out;
+	}
+
+	/**
+	 * Removes the entry that uses the key of a pair.
+	 */
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		K key = pair.getKey();
+		if (key == null)
+			return false;
+		Change change = new Change();
+		delete(root, key, change);
+		if (!change.changed)
+			return false;
+		collapseRoot();
+		return true;
+	}
+
+	/**
+	 * Gets the sorted index of a key in the map.
+	 * @param key the reference key.
+	 * @return the index of the key or -1 if it does not exist.
+	 */
+	public int getIndexOf(K key)
+	{
+		if (key == null)
+			return -1;
+		int index = 0;
+		Node node = root;
+		while (node instanceof Branch)
+		{
+			Branch branch = (Branch)node;
+			int c = childIndex(branch, key);
+			for (int i = 0; i < c; i++)
+				index += branch.children[i].size;
+			node = branch.children[c];
+		}
+		int i = search((Leaf)node, key);
+		return i >= 0 ? index + i : -1;
+	}
+
+	/**
+	 * Gets the key at a particular sorted index.
+	 * @param index the desired index.
+	 * @return the corresponding key, or null if the index is outside the map bounds.
+	 */
+	public K getKeyAtIndex(int index)
+	{
+		if (index < 0 || index >= size())
+			return null;
+		Position position = findPositionAtIndex(index);
+		return position.leaf.<K>key(position.index);
+	}
+
+	/**
+	 * Gets the value at a particular sorted index.
+	 * @param index the desired index.
+	 * @return the corresponding value, or null if the index is outside the map bounds.
+	 */
+	public V getValueAtIndex(int index)
+	{
+		if (index < 0 || index >= size())
+			return null;
+		Position position = findPositionAtIndex(index);
+		return position.leaf.<V>value(position.index);
+	}
+
+	/**
+	 * Removes the entry at a particular sorted index and returns the value.
+	 * @param index the desired index.
+	 * @return the removed value, or null if the index is outside the map bounds.
+	 */
+	public V removeValueAtIndex(int index)
+	{
+		K key = getKeyAtIndex(index);
+		return key != null ? removeUsingKey(key) : null;
+	}
+
+	/**
+	 * Removes the entry with the lowest key from this map.
+	 * @return the removed value or null the map is empty.
+	 */
+	public V removeFirst()
+	{
+		return isEmpty() ? null : removeUsingKey(first.<K>key(0));
+	}
+
+	/**
+	 * Removes the entry with the highest key from this map.
+	 * @return the removed value or null the map is empty.
+	 */
+	public V removeLast()
+	{
+		return isEmpty() ? null : removeUsingKey(last.<K>key(last.count - 1));
+	}
+
+	/**
+	 * @return the lowest key in this map, or null if the map is empty.
+	 */
+	public K firstKey()
+	{
+		return isEmpty() ? null : first.<K>key(0);
+	}
+
+	/**
+	 * @return the highest key in this map, or null if the map is empty.
+	 */
+	public K lastKey()
+	{
+		return isEmpty() ? null : last.<K>key(last.count - 1);
+	}
+
+	/**
+	 * Returns the highest key that is less than or equal to a key.
+	 * @param key the reference key.
+	 * @return the matching key, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public K floorKey(K key)
+	{
+		return keyAt(seek(key, true, false));
+	}
+
+	/**
+	 * Returns the lowest key that is greater than or equal to a key.
+	 * @param key the reference key.
+	 * @return the matching key, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public K ceilingKey(K key)
+	{
+		return keyAt(seek(key, true, true));
+	}
+
+	/**
+	 * Returns the highest key that is strictly less than a key.
+	 * @param key the reference key.
+	 * @return the matching key, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public K lowerKey(K key)
+	{
+		return keyAt(seek(key, false, false));
+	}
+
+	/**
+	 * Returns the lowest key that is strictly greater than a key.
+	 * @param key the reference key.
+	 * @return the matching key, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public K higherKey(K key)
+	{
+		return keyAt(seek(key, false, true));
+	}
+
+	/**
+	 * Returns the entry with the highest key that is less than or equal to a key.
+	 * @param key the reference key.
+	 * @return a new pair with the matching key and its value, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public ObjectPair<K, V> floorEntry(K key)
+	{
+		return entryAt(seek(key, true, false));
+	}
+
+	/**
+	 * Returns the entry with the lowest key that is greater than or equal to a key.
+	 * @param key the reference key.
+	 * @return a new pair with the matching key and its value, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public ObjectPair<K, V> ceilingEntry(K key)
+	{
+		return entryAt(seek(key, true, true));
+	}
+
+	/**
+	 * Returns the entry with the highest key that is strictly less than a key.
+	 * @param key the reference key.
+	 * @return a new pair with the matching key and its value, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public ObjectPair<K, V> lowerEntry(K key)
+	{
+		return entryAt(seek(key, false, false));
+	}
+
+	/**
+	 * Returns the entry with the lowest key that is strictly greater than a key.
+	 * @param key the reference key.
+	 * @return a new pair with the matching key and its value, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public ObjectPair<K, V> higherEntry(K key)
+	{
+		return entryAt(seek(key, false, true));
+	}
+
+	/**
+	 * Returns a cursor over all of the entries in this map, in key order.
+	 * @return a new cursor.
+	 */
+	public MapCursor<K, V> cursor()
+	{
+		return new RangeCursor(null, false, null, false);
+	}
+
+	/**
+	 * Returns a cursor over the entries in this map with keys less than a key, in key order.
+	 * @param toKey the high endpoint of the keys.
+	 * @param inclusive if true, an entry with the key toKey is included.
+	 * @return a new cursor.
+	 * @throws NullPointerException if toKey is null.
+	 */
+	public MapCursor<K, V> headCursor(K toKey, boolean inclusive)
+	{
+		if (toKey == null)
+			throw new NullPointerException("toKey cannot be null.");
+		return new RangeCursor(null, false, toKey, inclusive);
+	}
+
+	/**
+	 * Returns a cursor over the entries in this map with keys greater than a key, in key order.
+	 * @param fromKey the low endpoint of the keys.
+	 * @param inclusive if true, an entry with the key fromKey is included.
+	 * @return a new cursor.
+	 * @throws NullPointerException if fromKey is null.
+	 */
+	public MapCursor<K, V> tailCursor(K fromKey, boolean inclusive)
+	{
+		if (fromKey == null)
+			throw new NullPointerException("fromKey cannot be null.");
+		return new RangeCursor(fromKey, inclusive, null, false);
+	}
+
+	/**
+	 * Returns a cursor over the entries in this map with keys in a range, in key order.
+	 * @param fromKey the low endpoint of the keys.
+	 * @param fromInclusive if true, an entry with the key fromKey is included.
+	 * @param toKey the high endpoint of the keys.
+	 * @param toInclusive if true, an entry with the key toKey is included.
+	 * @return a new cursor.
+	 * @throws NullPointerException if fromKey or toKey is null.
+	 * @throws IllegalArgumentException if fromKey is greater than toKey.
+	 */
+	public MapCursor<K, V> subCursor(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive)
+	{
+		if (fromKey == null)
+			throw new NullPointerException("fromKey cannot be null.");
+		if (toKey == null)
+			throw new NullPointerException("toKey cannot be null.");
+		if (compare(fromKey, toKey) > 0)
+			throw new IllegalArgumentException("fromKey is greater than toKey.");
+		return new RangeCursor(fromKey, fromInclusive, toKey, toInclusive);
+	}
+
+	/**
+	 * Returns an iterator through the entries in this map, in key order.
+	 * Each entry is returned as a new pair - changing the pair does not change the map.
+	 */
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new EntryIterator();
+	}
+
+	/**
+	 * @return an iterator of this map's values, in key order.
+	 */
+	public Iterator<V> getValueIterator()
+	{
+		final MapCursor<K, V> cursor = cursor();
+		return new Iterator<V>()
+		{
+			private boolean hasNext = cursor.next();
+
+			@Override
+			public boolean hasNext()
+			{
+				return hasNext;
+			}
+
+			@Override
+			public V next()
+			{
+				if (!hasNext)
+					throw new NoSuchElementException();
+				V out = cursor.getValue();
+				hasNext = cursor.next();
+				return out;
+			}
+		};
+	}
+
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		int i = 0;
+		for (Leaf leaf = first; leaf != null; leaf = leaf.next)
+			for (int j = 0; j < leaf.count; j++)
+				out[i++] = new ObjectPair<K, V>(leaf.<K>key(j), leaf.<V>value(j));
+	}
+
+	@Override
+	public void toArrayKeys(K[] out)
+	{
+		int i = 0;
+		for (Leaf leaf = first; leaf != null; leaf = leaf.next)
+			for (int j = 0; j < leaf.count; j++)
+				out[i++] = leaf.<K>key(j);
+	}
+
+	@Override
+	public void toArrayValues(V[] out)
+	{
+		int i = 0;
+		for (Leaf leaf = first; leaf != null; leaf = leaf.next)
+			for (int j = 0; j < leaf.count; j++)
+				out[i++] = leaf.<V>value(j);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append('[');
+		for (Leaf leaf = first; leaf != null; leaf = leaf.next)
+			for (int j = 0; j < leaf.count; j++)
+			{
+				if (sb.length() > 1)
+					sb.append(", ");
+				sb.append(leaf.keys[j]).append('=').append(leaf.values[j]);
+			}
+		sb.append(']');
+		return sb.toString();
+	}
+
+	/**
+	 * Compares two keys.
+	 * @param key1 the first key.
+	 * @param key2 the second key.
+	 * @return less than 0, 0, or greater than 0 if the first key is less than, equal to, or greater than the second.
+	 */
+	@SuppressWarnings("unchecked")
+	protected int compare(Object key1, Object key2)
+	{
+		if (comparator != null)
+			return comparator.compare((K)key1, (K)key2);
+		return ((Comparable<Object>)key1).compareTo(key2);
+	}
+
+	// Binary searches a leaf: index if found, or -(insertion point + 1).
+	private int search(Leaf leaf, Object key)
+	{
+		int lo = 0;
+		int hi = leaf.count - 1;
+		while (lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			int c = compare(leaf.keys[mid], key);
+			if (c < 0)
+				lo = mid + 1;
+			else if (c > 0)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -(lo + 1);
+	}
+
+	// Finds the child of a branch that may contain a key: the amount of separators less than or equal to it.
+	private int childIndex(Branch branch, Object key)
+	{
+		int lo = 0;
+		int hi = branch.count - 2;
+		while (lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (compare(branch.keys[mid], key) <= 0)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	// Finds the leaf that may contain a key.
+	private Leaf findLeaf(Object key)
+	{
+		Node node = root;
+		while (node instanceof Branch)
+		{
+			Branch branch = (Branch)node;
+			node = branch.children[childIndex(branch, key)];
+		}
+		return (Leaf)node;
+	}
+
+	// Finds the leaf that contains the entry at an index, and the entry's index in it.
+	private Position findPositionAtIndex(int index)
+	{
+		Node node = root;
+		while (node instanceof Branch)
+		{
+			Branch branch = (Branch)node;
+			int c = 0;
+			while (index >= branch.children[c].size)
+				index -= branch.children[c++].size;
+			node = branch.children[c];
+		}
+		return new Position((Leaf)node, index);
+	}
+
+	/**
+	 * Finds the nearest entry to a key.
+	 * @param key the reference key.
+	 * @param inclusive if true, an entry with the key itself is accepted.
+	 * @param higher if true, the nearest higher entry is found, otherwise the nearest lower entry.
+	 * @return the position of the entry, or null if there is no entry.
+	 */
+	private Position seek(Object key, boolean inclusive, boolean higher)
+	{
+		if (key == null)
+			throw new NullPointerException("Key cannot be null.");
+		Leaf leaf = findLeaf(key);
+		int i = search(leaf, key);
+		if (higher)
+			i = i >= 0 ? (inclusive ? i : i + 1) : -(i + 1);
+		else
+			i = i >= 0 ? (inclusive ? i : i - 1) : -(i + 1) - 1;
+
+		if (i >= leaf.count)
+		{
+			leaf = leaf.next;
+			i = 0;
+		}
+		else if (i < 0)
+		{
+			leaf = leaf.prev;
+			i = leaf != null ? leaf.count - 1 : 0;
+		}
+		return leaf != null && leaf.count > 0 ? new Position(leaf, i) : null;
+	}
+
+	// Returns the key at a position, or null if the position is null.
+	private K keyAt(Position position)
+	{
+		return position != null ? position.leaf.<K>key(position.index) : null;
+	}
+
+	// Creates a pair from the entry at a position, or returns null if the position is null.
+	private ObjectPair<K, V> entryAt(Position position)
+	{
+		if (position == null)
+			return null;
+		return new ObjectPair<K, V>(position.leaf.<K>key(position.index), position.leaf.<V>value(position.index));
+	}
+
+	/**
+	 * Inserts or replaces an entry under a node.
+	 * Sets change.changed if a new entry was added.
+	 * @return the new right sibling of the node if it was split (change.splitKey is set to its separator), or null.
+	 */
+	private Node insert(Node node, Object key, Object value, Change change)
+	{
+		if (node instanceof Leaf)
+			return insertEntry((Leaf)node, key, value, change);
+
+		Branch branch = (Branch)node;
+		int c = childIndex(branch, key);
+		Node right = insert(branch.children[c], key, value, change);
+		if (change.changed)
+			branch.size++;
+		if (right == null)
+			return null;
+		return insertChild(branch, c, change.splitKey, right, change);
+	}
+
+	// Inserts or replaces an entry in a leaf, splitting it if full.
+	private Leaf insertEntry(Leaf leaf, Object key, Object value, Change change)
+	{
+		int i = search(leaf, key);
+		if (i >= 0)
+		{
+			leaf.values[i] = value;
+			return null;
+		}
+		change.changed = true;
+		i = -(i + 1);
+
+		if (leaf.count < nodeSize)
+		{
+			leaf.insert(i, key, value);
+			return null;
+		}
+
+		Leaf right = new Leaf(nodeSize);
+		int half = leaf.count / 2;
+		right.count = leaf.count - half;
+		System.arraycopy(leaf.keys, half, right.keys, 0, right.count);
+		System.arraycopy(leaf.values, half, right.values, 0, right.count);
+		leaf.truncate(half);
+		right.size = right.count;
+
+		if (i <= half)
+			leaf.insert(i, key, value);
+		else
+			right.insert(i - half, key, value);
+
+		right.next = leaf.next;
+		if (leaf.next != null)
+			leaf.next.prev = right;
+		else
+			last = right;
+		leaf.next = right;
+		right.prev = leaf;
+
+		change.splitKey = right.keys[0];
+		return right;
+	}
+
+	// Inserts a new child after child index c of a branch, splitting the branch if full.
+	private Branch insertChild(Branch branch, int c, Object key, Node child, Change change)
+	{
+		if (branch.count < nodeSize)
+		{
+			branch.insert(c, key, child);
+			return null;
+		}
+
+		Object[] keys = new Object[nodeSize];
+		Node[] children = new Node[nodeSize + 1];
+		System.arraycopy(branch.keys, 0, keys, 0, c);
+		keys[c] = key;
+		System.arraycopy(branch.keys, c, keys, c + 1, nodeSize - 1 - c);
+		System.arraycopy(branch.children, 0, children, 0, c + 1);
+		children[c + 1] = child;
+		System.arraycopy(branch.children, c + 1, children, c + 2, nodeSize - 1 - c);
+
+		int half = (nodeSize + 1) / 2;
+		Branch right = new Branch(nodeSize);
+		right.count = nodeSize + 1 - half;
+		System.arraycopy(children, half, right.children, 0, right.count);
+		System.arraycopy(keys, half, right.keys, 0, right.count - 1);
+		for (int i = 0; i < right.count; i++)
+			right.size += right.children[i].size;
+
+		int total = branch.size;
+		branch.clearSlots();
+		branch.count = half;
+		System.arraycopy(children, 0, branch.children, 0, half);
+		System.arraycopy(keys, 0, branch.keys, 0, half - 1);
+		branch.size = total - right.size;
+
+		change.splitKey = keys[half - 1];
+		return right;
+	}
+
+	/**
+	 * Removes an entry under a node.
+	 * Sets change.changed if an entry was removed.
+	 * Children that become too small are rebalanced with their siblings.
+	 * @return the removed value, or null if not removed (or the value was null).
+	 */
+	private V delete(Node node, Object key, Change change)
+	{
+		if (node instanceof Leaf)
+		{
+			Leaf leaf = (Leaf)node;
+			int i = search(leaf, key);
+			if (i < 0)
+				return null;
+			V out = leaf.<V>value(i);
+			leaf.remove(i);
+			change.changed = true;
+			return out;
+		}
+
+		Branch branch = (Branch)node;
+		int c = childIndex(branch, key);
+		V out = delete(branch.children[c], key, change);
+		if (!change.changed)
+			return null;
+		branch.size--;
+		if (branch.children[c].count < minimumNodeSize)
+			rebalance(branch, c);
+		return out;
+	}
+
+	// Removes a root branch with a single child, or resets an empty tree.
+	private void collapseRoot()
+	{
+		while (root instanceof Branch && root.count == 1)
+			root = ((Branch)root).children[0];
+	}
+
+	// Refills a child of a branch that is below the minimum size from a sibling, or merges it with one.
+	private void rebalance(Branch branch, int c)
+	{
+		if (c > 0 && branch.children[c - 1].count > minimumNodeSize)
+			borrowFromLeft(branch, c);
+		else if (c < branch.count - 1 && branch.children[c + 1].count > minimumNodeSize)
+			borrowFromRight(branch, c);
+		else if (c > 0)
+			merge(branch, c - 1);
+		else if (branch.count > 1)
+			merge(branch, c);
+	}
+
+	// Moves the last entry or child of the left sibling to the front of a child.
+	private void borrowFromLeft(Branch branch, int c)
+	{
+		Node node = branch.children[c];
+		if (node instanceof Leaf)
+		{
+			Leaf left = (Leaf)branch.children[c - 1];
+			Leaf leaf = (Leaf)node;
+			int l = left.count - 1;
+			leaf.insert(0, left.keys[l], left.values[l]);
+			left.remove(l);
+			branch.keys[c - 1] = leaf.keys[0];
+		}
+		else
+		{
+			Branch left = (Branch)branch.children[c - 1];
+			Branch child = (Branch)node;
+			Node moved = left.children[left.count - 1];
+			Object key = left.keys[left.count - 2];
+			child.insertFirst(branch.keys[c - 1], moved);
+			left.removeLast();
+			branch.keys[c - 1] = key;
+			left.size -= moved.size;
+			child.size += moved.size;
+		}
+	}
+
+	// Moves the first entry or child of the right sibling to the end of a child.
+	private void borrowFromRight(Branch branch, int c)
+	{
+		Node node = branch.children[c];
+		if (node instanceof Leaf)
+		{
+			Leaf right = (Leaf)branch.children[c + 1];
+			Leaf leaf = (Leaf)node;
+			leaf.insert(leaf.count, right.keys[0], right.values[0]);
+			right.remove(0);
+			branch.keys[c] = right.keys[0];
+		}
+		else
+		{
+			Branch right = (Branch)branch.children[c + 1];
+			Branch child = (Branch)node;
+			Node moved = right.children[0];
+			Object key = right.keys[0];
+			child.insert(child.count - 1, branch.keys[c], moved);
+			right.removeFirst();
+			branch.keys[c] = key;
+			right.size -= moved.size;
+			child.size += moved.size;
+		}
+	}
+
+	// Merges child c + 1 of a branch into child c.
+	private void merge(Branch branch, int c)
+	{
+		Node leftNode = branch.children[c];
+		Node rightNode = branch.children[c + 1];
+		if (leftNode instanceof Leaf)
+		{
+			Leaf left = (Leaf)leftNode;
+			Leaf right = (Leaf)rightNode;
+			System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+			System.arraycopy(right.values, 0, left.values, left.count, right.count);
+			left.count += right.count;
+			left.next = right.next;
+			if (right.next != null)
+				right.next.prev = left;
+			else
+				last = left;
+		}
+		else
+		{
+			Branch left = (Branch)leftNode;
+			Branch right = (Branch)rightNode;
+			left.keys[left.count - 1] = branch.keys[c];
+			System.arraycopy(right.keys, 0, left.keys, left.count, right.count - 1);
+			System.arraycopy(right.children, 0, left.children, left.count, right.count);
+			left.count += right.count;
+		}
+		leftNode.size += rightNode.size;
+		branch.removeChild(c + 1);
+	}
+
+	/** A tree node. */
+	/**
+	 * The position of an entry: a leaf and an index in it.
+	 * Returned by the lookups, so that they do not share any state and are safe to call from several threads at once.
+	 */
+	private static final class Position
+	{
+		final Leaf leaf;
+		final int index;
+
+		Position(Leaf leaf, int index)
+		{
+			this.leaf = leaf;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * The result of an insert or delete, passed down the tree.
+	 */
+	private static final class Change
+	{
+		/** Whether an entry was added or removed. */
+		boolean changed;
+		/** The key that separates a split node from its new right sibling. */
+		Object splitKey;
+	}
+
+	private static abstract class Node
+	{
+		/** Amount of entries (leaf) or children (branch) in this node. */
+		int count;
+		/** Amount of entries under this node. */
+		int size;
+	}
+
+	/** A leaf node, which holds entries. */
+	private static class Leaf extends Node
+	{
+		/** Entry keys. */
+		Object[] keys;
+		/** Entry values. */
+		Object[] values;
+		/** Previous leaf in key order. */
+		Leaf prev;
+		/** Next leaf in key order. */
+		Leaf next;
+
+		Leaf(int capacity)
+		{
+			keys = new Object[capacity];
+			values = new Object[capacity];
+		}
+
+		@SuppressWarnings("unchecked")
+		<K> K key(int i)
+		{
+			return (K)keys[i];
+		}
+
+		@SuppressWarnings("unchecked")
+		<V> V value(int i)
+		{
+			return (V)values[i];
+		}
+
+		void insert(int i, Object key, Object value)
+		{
+			System.arraycopy(keys, i, keys, i + 1, count - i);
+			System.arraycopy(values, i, values, i + 1, count - i);
+			keys[i] = key;
+			values[i] = value;
+			count++;
+			size++;
+		}
+
+		void remove(int i)
+		{
+			System.arraycopy(keys, i + 1, keys, i, count - i - 1);
+			System.arraycopy(values, i + 1, values, i, count - i - 1);
+			count--;
+			size--;
+			keys[count] = null;
+			values[count] = null;
+		}
+
+		void truncate(int newCount)
+		{
+			for (int i = newCount; i < count; i++)
+			{
+				keys[i] = null;
+				values[i] = null;
+			}
+			count = size = newCount;
+		}
+	}
+
+	/** A branch node, which holds child nodes and the keys that separate them. */
+	private static class Branch extends Node
+	{
+		/** Separator keys: keys[i] is less than or equal to every key under child i + 1. */
+		Object[] keys;
+		/** Child nodes. */
+		Node[] children;
+
+		Branch(int capacity)
+		{
+			keys = new Object[capacity - 1];
+			children = new Node[capacity];
+		}
+
+		// Inserts a separator and the child after it, after child c.
+		void insert(int c, Object key, Node child)
+		{
+			System.arraycopy(keys, c, keys, c + 1, count - 1 - c);
+			System.arraycopy(children, c + 1, children, c + 2, count - 1 - c);
+			keys[c] = key;
+			children[c + 1] = child;
+			count++;
+		}
+
+		// Inserts a child and the separator after it at the front.
+		void insertFirst(Object key, Node child)
+		{
+			System.arraycopy(keys, 0, keys, 1, count - 1);
+			System.arraycopy(children, 0, children, 1, count);
+			keys[0] = key;
+			children[0] = child;
+			count++;
+		}
+
+		void removeFirst()
+		{
+			System.arraycopy(keys, 1, keys, 0, count - 2);
+			System.arraycopy(children, 1, children, 0, count - 1);
+			count--;
+			keys[count - 1] = null;
+			children[count] = null;
+		}
+
+		void removeLast()
+		{
+			count--;
+			keys[count - 1] = null;
+			children[count] = null;
+		}
+
+		// Removes child c and the separator before it.
+		void removeChild(int c)
+		{
+			System.arraycopy(keys, c, keys, c - 1, count - 1 - c);
+			System.arraycopy(children, c + 1, children, c, count - 1 - c);
+			count--;
+			keys[count - 1] = null;
+			children[count] = null;
+		}
+
+		void clearSlots()
+		{
+			for (int i = 0; i < keys.length; i++)
+				keys[i] = null;
+			for (int i = 0; i < children.length; i++)
+				children[i] = null;
+		}
+	}
+
+	/**
+	 * Cursor over a range of keys.
+	 * Removing through the cursor is allowed, but other changes to the map during iteration are not.
+	 */
+	protected class RangeCursor implements MapCursor<K, V>
+	{
+		/** Low endpoint, or null for none. */
+		private K fromKey;
+		/** If true, the low endpoint is included. */
+		private boolean fromInclusive;
+		/** High endpoint, or null for none. */
+		private K toKey;
+		/** If true, the high endpoint is included. */
+		private boolean toInclusive;
+
+		/** Current leaf. */
+		private Leaf leaf;
+		/** Current index in the leaf. */
+		private int index;
+		/** Current key. */
+		private K key;
+		/** If true, the cursor is on an entry. */
+		private boolean onEntry;
+		/** If true, the cursor has not moved yet, or has removed its entry, and must seek. */
+		private boolean needSeek;
+		/** If true, there are no more entries. */
+		private boolean done;
+
+		RangeCursor(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive)
+		{
+			this.fromKey = fromKey;
+			this.fromInclusive = fromInclusive;
+			this.toKey = toKey;
+			this.toInclusive = toInclusive;
+			reset();
+		}
+
+		// Checks that the cursor is on an entry.
+		private void checkEntry()
+		{
+			if (!onEntry)
+				throw new IllegalStateException("Cursor is not on an entry.");
+		}
+
+		@Override
+		public boolean next()
+		{
+			if (done)
+				return onEntry = false;
+
+			if (needSeek)
+			{
+				needSeek = false;
+				if (key != null || fromKey != null)
+				{
+					// continue after a removed key, or start at the low endpoint
+					Position position = key != null ? seek(key, false, true) : seek(fromKey, fromInclusive, true);
+					if (position == null)
+						return finish();
+					leaf = position.leaf;
+					index = position.index;
+				}
+				else
+				{
+					leaf = first;
+					index = 0;
+				}
+			}
+			else if (++index >= leaf.count)
+			{
+				leaf = leaf.next;
+				index = 0;
+			}
+
+			if (leaf == null || leaf.count == 0)
+				return finish();
+
+			key = leaf.<K>key(index);
+			if (toKey != null)
+			{
+				int c = compare(key, toKey);
+				if (c > 0 || (c == 0 && !toInclusive))
+					return finish();
+			}
+			return onEntry = true;
+		}
+
+		// Ends the iteration.
+		private boolean finish()
+		{
+			done = true;
+			leaf = null;
+			return onEntry = false;
+		}
+
+		@Override
+		public K getKey()
+		{
+			checkEntry();
+			return key;
+		}
+
+		@Override
+		public V getValue()
+		{
+			checkEntry();
+			return leaf.<V>value(index);
+		}
+
+		@Override
+		public void setValue(V value)
+		{
+			checkEntry();
+			leaf.values[index] = value;
+		}
+
+		@Override
+		public void remove()
+		{
+			checkEntry();
+			removeUsingKey(key);
+			seekAfter(key);
+		}
+
+		/**
+		 * Makes the next call to {@link #next()} find the entry after a key,
+		 * for continuing after the tree changed.
+		 */
+		void seekAfter(K key)
+		{
+			this.key = key;
+			leaf = null;
+			onEntry = false;
+			needSeek = true;
+			done = false;
+		}
+
+		@Override
+		public void reset()
+		{
+			leaf = null;
+			index = 0;
+			key = null;
+			onEntry = false;
+			needSeek = true;
+			done = false;
+		}
+	}
+
+	/**
+	 * Iterator over all entries, which creates a pair for each entry.
+	 */
+	protected class EntryIterator implements ResettableIterator<ObjectPair<K, V>>
+	{
+		/** Underlying cursor. */
+		private RangeCursor cursor;
+		/** If true, the cursor has been moved to the next entry already. */
+		private boolean peeked;
+		/** Result of the last cursor move. */
+		private boolean hasNext;
+		/** The key of the last entry returned. */
+		private K lastKey;
+
+		EntryIterator()
+		{
+			cursor = new RangeCursor(null, false, null, false);
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			if (!peeked)
+			{
+				hasNext = cursor.next();
+				peeked = true;
+			}
+			return hasNext;
+		}
+
+		@Override
+		public ObjectPair<K, V> next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			peeked = false;
+			lastKey = cursor.getKey();
+			return new ObjectPair<K, V>(lastKey, cursor.getValue());
+		}
+
+		@Override
+		public void remove()
+		{
+			if (lastKey == null)
+				throw new IllegalStateException("remove() called before next()");
+			removeUsingKey(lastKey);
+			cursor.seekAfter(lastKey);
+			peeked = false;
+			lastKey = null;
+		}
+
+		@Override
+		public void reset()
+		{
+			cursor.reset();
+			peeked = false;
+			lastKey = null;
+		}
+	}
+
+}
@@ -0,0 +1,763 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.list;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import com.blackrook.commons.Sizable;
+
+/**
+ * A mutable buffer of data, like {@link DataList}, that is stored as a sequence of
+ * separate chunks of up to a set size instead of a single array.
+ * <p>
+ * Inserting or deleting data only shifts the bytes in the chunks that are changed,
+ * plus a small amount of bookkeeping per chunk, so edits in the middle of a large buffer
+ * do not move everything after them. Growing the buffer never copies the whole buffer, either:
+ * a full chunk is left as-is and a new one is started. Chunks that become too small
+ * after deletions are merged with their neighbors.
+ * <p>
+ * Ranges of the data can be viewed without copying, through {@link #slice(int, int)} and
+ * {@link #getBuffers(int, int)}, and written to channels with one gathering write
+ * through {@link #writeTo(WritableByteChannel)}.
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ */
+public class ChunkedDataList implements Sizable
+{
+	/** Default maximum chunk size in bytes. */
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+	/** Initial capacity of new chunks at the end of the buffer. */
+	private static final int INITIAL_CHUNK_CAPACITY = 16;
+
+	/** The maximum size of each chunk. */
+	protected int chunkSize;
+	/** Chunk arrays. */
+	protected byte[][] chunks;
+	/** Amount of bytes used in each chunk. */
+	protected int[] chunkLengths;
+	/** Offset of the first byte of each chunk in the buffer. */
+	protected int[] chunkStarts;
+	/** Amount of chunks in use. */
+	protected int chunkCount;
+	/** Amount of bytes in the buffer. */
+	protected int size;
+
+	/**
+	 * Makes a new buffer with the default chunk size.
+	 */
+	public ChunkedDataList()
+	{
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Makes a new buffer.
+	 * @param chunkSize the maximum amount of bytes in each chunk.
+	 * Smaller chunks make edits cheaper, and larger chunks make access and writes cheaper.
+	 * @throws IllegalArgumentException if chunkSize is less than 1.
+	 */
+	public ChunkedDataList(int chunkSize)
+	{
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size can't be less than 1.");
+		this.chunkSize = chunkSize;
+		clear();
+	}
+
+	/**
+	 * @return the maximum amount of bytes in each chunk.
+	 */
+	public int getChunkSize()
+	{
+		return chunkSize;
+	}
+
+	/**
+	 * @return the amount of chunks that the data is currently stored in.
+	 */
+	public int getChunkCount()
+	{
+		return chunkCount;
+	}
+
+	/**
+	 * Gets the capacity of this buffer.
+	 * @return the total amount of bytes allocated for chunks.
+	 */
+	public int getCapacity()
+	{
+		int out = 0;
+		for (int i = 0; i < chunkCount; i++)
+			out += chunks[i].length;
+		return out;
+	}
+
+	/**
+	 * Returns the amount of bytes in the buffer.
+	 */
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Gets a single byte from this buffer.
+	 * @param index the index of the byte.
+	 * @return the byte at the index.
+	 * @throws IndexOutOfBoundsException if index is less than 0 or greater than or equal to the size.
+	 */
+	public byte get(int index)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " is outside of the buffer, size " + size + ".");
+		int c = getChunkIndex(index);
+		return chunks[c][index - chunkStarts[c]];
+	}
+
+	/**
+	 * Sets a single byte in this buffer.
+	 * @param index the index of the byte.
+	 * @param b the new value.
+	 * @return this buffer, so that these commands can be chained.
+	 * @throws IndexOutOfBoundsException if index is less than 0 or greater than or equal to the size.
+	 */
+	public ChunkedDataList set(int index, byte b)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " is outside of the buffer, size " + size + ".");
+		int c = getChunkIndex(index);
+		chunks[c][index - chunkStarts[c]] = b;
+		return this;
+	}
+
+	/**
+	 * Gets a subset of data from this buffer.
+	 * @param offset the offset into the buffer.
+	 * @param length the length of data in bytes to copy.
+	 * @return a byte array of the requested data.
+	 * @throws IndexOutOfBoundsException if offset plus length exceeds size.
+	 */
+	public byte[] getData(int offset, int length)
+	{
+		byte[] out = new byte[length];
+		getData(offset, out, 0, length);
+		return out;
+	}
+
+	/**
+	 * Gets a subset of data from this buffer.
+	 * @param offset the offset into the buffer.
+	 * @param out the target array to copy into.
+	 * @throws IndexOutOfBoundsException if offset plus out.length exceeds size.
+	 */
+	public void getData(int offset, byte[] out)
+	{
+		getData(offset, out, 0, out.length);
+	}
+
+	/**
+	 * Gets a subset of data from this buffer.
+	 * @param offset the offset into the buffer.
+	 * @param out the target array to copy into.
+	 * @param outOffset the offset into the target array.
+	 * @param length the length of data in bytes to copy.
+	 * @throws IndexOutOfBoundsException if offset plus length exceeds size.
+	 */
+	public void getData(int offset, byte[] out, int outOffset, int length)
+	{
+		checkRange(offset, length);
+		if (length == 0)
+			return;
+		int c = getChunkIndex(offset);
+		int o = offset - chunkStarts[c];
+		while (length > 0)
+		{
+			int n = Math.min(length, chunkLengths[c] - o);
+			System.arraycopy(chunks[c], o, out, outOffset, n);
+			outOffset += n;
+			length -= n;
+			o = 0;
+			c++;
+		}
+	}
+
+	/**
+	 * Appends a byte to the end of this buffer.
+	 * @param b	the byte to add.
+	 * @return this buffer, so that these commands can be chained.
+	 */
+	public ChunkedDataList append(byte b)
+	{
+		int c = chunkCount - 1;
+		if (c < 0 || chunkLengths[c] == chunkSize)
+			c = openChunks(chunkCount, 1, Math.min(chunkSize, INITIAL_CHUNK_CAPACITY));
+		int len = chunkLengths[c];
+		if (len == chunks[c].length)
+			growChunk(c, len + 1);
+		chunks[c][len] = b;
+		chunkLengths[c]++;
+		size++;
+		return this;
+	}
+
+	/**
+	 * Appends a series of bytes to the end of this buffer.
+	 * @param b	the bytes to add.
+	 * @return this buffer, so that these commands can be chained.
+	 */
+	public ChunkedDataList append(byte[] b)
+	{
+		return append(b, 0, b.length);
+	}
+
+	/**
+	 * Appends a series of bytes to the end of this buffer.
+	 * @param b	the bytes to add.
+	 * @param offset the offset into the array to start the copy.
+	 * @param length the amount of bytes to copy from the source array into the buffer.
+	 * @return this buffer, so that these commands can be chained.
+	 */
+	public ChunkedDataList append(byte[] b, int offset, int length)
+	{
+		if (offset < 0 || length < 0 || offset + length > b.length)
+			throw new IndexOutOfBoundsException("Offset + length exceeds the source array length.");
+		while (length > 0)
+		{
+			int c = chunkCount - 1;
+			if (c < 0 || chunkLengths[c] == chunkSize)
+				c = openChunks(chunkCount, 1, Math.min(chunkSize, Math.max(length, INITIAL_CHUNK_CAPACITY)));
+			int len = chunkLengths[c];
+			int n = Math.min(length, chunkSize - len);
+			if (len + n > chunks[c].length)
+				growChunk(c, len + n);
+			System.arraycopy(b, offset, chunks[c], len, n);
+			chunkLengths[c] += n;
+			size += n;
+			offset += n;
+			length -= n;
+		}
+		return this;
+	}
+
+	/**
+	 * Inserts a series of bytes into this buffer at a specific index.
+	 * @param b	the bytes to add.
+	 * @param startIndex the index in the buffer to insert the bytes at.
+	 * @return this buffer, so that these commands can be chained.
+	 */
+	public ChunkedDataList insertAt(byte[] b, int startIndex)
+	{
+		return insertAt(b, 0, b.length, startIndex);
+	}
+
+	/**
+	 * Inserts a series of bytes into this buffer at a specific index.
+	 * Only the chunk that contains the index is changed: if the bytes fit in it,
+	 * they are inserted in place, and if not, it is split into evenly-filled chunks.
+	 * @param b	the bytes to add.
+	 * @param offset the offset into the array to start the copy.
+	 * @param length the amount of bytes to copy from the source array into the buffer.
+	 * @param startIndex the index in the buffer to insert the bytes at.
+	 * @return this buffer, so that these commands can be chained.
+	 */
+	public ChunkedDataList insertAt(byte[] b, int offset, int length, int startIndex)
+	{
+		if (startIndex < 0 || startIndex > size)
+			throw new ArrayIndexOutOfBoundsException("Index is greater than size, "+size+".");
+		if (startIndex == size)
+			return append(b, offset, length);
+		if (offset < 0 || length < 0 || offset + length > b.length)
+			throw new IndexOutOfBoundsException("Offset + length exceeds the source array length.");
+		if (length == 0)
+			return this;
+
+		int c = getChunkIndex(startIndex);
+		int o = startIndex - chunkStarts[c];
+		int len = chunkLengths[c];
+		if (len + length <= chunkSize)
+		{
+			if (len + length > chunks[c].length)
+				growChunk(c, len + length);
+			System.arraycopy(chunks[c], o, chunks[c], o + length, len - o);
+			System.arraycopy(b, offset, chunks[c], o, length);
+			chunkLengths[c] += length;
+		}
+		else
+		{
+			splitInsert(c, o, b, offset, length);
+		}
+		size += length;
+		updateStarts(c + 1);
+		return this;
+	}
+
+	/**
+	 * Deletes a series of bytes from this buffer.
+	 * Chunks that are entirely in the range are dropped without copying.
+	 * @param startIndex the starting index into the buffer for removing bytes.
+	 * @param length the amount of bytes to remove.
+	 * @return this buffer, so that these commands can be chained.
+	 * @throws IndexOutOfBoundsException if startIndex plus length exceeds size.
+	 */
+	public ChunkedDataList delete(int startIndex, int length)
+	{
+		checkRange(startIndex, length);
+		if (length == 0)
+			return this;
+		if (length == size)
+			return clear();
+
+		int first = getChunkIndex(startIndex);
+		int c = first;
+		int o = startIndex - chunkStarts[c];
+		int remaining = length;
+
+		// end of the first chunk
+		if (o > 0)
+		{
+			int n = Math.min(remaining, chunkLengths[c] - o);
+			System.arraycopy(chunks[c], o + n, chunks[c], o, chunkLengths[c] - o - n);
+			chunkLengths[c] -= n;
+			remaining -= n;
+			c++;
+		}
+
+		// whole chunks
+		int dropStart = c;
+		while (remaining > 0 && remaining >= chunkLengths[c])
+			remaining -= chunkLengths[c++];
+
+		// start of the last chunk
+		if (remaining > 0)
+		{
+			System.arraycopy(chunks[c], remaining, chunks[c], 0, chunkLengths[c] - remaining);
+			chunkLengths[c] -= remaining;
+		}
+
+		closeChunks(dropStart, c - dropStart);
+		size -= length;
+
+		// merge small neighbors around the deleted range
+		mergeChunks(first);
+		if (first > 0)
+			mergeChunks(--first);
+		updateStarts(first);
+		return this;
+	}
+
+	/**
+	 * Deletes all bytes from this buffer, and releases its chunks.
+	 * @return this buffer, so that these commands can be chained.
+	 */
+	public ChunkedDataList clear()
+	{
+		chunks = new byte[2][];
+		chunkLengths = new int[2];
+		chunkStarts = new int[2];
+		chunkCount = 0;
+		size = 0;
+		return this;
+	}
+
+	/**
+	 * Returns the bytes in this buffer into an array.
+	 * @return a new array with this buffer's data.
+	 */
+	public byte[] toByteArray()
+	{
+		return getData(0, size);
+	}
+
+	/**
+	 * Returns a view of a range of this buffer, without copying the data.
+	 * The view reads from this buffer directly, so it is only valid until this buffer is changed
+	 * (besides {@link #set(int, byte)}, which is reflected in the view).
+	 * @param offset the offset into the buffer.
+	 * @param length the length of the view in bytes.
+	 * @return a new view.
+	 * @throws IndexOutOfBoundsException if offset plus length exceeds size.
+	 */
+	public Slice slice(int offset, int length)
+	{
+		checkRange(offset, length);
+		return new Slice(offset, length);
+	}
+
+	/**
+	 * Returns buffers that wrap a range of this buffer's chunks, without copying the data.
+	 * The remaining bytes of each buffer (from its position to its limit) are the data, in order.
+	 * Changes to the buffers' contents are reflected in this buffer, and the buffers
+	 * are only valid until this buffer is changed in any other way.
+	 * @param offset the offset into the buffer.
+	 * @param length the length of data in bytes.
+	 * @return a new array of buffers, one per chunk in the range.
+	 * @throws IndexOutOfBoundsException if offset plus length exceeds size.
+	 */
+	public ByteBuffer[] getBuffers(int offset, int length)
+	{
+		checkRange(offset, length);
+		if (length == 0)
+			return new ByteBuffer[0];
+
+		int c = getChunkIndex(offset);
+		int last = getChunkIndex(offset + length - 1);
+		ByteBuffer[] out = new ByteBuffer[last - c + 1];
+		int o = offset - chunkStarts[c];
+		for (int i = 0; i < out.length; i++, c++)
+		{
+			int n = Math.min(length, chunkLengths[c] - o);
+			out[i] = ByteBuffer.wrap(chunks[c], o, n);
+			length -= n;
+			o = 0;
+		}
+		return out;
+	}
+
+	/**
+	 * Writes all of the data in this buffer to a channel.
+	 * @param channel the channel to write to.
+	 * @return the amount of bytes written.
+	 * @throws IOException if a write error occurs.
+	 * @see #writeTo(WritableByteChannel, int, int)
+	 */
+	public long writeTo(WritableByteChannel channel) throws IOException
+	{
+		return writeTo(channel, 0, size);
+	}
+
+	/**
+	 * Writes a range of the data in this buffer to a channel, without copying it.
+	 * If the channel is a {@link GatheringByteChannel} (for instance, a file or socket channel),
+	 * the chunks are written with gathering writes, otherwise they are written one by one.
+	 * This keeps writing until all of the data is written, so it should not be
+	 * used with a non-blocking channel.
+	 * @param channel the channel to write to.
+	 * @param offset the offset into the buffer.
+	 * @param length the length of data in bytes to write.
+	 * @return the amount of bytes written.
+	 * @throws IndexOutOfBoundsException if offset plus length exceeds size.
+	 * @throws IOException if a write error occurs.
+	 */
+	public long writeTo(WritableByteChannel channel, int offset, int length) throws IOException
+	{
+		return writeBuffers(channel, getBuffers(offset, length));
+	}
+
+	@Override
+	public String toString()
+	{
+		return Arrays.toString(toByteArray());
+	}
+
+	/**
+	 * Finds the chunk that contains a byte.
+	 * @param index the index of the byte. Must be less than size.
+	 * @return the index of the chunk.
+	 */
+	protected int getChunkIndex(int index)
+	{
+		int lo = 0;
+		int hi = chunkCount - 1;
+		while (lo < hi)
+		{
+			int mid = (lo + hi + 1) >>> 1;
+			if (chunkStarts[mid] <= index)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * Recalculates the starting offsets of the chunks, from a chunk to the end.
+	 * @param chunkIndex the first chunk index.
+	 */
+	protected void updateStarts(int chunkIndex)
+	{
+		int start = chunkIndex > 0 ? chunkStarts[chunkIndex - 1] + chunkLengths[chunkIndex - 1] : 0;
+		for (int i = chunkIndex; i < chunkCount; i++)
+		{
+			chunkStarts[i] = start;
+			start += chunkLengths[i];
+		}
+	}
+
+	// Checks a range against the size.
+	private void checkRange(int offset, int length)
+	{
+		if (offset < 0 || length < 0 || offset + length > size)
+			throw new IndexOutOfBoundsException("Offset + length exceeds size.");
+	}
+
+	/**
+	 * Adds empty chunks to the chunk list, shifting the chunks at and after the index up.
+	 * Their starts are set to where the data at the index starts.
+	 * @param index the index to add them at.
+	 * @param count the amount of chunks.
+	 * @param capacity the capacity of each new chunk's array.
+	 * @return the index of the first new chunk.
+	 */
+	private int openChunks(int index, int count, int capacity)
+	{
+		if (chunkCount + count > chunks.length)
+		{
+			int newLength = Math.max(chunkCount + count, chunks.length * 2);
+			chunks = Arrays.copyOf(chunks, newLength);
+			chunkLengths = Arrays.copyOf(chunkLengths, newLength);
+			chunkStarts = Arrays.copyOf(chunkStarts, newLength);
+		}
+		int start = index < chunkCount ? chunkStarts[index] : size;
+		System.arraycopy(chunks, index, chunks, index + count, chunkCount - index);
+		System.arraycopy(chunkLengths, index, chunkLengths, index + count, chunkCount - index);
+		System.arraycopy(chunkStarts, index, chunkStarts, index + count, chunkCount - index);
+		for (int i = index; i < index + count; i++)
+		{
+			chunks[i] = new byte[capacity];
+			chunkLengths[i] = 0;
+			chunkStarts[i] = start;
+		}
+		chunkCount += count;
+		return index;
+	}
+
+	/**
+	 * Removes chunks from the chunk list, shifting the chunks after them down.
+	 * @param index the index of the first chunk to remove.
+	 * @param count the amount of chunks.
+	 */
+	private void closeChunks(int index, int count)
+	{
+		if (count == 0)
+			return;
+		System.arraycopy(chunks, index + count, chunks, index, chunkCount - index - count);
+		System.arraycopy(chunkLengths, index + count, chunkLengths, index, chunkCount - index - count);
+		System.arraycopy(chunkStarts, index + count, chunkStarts, index, chunkCount - index - count);
+		Arrays.fill(chunks, chunkCount - count, chunkCount, null);
+		chunkCount -= count;
+	}
+
+	/**
+	 * Expands a chunk's array, up to the chunk size.
+	 * @param index the chunk index.
+	 * @param required the required capacity.
+	 */
+	private void growChunk(int index, int required)
+	{
+		int capacity = Math.min(chunkSize, Math.max(required, chunks[index].length * 2));
+		chunks[index] = Arrays.copyOf(chunks[index], capacity);
+	}
+
+	/**
+	 * Merges a chunk with the next one, if there is one and they are small enough together
+	 * (at most three quarters of the chunk size, so that a split chunk is not merged right back).
+	 * The starts of the chunks are not updated.
+	 * @param index the chunk index.
+	 */
+	private void mergeChunks(int index)
+	{
+		if (index + 1 >= chunkCount)
+			return;
+		int len = chunkLengths[index];
+		int nextLength = chunkLengths[index + 1];
+		if (len + nextLength > chunkSize - (chunkSize >> 2))
+			return;
+		if (len + nextLength > chunks[index].length)
+			growChunk(index, len + nextLength);
+		System.arraycopy(chunks[index + 1], 0, chunks[index], len, nextLength);
+		chunkLengths[index] += nextLength;
+		closeChunks(index + 1, 1);
+	}
+
+	/**
+	 * Inserts bytes into a chunk that can't hold them, splitting the
+	 * combined contents evenly across as few chunks as possible.
+	 * The starts of the chunks after it are not updated.
+	 */
+	private void splitInsert(int index, int chunkOffset, byte[] b, int offset, int length)
+	{
+		int len = chunkLengths[index];
+		int total = len + length;
+		byte[] combined = new byte[total];
+		System.arraycopy(chunks[index], 0, combined, 0, chunkOffset);
+		System.arraycopy(b, offset, combined, chunkOffset, length);
+		System.arraycopy(chunks[index], chunkOffset, combined, chunkOffset + length, len - chunkOffset);
+
+		int count = (total + chunkSize - 1) / chunkSize;
+		openChunks(index + 1, count - 1, 0);
+		int pos = 0;
+		for (int i = 0; i < count; i++)
+		{
+			int n = total / count + (i < total % count ? 1 : 0);
+			chunks[index + i] = Arrays.copyOfRange(combined, pos, pos + n);
+			chunkLengths[index + i] = n;
+			pos += n;
+		}
+	}
+
+	/**
+	 * Writes buffers to a channel fully.
+	 */
+	private static long writeBuffers(WritableByteChannel channel, ByteBuffer[] buffers) throws IOException
+	{
+		long out = 0;
+		if (channel instanceof GatheringByteChannel)
+		{
+			GatheringByteChannel gc = (GatheringByteChannel)channel;
+			int i = 0;
+			while (i < buffers.length)
+			{
+				out += gc.write(buffers, i, buffers.length - i);
+				while (i < buffers.length && !buffers[i].hasRemaining())
+					i++;
+			}
+		}
+		else
+		{
+			for (int i = 0; i < buffers.length; i++)
+				while (buffers[i].hasRemaining())
+					out += channel.write(buffers[i]);
+		}
+		return out;
+	}
+
+	/**
+	 * A view of a range of a {@link ChunkedDataList}, which reads from the list directly.
+	 * A slice is only valid until its list is changed.
+	 */
+	public class Slice implements Sizable
+	{
+		/** Offset of this slice in the list. */
+		private int offset;
+		/** Length of this slice in bytes. */
+		private int length;
+
+		private Slice(int offset, int length)
+		{
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * @return the offset of this slice in its list.
+		 */
+		public int getOffset()
+		{
+			return offset;
+		}
+
+		/**
+		 * Returns the amount of bytes in the slice.
+		 */
+		@Override
+		public int size()
+		{
+			return length;
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return length == 0;
+		}
+
+		/**
+		 * Gets a single byte from this slice.
+		 * @param index the index of the byte in the slice.
+		 * @return the byte at the index.
+		 * @throws IndexOutOfBoundsException if index is less than 0 or greater than or equal to the size.
+		 */
+		public byte get(int index)
+		{
+			if (index < 0 || index >= length)
+				throw new IndexOutOfBoundsException("Index " + index + " is outside of the slice, size " + length + ".");
+			return ChunkedDataList.this.get(offset + index);
+		}
+
+		/**
+		 * Gets a subset of data from this slice.
+		 * @param index the offset into the slice.
+		 * @param out the target array to copy into.
+		 * @param outOffset the offset into the target array.
+		 * @param length the length of data in bytes to copy.
+		 * @throws IndexOutOfBoundsException if index plus length exceeds the size of the slice.
+		 */
+		public void getData(int index, byte[] out, int outOffset, int length)
+		{
+			checkSliceRange(index, length);
+			ChunkedDataList.this.getData(offset + index, out, outOffset, length);
+		}
+
+		/**
+		 * Returns a view of a range of this slice, without copying the data.
+		 * @param index the offset into the slice.
+		 * @param length the length of the new slice in bytes.
+		 * @return a new slice of the same list.
+		 * @throws IndexOutOfBoundsException if index plus length exceeds the size of this slice.
+		 */
+		public Slice slice(int index, int length)
+		{
+			checkSliceRange(index, length);
+			return new Slice(offset + index, length);
+		}
+
+		/**
+		 * @return buffers that wrap this slice's data.
+		 * @see ChunkedDataList#getBuffers(int, int)
+		 */
+		public ByteBuffer[] getBuffers()
+		{
+			return ChunkedDataList.this.getBuffers(offset, length);
+		}
+
+		/**
+		 * @return a new array with this slice's data.
+		 */
+		public byte[] toByteArray()
+		{
+			return ChunkedDataList.this.getData(offset, length);
+		}
+
+		/**
+		 * Writes this slice's data to a channel.
+		 * @param channel the channel to write to.
+		 * @return the amount of bytes written.
+		 * @throws IOException if a write error occurs.
+		 * @see ChunkedDataList#writeTo(WritableByteChannel, int, int)
+		 */
+		public long writeTo(WritableByteChannel channel) throws IOException
+		{
+			return ChunkedDataList.this.writeTo(channel, offset, length);
+		}
+
+		@Override
+		public String toString()
+		{
+			return Arrays.toString(toByteArray());
+		}
+
+		// Checks a range against this slice's size.
+		private void checkSliceRange(int index, int length)
+		{
+			if (index < 0 || length < 0 || index + length > this.length)
+				throw new IndexOutOfBoundsException("Offset + length exceeds the size of the slice.");
+		}
+	}
+
+}
@@ -7,6 +7,7 @@
  ******************************************************************************/
 package com.blackrook.commons.list;
 
+import java.util.Arrays;
 import java.util.Comparator;
 
 import com.blackrook.commons.AbstractVector;
@@ -72,6 +73,62 @@ public class ComparatorList<T extends Object> extends AbstractVector<T>
 		}
 	}
 	
+	/**
+	 * Adds several objects to the list, keeping it sorted.
+	 * Instead of sorting each object into place, the objects are sorted and then 
+	 * merged into the list in one pass, which is O(n + k log k) for k objects added to a list of n.
+	 * Objects that are equal to objects already in the list are placed after them, as with {@link #add(Object)}.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void addAll(T ... objects)
+	{
+		mergeSorted(Arrays.copyOf(objects, objects.length, Object[].class), objects.length, comparator);
+	}
+
+	/**
+	 * Adds several objects to the list, keeping it sorted.
+	 * Instead of sorting each object into place, the objects are sorted and then 
+	 * merged into the list in one pass, which is O(n + k log k) for k objects added to a list of n.
+	 * Objects that are equal to objects already in the list are placed after them, as with {@link #add(Object)}.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	@Override
+	public void addAll(Iterable<? extends T> objects)
+	{
+		mergeSorted(objects, comparator);
+	}
+
+	/**
+	 * Removes every object in the list that is equal (by {@link Object#equals(Object)}) to one of several objects.
+	 * Objects that only tie with an object to remove under this list's comparator are kept.
+	 * The list is compacted in one pass instead of shifting its contents once per removed object.
+	 * @param objects the objects to remove.
+	 * @return the amount of objects removed from the list.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public int removeAll(T ... objects)
+	{
+		return removeSorted(Arrays.asList(objects), comparator);
+	}
+
+	/**
+	 * Removes every object in the list that is equal (by {@link Object#equals(Object)}) to one of several objects.
+	 * Objects that only tie with an object to remove under this list's comparator are kept.
+	 * The list is compacted in one pass instead of shifting its contents once per removed object.
+	 * @param objects the objects to remove.
+	 * @return the amount of objects removed from the list.
+	 * @since 2.33.0
+	 */
+	public int removeAll(Iterable<? extends T> objects)
+	{
+		return removeSorted(objects, comparator);
+	}
+
 	@Override
 	public int getIndexOf(T object)
 	{
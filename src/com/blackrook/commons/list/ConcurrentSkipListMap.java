@@ -0,0 +1,1449 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.list;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.blackrook.commons.AbstractMap;
+import com.blackrook.commons.MapCursor;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+
+/**
+ * A map that is always sorted by key, and is safe to use from several threads at once without locking.
+ * <p>
+ * The entries are stored in a lock-free skip list: a linked list of entries in key order, with
+ * randomly-built levels of index links above it for O(log n) searches. All changes are made with
+ * compare-and-set operations, so threads never block each other, and a thread that stalls in
+ * the middle of a change does not stall the others. Removed entries are first marked as removed
+ * (by clearing their value), then unlinked by whichever thread comes across them next.
+ * <p>
+ * {@link #putIfAbsent(Object, Object)}, {@link #replace(Object, Object, Object)},
+ * {@link #removeUsingKey(Object, Object)}, {@link #pollFirst()} and {@link #pollLast()} are atomic.
+ * <p>
+ * Iterators and cursors, including the range cursors ({@link #headCursor(Object, boolean)},
+ * {@link #tailCursor(Object, boolean)}, {@link #subCursor(Object, boolean, Object, boolean)}),
+ * are weakly consistent: they can be used while other threads change the map, never throw
+ * {@link java.util.ConcurrentModificationException}, and return entries in key order, each entry at most once.
+ * Entries that are added or removed during iteration may or may not be returned.
+ * The pairs returned by the iterators are copies - setting their values does not change this map.
+ * <p>
+ * This map cannot store null keys or null values.
+ * @author Matthew Tropiano
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * @since 2.33.0
+ */
+public class ConcurrentSkipListMap<K extends Object, V extends Object> implements AbstractMap<K, V>
+{
+	/** Value of the base header node. */
+	private static final Object BASE_HEADER = new Object();
+
+	/** Relation flag for nearest-key searches: greater than. */
+	private static final int GT = 0;
+	/** Relation flag for nearest-key searches: equal to. */
+	private static final int EQ = 1;
+	/** Relation flag for nearest-key searches: less than. */
+	private static final int LT = 2;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<ConcurrentSkipListMap, HeadIndex> HEAD_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(ConcurrentSkipListMap.class, HeadIndex.class, "head");
+
+	/** The key comparator, or null for natural ordering. */
+	protected final Comparator<? super K> comparator;
+
+	/** The topmost head index. */
+	private volatile HeadIndex<K, V> head;
+	/** Approximate amount of entries. */
+	private final LongAdder count;
+
+	/**
+	 * Creates a new map that uses the natural ordering of the keys.
+	 * The keys must implement {@link Comparable}.
+	 */
+	public ConcurrentSkipListMap()
+	{
+		this(null);
+	}
+
+	/**
+	 * Creates a new map.
+	 * @param comparator the comparator to use for ordering keys, or null for their natural ordering.
+	 */
+	public ConcurrentSkipListMap(Comparator<? super K> comparator)
+	{
+		this.comparator = comparator;
+		this.count = new LongAdder();
+		this.head = new HeadIndex<K, V>(new Node<K, V>(null, BASE_HEADER, null), null, null, 1);
+	}
+
+	/**
+	 * @return the comparator used for ordering keys, or null if the keys' natural ordering is used.
+	 */
+	public Comparator<? super K> getComparator()
+	{
+		return comparator;
+	}
+
+	/**
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(K key)
+	{
+		checkKey(key);
+		for (;;)
+		{
+			Node<K, V> node = findNode(key);
+			if (node == null)
+				return null;
+			Object value = node.value;
+			if (value != null)
+				return (V)value;
+		}
+	}
+
+	/**
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public boolean containsKey(K key)
+	{
+		checkKey(key);
+		return findNode(key) != null;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map.
+	 * @param key the key associated with a value.
+	 * @param value the value associated with the provided key.
+	 * @throws NullPointerException if key or value is null.
+	 */
+	@Override
+	public void put(K key, V value)
+	{
+		doPut(checkKey(key), checkValue(value), false);
+	}
+
+	/**
+	 * Adds a [key, value] pair to this map if the key is not already mapped to a value.
+	 * This is atomic.
+	 * @param key the key associated with a value.
+	 * @param value the value associated with the provided key.
+	 * @return the value that was already associated with the key, or null if the provided value was added.
+	 * @throws NullPointerException if key or value is null.
+	 */
+	public V putIfAbsent(K key, V value)
+	{
+		return doPut(checkKey(key), checkValue(value), true);
+	}
+
+	/**
+	 * Replaces the value associated with a key, only if it is currently the expected value.
+	 * This is atomic.
+	 * @param key the key associated with a value.
+	 * @param expectedValue the value that is expected to be associated with the key (compared with {@link Object#equals(Object)}).
+	 * @param newValue the value to associate with the key.
+	 * @return true if the value was replaced, false if not.
+	 * @throws NullPointerException if key, expectedValue, or newValue is null.
+	 */
+	public boolean replace(K key, V expectedValue, V newValue)
+	{
+		checkKey(key);
+		checkValue(expectedValue);
+		checkValue(newValue);
+		for (;;)
+		{
+			Node<K, V> node = findNode(key);
+			if (node == null)
+				return false;
+			Object value = node.value;
+			if (value != null)
+			{
+				if (!expectedValue.equals(value))
+					return false;
+				if (node.casValue(value, newValue))
+					return true;
+			}
+		}
+	}
+
+	/**
+	 * @throws NullPointerException if key is null.
+	 */
+	@Override
+	public V removeUsingKey(K key)
+	{
+		return doRemove(checkKey(key), null);
+	}
+
+	/**
+	 * Removes a key from this map, only if it is currently associated with the expected value.
+	 * This is atomic.
+	 * @param key the key to remove.
+	 * @param expectedValue the value that is expected to be associated with the key (compared with {@link Object#equals(Object)}).
+	 * @return true if the key was removed, false if not.
+	 * @throws NullPointerException if key or expectedValue is null.
+	 */
+	public boolean removeUsingKey(K key, V expectedValue)
+	{
+		return doRemove(checkKey(key), checkValue(expectedValue)) != null;
+	}
+
+	/**
+	 * Clears the contents of this map, by removing the first entry until there are none.
+	 * This is not atomic - pairs added by other threads while this is called may remain in the map.
+	 */
+	public void clear()
+	{
+		while (removeFirst() != null) ;
+	}
+
+	/**
+	 * Adds/replaces a [key, value] pair to this map.
+	 * @param pair the pair to add.
+	 * @throws NullPointerException if the key or value in the pair is null.
+	 */
+	@Override
+	public void put(ObjectPair<K, V> pair)
+	{
+		put(pair.getKey(), pair.getValue());
+	}
+
+	/**
+	 * Checks if a pair's key (by equality) is present in the map.
+	 * @param pair the pair with the key to check.
+	 */
+	@Override
+	public boolean contains(ObjectPair<K, V> pair)
+	{
+		return containsKey(pair.getKey());
+	}
+
+	/**
+	 * Removes a pair from this map using the pair's key.
+	 * @param pair the pair with the key to remove.
+	 */
+	@Override
+	public boolean remove(ObjectPair<K, V> pair)
+	{
+		return removeUsingKey(pair.getKey()) != null;
+	}
+
+	/**
+	 * Returns the amount of pairs in the map.
+	 * If other threads are changing the map, this is only an estimate.
+	 */
+	@Override
+	public int size()
+	{
+		return (int)Math.max(0, Math.min(count.sum(), Integer.MAX_VALUE));
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return findFirst() == null;
+	}
+
+	/**
+	 * @return the lowest key in this map, or null if the map is empty.
+	 */
+	public K firstKey()
+	{
+		Node<K, V> node = findFirst();
+		return node != null ? node.key : null;
+	}
+
+	/**
+	 * @return the highest key in this map, or null if the map is empty.
+	 */
+	public K lastKey()
+	{
+		Node<K, V> node = findLast();
+		return node != null ? node.key : null;
+	}
+
+	/**
+	 * Returns the highest key that is less than or equal to a key.
+	 * @param key the reference key.
+	 * @return the matching key, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public K floorKey(K key)
+	{
+		Node<K, V> node = findNear(checkKey(key), LT | EQ);
+		return node != null ? node.key : null;
+	}
+
+	/**
+	 * Returns the lowest key that is greater than or equal to a key.
+	 * @param key the reference key.
+	 * @return the matching key, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public K ceilingKey(K key)
+	{
+		Node<K, V> node = findNear(checkKey(key), GT | EQ);
+		return node != null ? node.key : null;
+	}
+
+	/**
+	 * Returns the highest key that is strictly less than a key.
+	 * @param key the reference key.
+	 * @return the matching key, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public K lowerKey(K key)
+	{
+		Node<K, V> node = findNear(checkKey(key), LT);
+		return node != null ? node.key : null;
+	}
+
+	/**
+	 * Returns the lowest key that is strictly greater than a key.
+	 * @param key the reference key.
+	 * @return the matching key, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public K higherKey(K key)
+	{
+		Node<K, V> node = findNear(checkKey(key), GT);
+		return node != null ? node.key : null;
+	}
+
+	/**
+	 * Returns the entry with the highest key that is less than or equal to a key.
+	 * @param key the reference key.
+	 * @return a new pair with the matching key and its value, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public ObjectPair<K, V> floorEntry(K key)
+	{
+		return getNear(checkKey(key), LT | EQ);
+	}
+
+	/**
+	 * Returns the entry with the lowest key that is greater than or equal to a key.
+	 * @param key the reference key.
+	 * @return a new pair with the matching key and its value, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public ObjectPair<K, V> ceilingEntry(K key)
+	{
+		return getNear(checkKey(key), GT | EQ);
+	}
+
+	/**
+	 * Returns the entry with the highest key that is strictly less than a key.
+	 * @param key the reference key.
+	 * @return a new pair with the matching key and its value, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public ObjectPair<K, V> lowerEntry(K key)
+	{
+		return getNear(checkKey(key), LT);
+	}
+
+	/**
+	 * Returns the entry with the lowest key that is strictly greater than a key.
+	 * @param key the reference key.
+	 * @return a new pair with the matching key and its value, or null if there is none.
+	 * @throws NullPointerException if key is null.
+	 */
+	public ObjectPair<K, V> higherEntry(K key)
+	{
+		return getNear(checkKey(key), GT);
+	}
+
+	/**
+	 * Removes the entry with the lowest key from this map.
+	 * This is atomic: if several threads call this at once, each gets a different entry.
+	 * @return a new pair with the removed key and its value, or null if the map is empty.
+	 */
+	public ObjectPair<K, V> pollFirst()
+	{
+		return removeFirst();
+	}
+
+	/**
+	 * Removes the entry with the highest key from this map.
+	 * This is atomic: if several threads call this at once, each gets a different entry.
+	 * @return a new pair with the removed key and its value, or null if the map is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public ObjectPair<K, V> pollLast()
+	{
+		for (;;)
+		{
+			Node<K, V> node = findLast();
+			if (node == null)
+				return null;
+			Object value = node.value;
+			if (value != null && doRemove(node.key, value) != null)
+				return new ObjectPair<K, V>(node.key, (V)value);
+		}
+	}
+
+	/**
+	 * Returns a cursor over all of the entries in this map, in key order.
+	 * The cursor is weakly consistent - see the class description.
+	 * @return a new cursor.
+	 */
+	public MapCursor<K, V> cursor()
+	{
+		return new RangeCursor(null, false, null, false);
+	}
+
+	/**
+	 * Returns a cursor over the entries in this map with keys less than a key, in key order.
+	 * The cursor is weakly consistent - see the class description.
+	 * @param toKey the high endpoint of the keys.
+	 * @param inclusive if true, an entry with the key toKey is included.
+	 * @return a new cursor.
+	 * @throws NullPointerException if toKey is null.
+	 */
+	public MapCursor<K, V> headCursor(K toKey, boolean inclusive)
+	{
+		return new RangeCursor(null, false, checkKey(toKey), inclusive);
+	}
+
+	/**
+	 * Returns a cursor over the entries in this map with keys greater than a key, in key order.
+	 * The cursor is weakly consistent - see the class description.
+	 * @param fromKey the low endpoint of the keys.
+	 * @param inclusive if true, an entry with the key fromKey is included.
+	 * @return a new cursor.
+	 * @throws NullPointerException if fromKey is null.
+	 */
+	public MapCursor<K, V> tailCursor(K fromKey, boolean inclusive)
+	{
+		return new RangeCursor(checkKey(fromKey), inclusive, null, false);
+	}
+
+	/**
+	 * Returns a cursor over the entries in this map with keys in a range, in key order.
+	 * The cursor is weakly consistent - see the class description.
+	 * @param fromKey the low endpoint of the keys.
+	 * @param fromInclusive if true, an entry with the key fromKey is included.
+	 * @param toKey the high endpoint of the keys.
+	 * @param toInclusive if true, an entry with the key toKey is included.
+	 * @return a new cursor.
+	 * @throws NullPointerException if fromKey or toKey is null.
+	 * @throws IllegalArgumentException if fromKey is greater than toKey.
+	 */
+	public MapCursor<K, V> subCursor(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive)
+	{
+		if (compare(checkKey(fromKey), checkKey(toKey)) > 0)
+			throw new IllegalArgumentException("fromKey is greater than toKey.");
+		return new RangeCursor(fromKey, fromInclusive, toKey, toInclusive);
+	}
+
+	/**
+	 * Copies the pairs in this map into an array, in key order.
+	 * If the map changes size while this is called, only as many pairs as fit are copied.
+	 */
+	@Override
+	public void toArray(ObjectPair<K, V>[] out)
+	{
+		int i = 0;
+		ResettableIterator<ObjectPair<K, V>> it = iterator();
+		while (i < out.length && it.hasNext())
+			out[i++] = it.next();
+	}
+
+	/**
+	 * Copies the keys in this map into an array, in key order.
+	 * If the map changes size while this is called, only as many keys as fit are copied.
+	 */
+	@Override
+	public void toArrayKeys(K[] out)
+	{
+		int i = 0;
+		ResettableIterator<K> it = keyIterator();
+		while (i < out.length && it.hasNext())
+			out[i++] = it.next();
+	}
+
+	/**
+	 * Copies the values in this map into an array, in key order.
+	 * If the map changes size while this is called, only as many values as fit are copied.
+	 */
+	@Override
+	public void toArrayValues(V[] out)
+	{
+		int i = 0;
+		ResettableIterator<V> it = valueIterator();
+		while (i < out.length && it.hasNext())
+			out[i++] = it.next();
+	}
+
+	@Override
+	public ResettableIterator<ObjectPair<K, V>> iterator()
+	{
+		return new PairIterator(new RangeCursor(null, false, null, false));
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each key in the map, in order.
+	 */
+	public ResettableIterator<K> keyIterator()
+	{
+		return keyIterator(null, false, null, false);
+	}
+
+	/**
+	 * @return a resettable iterator that iterates through each value in the map, in key order.
+	 */
+	public ResettableIterator<V> valueIterator()
+	{
+		return new ValueIterator(new RangeCursor(null, false, null, false));
+	}
+
+	/**
+	 * Returns an iterator through the keys in a range.
+	 * @param fromKey the low endpoint of the keys, or null for no low endpoint.
+	 * @param fromInclusive if true, fromKey is included.
+	 * @param toKey the high endpoint of the keys, or null for no high endpoint.
+	 * @param toInclusive if true, toKey is included.
+	 * @return a new iterator.
+	 */
+	ResettableIterator<K> keyIterator(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive)
+	{
+		return new KeyIterator(new RangeCursor(fromKey, fromInclusive, toKey, toInclusive));
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (ObjectPair<K, V> pair : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(pair);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+	/**
+	 * Compares two keys.
+	 * @param key1 the first key.
+	 * @param key2 the second key.
+	 * @return less than 0, 0, or greater than 0 if the first key is less than, equal to, or greater than the second.
+	 */
+	@SuppressWarnings("unchecked")
+	protected int compare(Object key1, Object key2)
+	{
+		if (comparator != null)
+			return comparator.compare((K)key1, (K)key2);
+		return ((Comparable<Object>)key1).compareTo(key2);
+	}
+
+	// Checks that a key is not null.
+	private static <K> K checkKey(K key)
+	{
+		if (key == null)
+			throw new NullPointerException("Keys cannot be null.");
+		return key;
+	}
+
+	// Checks that a value is not null.
+	private static <V> V checkValue(V value)
+	{
+		if (value == null)
+			throw new NullPointerException("Values cannot be null.");
+		return value;
+	}
+
+	private boolean casHead(HeadIndex<K, V> expected, HeadIndex<K, V> value)
+	{
+		return HEAD_UPDATER.compareAndSet(this, expected, value);
+	}
+
+	/**
+	 * Finds the base-level node to the left of where a key is or would be,
+	 * unlinking index links to removed nodes along the way.
+	 * @param key the key.
+	 * @return a node with a lower key, or the base header.
+	 */
+	private Node<K, V> findPredecessor(Object key)
+	{
+		for (;;)
+		{
+			Index<K, V> q = head;
+			Index<K, V> r = q.right;
+			for (;;)
+			{
+				if (r != null)
+				{
+					Node<K, V> n = r.node;
+					if (n.value == null)
+					{
+						if (!q.unlink(r))
+							break; // restart
+						r = q.right;
+						continue;
+					}
+					if (compare(key, n.key) > 0)
+					{
+						q = r;
+						r = r.right;
+						continue;
+					}
+				}
+				Index<K, V> d = q.down;
+				if (d == null)
+					return q.node;
+				q = d;
+				r = d.right;
+			}
+		}
+	}
+
+	/**
+	 * Finds the node with a key, helping to unlink removed nodes along the way.
+	 * @param key the key.
+	 * @return the node, or null if there is none.
+	 */
+	private Node<K, V> findNode(Object key)
+	{
+		outer: for (;;)
+		{
+			Node<K, V> b = findPredecessor(key);
+			Node<K, V> n = b.next;
+			for (;;)
+			{
+				if (n == null)
+					break outer;
+				Node<K, V> f = n.next;
+				if (n != b.next) // inconsistent read
+					break;
+				Object v = n.value;
+				if (v == null) // n is removed
+				{
+					n.helpDelete(b, f);
+					break;
+				}
+				if (b.value == null || v == n) // b is removed
+					break;
+				int c = compare(key, n.key);
+				if (c == 0)
+					return n;
+				if (c < 0)
+					break outer;
+				b = n;
+				n = f;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the node nearest to a key.
+	 * @param key the key.
+	 * @param relation the relation to the key: a combination of {@link #LT}, {@link #EQ} and {@link #GT}.
+	 * @return the node, or null if there is none.
+	 */
+	private Node<K, V> findNear(Object key, int relation)
+	{
+		for (;;)
+		{
+			Node<K, V> b = findPredecessor(key);
+			Node<K, V> n = b.next;
+			for (;;)
+			{
+				if (n == null)
+					return (relation & LT) == 0 || b.isBaseHeader() ? null : b;
+				Node<K, V> f = n.next;
+				if (n != b.next)
+					break;
+				Object v = n.value;
+				if (v == null)
+				{
+					n.helpDelete(b, f);
+					break;
+				}
+				if (b.value == null || v == n)
+					break;
+				int c = compare(key, n.key);
+				if ((c == 0 && (relation & EQ) != 0) || (c < 0 && (relation & LT) == 0))
+					return n;
+				if (c <= 0 && (relation & LT) != 0)
+					return b.isBaseHeader() ? null : b;
+				b = n;
+				n = f;
+			}
+		}
+	}
+
+	/**
+	 * Gets the entry nearest to a key.
+	 * @return a new pair, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	private ObjectPair<K, V> getNear(Object key, int relation)
+	{
+		for (;;)
+		{
+			Node<K, V> node = findNear(key, relation);
+			if (node == null)
+				return null;
+			Object value = node.value;
+			if (value != null && value != node)
+				return new ObjectPair<K, V>(node.key, (V)value);
+		}
+	}
+
+	/**
+	 * @return the first node that is not removed, or null if there is none.
+	 */
+	private Node<K, V> findFirst()
+	{
+		for (;;)
+		{
+			Node<K, V> b = head.node;
+			Node<K, V> n = b.next;
+			if (n == null)
+				return null;
+			if (n.value != null)
+				return n;
+			n.helpDelete(b, n.next);
+		}
+	}
+
+	/**
+	 * @return the last node that is not removed, or null if there is none.
+	 */
+	private Node<K, V> findLast()
+	{
+		Index<K, V> q = head;
+		for (;;)
+		{
+			Index<K, V> r = q.right;
+			Index<K, V> d;
+			if (r != null)
+			{
+				if (r.indexesDeletedNode())
+				{
+					q.unlink(r);
+					q = head; // restart
+				}
+				else
+					q = r;
+			}
+			else if ((d = q.down) != null)
+			{
+				q = d;
+			}
+			else
+			{
+				Node<K, V> b = q.node;
+				Node<K, V> n = b.next;
+				for (;;)
+				{
+					if (n == null)
+						return b.isBaseHeader() ? null : b;
+					Node<K, V> f = n.next;
+					if (n != b.next)
+						break;
+					Object v = n.value;
+					if (v == null)
+					{
+						n.helpDelete(b, f);
+						break;
+					}
+					if (b.value == null || v == n)
+						break;
+					b = n;
+					n = f;
+				}
+				q = head; // restart
+			}
+		}
+	}
+
+	/**
+	 * Adds or replaces an entry.
+	 * @param key the key.
+	 * @param value the value.
+	 * @param onlyIfAbsent if true, an existing value is not replaced.
+	 * @return the previous value, or null if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	private V doPut(K key, V value, boolean onlyIfAbsent)
+	{
+		Node<K, V> z;
+		outer: for (;;)
+		{
+			Node<K, V> b = findPredecessor(key);
+			Node<K, V> n = b.next;
+			for (;;)
+			{
+				if (n != null)
+				{
+					Node<K, V> f = n.next;
+					if (n != b.next)
+						break;
+					Object v = n.value;
+					if (v == null)
+					{
+						n.helpDelete(b, f);
+						break;
+					}
+					if (b.value == null || v == n)
+						break;
+					int c = compare(key, n.key);
+					if (c > 0)
+					{
+						b = n;
+						n = f;
+						continue;
+					}
+					if (c == 0)
+					{
+						if (onlyIfAbsent || n.casValue(v, value))
+							return (V)v;
+						break; // lost a race to replace the value
+					}
+				}
+				z = new Node<K, V>(key, value, n);
+				if (!b.casNext(n, z))
+					break;
+				break outer;
+			}
+		}
+		count.increment();
+		addIndex(z);
+		return null;
+	}
+
+	/**
+	 * Randomly decides how many index levels a new node gets, and links them in.
+	 * Half of the nodes get none, a quarter get one, and so on.
+	 * @param z the new node.
+	 */
+	@SuppressWarnings("unchecked")
+	private void addIndex(Node<K, V> z)
+	{
+		int rnd = ThreadLocalRandom.current().nextInt();
+		if ((rnd & 0x80000001) != 0)
+			return;
+
+		int level = 1;
+		while (((rnd >>>= 1) & 1) != 0)
+			level++;
+
+		Index<K, V> idx = null;
+		HeadIndex<K, V> h = head;
+		int max = h.level;
+		if (level <= max)
+		{
+			for (int i = 1; i <= level; i++)
+				idx = new Index<K, V>(z, idx, null);
+		}
+		else
+		{
+			// add one new level at most
+			level = max + 1;
+			Index<K, V>[] idxs = (Index<K, V>[])new Index<?, ?>[level + 1];
+			for (int i = 1; i <= level; i++)
+				idxs[i] = idx = new Index<K, V>(z, idx, null);
+			for (;;)
+			{
+				h = head;
+				int oldLevel = h.level;
+				if (level <= oldLevel) // lost a race to add a level
+					break;
+				HeadIndex<K, V> newHead = h;
+				Node<K, V> oldBase = h.node;
+				for (int j = oldLevel + 1; j <= level; j++)
+					newHead = new HeadIndex<K, V>(oldBase, newHead, idxs[j], j);
+				if (casHead(h, newHead))
+				{
+					h = newHead;
+					idx = idxs[level = oldLevel];
+					break;
+				}
+			}
+		}
+
+		// link the index nodes in, from the top down
+		K key = z.key;
+		splice: for (int insertionLevel = level;;)
+		{
+			int j = h.level;
+			Index<K, V> q = h;
+			Index<K, V> r = q.right;
+			Index<K, V> t = idx;
+			for (;;)
+			{
+				if (q == null || t == null)
+					break splice;
+				if (r != null)
+				{
+					Node<K, V> n = r.node;
+					int c = compare(key, n.key);
+					if (n.value == null)
+					{
+						if (!q.unlink(r))
+							break;
+						r = q.right;
+						continue;
+					}
+					if (c > 0)
+					{
+						q = r;
+						r = r.right;
+						continue;
+					}
+				}
+
+				if (j == insertionLevel)
+				{
+					if (!q.link(r, t))
+						break; // restart
+					if (t.node.value == null)
+					{
+						// removed while linking: clean up
+						findNode(key);
+						break splice;
+					}
+					if (--insertionLevel == 0)
+						break splice;
+				}
+
+				if (--j >= insertionLevel && j < level)
+					t = t.down;
+				q = q.down;
+				r = q.right;
+			}
+		}
+	}
+
+	/**
+	 * Removes an entry.
+	 * @param key the key.
+	 * @param expectedValue if not null, the entry is only removed if its value is equal to this.
+	 * @return the removed value, or null if nothing was removed.
+	 */
+	@SuppressWarnings("unchecked")
+	private V doRemove(Object key, Object expectedValue)
+	{
+		outer: for (;;)
+		{
+			Node<K, V> b = findPredecessor(key);
+			Node<K, V> n = b.next;
+			for (;;)
+			{
+				if (n == null)
+					break outer;
+				Node<K, V> f = n.next;
+				if (n != b.next)
+					break;
+				Object v = n.value;
+				if (v == null)
+				{
+					n.helpDelete(b, f);
+					break;
+				}
+				if (b.value == null || v == n)
+					break;
+				int c = compare(key, n.key);
+				if (c < 0)
+					break outer;
+				if (c > 0)
+				{
+					b = n;
+					n = f;
+					continue;
+				}
+				if (expectedValue != null && !expectedValue.equals(v))
+					break outer;
+				if (!n.casValue(v, null))
+					break;
+				if (!n.appendMarker(f) || !b.casNext(n, f))
+					findNode(key); // clean up through findNode
+				else
+				{
+					findPredecessor(key); // clean up index links
+					if (head.right == null)
+						tryReduceLevel();
+				}
+				count.decrement();
+				return (V)v;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the first entry.
+	 * @return a new pair with the removed key and value, or null if the map is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	private ObjectPair<K, V> removeFirst()
+	{
+		for (;;)
+		{
+			Node<K, V> b = head.node;
+			Node<K, V> n = b.next;
+			if (n == null)
+				return null;
+			Node<K, V> f = n.next;
+			if (n != b.next)
+				continue;
+			Object v = n.value;
+			if (v == null)
+			{
+				n.helpDelete(b, f);
+				continue;
+			}
+			if (!n.casValue(v, null))
+				continue;
+			if (!n.appendMarker(f) || !b.casNext(n, f))
+				findFirst(); // clean up
+			clearIndexToFirst();
+			count.decrement();
+			return new ObjectPair<K, V>(n.key, (V)v);
+		}
+	}
+
+	// Unlinks the index links to the removed first node.
+	private void clearIndexToFirst()
+	{
+		for (;;)
+		{
+			Index<K, V> q = head;
+			for (;;)
+			{
+				Index<K, V> r = q.right;
+				if (r != null && r.indexesDeletedNode() && !q.unlink(r))
+					break;
+				if ((q = q.down) == null)
+				{
+					if (head.right == null)
+						tryReduceLevel();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the top level if the top three levels are empty.
+	 * Reverts the change if a node was linked into the removed level meanwhile.
+	 */
+	@SuppressWarnings("unchecked")
+	private void tryReduceLevel()
+	{
+		HeadIndex<K, V> h = head;
+		HeadIndex<K, V> d;
+		HeadIndex<K, V> e;
+		if (h.level > 3
+			&& (d = (HeadIndex<K, V>)h.down) != null
+			&& (e = (HeadIndex<K, V>)d.down) != null
+			&& e.right == null && d.right == null && h.right == null
+			&& casHead(h, d) && h.right != null)
+			casHead(d, h);
+	}
+
+	/**
+	 * A base-level node, which holds an entry.
+	 * A null value means that the node is removed. A marker node, appended to a removed
+	 * node before it is unlinked so that nothing is inserted after it, has itself as its value.
+	 */
+	private static final class Node<K, V>
+	{
+		@SuppressWarnings("rawtypes")
+		static final AtomicReferenceFieldUpdater<Node, Object> VALUE_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+		@SuppressWarnings("rawtypes")
+		static final AtomicReferenceFieldUpdater<Node, Node> NEXT_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+		/** Entry key, or null for the base header and markers. */
+		final K key;
+		/** Entry value. */
+		volatile Object value;
+		/** Next node. */
+		volatile Node<K, V> next;
+
+		Node(K key, Object value, Node<K, V> next)
+		{
+			this.key = key;
+			this.value = value;
+			this.next = next;
+		}
+
+		// Creates a marker.
+		Node(Node<K, V> next)
+		{
+			this.key = null;
+			this.value = this;
+			this.next = next;
+		}
+
+		boolean casValue(Object expected, Object value)
+		{
+			return VALUE_UPDATER.compareAndSet(this, expected, value);
+		}
+
+		boolean casNext(Node<K, V> expected, Node<K, V> next)
+		{
+			return NEXT_UPDATER.compareAndSet(this, expected, next);
+		}
+
+		boolean isBaseHeader()
+		{
+			return value == BASE_HEADER;
+		}
+
+		boolean appendMarker(Node<K, V> f)
+		{
+			return casNext(f, new Node<K, V>(f));
+		}
+
+		/**
+		 * Helps to unlink this removed node: appends a marker to it, or unlinks it and its marker from b.
+		 * @param b the predecessor.
+		 * @param f the successor.
+		 */
+		void helpDelete(Node<K, V> b, Node<K, V> f)
+		{
+			if (f == next && this == b.next)
+			{
+				if (f == null || f.value != f) // not marked yet
+					casNext(f, new Node<K, V>(f));
+				else
+					b.casNext(this, f.next);
+			}
+		}
+	}
+
+	/**
+	 * An index link to a node, in one of the levels above the base level.
+	 */
+	private static class Index<K, V>
+	{
+		@SuppressWarnings("rawtypes")
+		static final AtomicReferenceFieldUpdater<Index, Index> RIGHT_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(Index.class, Index.class, "right");
+
+		/** Indexed node. */
+		final Node<K, V> node;
+		/** Index link in the level below. */
+		final Index<K, V> down;
+		/** Next index link in this level. */
+		volatile Index<K, V> right;
+
+		Index(Node<K, V> node, Index<K, V> down, Index<K, V> right)
+		{
+			this.node = node;
+			this.down = down;
+			this.right = right;
+		}
+
+		boolean casRight(Index<K, V> expected, Index<K, V> right)
+		{
+			return RIGHT_UPDATER.compareAndSet(this, expected, right);
+		}
+
+		boolean indexesDeletedNode()
+		{
+			return node.value == null;
+		}
+
+		// Links newSucc after this, before succ, if this node is not removed.
+		boolean link(Index<K, V> succ, Index<K, V> newSucc)
+		{
+			Node<K, V> n = node;
+			newSucc.right = succ;
+			return n.value != null && casRight(succ, newSucc);
+		}
+
+		// Unlinks succ from after this, if this node is not removed.
+		boolean unlink(Index<K, V> succ)
+		{
+			return node.value != null && casRight(succ, succ.right);
+		}
+	}
+
+	/**
+	 * The first index link in a level.
+	 */
+	private static final class HeadIndex<K, V> extends Index<K, V>
+	{
+		/** Level number, starting at 1. */
+		final int level;
+
+		HeadIndex(Node<K, V> node, Index<K, V> down, Index<K, V> right, int level)
+		{
+			super(node, down, right);
+			this.level = level;
+		}
+	}
+
+	/**
+	 * Weakly consistent cursor over a range of keys.
+	 */
+	protected class RangeCursor implements MapCursor<K, V>
+	{
+		/** Low endpoint, or null for none. */
+		private final K fromKey;
+		/** If true, the low endpoint is included. */
+		private final boolean fromInclusive;
+		/** High endpoint, or null for none. */
+		private final K toKey;
+		/** If true, the high endpoint is included. */
+		private final boolean toInclusive;
+
+		/** Next node to move to, or null if there are no more. */
+		private Node<K, V> nextNode;
+		/** Value of the next node, when it was found. */
+		private Object nextValue;
+		/** Current node. */
+		private Node<K, V> node;
+		/** Current value, when the cursor moved to it. */
+		private V value;
+		/** If true, the cursor is on an entry. */
+		private boolean onEntry;
+
+		RangeCursor(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive)
+		{
+			this.fromKey = fromKey;
+			this.fromInclusive = fromInclusive;
+			this.toKey = toKey;
+			this.toInclusive = toInclusive;
+			reset();
+		}
+
+		// Checks that the cursor is on an entry.
+		private void checkEntry()
+		{
+			if (!onEntry)
+				throw new IllegalStateException("Cursor is not on an entry.");
+		}
+
+		// Sets the next node to the first node at or after n that is not removed and is in range.
+		private void setNext(Node<K, V> n)
+		{
+			for (; n != null; n = n.next)
+			{
+				Object v = n.value;
+				if (v != null && v != n && v != BASE_HEADER)
+				{
+					if (toKey != null)
+					{
+						int c = compare(n.key, toKey);
+						if (c > 0 || (c == 0 && !toInclusive))
+							n = null;
+					}
+					nextValue = v;
+					break;
+				}
+			}
+			nextNode = n;
+		}
+
+		/**
+		 * @return true if {@link #next()} will move to an entry.
+		 */
+		boolean hasNext()
+		{
+			return nextNode != null;
+		}
+
+		/**
+		 * @return true if the cursor is on an entry.
+		 */
+		boolean isOnEntry()
+		{
+			return onEntry;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean next()
+		{
+			if (nextNode == null)
+			{
+				node = null;
+				return onEntry = false;
+			}
+			node = nextNode;
+			value = (V)nextValue;
+			setNext(node.next);
+			return onEntry = true;
+		}
+
+		@Override
+		public K getKey()
+		{
+			checkEntry();
+			return node.key;
+		}
+
+		/**
+		 * Returns the value of the current entry, as it was when the cursor moved to it.
+		 */
+		@Override
+		public V getValue()
+		{
+			checkEntry();
+			return value;
+		}
+
+		/**
+		 * Replaces the value of the current entry in the map.
+		 * If the entry was removed by another thread meanwhile, this does nothing.
+		 * @throws NullPointerException if value is null.
+		 */
+		@Override
+		public void setValue(V value)
+		{
+			checkEntry();
+			checkValue(value);
+			for (;;)
+			{
+				Object v = node.value;
+				if (v == null)
+					break;
+				if (node.casValue(v, value))
+				{
+					this.value = value;
+					break;
+				}
+			}
+		}
+
+		@Override
+		public void remove()
+		{
+			checkEntry();
+			doRemove(node.key, null);
+			onEntry = false;
+		}
+
+		@Override
+		public void reset()
+		{
+			node = null;
+			value = null;
+			onEntry = false;
+			if (fromKey == null)
+				setNext(head.node.next);
+			else
+				setNext(findNear(fromKey, fromInclusive ? GT | EQ : GT));
+		}
+	}
+
+	/**
+	 * Base iterator, over a cursor.
+	 * @param <T> the type of object returned.
+	 */
+	protected abstract class BaseIterator<T> implements ResettableIterator<T>
+	{
+		/** The underlying cursor. */
+		protected RangeCursor cursor;
+
+		BaseIterator(RangeCursor cursor)
+		{
+			this.cursor = cursor;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return cursor.hasNext();
+		}
+
+		@Override
+		public T next()
+		{
+			if (!cursor.next())
+				throw new NoSuchElementException();
+			return current();
+		}
+
+		/**
+		 * @return the object to return for the cursor's current entry.
+		 */
+		protected abstract T current();
+
+		@Override
+		public void remove()
+		{
+			if (!cursor.isOnEntry())
+				throw new IllegalStateException("remove() called before next()");
+			cursor.remove();
+		}
+
+		@Override
+		public void reset()
+		{
+			cursor.reset();
+		}
+	}
+
+	/** Iterator of copies of the pairs. */
+	protected class PairIterator extends BaseIterator<ObjectPair<K, V>>
+	{
+		PairIterator(RangeCursor cursor)
+		{
+			super(cursor);
+		}
+
+		@Override
+		protected ObjectPair<K, V> current()
+		{
+			return new ObjectPair<K, V>(cursor.getKey(), cursor.getValue());
+		}
+	}
+
+	/** Iterator of the keys. */
+	protected class KeyIterator extends BaseIterator<K>
+	{
+		KeyIterator(RangeCursor cursor)
+		{
+			super(cursor);
+		}
+
+		@Override
+		protected K current()
+		{
+			return cursor.getKey();
+		}
+	}
+
+	/** Iterator of the values. */
+	protected class ValueIterator extends BaseIterator<V>
+	{
+		ValueIterator(RangeCursor cursor)
+		{
+			super(cursor);
+		}
+
+		@Override
+		protected V current()
+		{
+			return cursor.getValue();
+		}
+	}
+
+}
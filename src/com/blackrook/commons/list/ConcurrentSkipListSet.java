@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.list;
+
+import java.util.Comparator;
+
+import com.blackrook.commons.AbstractSet;
+import com.blackrook.commons.ObjectPair;
+import com.blackrook.commons.ResettableIterator;
+
+/**
+ * A set of objects that is always sorted, and is safe to use from several threads at once without locking.
+ * See {@link ConcurrentSkipListMap} for details.
+ * <p>
+ * This structure cannot store null objects.
+ * @author Matthew Tropiano
+ * @param <T> the object type.
+ * @since 2.33.0
+ */
+public class ConcurrentSkipListSet<T extends Object> implements AbstractSet<T>
+{
+	/** Value stored for every object in the backing map. */
+	private static final Boolean PRESENT = Boolean.TRUE;
+
+	/** Backing map. */
+	private ConcurrentSkipListMap<T, Boolean> map;
+
+	/**
+	 * Creates a new set that uses the natural ordering of the objects.
+	 * The objects must implement {@link Comparable}.
+	 */
+	public ConcurrentSkipListSet()
+	{
+		this(null);
+	}
+
+	/**
+	 * Creates a new set.
+	 * @param comparator the comparator to use for ordering objects, or null for their natural ordering.
+	 */
+	public ConcurrentSkipListSet(Comparator<? super T> comparator)
+	{
+		this.map = new ConcurrentSkipListMap<T, Boolean>(comparator);
+	}
+
+	/**
+	 * @return the comparator used for ordering objects, or null if the objects' natural ordering is used.
+	 */
+	public Comparator<? super T> getComparator()
+	{
+		return map.getComparator();
+	}
+
+	/**
+	 * Adds an object to this set, if it is not already in it.
+	 * @throws NullPointerException if object is null.
+	 */
+	@Override
+	public void put(T object)
+	{
+		map.putIfAbsent(object, PRESENT);
+	}
+
+	/**
+	 * Adds an object to this set, if it is not already in it.
+	 * This is atomic - if several threads add the same object, only one gets <code>true</code>.
+	 * @param object the object to add.
+	 * @return true if the object was added, false if it was already in the set.
+	 * @throws NullPointerException if object is null.
+	 */
+	public boolean putIfAbsent(T object)
+	{
+		return map.putIfAbsent(object, PRESENT) == null;
+	}
+
+	@Override
+	public boolean contains(T object)
+	{
+		return object != null && map.containsKey(object);
+	}
+
+	@Override
+	public boolean remove(T object)
+	{
+		return object != null && map.removeUsingKey(object) != null;
+	}
+
+	/**
+	 * Clears the contents of this set.
+	 * This is not atomic - objects added by other threads while this is called may remain in the set.
+	 */
+	public void clear()
+	{
+		map.clear();
+	}
+
+	/**
+	 * Returns the amount of objects in the set.
+	 * If other threads are changing the set, this is only an estimate.
+	 */
+	@Override
+	public int size()
+	{
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return map.isEmpty();
+	}
+
+	/**
+	 * @return the lowest object in this set, or null if the set is empty.
+	 */
+	public T first()
+	{
+		return map.firstKey();
+	}
+
+	/**
+	 * @return the highest object in this set, or null if the set is empty.
+	 */
+	public T last()
+	{
+		return map.lastKey();
+	}
+
+	/**
+	 * Returns the highest object that is less than or equal to an object.
+	 * @param object the reference object.
+	 * @return the matching object, or null if there is none.
+	 * @throws NullPointerException if object is null.
+	 */
+	public T floor(T object)
+	{
+		return map.floorKey(object);
+	}
+
+	/**
+	 * Returns the lowest object that is greater than or equal to an object.
+	 * @param object the reference object.
+	 * @return the matching object, or null if there is none.
+	 * @throws NullPointerException if object is null.
+	 */
+	public T ceiling(T object)
+	{
+		return map.ceilingKey(object);
+	}
+
+	/**
+	 * Returns the highest object that is strictly less than an object.
+	 * @param object the reference object.
+	 * @return the matching object, or null if there is none.
+	 * @throws NullPointerException if object is null.
+	 */
+	public T lower(T object)
+	{
+		return map.lowerKey(object);
+	}
+
+	/**
+	 * Returns the lowest object that is strictly greater than an object.
+	 * @param object the reference object.
+	 * @return the matching object, or null if there is none.
+	 * @throws NullPointerException if object is null.
+	 */
+	public T higher(T object)
+	{
+		return map.higherKey(object);
+	}
+
+	/**
+	 * Removes the lowest object from this set.
+	 * This is atomic: if several threads call this at once, each gets a different object.
+	 * @return the removed object, or null if the set is empty.
+	 */
+	public T pollFirst()
+	{
+		ObjectPair<T, Boolean> pair = map.pollFirst();
+		return pair != null ? pair.getKey() : null;
+	}
+
+	/**
+	 * Removes the highest object from this set.
+	 * This is atomic: if several threads call this at once, each gets a different object.
+	 * @return the removed object, or null if the set is empty.
+	 */
+	public T pollLast()
+	{
+		ObjectPair<T, Boolean> pair = map.pollLast();
+		return pair != null ? pair.getKey() : null;
+	}
+
+	/**
+	 * Copies the objects in this set into an array, in order.
+	 * If the set changes size while this is called, only as many objects as fit are copied.
+	 */
+	@Override
+	public void toArray(T[] out)
+	{
+		map.toArrayKeys(out);
+	}
+
+	/**
+	 * Returns a weakly consistent iterator through the objects in this set, in order.
+	 * See {@link ConcurrentSkipListMap} for details.
+	 */
+	@Override
+	public ResettableIterator<T> iterator()
+	{
+		return map.keyIterator();
+	}
+
+	/**
+	 * Returns a weakly consistent iterator through the objects in this set that are less than an object, in order.
+	 * @param toObject the high endpoint of the objects.
+	 * @param inclusive if true, toObject is included.
+	 * @return a new iterator.
+	 * @throws NullPointerException if toObject is null.
+	 */
+	public ResettableIterator<T> headIterator(T toObject, boolean inclusive)
+	{
+		if (toObject == null)
+			throw new NullPointerException("toObject cannot be null.");
+		return map.keyIterator(null, false, toObject, inclusive);
+	}
+
+	/**
+	 * Returns a weakly consistent iterator through the objects in this set that are greater than an object, in order.
+	 * @param fromObject the low endpoint of the objects.
+	 * @param inclusive if true, fromObject is included.
+	 * @return a new iterator.
+	 * @throws NullPointerException if fromObject is null.
+	 */
+	public ResettableIterator<T> tailIterator(T fromObject, boolean inclusive)
+	{
+		if (fromObject == null)
+			throw new NullPointerException("fromObject cannot be null.");
+		return map.keyIterator(fromObject, inclusive, null, false);
+	}
+
+	/**
+	 * Returns a weakly consistent iterator through the objects in this set that are in a range, in order.
+	 * @param fromObject the low endpoint of the objects.
+	 * @param fromInclusive if true, fromObject is included.
+	 * @param toObject the high endpoint of the objects.
+	 * @param toInclusive if true, toObject is included.
+	 * @return a new iterator.
+	 * @throws NullPointerException if fromObject or toObject is null.
+	 * @throws IllegalArgumentException if fromObject is greater than toObject.
+	 */
+	public ResettableIterator<T> subIterator(T fromObject, boolean fromInclusive, T toObject, boolean toInclusive)
+	{
+		if (fromObject == null)
+			throw new NullPointerException("fromObject cannot be null.");
+		if (toObject == null)
+			throw new NullPointerException("toObject cannot be null.");
+		if (map.compare(fromObject, toObject) > 0)
+			throw new IllegalArgumentException("fromObject is greater than toObject.");
+		return map.keyIterator(fromObject, fromInclusive, toObject, toInclusive);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean once = false;
+		sb.append("[");
+		for (T obj : this)
+		{
+			if (once)
+				sb.append(", ");
+			sb.append(obj);
+			once = true;
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,427 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.list;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.stream.DoubleStream;
+
+import com.blackrook.commons.Sizable;
+
+/**
+ * A growable list of primitive doubles, which does not box its values.
+ * <p>
+ * The values are stored in a single array, which is expanded like an {@link com.blackrook.commons.AbstractVector}'s:
+ * by the capacity increment, or doubled if the increment is 0 or less.
+ * The backing array can be accessed directly through {@link #getArray()} for bulk operations.
+ * None of the methods are synchronized.
+ * @author Matthew Tropiano
+ * @since 2.33.0
+ */
+public class DoubleList implements Sizable
+{
+	/** Default capacity for a new list. */
+	public static final int DEFAULT_CAPACITY = 10;
+
+	/** Capacity increment. */
+	protected int capacityIncrement;
+	/** Amount of values in the list. */
+	protected int size;
+	/** Value array. */
+	protected double[] storageArray;
+
+	/**
+	 * Makes a new list.
+	 */
+	public DoubleList()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Makes a new list that doubles every resize.
+	 * @param capacity the initial capacity of this list. If 0 or less, it is 1.
+	 */
+	public DoubleList(int capacity)
+	{
+		this(capacity, 0);
+	}
+
+	/**
+	 * Makes a new list.
+	 * @param capacity the initial capacity of this list. If 0 or less, it is 1.
+	 * @param capacityIncrement what to increase the capacity of this list by
+	 * if this reaches the max. if 0 or less, it will double.
+	 */
+	public DoubleList(int capacity, int capacityIncrement)
+	{
+		setCapacityIncrement(capacityIncrement);
+		setCapacity(capacity);
+	}
+
+	/**
+	 * Gets the capacity of this list (size before it resizes itself).
+	 * @return the current capacity.
+	 */
+	public int getCapacity()
+	{
+		return storageArray.length;
+	}
+
+	/**
+	 * Sets this list's capacity to some value. If this list is set to a capacity
+	 * that is less than the current one, it will cut the list short. If the
+	 * capacity argument is 0 or less, it is set to 1.
+	 * @param capacity the new capacity of this list.
+	 */
+	public void setCapacity(int capacity)
+	{
+		if (capacity < 1)
+			capacity = 1;
+		double[] newArray = new double[capacity];
+		if (storageArray != null)
+		{
+			System.arraycopy(storageArray, 0, newArray, 0, Math.min(size, capacity));
+			if (capacity < size)
+				size = capacity;
+		}
+		else
+			size = 0;
+		storageArray = newArray;
+	}
+
+	/**
+	 * Expands this list's capacity, if necessary, so that it can hold
+	 * a total amount of values without resizing itself.
+	 * @param capacity the total amount of values to expect.
+	 */
+	public void ensureCapacity(int capacity)
+	{
+		if (capacity > storageArray.length)
+			setCapacity(capacity);
+	}
+
+	/**
+	 * Sets this list's capacity to its current size, or 1 if it is empty.
+	 */
+	public void trim()
+	{
+		setCapacity(size);
+	}
+
+	/**
+	 * @return the capacity increment value.
+	 * @see #setCapacityIncrement(int)
+	 */
+	public int getCapacityIncrement()
+	{
+		return capacityIncrement;
+	}
+
+	/**
+	 * Sets the capacity increment value.
+	 * @param capacityIncrement what to increase the capacity of this list by
+	 * if this reaches the max. if 0 or less, it will double.
+	 */
+	public void setCapacityIncrement(int capacityIncrement)
+	{
+		this.capacityIncrement = capacityIncrement;
+	}
+
+	/**
+	 * Returns the backing array of this list. Only the first {@link #size()} values are part of the list.
+	 * Changes to the array are reflected in the list, but the list replaces its array when its capacity
+	 * changes, so this should be called again after adding values.
+	 * @return the backing array.
+	 */
+	public double[] getArray()
+	{
+		return storageArray;
+	}
+
+	/**
+	 * Gets the value at an index in the list.
+	 * @param index the desired index.
+	 * @return the value at the index.
+	 * @throws IndexOutOfBoundsException if index is less than 0 or greater than or equal to the size.
+	 */
+	public double get(int index)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " is outside of the list, size " + size + ".");
+		return storageArray[index];
+	}
+
+	/**
+	 * Sets the value at an index in the list.
+	 * @param index the desired index.
+	 * @param value the new value.
+	 * @return the previous value at the index.
+	 * @throws IndexOutOfBoundsException if index is less than 0 or greater than or equal to the size.
+	 */
+	public double set(int index, double value)
+	{
+		double out = get(index);
+		storageArray[index] = value;
+		return out;
+	}
+
+	/**
+	 * Adds a value to the end of the list.
+	 * @param value the value to add.
+	 */
+	public void add(double value)
+	{
+		if (size == storageArray.length)
+			expand(size + 1);
+		storageArray[size++] = value;
+	}
+
+	/**
+	 * Adds a value at an index, shifting the values at and after it up an index position.
+	 * @param index the index to add this at.
+	 * @param value the value to add.
+	 * @throws IndexOutOfBoundsException if index is less than 0 or greater than the size.
+	 */
+	public void add(int index, double value)
+	{
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index " + index + " is outside of the list, size " + size + ".");
+		if (size == storageArray.length)
+			expand(size + 1);
+		System.arraycopy(storageArray, index, storageArray, index + 1, size - index);
+		storageArray[index] = value;
+		size++;
+	}
+
+	/**
+	 * Adds several values to the end of the list, in the order that they are listed.
+	 * @param values the values to add.
+	 */
+	public void addAll(double ... values)
+	{
+		addAll(values, 0, values.length);
+	}
+
+	/**
+	 * Adds several values from an array to the end of the list.
+	 * @param values the source array.
+	 * @param offset the offset into the array to start the copy.
+	 * @param length the amount of values to copy.
+	 * @throws IndexOutOfBoundsException if offset plus length exceeds the array's length.
+	 */
+	public void addAll(double[] values, int offset, int length)
+	{
+		capacityCheck(length);
+		System.arraycopy(values, offset, storageArray, size, length);
+		size += length;
+	}
+
+	/**
+	 * Adds all of the values in another list to the end of this list.
+	 * @param list the source list.
+	 */
+	public void addAll(DoubleList list)
+	{
+		addAll(list.storageArray, 0, list.size);
+	}
+
+	/**
+	 * Adds the remaining values in a buffer (from its position to its limit) to the end of the list.
+	 * The buffer's position is advanced to its limit.
+	 * @param buffer the source buffer.
+	 */
+	public void addAll(DoubleBuffer buffer)
+	{
+		int length = buffer.remaining();
+		capacityCheck(length);
+		buffer.get(storageArray, size, length);
+		size += length;
+	}
+
+	/**
+	 * Removes the value at an index in the list and shifts
+	 * everything after it down an index position.
+	 * @param index the target index.
+	 * @return the removed value.
+	 * @throws IndexOutOfBoundsException if index is less than 0 or greater than or equal to the size.
+	 */
+	public double removeIndex(int index)
+	{
+		double out = get(index);
+		System.arraycopy(storageArray, index + 1, storageArray, index, size - index - 1);
+		size--;
+		return out;
+	}
+
+	/**
+	 * Removes a series of values from the list and shifts
+	 * everything after them down.
+	 * @param startIndex the index of the first value to remove.
+	 * @param length the amount of values to remove.
+	 * @throws IndexOutOfBoundsException if startIndex or length is negative, or startIndex plus length exceeds the size.
+	 */
+	public void delete(int startIndex, int length)
+	{
+		if (startIndex < 0 || length < 0 || startIndex + length > size)
+			throw new IndexOutOfBoundsException("Range " + startIndex + " to " + (startIndex + length) + " is outside of the list, size " + size + ".");
+		System.arraycopy(storageArray, startIndex + length, storageArray, startIndex, size - (startIndex + length));
+		size -= length;
+	}
+
+	/**
+	 * Clears the list. The capacity is unchanged.
+	 */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * Gets the index of the first occurrence of a value in the list.
+	 * Sequential search.
+	 * Values are compared like {@link Double#equals(Object)}: NaN matches NaN, and 0.0 does not match -0.0.
+	 * @param value the value to search for.
+	 * @return the index of the value if it is in the list, or -1 if it is not present.
+	 */
+	public int getIndexOf(double value)
+	{
+		for (int i = 0; i < size; i++)
+			if (Double.doubleToLongBits(storageArray[i]) == Double.doubleToLongBits(value))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Checks if a value exists in this list.
+	 * @param value the value to look for.
+	 * @return true if the value exists, or false if not.
+	 * @see #getIndexOf(double)
+	 */
+	public boolean contains(double value)
+	{
+		return getIndexOf(value) >= 0;
+	}
+
+	/**
+	 * Sorts this list in ascending order.
+	 * Calls {@link Arrays#sort(double[], int, int)} on the backing array.
+	 */
+	public void sort()
+	{
+		Arrays.sort(storageArray, 0, size);
+	}
+
+	/**
+	 * Sorts part of this list in ascending order.
+	 * Calls {@link Arrays#sort(double[], int, int)} on the backing array.
+	 * @param startIndex the starting index of the sort.
+	 * @param endIndex the ending index of the sort, exclusive.
+	 * @throws IndexOutOfBoundsException if endIndex is greater than the size.
+	 */
+	public void sort(int startIndex, int endIndex)
+	{
+		if (endIndex > size)
+			throw new IndexOutOfBoundsException("End index " + endIndex + " is outside of the list, size " + size + ".");
+		Arrays.sort(storageArray, startIndex, endIndex);
+	}
+
+	/**
+	 * Gets the index of a value in the list via binary search.
+	 * Expects the contents of this list to be sorted in ascending order.
+	 * @param value the value to search for.
+	 * @return the index of the value if it is in the list, or less than 0 if it is not present.
+	 * If less than 0, it is equal to where it would be added in the list. Add 1 then negate.
+	 */
+	public int search(double value)
+	{
+		return Arrays.binarySearch(storageArray, 0, size, value);
+	}
+
+	/**
+	 * Returns the amount of values in the list.
+	 */
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Copies the values in this list into an array.
+	 * @param out the target array. Must be at least {@link #size()} long.
+	 * @throws IndexOutOfBoundsException if the array is too small.
+	 */
+	public void toArray(double[] out)
+	{
+		System.arraycopy(storageArray, 0, out, 0, size);
+	}
+
+	/**
+	 * @return a new array with this list's values.
+	 */
+	public double[] toArray()
+	{
+		return Arrays.copyOf(storageArray, size);
+	}
+
+	/**
+	 * @return a sequential stream of the values in this list.
+	 * Call <code>parallel()</code> on it for a parallel stream.
+	 * This list should not be changed while the stream is in use.
+	 */
+	public DoubleStream stream()
+	{
+		return Arrays.stream(storageArray, 0, size);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append('[');
+		for (int i = 0; i < size; i++)
+		{
+			if (i > 0)
+				sb.append(", ");
+			sb.append(storageArray[i]);
+		}
+		sb.append(']');
+		return sb.toString();
+	}
+
+	/**
+	 * Increases the capacity of the list if necessary.
+	 * @param length the amount of values about to be added.
+	 */
+	protected void capacityCheck(int length)
+	{
+		if (size + length > storageArray.length)
+			expand(size + length);
+	}
+
+	// Grows by the increment (or doubles) until the required capacity fits.
+	private void expand(int required)
+	{
+		int capacity = storageArray.length;
+		while (capacity < required)
+		{
+			capacity += capacityIncrement <= 0 ? capacity : capacityIncrement;
+			if (capacity < 0)
+				capacity = required;
+		}
+		setCapacity(capacity);
+	}
+
+}
@@ -7,6 +7,8 @@
  ******************************************************************************/
 package com.blackrook.commons.list;
 
+import java.util.Arrays;
+
 import com.blackrook.commons.AbstractVector;
 
 /**
@@ -52,6 +54,60 @@ public class SortedList<T extends Comparable<T>> extends AbstractVector<T>
 		resort(size-1);
 	}
 	
+	/**
+	 * Adds several objects to the list, keeping it sorted.
+	 * Instead of sorting each object into place, the objects are sorted and then 
+	 * merged into the list in one pass, which is O(n + k log k) for k objects added to a list of n.
+	 * Objects that are equal to objects already in the list are placed after them, as with {@link #add(Comparable)}.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void addAll(T ... objects)
+	{
+		mergeSorted(Arrays.copyOf(objects, objects.length, Object[].class), objects.length, null);
+	}
+
+	/**
+	 * Adds several objects to the list, keeping it sorted.
+	 * Instead of sorting each object into place, the objects are sorted and then 
+	 * merged into the list in one pass, which is O(n + k log k) for k objects added to a list of n.
+	 * Objects that are equal to objects already in the list are placed after them, as with {@link #add(Comparable)}.
+	 * @param objects the objects to add.
+	 * @since 2.33.0
+	 */
+	@Override
+	public void addAll(Iterable<? extends T> objects)
+	{
+		mergeSorted(objects, null);
+	}
+
+	/**
+	 * Removes every object in the list that is equal (by {@link Object#equals(Object)}) to one of several objects.
+	 * The list is compacted in one pass instead of shifting its contents once per removed object.
+	 * @param objects the objects to remove.
+	 * @return the amount of objects removed from the list.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public int removeAll(T ... objects)
+	{
+		return removeSorted(Arrays.asList(objects), null);
+	}
+
+	/**
+	 * Removes every object in the list that is equal (by {@link Object#equals(Object)}) to one of several objects.
+	 * The list is compacted in one pass instead of shifting its contents once per removed object.
+	 * @param objects the objects to remove.
+	 * @return the amount of objects removed from the list.
+	 * @since 2.33.0
+	 */
+	public int removeAll(Iterable<? extends T> objects)
+	{
+		return removeSorted(objects, null);
+	}
+
 	/**
 	 * Checks if an object exists in this vector via comparison binary-search style.
 	 */
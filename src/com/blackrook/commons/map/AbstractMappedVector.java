@@ -9,6 +9,9 @@ package com.blackrook.commons.map;
 
 import java.util.Comparator;
 import java.util.Random;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 import com.blackrook.commons.AbstractMap;
 import com.blackrook.commons.AbstractVector;
@@ -20,6 +23,11 @@ import com.blackrook.commons.hash.HashMap;
  * of the objects that shift positions.
  * <p>
  * Map lookups are by hash, so they are O(c), c = longest chain in map. O(c) &lt; O(n);
+ * <p>
+ * As of 2.33.0, re-mappings are lazy: a change that shifts objects (like adding or removing
+ * near the front, sorting, or shifting) only marks the mappings from the first affected index onward 
+ * as stale, and the stale mappings are re-mapped all at once on the next lookup by key. Many changes in a row
+ * therefore cost one re-mapping instead of one each. Adding to the end and swapping keep the mappings up to date.
  * @author Matthew Tropiano
  * @param <T> the type of Object that this vector contains.
  * @param <K> the mapped key type that this vector uses to map one object to an index.
@@ -28,8 +36,10 @@ import com.blackrook.commons.hash.HashMap;
  */
 public abstract class AbstractMappedVector<T extends Object, K extends Object> extends AbstractVector<T>
 {
-	/** The key map. */
+	/** The key map. Contains every object's key, but the indices of objects at or after {@link #staleIndex} may be out of date. */
 	protected AbstractMap<K, Integer> indexMap;
+	/** The index of the first object that may have an out-of-date mapping. If equal to the size, all mappings are up to date. */
+	protected int staleIndex;
 	
 	/**
 	 * Makes a new mapped vector.
@@ -82,26 +92,37 @@ public abstract class AbstractMappedVector<T extends Object, K extends Object> e
 	protected abstract K getMappingKey(T object);
 
 	/**
-	 * Re-maps a single object to its index.
-	 * @param startIndex the starting index to start the remap (inclusive).
-	 * @param endIndex the ending index to start the remap (exclusive).
+	 * Re-maps a single object to its index, if its mapping is not already stale.
+	 * @param index the index of the object.
 	 */
 	private void reMap(int index)
 	{
-		K key = getMappingKey(getByIndex(index));
-		indexMap.removeUsingKey(key);
-		indexMap.put(key, index);
+		if (index < staleIndex)
+			indexMap.put(getMappingKey(getByIndex(index)), index);
+	}
+	
+	/**
+	 * Marks the mappings of the objects from an index onward as stale.
+	 * They are re-mapped on the next lookup by key.
+	 * @param index the index of the first object whose index may have changed.
+	 * @since 2.33.0
+	 */
+	protected void invalidateIndex(int index)
+	{
+		if (index < staleIndex)
+			staleIndex = Math.max(index, 0);
 	}
 	
 	/**
-	 * Re-maps objects to indices.
-	 * @param startIndex the starting index to start the remap (inclusive).
-	 * @param endIndex the ending index to start the remap (exclusive).
+	 * Re-maps all objects with stale mappings to their indices.
+	 * This is called by the lookups by key, so it does not usually need to be called directly.
+	 * @since 2.33.0
 	 */
-	private void reMap(int startIndex, int endIndex)
+	protected void reIndex()
 	{
-		for (int i = startIndex; i >= 0 && i < size() && i < endIndex; i++)
-			reMap(i);
+		for (int i = staleIndex; i < size; i++)
+			indexMap.put(getMappingKey(getByIndex(i)), i);
+		staleIndex = size;
 	}
 	
 	/**
@@ -111,6 +132,8 @@ public abstract class AbstractMappedVector<T extends Object, K extends Object> e
 	 */
 	public int getIndexUsingKey(K key)
 	{
+		if (staleIndex < size)
+			reIndex();
 		Integer i = indexMap.get(key);
 		return i != null ? i : -1;
 	}
@@ -150,8 +173,31 @@ public abstract class AbstractMappedVector<T extends Object, K extends Object> e
 	@Override
 	public void add(int index, T object)
 	{
+		int prevSize = size;
 		super.add(index, object);
-		reMap(index > size() - 1 ? size() - 1 : index, size());
+		if (size == prevSize)
+			return;
+		
+		index = index > size - 1 ? size - 1 : index;
+		indexMap.put(getMappingKey(object), index);
+		// appending to up-to-date mappings keeps them up to date.
+		if (index == prevSize && staleIndex == prevSize)
+			staleIndex = size;
+		else
+			invalidateIndex(index + 1);
+	}
+	
+	@Override
+	public void replace(int index, T object)
+	{
+		if (index >= 0 && index < size)
+		{
+			indexMap.removeUsingKey(getMappingKey(getByIndex(index)));
+			super.replace(index, object);
+			indexMap.put(getMappingKey(object), index);
+		}
+		else
+			super.replace(index, object);
 	}
 	
 	@Override
@@ -161,37 +207,91 @@ public abstract class AbstractMappedVector<T extends Object, K extends Object> e
 		if (out != null)
 		{
 			indexMap.removeUsingKey(getMappingKey(out));
-			reMap(index, size());
+			invalidateIndex(index);
 		}
 		return out;
 	}
 
+	@Override
+	public void shallowClear()
+	{
+		for (int i = 0; i < size; i++)
+			indexMap.removeUsingKey(getMappingKey(getByIndex(i)));
+		super.shallowClear();
+		staleIndex = 0;
+	}
+
+	@Override
+	public void setCapacity(int capacity)
+	{
+		for (int i = Math.max(capacity, 1); i < size; i++)
+			indexMap.removeUsingKey(getMappingKey(getByIndex(i)));
+		super.setCapacity(capacity);
+		if (staleIndex > size)
+			staleIndex = size;
+	}
+
 	@Override
 	public void sort()
 	{
 		super.sort();
-		reMap(0, size());
+		invalidateIndex(0);
 	}
 
 	@Override
 	public void sort(Comparator<? super T> comp)
 	{
 		super.sort(comp);
-		reMap(0, size());
+		invalidateIndex(0);
 	}
 
 	@Override
 	public void sort(int startIndex, int endIndex)
 	{
 		super.sort(startIndex, endIndex);
-		reMap(startIndex, endIndex);
+		invalidateIndex(startIndex);
 	}
 
 	@Override
 	public void sort(Comparator<? super T> comp, int startIndex, int endIndex)
 	{
 		super.sort(comp, startIndex, endIndex);
-		reMap(startIndex, endIndex);
+		invalidateIndex(startIndex);
+	}
+
+	@Override
+	public void parallelSort()
+	{
+		super.parallelSort();
+		invalidateIndex(0);
+	}
+
+	@Override
+	public void parallelSort(Comparator<? super T> comp)
+	{
+		super.parallelSort(comp);
+		invalidateIndex(0);
+	}
+
+	@Override
+	public void sortByIntKey(ToIntFunction<? super T> keyFunction)
+	{
+		super.sortByIntKey(keyFunction);
+		invalidateIndex(0);
+	}
+
+	@Override
+	public void sortByLongKey(ToLongFunction<? super T> keyFunction)
+	{
+		super.sortByLongKey(keyFunction);
+		invalidateIndex(0);
+	}
+
+	@Override
+	public void sortByDoubleKey(ToDoubleFunction<? super T> keyFunction)
+	{
+		super.sortByDoubleKey(keyFunction);
+		invalidateIndex(0);
 	}
 
 	@Override
@@ -206,17 +306,15 @@ public abstract class AbstractMappedVector<T extends Object, K extends Object> e
 	public void shift(int sourceIndex, int targetIndex)
 	{
 		super.shift(sourceIndex, targetIndex);
-		if (targetIndex < sourceIndex)
-			reMap(targetIndex, sourceIndex + 1);
-		else if (targetIndex > sourceIndex)
-			reMap(sourceIndex, targetIndex + 1);
+		invalidateIndex(Math.min(sourceIndex, targetIndex));
 	}
 
 	@Override
 	public void shuffle(Random random)
 	{
+		// marked first, so that the swaps do not re-map anything.
+		invalidateIndex(0);
 		super.shuffle(random);
-		reMap(0, size());
 	}
 	
 }
@@ -10,6 +10,11 @@ package com.blackrook.commons.util;
 import java.lang.reflect.Array;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 import com.blackrook.commons.Reflect;
 
@@ -20,6 +25,22 @@ import com.blackrook.commons.Reflect;
  */
 public final class ArrayUtils 
 {
+	/** Smallest piece of an array that parallelSort() sorts or merges in one thread. */
+	private static final int PARALLEL_SORT_MIN_PIECE = 1 << 13;
+	/** Smallest range that radixSort() sorts by radix, instead of with Arrays.sort(). */
+	private static final int RADIX_SORT_THRESHOLD = 1 << 10;
+
+	/** Comparator for natural ordering. */
+	private static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>()
+	{
+		@Override
+		@SuppressWarnings("unchecked")
+		public int compare(Object o1, Object o2)
+		{
+			return ((Comparable<Object>)o1).compareTo(o2);
+		}
+	};
+
 	private ArrayUtils() {}
 
 	/**
@@ -329,6 +350,661 @@ public final class ArrayUtils
 	    return i;
 	}
 
+	/**
+	 * Sorts an array using NATURAL ORDERING, using several threads.
+	 * Convenience method for <code>parallelSort(array, 0, array.length, null);</code>
+	 * @param <T> the object type stored in the array that extends {@link Comparable}.
+	 * @param array the input array.
+	 * @see #parallelSort(Object[], int, int, Comparator)
+	 * @since 2.33.0
+	 */
+	public static <T extends Comparable<T>> void parallelSort(T[] array)
+	{
+		parallelSort(array, 0, array.length, null);
+	}
+
+	/**
+	 * Sorts an array using a comparator, using several threads.
+	 * Convenience method for <code>parallelSort(array, 0, array.length, comparator);</code>
+	 * @param <T> the object type stored in the array.
+	 * @param array the input array.
+	 * @param comparator the comparator to use for comparing, or null for the objects' natural ordering.
+	 * @see #parallelSort(Object[], int, int, Comparator)
+	 * @since 2.33.0
+	 */
+	public static <T> void parallelSort(T[] array, Comparator<? super T> comparator)
+	{
+		parallelSort(array, 0, array.length, comparator);
+	}
+
+	/**
+	 * Sorts part of an array using a comparator, using several threads.
+	 * <p>
+	 * This is a merge sort run on the common {@link ForkJoinPool}: the range is split into pieces that are
+	 * sorted with {@link Arrays#sort(Object[], int, int, Comparator)} in parallel, then the sorted pieces are
+	 * merged in parallel, too, by splitting each merge around a binary-searched midpoint.
+	 * It uses a temporary array as long as the range. The sort is stable - equal objects keep their order.
+	 * If the range is small or the pool only has one thread, this just calls {@link Arrays#sort(Object[], int, int, Comparator)}.
+	 * @param <T> the object type stored in the array.
+	 * @param array the input array.
+	 * @param startIndex the starting index of the sort (inclusive).
+	 * @param endIndex the ending index of the sort (exclusive).
+	 * @param comparator the comparator to use for comparing, or null for the objects' natural ordering.
+	 * @throws IllegalArgumentException if startIndex is greater than endIndex.
+	 * @throws ArrayIndexOutOfBoundsException if startIndex is less than 0 or endIndex is greater than the array length.
+	 * @since 2.33.0
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> void parallelSort(T[] array, int startIndex, int endIndex, Comparator<? super T> comparator)
+	{
+		checkRange(array.length, startIndex, endIndex);
+		if (comparator == null)
+			comparator = (Comparator<? super T>)NATURAL_ORDER;
+
+		int length = endIndex - startIndex;
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		if (length <= PARALLEL_SORT_MIN_PIECE || parallelism <= 1)
+		{
+			Arrays.sort(array, startIndex, endIndex, comparator);
+			return;
+		}
+
+		int piece = Math.max(length / (parallelism << 2), PARALLEL_SORT_MIN_PIECE);
+		Object[] buffer = new Object[length];
+		ForkJoinPool.commonPool().invoke(new MergeSortTask(array, startIndex, buffer, 0, length, false, piece, (Comparator<Object>)comparator));
+	}
+
+	/**
+	 * Sorts an array of integers in ascending order with an LSD radix sort.
+	 * Convenience method for <code>radixSort(array, 0, array.length);</code>
+	 * @param array the input array.
+	 * @see #radixSort(int[], int, int)
+	 * @since 2.33.0
+	 */
+	public static void radixSort(int[] array)
+	{
+		radixSort(array, 0, array.length);
+	}
+
+	/**
+	 * Sorts part of an array of integers in ascending order with an LSD (least significant digit first) radix sort.
+	 * <p>
+	 * The values are sorted a byte at a time, in at most 4 counting passes, using a temporary array as long as the range.
+	 * Passes where every value has the same byte are skipped.
+	 * Small ranges are sorted with {@link Arrays#sort(int[], int, int)} instead.
+	 * @param array the input array.
+	 * @param startIndex the starting index of the sort (inclusive).
+	 * @param endIndex the ending index of the sort (exclusive).
+	 * @throws IllegalArgumentException if startIndex is greater than endIndex.
+	 * @throws ArrayIndexOutOfBoundsException if startIndex is less than 0 or endIndex is greater than the array length.
+	 * @since 2.33.0
+	 */
+	public static void radixSort(int[] array, int startIndex, int endIndex)
+	{
+		checkRange(array.length, startIndex, endIndex);
+		int length = endIndex - startIndex;
+		if (length < RADIX_SORT_THRESHOLD)
+			Arrays.sort(array, startIndex, endIndex);
+		else
+			radixSortBytes(array, startIndex, length, new int[length], 0x80);
+	}
+
+	/**
+	 * Sorts an array of long integers in ascending order with an LSD radix sort.
+	 * Convenience method for <code>radixSort(array, 0, array.length);</code>
+	 * @param array the input array.
+	 * @see #radixSort(long[], int, int)
+	 * @since 2.33.0
+	 */
+	public static void radixSort(long[] array)
+	{
+		radixSort(array, 0, array.length);
+	}
+
+	/**
+	 * Sorts part of an array of long integers in ascending order with an LSD (least significant digit first) radix sort.
+	 * <p>
+	 * The values are sorted a byte at a time, in at most 8 counting passes, using a temporary array as long as the range.
+	 * Passes where every value has the same byte are skipped, so values that fit in fewer bytes sort faster.
+	 * Small ranges are sorted with {@link Arrays#sort(long[], int, int)} instead.
+	 * @param array the input array.
+	 * @param startIndex the starting index of the sort (inclusive).
+	 * @param endIndex the ending index of the sort (exclusive).
+	 * @throws IllegalArgumentException if startIndex is greater than endIndex.
+	 * @throws ArrayIndexOutOfBoundsException if startIndex is less than 0 or endIndex is greater than the array length.
+	 * @since 2.33.0
+	 */
+	public static void radixSort(long[] array, int startIndex, int endIndex)
+	{
+		checkRange(array.length, startIndex, endIndex);
+		int length = endIndex - startIndex;
+		if (length < RADIX_SORT_THRESHOLD)
+			Arrays.sort(array, startIndex, endIndex);
+		else
+			radixSortBytes(array, startIndex, length, new long[length], null, null, 0x80);
+	}
+
+	/**
+	 * Sorts an array of floats in ascending order with an LSD radix sort.
+	 * Convenience method for <code>radixSort(array, 0, array.length);</code>
+	 * @param array the input array.
+	 * @see #radixSort(float[], int, int)
+	 * @since 2.33.0
+	 */
+	public static void radixSort(float[] array)
+	{
+		radixSort(array, 0, array.length);
+	}
+
+	/**
+	 * Sorts part of an array of floats in ascending order with an LSD (least significant digit first) radix sort.
+	 * <p>
+	 * The order is the same as {@link Arrays#sort(float[], int, int)}: -0.0f is before 0.0f, and NaN is last.
+	 * NaN values are replaced with the canonical {@link Float#NaN}.
+	 * The values are sorted by their bits, in at most 4 counting passes, using two temporary integer arrays as long as the range.
+	 * Small ranges are sorted with {@link Arrays#sort(float[], int, int)} instead.
+	 * @param array the input array.
+	 * @param startIndex the starting index of the sort (inclusive).
+	 * @param endIndex the ending index of the sort (exclusive).
+	 * @throws IllegalArgumentException if startIndex is greater than endIndex.
+	 * @throws ArrayIndexOutOfBoundsException if startIndex is less than 0 or endIndex is greater than the array length.
+	 * @since 2.33.0
+	 */
+	public static void radixSort(float[] array, int startIndex, int endIndex)
+	{
+		checkRange(array.length, startIndex, endIndex);
+		int length = endIndex - startIndex;
+		if (length < RADIX_SORT_THRESHOLD)
+		{
+			Arrays.sort(array, startIndex, endIndex);
+			return;
+		}
+
+		int[] keys = new int[length];
+		for (int i = 0; i < length; i++)
+			keys[i] = sortableBits(array[startIndex + i]);
+		radixSortBytes(keys, 0, length, new int[length], 0);
+		for (int i = 0; i < length; i++)
+		{
+			int key = keys[i];
+			array[startIndex + i] = Float.intBitsToFloat(key < 0 ? key ^ Integer.MIN_VALUE : ~key);
+		}
+	}
+
+	/**
+	 * Sorts an array of doubles in ascending order with an LSD radix sort.
+	 * Convenience method for <code>radixSort(array, 0, array.length);</code>
+	 * @param array the input array.
+	 * @see #radixSort(double[], int, int)
+	 * @since 2.33.0
+	 */
+	public static void radixSort(double[] array)
+	{
+		radixSort(array, 0, array.length);
+	}
+
+	/**
+	 * Sorts part of an array of doubles in ascending order with an LSD (least significant digit first) radix sort.
+	 * <p>
+	 * The order is the same as {@link Arrays#sort(double[], int, int)}: -0.0 is before 0.0, and NaN is last.
+	 * NaN values are replaced with the canonical {@link Double#NaN}.
+	 * The values are sorted by their bits, in at most 8 counting passes, using two temporary long arrays as long as the range.
+	 * Small ranges are sorted with {@link Arrays#sort(double[], int, int)} instead.
+	 * @param array the input array.
+	 * @param startIndex the starting index of the sort (inclusive).
+	 * @param endIndex the ending index of the sort (exclusive).
+	 * @throws IllegalArgumentException if startIndex is greater than endIndex.
+	 * @throws ArrayIndexOutOfBoundsException if startIndex is less than 0 or endIndex is greater than the array length.
+	 * @since 2.33.0
+	 */
+	public static void radixSort(double[] array, int startIndex, int endIndex)
+	{
+		checkRange(array.length, startIndex, endIndex);
+		int length = endIndex - startIndex;
+		if (length < RADIX_SORT_THRESHOLD)
+		{
+			Arrays.sort(array, startIndex, endIndex);
+			return;
+		}
+
+		long[] keys = new long[length];
+		for (int i = 0; i < length; i++)
+			keys[i] = sortableBits(array[startIndex + i]);
+		radixSortBytes(keys, 0, length, new long[length], null, null, 0);
+		for (int i = 0; i < length; i++)
+		{
+			long key = keys[i];
+			array[startIndex + i] = Double.longBitsToDouble(key < 0 ? key ^ Long.MIN_VALUE : ~key);
+		}
+	}
+
+	/**
+	 * Sorts an array of objects by an integer key extracted from each object.
+	 * Convenience method for <code>sortByIntKey(array, 0, array.length, keyFunction);</code>
+	 * @param <T> the object type stored in the array.
+	 * @param array the input array.
+	 * @param keyFunction the function that returns each object's key.
+	 * @see #sortByIntKey(Object[], int, int, ToIntFunction)
+	 * @since 2.33.0
+	 */
+	public static <T> void sortByIntKey(T[] array, ToIntFunction<? super T> keyFunction)
+	{
+		sortByIntKey(array, 0, array.length, keyFunction);
+	}
+
+	/**
+	 * Sorts part of an array of objects by an integer key extracted from each object, in ascending key order.
+	 * <p>
+	 * The key function is called exactly once per object, and the keys are radix sorted along with each object's
+	 * position, so no {@link Comparator} is called at all - this is much faster than a comparator sort for large
+	 * arrays, especially when the comparator would be one of many implementations called from the same place.
+	 * It uses temporary arrays totalling about 25 bytes per object in the range.
+	 * The sort is stable - objects with equal keys keep their order.
+	 * @param <T> the object type stored in the array.
+	 * @param array the input array.
+	 * @param startIndex the starting index of the sort (inclusive).
+	 * @param endIndex the ending index of the sort (exclusive).
+	 * @param keyFunction the function that returns each object's key.
+	 * @throws IllegalArgumentException if startIndex is greater than endIndex.
+	 * @throws ArrayIndexOutOfBoundsException if startIndex is less than 0 or endIndex is greater than the array length.
+	 * @since 2.33.0
+	 */
+	public static <T> void sortByIntKey(T[] array, int startIndex, int endIndex, ToIntFunction<? super T> keyFunction)
+	{
+		checkRange(array.length, startIndex, endIndex);
+		long[] keys = new long[endIndex - startIndex];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = (keyFunction.applyAsInt(array[startIndex + i]) ^ Integer.MIN_VALUE) & 0x0ffffffffL;
+		sortByKeys(array, startIndex, keys);
+	}
+
+	/**
+	 * Sorts an array of objects by a long integer key extracted from each object.
+	 * Convenience method for <code>sortByLongKey(array, 0, array.length, keyFunction);</code>
+	 * @param <T> the object type stored in the array.
+	 * @param array the input array.
+	 * @param keyFunction the function that returns each object's key.
+	 * @see #sortByLongKey(Object[], int, int, ToLongFunction)
+	 * @since 2.33.0
+	 */
+	public static <T> void sortByLongKey(T[] array, ToLongFunction<? super T> keyFunction)
+	{
+		sortByLongKey(array, 0, array.length, keyFunction);
+	}
+
+	/**
+	 * Sorts part of an array of objects by a long integer key extracted from each object, in ascending key order.
+	 * The key function is called exactly once per object, and no {@link Comparator} is called.
+	 * The sort is stable - objects with equal keys keep their order.
+	 * @param <T> the object type stored in the array.
+	 * @param array the input array.
+	 * @param startIndex the starting index of the sort (inclusive).
+	 * @param endIndex the ending index of the sort (exclusive).
+	 * @param keyFunction the function that returns each object's key.
+	 * @throws IllegalArgumentException if startIndex is greater than endIndex.
+	 * @throws ArrayIndexOutOfBoundsException if startIndex is less than 0 or endIndex is greater than the array length.
+	 * @see #sortByIntKey(Object[], int, int, ToIntFunction)
+	 * @since 2.33.0
+	 */
+	public static <T> void sortByLongKey(T[] array, int startIndex, int endIndex, ToLongFunction<? super T> keyFunction)
+	{
+		checkRange(array.length, startIndex, endIndex);
+		long[] keys = new long[endIndex - startIndex];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = keyFunction.applyAsLong(array[startIndex + i]) ^ Long.MIN_VALUE;
+		sortByKeys(array, startIndex, keys);
+	}
+
+	/**
+	 * Sorts an array of objects by a double key extracted from each object.
+	 * Convenience method for <code>sortByDoubleKey(array, 0, array.length, keyFunction);</code>
+	 * @param <T> the object type stored in the array.
+	 * @param array the input array.
+	 * @param keyFunction the function that returns each object's key.
+	 * @see #sortByDoubleKey(Object[], int, int, ToDoubleFunction)
+	 * @since 2.33.0
+	 */
+	public static <T> void sortByDoubleKey(T[] array, ToDoubleFunction<? super T> keyFunction)
+	{
+		sortByDoubleKey(array, 0, array.length, keyFunction);
+	}
+
+	/**
+	 * Sorts part of an array of objects by a double key extracted from each object, in ascending key order.
+	 * Keys are ordered like {@link Arrays#sort(double[])}: -0.0 is before 0.0, and NaN is last.
+	 * The key function is called exactly once per object, and no {@link Comparator} is called.
+	 * The sort is stable - objects with equal keys keep their order.
+	 * @param <T> the object type stored in the array.
+	 * @param array the input array.
+	 * @param startIndex the starting index of the sort (inclusive).
+	 * @param endIndex the ending index of the sort (exclusive).
+	 * @param keyFunction the function that returns each object's key.
+	 * @throws IllegalArgumentException if startIndex is greater than endIndex.
+	 * @throws ArrayIndexOutOfBoundsException if startIndex is less than 0 or endIndex is greater than the array length.
+	 * @see #sortByIntKey(Object[], int, int, ToIntFunction)
+	 * @since 2.33.0
+	 */
+	public static <T> void sortByDoubleKey(T[] array, int startIndex, int endIndex, ToDoubleFunction<? super T> keyFunction)
+	{
+		checkRange(array.length, startIndex, endIndex);
+		long[] keys = new long[endIndex - startIndex];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = sortableBits(keyFunction.applyAsDouble(array[startIndex + i]));
+		sortByKeys(array, startIndex, keys);
+	}
+
+	// Checks a sort range like Arrays.sort does.
+	private static void checkRange(int arrayLength, int startIndex, int endIndex)
+	{
+		if (startIndex > endIndex)
+			throw new IllegalArgumentException("startIndex(" + startIndex + ") > endIndex(" + endIndex + ")");
+		if (startIndex < 0)
+			throw new ArrayIndexOutOfBoundsException(startIndex);
+		if (endIndex > arrayLength)
+			throw new ArrayIndexOutOfBoundsException(endIndex);
+	}
+
+	// Float bits, flipped so that they sort as unsigned integers.
+	private static int sortableBits(float value)
+	{
+		int bits = Float.floatToIntBits(value);
+		return bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+	}
+
+	// Double bits, flipped so that they sort as unsigned long integers.
+	private static long sortableBits(double value)
+	{
+		long bits = Double.doubleToLongBits(value);
+		return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+	}
+
+	// Sorts part of an array by unsigned keys, one per object, stably.
+	private static void sortByKeys(Object[] array, int startIndex, long[] keys)
+	{
+		int length = keys.length;
+		if (length < 2)
+			return;
+		int[] positions = new int[length];
+		for (int i = 0; i < length; i++)
+			positions[i] = i;
+		radixSortBytes(keys, 0, length, new long[length], positions, new int[length], 0);
+
+		Object[] sorted = new Object[length];
+		for (int i = 0; i < length; i++)
+			sorted[i] = array[startIndex + positions[i]];
+		System.arraycopy(sorted, 0, array, startIndex, length);
+	}
+
+	/*
+	 * LSD radix sort of integers, a byte at a time. The counts for every byte are taken in one pass up front,
+	 * so that passes where every value has the same byte can be skipped. The highest byte is XORed
+	 * with topFlip (0x80 for signed values, 0 for unsigned).
+	 */
+	private static void radixSortBytes(int[] array, int offset, int length, int[] buffer, int topFlip)
+	{
+		int[] counts = new int[4 << 8];
+		for (int i = offset, end = offset + length; i < end; i++)
+		{
+			int value = array[i];
+			counts[value & 0xff]++;
+			counts[256 + ((value >>> 8) & 0xff)]++;
+			counts[512 + ((value >>> 16) & 0xff)]++;
+			counts[768 + (((value >>> 24) ^ topFlip) & 0xff)]++;
+		}
+
+		int[] source = array;
+		int sourceOffset = offset;
+		int[] target = buffer;
+		int targetOffset = 0;
+		for (int digit = 0; digit < 4; digit++)
+		{
+			int shift = digit << 3;
+			int flip = digit == 3 ? topFlip : 0;
+			int base = digit << 8;
+			if (counts[base + (((source[sourceOffset] >>> shift) ^ flip) & 0xff)] == length)
+				continue;
+
+			for (int b = 0, sum = 0; b < 256; b++)
+			{
+				int count = counts[base + b];
+				counts[base + b] = sum;
+				sum += count;
+			}
+			for (int i = 0; i < length; i++)
+			{
+				int value = source[sourceOffset + i];
+				target[targetOffset + counts[base + (((value >>> shift) ^ flip) & 0xff)]++] = value;
+			}
+
+			int[] swap = source; source = target; target = swap;
+			int swapOffset = sourceOffset; sourceOffset = targetOffset; targetOffset = swapOffset;
+		}
+
+		if (source != array)
+			System.arraycopy(source, sourceOffset, array, offset, length);
+	}
+
+	/*
+	 * LSD radix sort of long integers, a byte at a time. If positions is not null,
+	 * each position is moved along with its value (positionBuffer must also be not null).
+	 * See radixSortBytes(int[], int, int, int[], int).
+	 */
+	private static void radixSortBytes(long[] array, int offset, int length, long[] buffer, int[] positions, int[] positionBuffer, int topFlip)
+	{
+		int[] counts = new int[8 << 8];
+		for (int i = offset, end = offset + length; i < end; i++)
+		{
+			long value = array[i];
+			for (int digit = 0; digit < 7; digit++)
+				counts[(digit << 8) + (int)((value >>> (digit << 3)) & 0xff)]++;
+			counts[(7 << 8) + (int)(((value >>> 56) ^ topFlip) & 0xff)]++;
+		}
+
+		long[] source = array;
+		int sourceOffset = offset;
+		long[] target = buffer;
+		int targetOffset = 0;
+		int[] sourcePositions = positions;
+		int[] targetPositions = positionBuffer;
+		for (int digit = 0; digit < 8; digit++)
+		{
+			int shift = digit << 3;
+			int flip = digit == 7 ? topFlip : 0;
+			int base = digit << 8;
+			if (counts[base + (int)(((source[sourceOffset] >>> shift) ^ flip) & 0xff)] == length)
+				continue;
+
+			for (int b = 0, sum = 0; b < 256; b++)
+			{
+				int count = counts[base + b];
+				counts[base + b] = sum;
+				sum += count;
+			}
+			if (sourcePositions != null)
+			{
+				for (int i = 0; i < length; i++)
+				{
+					long value = source[sourceOffset + i];
+					int t = counts[base + (int)(((value >>> shift) ^ flip) & 0xff)]++;
+					target[targetOffset + t] = value;
+					targetPositions[t] = sourcePositions[i];
+				}
+				int[] swap = sourcePositions; sourcePositions = targetPositions; targetPositions = swap;
+			}
+			else
+			{
+				for (int i = 0; i < length; i++)
+				{
+					long value = source[sourceOffset + i];
+					target[targetOffset + counts[base + (int)(((value >>> shift) ^ flip) & 0xff)]++] = value;
+				}
+			}
+
+			long[] swap = source; source = target; target = swap;
+			int swapOffset = sourceOffset; sourceOffset = targetOffset; targetOffset = swapOffset;
+		}
+
+		if (source != array)
+		{
+			System.arraycopy(source, sourceOffset, array, offset, length);
+			if (positions != null)
+				System.arraycopy(sourcePositions, 0, positions, 0, length);
+		}
+	}
+
+	/**
+	 * Fork-join task for parallelSort.
+	 * Sorts a range of the array (in positions relative to arrayOffset, which are also the buffer positions)
+	 * and leaves the result in the buffer if toBuffer is true, or the array if not.
+	 */
+	private static class MergeSortTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 5270357407467327286L;
+
+		private Object[] array;
+		private int arrayOffset;
+		private Object[] buffer;
+		private int lo;
+		private int hi;
+		private boolean toBuffer;
+		private int piece;
+		private Comparator<Object> comparator;
+
+		MergeSortTask(Object[] array, int arrayOffset, Object[] buffer, int lo, int hi, boolean toBuffer, int piece, Comparator<Object> comparator)
+		{
+			this.array = array;
+			this.arrayOffset = arrayOffset;
+			this.buffer = buffer;
+			this.lo = lo;
+			this.hi = hi;
+			this.toBuffer = toBuffer;
+			this.piece = piece;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (hi - lo <= piece)
+			{
+				Arrays.sort(array, arrayOffset + lo, arrayOffset + hi, comparator);
+				if (toBuffer)
+					System.arraycopy(array, arrayOffset + lo, buffer, lo, hi - lo);
+				return;
+			}
+
+			// Both halves are sorted into the other array, then merged back into this one.
+			int mid = (lo + hi) >>> 1;
+			invokeAll(
+				new MergeSortTask(array, arrayOffset, buffer, lo, mid, !toBuffer, piece, comparator),
+				new MergeSortTask(array, arrayOffset, buffer, mid, hi, !toBuffer, piece, comparator)
+			);
+			if (toBuffer)
+				new MergeTask(array, arrayOffset, buffer, 0, lo, mid, mid, hi, lo, piece, comparator).compute();
+			else
+				new MergeTask(buffer, 0, array, arrayOffset, lo, mid, mid, hi, lo, piece, comparator).compute();
+		}
+	}
+
+	/**
+	 * Fork-join task for parallelSort.
+	 * Stably merges two sorted runs of the source into the target, splitting the merge in two around
+	 * the middle of the longer run if the runs are long.
+	 */
+	private static class MergeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = -1794458126213406581L;
+
+		private Object[] source;
+		private int sourceOffset;
+		private Object[] target;
+		private int targetOffset;
+		private int lo1, hi1;
+		private int lo2, hi2;
+		private int out;
+		private int piece;
+		private Comparator<Object> comparator;
+
+		MergeTask(Object[] source, int sourceOffset, Object[] target, int targetOffset, int lo1, int hi1, int lo2, int hi2, int out, int piece, Comparator<Object> comparator)
+		{
+			this.source = source;
+			this.sourceOffset = sourceOffset;
+			this.target = target;
+			this.targetOffset = targetOffset;
+			this.lo1 = lo1;
+			this.hi1 = hi1;
+			this.lo2 = lo2;
+			this.hi2 = hi2;
+			this.out = out;
+			this.piece = piece;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected void compute()
+		{
+			int length1 = hi1 - lo1;
+			int length2 = hi2 - lo2;
+			if (length1 + length2 <= piece)
+			{
+				merge();
+				return;
+			}
+
+			// Split so that everything in the first half is before everything in the second, and ties stay stable:
+			// the first run's objects always stay before equal objects in the second run.
+			int mid1, mid2;
+			if (length1 >= length2)
+			{
+				mid1 = (lo1 + hi1) >>> 1;
+				mid2 = search(source[sourceOffset + mid1], lo2, hi2, false);
+			}
+			else
+			{
+				mid2 = (lo2 + hi2) >>> 1;
+				mid1 = search(source[sourceOffset + mid2], lo1, hi1, true);
+			}
+			int midOut = out + (mid1 - lo1) + (mid2 - lo2);
+			invokeAll(
+				new MergeTask(source, sourceOffset, target, targetOffset, lo1, mid1, lo2, mid2, out, piece, comparator),
+				new MergeTask(source, sourceOffset, target, targetOffset, mid1, hi1, mid2, hi2, midOut, piece, comparator)
+			);
+		}
+
+		// Returns the first position in a run whose object is greater than (or equal to, if not after) the key.
+		private int search(Object key, int lo, int hi, boolean after)
+		{
+			while (lo < hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				int c = comparator.compare(source[sourceOffset + mid], key);
+				if (c < 0 || (after && c == 0))
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+
+		private void merge()
+		{
+			int i = sourceOffset + lo1, iEnd = sourceOffset + hi1;
+			int j = sourceOffset + lo2, jEnd = sourceOffset + hi2;
+			int t = targetOffset + out;
+			while (i < iEnd && j < jEnd)
+			{
+				if (comparator.compare(source[j], source[i]) < 0)
+					target[t++] = source[j++];
+				else
+					target[t++] = source[i++];
+			}
+			if (i < iEnd)
+				System.arraycopy(source, i, target, t, iEnd - i);
+			else if (j < jEnd)
+				System.arraycopy(source, j, target, t, jEnd - j);
+		}
+	}
+
 	/**
 	 * Copies references from one array to another until 
 	 * it hits a null sentinel reference or the end of the source array.
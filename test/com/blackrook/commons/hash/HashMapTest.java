@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+/**
+ * Regression checks for {@link HashMap} and {@link Hash}.
+ * Run with the compiled library on the classpath; throws an error on failure.
+ * @author Matthew Tropiano
+ */
+public final class HashMapTest
+{
+	private static final String[] KEYS = {
+		"alpha", "bravo", "charlie", "delta", "echo", "foxtrot",
+		"golf", "hotel", "india", "juliet", "kilo", "lima"
+	};
+
+	public static void main(String[] args)
+	{
+		overriddenKeyEqualityInLongChain();
+		overriddenEqualityInLongChain();
+		caseInsensitiveLongChain();
+		System.out.println("HashMapTest: OK");
+	}
+
+	// A map subclass that changes key equality must not sort its chains by the keys' natural ordering.
+	private static void overriddenKeyEqualityInLongChain()
+	{
+		HashMap<String, Integer> map = new HashMap<String, Integer>()
+		{
+			@Override
+			protected int getHashcodeForKey(String key)
+			{
+				return 0;
+			}
+
+			@Override
+			public boolean equalityMethodForKey(String key1, String key2)
+			{
+				return key1.equalsIgnoreCase(key2);
+			}
+		};
+		for (int i = 0; i < KEYS.length; i++)
+			map.put(KEYS[i], i);
+		for (int i = 0; i < KEYS.length; i++)
+			check(Integer.valueOf(i).equals(map.get(KEYS[i].toUpperCase())), "lookup of \"" + KEYS[i].toUpperCase() + "\" failed");
+		map.put("ALPHA", -1);
+		check(map.size() == KEYS.length, "size should be " + KEYS.length + ", was " + map.size());
+		check(Integer.valueOf(-1).equals(map.get("alpha")), "\"ALPHA\" did not replace \"alpha\"");
+	}
+
+	// A set subclass that changes equality must not sort its chains by the objects' natural ordering.
+	private static void overriddenEqualityInLongChain()
+	{
+		Hash<String> hash = new Hash<String>()
+		{
+			@Override
+			protected int getHashcodeFor(String object)
+			{
+				return 0;
+			}
+
+			@Override
+			protected boolean equalityMethod(String object1, String object2)
+			{
+				return object1.equalsIgnoreCase(object2);
+			}
+		};
+		for (String key : KEYS)
+			hash.put(key);
+		for (String key : KEYS)
+			check(hash.contains(key.toUpperCase()), "contains(\"" + key.toUpperCase() + "\") failed");
+		hash.put("ALPHA");
+		check(hash.size() == KEYS.length, "size should be " + KEYS.length + ", was " + hash.size());
+	}
+
+	// The in-repo case-insensitive map keeps working past the sorted chain threshold.
+	private static void caseInsensitiveLongChain()
+	{
+		CaseInsensitiveHashMap<Integer> map = new CaseInsensitiveHashMap<Integer>(1, 100f);
+		for (int i = 0; i < KEYS.length; i++)
+			map.put(KEYS[i], i);
+		for (int i = 0; i < KEYS.length; i++)
+			check(Integer.valueOf(i).equals(map.get(KEYS[i].toUpperCase())), "lookup of \"" + KEYS[i].toUpperCase() + "\" failed");
+		map.put("ALPHA", -1);
+		check(map.size() == KEYS.length, "size should be " + KEYS.length + ", was " + map.size());
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+			throw new AssertionError(message);
+	}
+
+}
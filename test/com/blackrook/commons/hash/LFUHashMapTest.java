@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.commons.hash;
+
+/**
+ * Regression checks for {@link LFUHashMap}.
+ * Run with the compiled library on the classpath; throws an error on failure.
+ * @author Matthew Tropiano
+ */
+public final class LFUHashMapTest
+{
+	public static void main(String[] args)
+	{
+		newKeyIsAdmittedWhenFull();
+		System.out.println("LFUHashMapTest: OK");
+	}
+
+	// A full cache must evict an older entry to admit a new key, not the new key itself.
+	private static void newKeyIsAdmittedWhenFull()
+	{
+		LFUHashMap<String, String> map = new LFUHashMap<String, String>(2);
+		map.put("a", "A");
+		map.get("a");
+		map.put("b", "B");
+		map.get("b");
+		map.put("c", "C");
+		check("C".equals(map.get("c")), "new key \"c\" was evicted on insert");
+		check(map.size() == 2, "size should be 2, was " + map.size());
+		check(map.getEvictionCount() == 1, "eviction count should be 1, was " + map.getEvictionCount());
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+			throw new AssertionError(message);
+	}
+
+}